@@ -5,6 +5,7 @@ import lib.common.Util;
 import lib.database.Complex;
 import lib.kemi.H2O.IAPWSF95;
 import lib.database.LibDB;
+import lib.database.LogKEvaluator;
 import lib.database.ProgramDataDB;
 import lib.huvud.ProgramConf;
 
@@ -465,9 +466,13 @@ If redox And RedoxAsk Then  */
     double maxT = Double.MAX_VALUE, maxP = Double.MAX_VALUE;
     String txt;
     long cnt = 0;
+    // logK for all reactions at once
+    final double[] logK = new double[srch.nx+srch.nf];
+    new LogKEvaluator(srch.dat.subList(0, srch.nx+srch.nf))
+            .logK(srch.temperature_C, srch.pressure_bar, logK);
     for(int ix=0; ix < srch.nx+srch.nf; ix++) {
         if(srch.temperature_C > srch.dat.get(ix).tMax || srch.pressure_bar > srch.dat.get(ix).pMax
-                || Double.isNaN(srch.dat.get(ix).logKatTandP(srch.temperature_C, srch.pressure_bar))) {
+                || Double.isNaN(logK[ix])) {
             if(!fnd) {
                 System.out.println("--------- Temperature-pressure extrapolations to "
                     +String.format("%.0f",srch.temperature_C)+" C, pressure = "+
@@ -4,6 +4,7 @@ import lib.common.MsgExceptn;
 import lib.common.Util;
 import lib.database.Complex;
 import lib.database.LibDB;
+import lib.database.LogKEvaluator;
 import lib.database.ProgramDataDB;
 import lib.huvud.ProgramConf;
 
@@ -357,13 +358,16 @@ public class ExitDialog extends javax.swing.JDialog {
       int j, jc, nTot;
       Complex cmplx;
       StringBuilder logB = new StringBuilder();
+      final double[] logK = new double[srch.nx+srch.nf];
+      new LogKEvaluator(srch.dat.subList(0, srch.nx+srch.nf))
+              .logK(srch.temperature_C, srch.pressure_bar, logK);
       for(int ix=0; ix < srch.nx+srch.nf; ix++) {
         cmplx = srch.dat.get(ix);
         if(cmplx.name.length()<=19) {
             w.write(String.format(engl, "%-19s,  ",cmplx.name));
         } else {w.write(String.format(engl, "%s,  ",cmplx.name));}
         if(logB.length()>0) {logB.delete(0, logB.length());}
-        double lgK = cmplx.logKatTandP(srch.temperature_C, srch.pressure_bar);
+        double lgK = logK[ix];
         if(Double.isNaN(lgK)) {
           String msg = "Error in \"saveDataFile\","+nl+
                     "   species \""+cmplx.name+"\"  has logK = Not-a-Number."+nl+
@@ -0,0 +1,196 @@
+package testCBer;
+
+import lib.kemi.chem.Chem;
+import lib.kemi.haltaFall.Factor;
+import lib.kemi.haltaFall.HaltaFall;
+
+/**
+ * Test of the calculation of the concentrations of the aqueous species in
+ * HaltaFall (procedure "cBer", which is private and is called here through
+ * reflection).
+ * The results are compared with those of the original version of "cBer",
+ * which is listed below: a loop over all aqueous species, testing "noll" for
+ * each of them, with the concentrations limited to 1.5E+35 (lnC = 81) and set
+ * to zero below 1.8E-45 (lnC = -103).
+ * The logarithms of the activities are chosen at random so that all cases are
+ * tested: below the lower limit, between the limits, above the upper limit,
+ * at the limits themselves, and infinite or NaN values.
+ * The chemical system is that of "Test_HaltaFall" (Fe/H+/e-), where "e-"
+ * and the solid component Fe(s) are "noll" species.
+ * ------------------------------------------------------------------
+ * @author Ignasi Puigdomenech
+ */
+public class TestCBer {
+  private static final String nl = System.getProperty("line.separator");
+  /** the largest difference allowed in the concentrations, relative to the
+   * concentration of the original version. Both versions use Math.exp on the
+   * same value of lnC, so the concentrations must be the same, bit for bit */
+  private static final double TOL = 0;
+
+  /**  @param args the command line arguments */
+  public static void main(String[] args) {
+    System.out.println("Test of \"HaltaFall.cBer\":");
+    Chem.ChemSystem cs = null;
+    HaltaFall h = null;
+    java.lang.reflect.Method cBer = null;
+    double[] lnA = null, lnG = null, lnBA = null;
+    boolean[] noCalc = null;
+    try{
+        cs = newChemSystem();
+        h = new HaltaFall(cs, new Factor(), System.out);
+        cBer = HaltaFall.class.getDeclaredMethod("cBer", int.class);
+        cBer.setAccessible(true);
+        lnA = (double[])field("lnA").get(h);
+        lnG = (double[])field("lnG").get(h);
+        lnBA = (double[])field("lnBA").get(h);
+        noCalc = (boolean[])field("noCalc").get(h);
+    } catch (Exception ex) {ex.printStackTrace(); System.exit(1);}
+    Chem.ChemSystem.ChemConcs c = cs.chemConcs;
+    final int nIon = cs.Na + cs.nx;
+    double[] lnARef = new double[cs.Ms];
+    double[] cRef = new double[nIon];
+
+    java.util.Random rnd = new java.util.Random(7654321L);
+    int nTests = 0, nErr = 0, nLow = 0, nHigh = 0, nBetween = 0, nOther = 0;
+    double maxDiff = 0;
+    for(int test = 0; test < 20000; test++) {
+      for(int ia = 0; ia < cs.Na; ia++) {lnA[ia] = randomLn(rnd);}
+      for(int lix = 0; lix < cs.nx; lix++) {lnBA[lix] = 230*rnd.nextDouble() - 115;}
+      // lnG = 0 for some species so that lnC may be at the limits
+      for(int lia = 0; lia < nIon; lia++) {lnG[lia] = (rnd.nextInt(4) == 0) ? 0 : 10*rnd.nextDouble() - 5;}
+      for(int ia = 0; ia < cs.Na; ia++) {noCalc[ia] = rnd.nextInt(4) == 0;}
+      for(int lia = 0; lia < nIon; lia++) {c.C[lia] = -1;} // must be replaced
+      int ivar = rnd.nextInt(cs.Na);
+      System.arraycopy(lnA, 0, lnARef, 0, cs.Ms);
+      cBerOriginal(cs, ivar, lnARef, lnBA, lnG, noCalc, cRef);
+      try{cBer.invoke(h, ivar);}
+      catch (Exception ex) {ex.printStackTrace(); System.exit(1);}
+      for(int lia = 0; lia < nIon; lia++) {
+        nTests++;
+        double lnC = lnARef[lia] - lnG[lia];
+        if(cs.noll[lia] || Double.isNaN(lnC) || Double.isInfinite(lnC)) {nOther++;}
+        else if(lnC <= -103.) {nLow++;}
+        else if(lnC > 81.) {nHigh++;}
+        else {nBetween++;}
+        if(Double.doubleToLongBits(lnA[lia]) != Double.doubleToLongBits(lnARef[lia])) {
+            nErr++;
+            System.out.println("Error: species "+lia+", lnA = "+lnA[lia]+" but it should be "+lnARef[lia]);
+            continue;
+        }
+        double diff;
+        if(c.C[lia] == cRef[lia]) {diff = 0;}
+        else if(cRef[lia] == 0) {diff = Double.POSITIVE_INFINITY;}
+        else {diff = Math.abs(c.C[lia] - cRef[lia]) / cRef[lia];}
+        maxDiff = Math.max(maxDiff, diff);
+        if(!(diff <= TOL)) {
+            nErr++;
+            System.out.println("Error: species "+lia+", lnC = "+lnC+
+                    ", C = "+c.C[lia]+" but it should be "+cRef[lia]);
+        }
+      } // for lia
+    } // for test
+    System.out.println("  "+nTests+" concentrations tested: "+nLow+" below the lower limit (lnC <= -103), "+
+            nBetween+" between the limits,"+nl+
+            "  "+nHigh+" above the upper limit (lnC > 81), "+nOther+" \"noll\", infinite or NaN.");
+    System.out.println("  largest relative difference in the concentrations = "+(float)maxDiff+
+            " (allowed: "+(float)TOL+")");
+    if(nErr == 0) {
+        System.out.println("All tests passed.");
+    } else {
+        System.out.println(nErr+" tests failed.");
+        System.exit(1);
+    }
+  } // main
+
+  private static java.lang.reflect.Field field(String name) throws NoSuchFieldException {
+    java.lang.reflect.Field f = HaltaFall.class.getDeclaredField(name);
+    f.setAccessible(true);
+    return f;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="randomLn">
+  /** @return a value of ln(activity) for a component: mostly at random between
+   * -250 and +150, sometimes at the limits of the concentrations (or next to them),
+   * and sometimes infinite or NaN */
+  private static double randomLn(java.util.Random rnd) {
+    switch (rnd.nextInt(20)) {
+      case 0: return 81.;
+      case 1: return -103.;
+      case 2: return Math.nextUp(81.);
+      case 3: return Math.nextAfter(-103., Double.NEGATIVE_INFINITY);
+      case 4: return Double.NEGATIVE_INFINITY;
+      case 5: return Double.POSITIVE_INFINITY;
+      case 6: return Double.NaN;
+      default: return 400*rnd.nextDouble() - 250;
+    }
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="cBerOriginal">
+  /** The original version of "cBer" in HaltaFall.
+   * Calculation of the activities of soluble complexes and of the
+   * concentrations of all soluble species. */
+  private static void cBerOriginal(Chem.ChemSystem cs, int ivar, double[] lnA,
+          double[] lnBA, double[] lnG, boolean[] noCalc, double[] C) {
+    // Calculate activities of soluble complexes
+    int lix, liax, lia;
+    double q;
+    for(lix =0; lix <cs.nx; lix++) {
+        liax = cs.Na +lix;
+        if(noCalc[ivar]) {
+            q = Math.abs(cs.a[lix][ivar]);
+        } else {
+            q = cs.a[lix][ivar];
+        }
+        lnA[liax] = lnBA[lix] + q * lnA[ivar];
+    } //for lix
+    // Calculate Concentrations:
+    //   components and soluble complexes
+    double lnC;
+    for(lia =0; lia < cs.Na + cs.nx; lia++) {
+        C[lia] = 0.;
+        if(!cs.noll[lia]) {
+            lnC = lnA[lia] - lnG[lia];
+            if(lnC >  81.) {lnC = 81.;} //max concentration 1.5E+35
+            if(lnC > -103.) { // min concentration 1.8E-45
+                C[lia] = Math.exp(lnC);
+            }
+        } //if !noll
+    } //for i
+  } // cBerOriginal
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="newChemSystem">
+  /** @return the chemical system of "Test_HaltaFall": components H+, e-
+   * and Fe(s), 13 soluble complexes and 3 solid complexes
+   * @throws Chem.ChemicalParameterException */
+  private static Chem.ChemSystem newChemSystem() throws Chem.ChemicalParameterException {
+    int na = 3, ms = 19, solidC = 1, msol = 4;
+    ms = ms + solidC;
+    Chem chem = new Chem(na, ms, msol, solidC);
+    Chem.ChemSystem cs = chem.chemSystem;
+    cs.noll = new boolean[cs.Ms];
+    cs.noll[1] = true; // do not consider the formation of "e-"
+    cs.a = new double[cs.Ms-cs.Na][cs.Na];
+    cs.lBeta = new double[cs.Ms-cs.Na];
+    double[][] a = {{0,-2,1},{-1,-2,1},{-3,-2,1},{-4,-2,1},{0,-3,1},{-1,-3,1},
+        {-2,-3,1},{-3,-3,1},{-2,-6,2},{-4,-9,3},{-1,0,0},{-4,-4,0},{2,2,0},
+        {-2,-2,1},{-8,-8,3},{-3,-3,1},{0,0,1}};
+    double[] lBeta = {14.9,5.1,-16.88,-30.8,2.43,-0.62,-3.88,-10.49,1.9,1.52,
+        -14.2,-84.49,-1.39,1.52,8.6,-1.12,0};
+    for(int i = 0; i < a.length; i++) {
+        System.arraycopy(a[i], 0, cs.a[i], 0, cs.Na);
+        cs.lBeta[i] = lBeta[i];
+    }
+    cs.noll[cs.Na - solidC] = true; // solid components are not aqueous species
+    Chem.ChemSystem.ChemConcs c = cs.chemConcs;
+    for(int i = 0; i < cs.Na; i++) {c.kh[i] = 1;}
+    c.tol = 1.E-5;
+    c.tot[0]= 1.E-5;
+    c.tot[1]= -0.15;
+    c.tot[2]= 0.1;
+    c.dbg = 0;
+    return cs;
+  }
+  //</editor-fold>
+}
@@ -0,0 +1,162 @@
+package testInterpolate;
+
+import lib.kemi.interpolate.Interpolate;
+import lib.kemi.interpolate.LogKGrid;
+
+/**
+ * Test of the interpolation of logK in the look-up tables of temperature
+ * and pressure: "Interpolate.logKinterpolateTP", "Interpolate.logKinterpolatePsat"
+ * and the class "LogKGrid".
+ * The results are compared with those of the original version of
+ * "Interpolate" (before LogKGrid was added), which are listed below.
+ * The interpolation in temperature and pressure is now done in double
+ * precision, while the original version used single precision (float),
+ * so the values at (T,P) may differ in the last digits.
+ * The interpolation at the saturated vapour pressure must give the same
+ * values as before.
+ * ------------------------------------------------------------------
+ * @author Ignasi Puigdomenech
+ */
+public class TestInterpolate {
+  private static final String nl = System.getProperty("line.separator");
+  /** the largest difference allowed in logK at (T,P), relative to max(1,|logK|) */
+  private static final double TOL = 1e-5;
+  //                                    index:  0   1   2    3    4    5    6    7    8    9   10   11   12   13
+  private static final float[] TEMPERATURES = {0f,25f,50f,100f,150f,200f,250f,300f,350f,400f,450f,500f,550f,600f};
+  private static final float[] PRESSURES = {1f,500f,1000f,3000f,5000f};
+  /** the temperatures and pressures where logK is interpolated */
+  private static final float[] tC = {0f,5f,25f,37.5f,60f,100f,125f,180f,250f,299f,350f,375f,420f,475f,530f,600f};
+  private static final float[] pBar = {1f,2f,50f,250f,500f,750f,1000f,2000f,3500f,5000f};
+
+  //<editor-fold defaultstate="collapsed" desc="results of the original version">
+  // LOGK_TP_n[tC][pBar]: logKinterpolateTP for the look-up table n
+  //   (table 0 is complete; table 1 has no values at "1" bar above 350 C,
+  //   nor at "500" bar above 450 C)
+  // LOGK_PSAT[tC]: logKinterpolatePsat for the first nine values of table 0
+  // NaN: an exception was thrown
+  private static final float[][] LOGK_TP_0 = new float[][]{
+    {11.818015f,11.8183155f,11.832666f,11.891465f,11.962715f,12.0314665f,12.097714f,12.337713f,12.622715f,12.817716f},
+    {11.839619f,11.839923f,11.854512f,11.914314f,11.986814f,12.056812f,12.124313f,12.369312f,12.661814f,12.864313f},
+    {11.898855f,11.899181f,11.914729f,11.978529f,12.056029f,12.131029f,12.203529f,12.468531f,12.79103f,13.02353f},
+    {11.913797f,11.914135f,11.9302845f,11.996584f,12.077209f,12.155334f,12.23096f,12.50846f,12.849711f,13.10096f},
+    {11.903725f,11.904083f,11.921312f,11.992117f,12.078365f,12.162115f,12.243365f,12.543364f,12.918364f,13.203364f},
+    {11.796212f,11.796613f,11.8157625f,11.894567f,11.990819f,12.084568f,12.175819f,12.51582f,12.950818f,13.295819f},
+    {11.692582f,11.693009f,11.713449f,11.797561f,11.900305f,12.000303f,12.097804f,12.462804f,12.935304f,13.317804f},
+    {11.3806925f,11.381186f,11.404839f,11.50192f,11.619955f,11.733705f,11.8449545f,12.2649555f,12.819954f,13.284954f},
+    {10.89017f,10.890792f,10.920489f,11.040851f,11.183632f,11.314881f,11.443631f,11.933632f,12.593632f,13.163632f},
+    {10.499799f,10.500596f,10.5384655f,10.688722f,10.859453f,11.002953f,11.143953f,11.682954f,12.416452f,13.059953f},
+    {10.012737f,10.013955f,10.071536f,10.291601f,10.521653f,10.677903f,10.831653f,11.421652f,12.231653f,12.951653f},
+    {9.61732f,9.619229f,9.708869f,10.040486f,10.360031f,10.522531f,10.68253f,11.29753f,12.14503f,12.90253f},
+    {9.125636f,9.128157f,9.246029f,9.676676f,10.0778055f,10.251557f,10.422807f,11.082806f,11.997805f,12.822805f},
+    {9.466704f,9.467009f,9.482518f,9.564878f,9.68965f,9.913683f,10.128572f,10.843573f,11.841074f,12.748573f},
+    {9.056812f,9.056574f,9.047582f,9.062241f,9.015531f,9.464529f,9.865983f,10.6359825f,11.715982f,12.705983f},
+    {8.706248f,8.698904f,8.365781f,7.3864937f,4.3704653f,7.218152f,9.585349f,10.425348f,11.610349f,12.705349f}};
+  private static final float[][] LOGK_TP_1 = new float[][]{
+    {11.818015f,11.8183155f,11.832666f,11.891465f,11.962715f,12.0314665f,12.097714f,12.337713f,12.622715f,12.817716f},
+    {11.839619f,11.839923f,11.854512f,11.914314f,11.986814f,12.056812f,12.124313f,12.369312f,12.661814f,12.864313f},
+    {11.898855f,11.899181f,11.914729f,11.978529f,12.056029f,12.131029f,12.203529f,12.468531f,12.79103f,13.02353f},
+    {11.913797f,11.914135f,11.9302845f,11.996584f,12.077209f,12.155334f,12.23096f,12.50846f,12.849711f,13.10096f},
+    {11.903725f,11.904083f,11.921312f,11.992117f,12.078365f,12.162115f,12.243365f,12.543364f,12.918364f,13.203364f},
+    {11.796212f,11.796613f,11.8157625f,11.894567f,11.990819f,12.084568f,12.175819f,12.51582f,12.950818f,13.295819f},
+    {11.692582f,11.693009f,11.713449f,11.797561f,11.900305f,12.000303f,12.097804f,12.462804f,12.935304f,13.317804f},
+    {11.3806925f,11.381186f,11.404839f,11.50192f,11.619955f,11.733705f,11.8449545f,12.2649555f,12.819954f,13.284954f},
+    {10.89017f,10.890792f,10.920489f,11.040851f,11.183632f,11.314881f,11.443631f,11.933632f,12.593632f,13.163632f},
+    {10.499799f,10.500596f,10.5384655f,10.688722f,10.859453f,11.002953f,11.143953f,11.682954f,12.416452f,13.059953f},
+    {10.012737f,10.013955f,10.071536f,10.291601f,10.521653f,10.677903f,10.831653f,11.421652f,12.231653f,12.951653f},
+    {9.743421f,9.744936f,9.816446f,10.195032f,10.360031f,10.522531f,10.68253f,11.29753f,12.14503f,12.90253f},
+    {Float.NaN,Float.NaN,Float.NaN,9.901556f,10.0778055f,10.251557f,10.422807f,11.082806f,11.997805f,12.822805f},
+    {Float.NaN,Float.NaN,Float.NaN,Float.NaN,9.756073f,9.943573f,10.128572f,10.843573f,11.841074f,12.748573f},
+    {Float.NaN,Float.NaN,Float.NaN,Float.NaN,9.465982f,9.667232f,9.865983f,10.6359825f,11.715982f,12.705983f},
+    {Float.NaN,Float.NaN,Float.NaN,Float.NaN,9.150351f,9.369099f,9.585349f,10.425348f,11.610349f,12.705349f}};
+  private static final float[] LOGK_PSAT = new float[]{11.818015f,11.839619f,11.898855f,11.913797f,11.903726f,
+      11.796218f,11.69323f,11.385434f,10.914182f,10.565552f,
+      10.202303f,Float.NaN,Float.NaN,Float.NaN,Float.NaN,
+      Float.NaN};
+  //</editor-fold>
+
+  /**  @param args the command line arguments */
+  public static void main(String[] args) {
+    System.out.println("Test of \"Interpolate\" and \"LogKGrid\":");
+    int nErr = 0;
+    double maxDiff = 0;
+    for(int kind = 0; kind < 2; kind++) {
+        float[][] logKarray = table(kind);
+        float[][] expected = (kind == 0) ? LOGK_TP_0 : LOGK_TP_1;
+        LogKGrid grid = new LogKGrid(logKarray);
+        for(int it = 0; it < tC.length; it++) {
+            for(int ip = 0; ip < pBar.length; ip++) {
+                float e = expected[it][ip];
+                float v1, v2;
+                try {v1 = Interpolate.logKinterpolateTP(tC[it], pBar[ip], logKarray);}
+                catch (IllegalArgumentException ex) {v1 = Float.NaN;}
+                try {v2 = grid.logKatTP(tC[it], pBar[ip]);}
+                catch (IllegalArgumentException ex) {v2 = Float.NaN;}
+                if(Float.floatToIntBits(v1) != Float.floatToIntBits(v2)) {
+                    System.out.println("  table "+kind+", t="+tC[it]+", p="+pBar[ip]+
+                            ": logKinterpolateTP = "+v1+", LogKGrid = "+v2);
+                    nErr++;
+                }
+                if(Float.isNaN(e) || Float.isNaN(v1)) {
+                    if(Float.isNaN(e) != Float.isNaN(v1)) {
+                        System.out.println("  table "+kind+", t="+tC[it]+", p="+pBar[ip]+
+                                ": logK = "+v1+", expected "+e);
+                        nErr++;
+                    }
+                    continue;
+                }
+                double d = Math.abs(v1 - e)/Math.max(1, Math.abs(e));
+                maxDiff = Math.max(maxDiff, d);
+                if(d > TOL) {
+                    System.out.println("  table "+kind+", t="+tC[it]+", p="+pBar[ip]+
+                            ": logK = "+v1+", expected "+e);
+                    nErr++;
+                }
+            } // for ip
+        } // for it
+    } // for kind
+    System.out.println("  logK(T,P): largest relative difference = "+(float)maxDiff+" (allowed "+(float)TOL+")");
+
+    float[] row = new float[9];
+    System.arraycopy(table(0)[0], 0, row, 0, row.length);
+    LogKGrid grid = new LogKGrid(table(0));
+    for(int it = 0; it < tC.length; it++) {
+        float v1, v2;
+        try {v1 = Interpolate.logKinterpolatePsat(tC[it], row);}
+        catch (IllegalArgumentException ex) {v1 = Float.NaN;}
+        try {v2 = grid.logKatPsat(tC[it]);}
+        catch (IllegalArgumentException ex) {v2 = Float.NaN;}
+        if(Float.floatToIntBits(v1) != Float.floatToIntBits(LOGK_PSAT[it])
+                || Float.floatToIntBits(v2) != Float.floatToIntBits(LOGK_PSAT[it])) {
+            System.out.println("  t="+tC[it]+": logKinterpolatePsat = "+v1+", LogKGrid = "+v2+
+                    ", expected "+LOGK_PSAT[it]);
+            nErr++;
+        }
+    }
+    if(nErr > 0) {
+        System.out.println("Errors found: "+nErr);
+        System.exit(1);
+    }
+    System.out.println("All values are correct.");
+  } // main
+
+  /** A look-up table of logK values, logKarray[5][14], calculated with a
+   * function of temperature and pressure which is not a polynomial
+   * @param kind 0 for a complete table; 1 for a table with NaN at "1" bar
+   * above 350 C, and at "500" bar above 450 C
+   * @return the look-up table */
+  private static float[][] table(int kind) {
+    float[][] a = new float[PRESSURES.length][TEMPERATURES.length];
+    for(int j = 0; j < PRESSURES.length; j++) {
+        for(int i = 0; i < TEMPERATURES.length; i++) {
+            double t = TEMPERATURES[i], p = PRESSURES[j], tK = t + 273.15;
+            a[j][i] = (float)(10 - 0.02*t + 1e-5*t*t + 3e-4*p - 2e-8*p*p + 1e-6*t*p
+                        + 3*Math.log10(tK) - 1500/tK);
+        }
+    }
+    if(kind == 1) {
+        for(int i = 9; i < TEMPERATURES.length; i++) {a[0][i] = Float.NaN;}
+        for(int i = 11; i < TEMPERATURES.length; i++) {a[1][i] = Float.NaN;}
+    }
+    return a;
+  }
+}
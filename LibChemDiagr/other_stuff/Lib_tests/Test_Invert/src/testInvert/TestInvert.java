@@ -0,0 +1,255 @@
+package testInvert;
+
+import lib.kemi.chem.Chem;
+import lib.kemi.haltaFall.Factor;
+import lib.kemi.haltaFall.HaltaFall;
+
+/**
+ * Test of the matrix inversion in HaltaFall (procedure "invert", which is
+ * private and is called here through reflection).
+ * The results are compared with those of the original version of "invert"
+ * (a Gauss-Jordan reduction with complete pivoting), which is listed below.
+ * Both versions must find the same matrices to be singular (the flag "indik"),
+ * also for matrices that are close to singular, and the inverses may differ
+ * only because of rounding errors.
+ * ------------------------------------------------------------------
+ * @author Ignasi Puigdomenech
+ */
+public class TestInvert {
+  private static final String nl = System.getProperty("line.separator");
+  /** the largest matrix tested (the number of solids in the chemical system) */
+  private static final int MXS = 8;
+  /** the largest difference allowed in the elements of the inverse, relative to
+   * the largest element of the inverse times the condition number of the matrix */
+  private static final double TOL = 1e-12;
+
+  /**  @param args the command line arguments */
+  public static void main(String[] args) {
+    System.out.println("Test of \"HaltaFall.invert\":");
+    HaltaFall h = null;
+    java.lang.reflect.Method invert = null;
+    java.lang.reflect.Field indik = null;
+    try{
+        h = newHaltaFall();
+        invert = HaltaFall.class.getDeclaredMethod("invert", double[][].class, int.class);
+        invert.setAccessible(true);
+        indik = HaltaFall.class.getDeclaredField("indik");
+        indik.setAccessible(true);
+    } catch (Exception ex) {ex.printStackTrace(); System.exit(1);}
+
+    java.util.Random rnd = new java.util.Random(1234567L);
+    int nTests = 0, nSingular = 0, nErr = 0;
+    double maxDiff = 0;
+    double[][] a, a0, aRef;
+    // kind of matrix:
+    // 0: random elements
+    // 1: random elements, one column a linear combination of the others
+    //    plus a small perturbation (close to singular)
+    // 2: as 1 but with the elements of each row scaled by a power of ten
+    //    (as in "ruta", where the coefficients of the solids differ in size)
+    // 3: random elements where the elements in a column are small
+    //    (between 1E-12 and 1E-9) but the matrix is not singular
+    for(int kind = 0; kind < 4; kind++) {
+      for(int n = 1; n <= MXS; n++) {
+        for(int test = 0; test < 500; test++) {
+          a = randomMatrix(rnd, n, kind);
+          a0 = copy(a);
+          aRef = copy(a);
+          int flagRef = invertOriginal(aRef, n);
+          int flag = -1;
+          try{
+              invert.invoke(h, a, n);
+              flag = indik.getInt(h);
+          } catch (Exception ex) {ex.printStackTrace(); System.exit(1);}
+          nTests++;
+          if(flag != flagRef) {
+              nErr++;
+              System.out.println("Error: matrix kind="+kind+", n="+n+", indik="+flag+
+                      " but it should be "+flagRef+nl+toString(a0));
+              continue;
+          }
+          if(flag != 0) {
+              nSingular++;
+              if(!java.util.Arrays.deepEquals(a, a0)) {
+                  nErr++;
+                  System.out.println("Error: singular matrix kind="+kind+", n="+n+
+                          " was changed"+nl+toString(a0));
+              }
+              continue;
+          }
+          // compare the two inverses
+          double aMax = 0, invMax = 0, diff = 0;
+          for(int i = 0; i < n; i++) {
+            for(int j = 0; j < n; j++) {
+              aMax = Math.max(aMax, Math.abs(a0[i][j]));
+              invMax = Math.max(invMax, Math.abs(aRef[i][j]));
+            }
+          }
+          for(int i = 0; i < n; i++) {
+            for(int j = 0; j < n; j++) {
+              diff = Math.max(diff, Math.abs(a[i][j] - aRef[i][j]));
+            }
+          }
+          // condition number estimate: max|A| * max|A^-1| * n
+          diff = diff / (invMax * Math.max(1, aMax * invMax * n));
+          maxDiff = Math.max(maxDiff, diff);
+          if(!(diff <= TOL)) {
+              nErr++;
+              System.out.println("Error: matrix kind="+kind+", n="+n+
+                      ", relative difference in the inverse = "+diff+nl+toString(a0));
+          }
+        } // for test
+      } // for n
+    } // for kind
+    System.out.println("  "+nTests+" matrices tested, "+nSingular+" found singular by both versions.");
+    System.out.println("  largest relative difference in the inverse = "+(float)maxDiff+
+            " (allowed: "+(float)TOL+")");
+    if(nErr == 0) {
+        System.out.println("All tests passed.");
+    } else {
+        System.out.println(nErr+" tests failed.");
+        System.exit(1);
+    }
+  } // main
+
+  //<editor-fold defaultstate="collapsed" desc="newHaltaFall">
+  /** @return an instance of HaltaFall for a chemical system with one component
+   * and MXS solids, so that matrices up to size MXS may be inverted
+   * @throws Chem.ChemicalParameterException */
+  private static HaltaFall newHaltaFall() throws Chem.ChemicalParameterException {
+    Chem chem = new Chem(1, 1+MXS, MXS, 0);
+    Chem.ChemSystem cs = chem.chemSystem;
+    cs.noll = new boolean[cs.Ms];
+    cs.a = new double[cs.Ms-cs.Na][cs.Na];
+    cs.lBeta = new double[cs.Ms-cs.Na];
+    for(int i = 0; i < cs.Ms-cs.Na; i++) {cs.a[i][0] = i+1; cs.lBeta[i] = -i;}
+    Chem.ChemSystem.ChemConcs c = cs.chemConcs;
+    c.kh[0] = 1;
+    c.tot[0] = 1e-3;
+    c.tol = 1e-5;
+    c.dbg = 0;
+    return new HaltaFall(cs, new Factor(), System.out);
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="randomMatrix">
+  private static double[][] randomMatrix(java.util.Random rnd, int n, int kind) {
+    double[][] a = new double[n][n];
+    for(int i = 0; i < n; i++) {
+      for(int j = 0; j < n; j++) {
+        // many of the elements of "ruta" are small integers
+        if(rnd.nextInt(3) == 0) {a[i][j] = rnd.nextInt(7) - 3;}
+        else {a[i][j] = 2*rnd.nextDouble() - 1;}
+      }
+    }
+    if(kind == 1 || kind == 2) {
+      int jc = rnd.nextInt(n);
+      double eps = Math.pow(10, -7 - 7*rnd.nextDouble()); // 1E-7 to 1E-14
+      double[] w = new double[n];
+      for(int j = 0; j < n; j++) {w[j] = (j == jc) ? 0 : 2*rnd.nextDouble() - 1;}
+      for(int i = 0; i < n; i++) {
+        double s = 0;
+        for(int j = 0; j < n; j++) {s = s + w[j] * a[i][j];}
+        a[i][jc] = s + eps * (2*rnd.nextDouble() - 1);
+      }
+      if(kind == 2) {
+        for(int i = 0; i < n; i++) {
+          double f = Math.pow(10, rnd.nextInt(5) - 2);
+          for(int j = 0; j < n; j++) {a[i][j] = a[i][j] * f;}
+        }
+      }
+    } else if(kind == 3) {
+      int jc = rnd.nextInt(n);
+      for(int i = 0; i < n; i++) {
+        a[i][jc] = Math.pow(10, -9 - 3*rnd.nextDouble()) * (rnd.nextBoolean() ? 1 : -1);
+      }
+    }
+    return a;
+  }
+  //</editor-fold>
+
+  private static double[][] copy(double[][] a) {
+    double[][] b = new double[a.length][];
+    for(int i = 0; i < a.length; i++) {b[i] = a[i].clone();}
+    return b;
+  }
+
+  private static String toString(double[][] a) {
+    StringBuilder sb = new StringBuilder();
+    for(double[] row : a) {sb.append("    ").append(java.util.Arrays.toString(row)).append(nl);}
+    return sb.toString();
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="invertOriginal">
+  /** The original version of "invert" in HaltaFall.
+   * Adapted from "www.csee.umbc.edu/~squire/".
+   * @param a the matrix to invert, it is replaced by its inverse
+   * @param n the size of the matrix
+   * @return indik = 1 (matrix is singular) otherwise indik = 0 (ok).  */
+  private static int invertOriginal(double a[][], int n) {
+    int row[] = new int[n];
+    int col[] = new int[n];
+    double temp[] = new double[n];
+    int hold , iPivot , jPivot;
+    double pivot;
+
+    // set up row and column interchange vectors
+    for(int k=0; k<n; k++) {row[k] = k ; col[k] = k ;}
+    // begin main reduction loop
+    for(int k=0; k<n; k++) {
+      // find largest element for pivot
+      pivot = a[row[k]][col[k]] ;
+      iPivot = k;
+      jPivot = k;
+      for(int i=k; i<n; i++) {
+        for(int j=k; j<n; j++) {
+          if(Math.abs(a[row[i]][col[j]]) > Math.abs(pivot)) {
+            iPivot = i;
+            jPivot = j;
+            pivot = a[row[i]][col[j]];
+          }
+        }
+      }
+      if(Math.abs(pivot) < 1.0e-10) {
+        return 1;
+      }
+      hold = row[k];
+      row[k]= row[iPivot];
+      row[iPivot] = hold ;
+      hold = col[k];
+      col[k]= col[jPivot];
+      col[jPivot] = hold ;
+      // reduce about pivot
+      a[row[k]][col[k]] = 1.0 / pivot ;
+      for(int j=0; j<n; j++) {
+        if(j != k) {a[row[k]][col[j]] = a[row[k]][col[j]] * a[row[k]][col[k]];}
+      }
+      // inner reduction loop
+      for(int i=0; i<n; i++) {
+        if(k != i) {
+          for(int j=0; j<n; j++) {
+            if(k != j) {
+                a[row[i]][col[j]] = a[row[i]][col[j]]
+                                    - a[row[i]][col[k]] * a[row[k]][col[j]];
+            }
+          }
+          a[row[i]][col [k]] = - a[row[i]][col[k]] * a[row[k]][col[k]];
+        }
+      }
+    }
+    // end main reduction loop
+
+    // unscramble rows
+    for(int j=0; j<n; j++) {
+      for(int i=0; i<n; i++) {temp[col[i]] = a[row[i]][j];}
+      for(int i=0; i<n; i++) {a[i][j] = temp[i];}
+    }
+    // unscramble columns
+    for(int i=0; i<n; i++) {
+      for(int j=0; j<n; j++) {temp[row[j]] = a[i][col[j]];}
+      System.arraycopy(temp, 0, a[i], 0, n);
+    }
+    return 0;
+  } // invertOriginal
+  //</editor-fold>
+}
@@ -0,0 +1,107 @@
+package testTiming;
+
+import lib.kemi.chem.Chem;
+import lib.kemi.haltaFall.Factor;
+import lib.kemi.haltaFall.HaltaFall;
+
+/**
+ * Timing of HaltaFall for the Fe/H+/e- system of "F_R.dat"
+ * (21 soluble complexes and 8 solids), on a grid of 41x41 total
+ * concentrations of H+ and e-.
+ * The calculations are repeated and the shortest time is printed, together
+ * with the number of points where the calculations failed and the sum of
+ * all log(activities), which must not change when HaltaFall is modified
+ * only to make it faster.
+ * Usage: TestTiming [tol [range [totFe [repetitions]]]]
+ * where the total concentrations of H+ and e- go from -range to +range.
+ * The defaults are: 1E-5, 1, 1E-6 and 8. With these values the limit
+ * on the number of iterations in HaltaFall is reached at some of the points.
+ * ------------------------------------------------------------------
+ * @author Ignasi Puigdomenech
+ */
+public class TestTiming {
+  private static final String nl = System.getProperty("line.separator");
+  /** the number of intervals in each axis of the grid */
+  private static final int N = 40;
+  //<editor-fold defaultstate="collapsed" desc="the chemical system">
+  private static final String[] COMPONENTS = {"H+", "e-", "Fe 2+"};
+  /** name, logBeta and stoichiometric coefficients: first the soluble complexes, then the solids */
+  private static final String[] COMPLEXES = {
+    "Fe 3+,-13.051,0,-1,1", "Fe(OH)2,-20.8,-2,0,1", "Fe(OH)3-,-33.4,-3,0,1", "Fe(OH)4-2,-46.35,-4,0,1",
+    "FeOH+,-9.1,-1,0,1", "H2,-3.083,2,2,0", "H2(g),0,2,2,0", "H2O2,-59.61,-2,-2,0",
+    "O2,-85.989,-4,-4,0", "O2(g),-83.091,-4,-4,0", "O3,-155.14,-6,-6,0", "O3(g),-153.23,-6,-6,0",
+    "OH-,-14.002,-1,0,0", "Fe(OH)2+,-17.851,-2,-1,1", "Fe(OH)3,-25.051,-3,-1,1", "Fe(OH)4-,-34.651,-4,-1,1",
+    "Fe2(OH)2+4,-28.922,-2,-2,2", "Fe3(OH)4+5,-45.453,-4,-3,3", "FeO4-2,-125.901,-8,-4,1", "FeOH 2+,-15.201,-1,-1,1",
+    "HO2-,-71.26,-3,-2,0",
+    "Fe(cr),-15.89,0,2,1", "Fe(OH)2(am),-13.5,-2,0,1", "Fe(OH)2(cr),-12.996,-2,0,1", "Fe(OH)3(s),-16.081,-3,-1,1",
+    "Fe0.932O(cr),-13.51,-2,-0.136,0.932", "Fe3O4(cr),-36.44,-8,-2,3", "Fe2O3(cr),-26.002,-6,-2,2", "FeOOH(cr),-13.221,-3,-1,1"};
+  private static final int MSOL = 8;
+  //</editor-fold>
+
+  /**  @param args the command line arguments */
+  public static void main(String[] args) {
+    double tol = 1e-5, range = 1, totFe = 1e-6;
+    int reps = 8;
+    try{
+        if(args.length > 0) {tol = Double.parseDouble(args[0]);}
+        if(args.length > 1) {range = Double.parseDouble(args[1]);}
+        if(args.length > 2) {totFe = Double.parseDouble(args[2]);}
+        if(args.length > 3) {reps = Integer.parseInt(args[3]);}
+    } catch (NumberFormatException ex) {
+        System.out.println("Usage: TestTiming [tol [range [totFe [repetitions]]]]"+nl+ex.getMessage());
+        System.exit(1);
+    }
+    System.out.println("Timing of \"HaltaFall\": components "+java.util.Arrays.toString(COMPONENTS)+nl+
+            "  tol = "+tol+", tot(H+) and tot(e-) from "+(-range)+" to "+range+
+            ", tot(Fe 2+) = "+totFe+", "+reps+" repetitions");
+    Chem.ChemSystem cs = null;
+    HaltaFall h = null;
+    try{
+        Chem chem = new Chem(COMPONENTS.length, COMPONENTS.length + COMPLEXES.length, MSOL, 0);
+        cs = chem.chemSystem;
+        cs.noll = new boolean[cs.Ms];
+        cs.noll[1] = true; // do not consider the formation of "e-"
+        cs.a = new double[cs.Ms-cs.Na][cs.Na];
+        cs.lBeta = new double[cs.Ms-cs.Na];
+        for(int i = 0; i < COMPLEXES.length; i++) {
+            String[] f = COMPLEXES[i].split(",");
+            cs.lBeta[i] = Double.parseDouble(f[1]);
+            for(int ia = 0; ia < cs.Na; ia++) {cs.a[i][ia] = Double.parseDouble(f[2+ia]);}
+        }
+        for(int ia = 0; ia < cs.Na; ia++) {cs.chemConcs.kh[ia] = 1;}
+        cs.chemConcs.tol = tol;
+        cs.chemConcs.dbg = 0;
+        h = new HaltaFall(cs, new Factor(), System.out);
+    } catch (Chem.ChemicalParameterException ex) {ex.printStackTrace(); System.exit(1);}
+    Chem.ChemSystem.ChemConcs c = cs.chemConcs;
+
+    long best = Long.MAX_VALUE;
+    double sum = 0;
+    int nErr = 0;
+    for(int r = 0; r < reps; r++) {
+      sum = 0; nErr = 0;
+      long t0 = System.nanoTime();
+      try{
+        for(int i = 0; i <= N; i++) {
+          for(int j = 0; j <= N; j++) {
+            c.tot[0] = -range + 2*range*i/N;
+            c.tot[1] = -range + 2*range*j/N;
+            c.tot[2] = totFe;
+            c.cont = false;
+            h.haltaCalc();
+            if(c.isErrFlagsSet(2) || c.isErrFlagsSet(3) || c.isErrFlagsSet(4)
+                    || c.isErrFlagsSet(6)) {nErr++;}
+            for(int ia = 0; ia < cs.Na; ia++) {sum = sum + c.logA[ia];}
+          } // for j
+        } // for i
+      } catch (Chem.ChemicalParameterException ex) {ex.printStackTrace(); System.exit(1);}
+      long t = System.nanoTime() - t0;
+      // the first half of the repetitions warm up the JVM
+      if(r >= reps/2) {best = Math.min(best, t);}
+    } // for r
+    int nPoints = (N+1)*(N+1);
+    java.util.Locale e = java.util.Locale.ENGLISH;
+    System.out.format(e, "  %d points, %d failed, sum of log(activities) = %.15g%n", nPoints, nErr, sum);
+    System.out.format(e, "  shortest time: %.1f ms (%.1f us per point)%n", best/1e6, best/1e3/nPoints);
+  } // main
+}
@@ -61,6 +61,8 @@ public class MsgExceptn {
         } else {
             System.out.println("----"+nl+msg+nl+"----");
         }
+        // no message box without a display (java.awt.headless=true)
+        if(java.awt.GraphicsEnvironment.isHeadless()) {return;}
         if(parent == null || !parent.isEnabled()) {
             System.out.println("--- showErrMsg: parent is \"null\" or not enabled");
             ErrMsgBox mb = new ErrMsgBox(msg, null);
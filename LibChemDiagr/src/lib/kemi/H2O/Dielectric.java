@@ -38,6 +38,44 @@ public static final double CRITICAL_T = 647.096; // K
 public static final double CRITICAL_TC = 373.946; // C
 /** temperature of melting ice Ih at highest pressure = 251.165 K (at p = 2085.66 bar) */
 private static final double MELTING_T_ICE_Ih_AT_HIGH_P = 251.165;
+/** Table 8 in Fernandez et al (1997), used in epsSat */
+private static final double[] L = new double[]{
+     2.725384249466,
+     1.090337041668,
+     21.45259836736,
+     -47.12759581194,
+     4.346002813555,
+     237.5561886971,
+     -417.7353077397,
+     249.3834003133};
+/** Table 5 in Fernandez et al (1997), used in eps */
+private static final double[] N = new double[]{
+      0.978224486826,
+      -0.957771379375,
+      0.237511794148,
+      0.714692244396,
+      -0.298217036956,
+      -0.108853472196,
+      0.949327488264e-1,
+      -0.980469816509e-2,
+      0.165167634970e-4,
+      0.937359795772e-4,
+      -0.123179218720e-9};
+private static final double N12 = 0.196096504426e-2;
+private static final double[] N_i = new double[]{   1,1,  1, 2,  3,  3, 4,5,6, 7, 10};
+private static final double[] N_j = new double[]{0.25,1,2.5,1.5,1.5,2.5,2,2,5,0.5,10};
+/** the coefficients in eqn.(36) of Johnson and Norton (1991), used in epsJN */
+private static final double[] JN_A = new double[]{
+      0.1470333593E+2,
+      0.2128462733E+3,
+     -0.1154445173E+3,
+      0.1955210915E+2,
+     -0.8330347980E+2,
+      0.3213240048E+2,
+     -0.6694098645E+1,
+     -0.3786202045E+2,
+      0.6887359646E+2,
+     -0.2729401652E+2};
 
 //<editor-fold defaultstate="collapsed" desc="epsSat(tC)">
 /** Returns the static permitivity of water (dielectric constant)
@@ -66,16 +104,6 @@ static public double epsSat(final double tC) throws IllegalArgumentException {
  if(tC == 0) {return 87.95631;} // the value at the triple point: 0.01 C and pBar = 0.00611657 bar
  if(tC < 0.01 || tC >= CRITICAL_TC) throw new IllegalArgumentException("\"epsSat(t)\": tC = "+tC+" (must be zero or >=0.01 and < 373.946 C)");
  final double T = tC + T0;
- // Table 8 in Fernandez et al (1997)
- final double[] L = new double[]{
-     2.725384249466,
-     1.090337041668,
-     21.45259836736,
-     -47.12759581194,
-     4.346002813555,
-     237.5561886971,
-     -417.7353077397,
-     249.3834003133};
   // Eqns. (35) and (36) in Fernandez et al (1997)
   final double theta = Math.pow((1.-(T/CRITICAL_T)),(1./3.));
   double epsLiq = 1.;
@@ -143,23 +171,6 @@ static public double eps(final double tC, final double pBar) throws IllegalArgum
   final double N_A = 6.0221367e23;
   // Molar mass of water (kg/mol)
   final double M_w = 0.018015268;
-  // Table 5 in Fernandez et al (1997)
-  final double[] N = new double[]{
-      0.978224486826,
-      -0.957771379375,
-      0.237511794148,
-      0.714692244396,
-      -0.298217036956,
-      -0.108853472196,
-      0.949327488264e-1,
-      -0.980469816509e-2,
-      0.165167634970e-4,
-      0.937359795772e-4,
-      -0.123179218720e-9};
-  final double N12 = 0.196096504426e-2;
-  // Table 5 in Fernandez et al (1997)
-  final double[] i = new double[]{   1,1,  1, 2,  3,  3, 4,5,6, 7, 10};
-  final double[] j = new double[]{0.25,1,2.5,1.5,1.5,2.5,2,2,5,0.5,10};
   final double Tc = CRITICAL_T;
   final double T = t_C + T0;
   final double rho_c = 322 / M_w; // mol/m3
@@ -172,7 +183,7 @@ static public double eps(final double tC, final double pBar) throws IllegalArgum
   double g = 1.;
   double rho_rho_c = rho/rho_c, Tc_T = Tc/T;
   for(int h=0; h < N.length; h++) {
-      g = g + N[h] * Math.pow(rho_rho_c,i[h]) * Math.pow(Tc_T,j[h]);
+      g = g + N[h] * Math.pow(rho_rho_c,N_i[h]) * Math.pow(Tc_T,N_j[h]);
   }
   int h = 0;
   g = g + N12 * (rho_rho_c) * Math.pow(((T/228.)-1.),-1.2);
@@ -217,10 +228,8 @@ static public double eps(final double tC, final double pBar) throws IllegalArgum
  * @see lib.kemi.H2O.Dielectric#eps(double, double) eps
  */
 public static double epsJN(final double tC, final double pBar) throws IllegalArgumentException {
-  if(Double.isNaN(tC)) throw new IllegalArgumentException("\"epsJN(t,p)\": tC = NaN");
-  if(tC < 0 || tC > 1000.001) throw new IllegalArgumentException("\"epsJN(t,p)\": tC = "+tC+" (must be >=0 and <= 1000 C)");
-  if(Double.isNaN(pBar)) throw new IllegalArgumentException("\"epsJN(t,p)\": pBar = NaN");
-  if(pBar > 5000.01 || pBar <= 0.) throw new IllegalArgumentException("\"epsJN(t,p)\": pBar = "+pBar+" (must be >0 and <= 5 kbar)");
+  String range = epsJNRange(tC, pBar);
+  if(range != null) throw new IllegalArgumentException("\"epsJN(t,p)\": "+range);
 
   final double t_C;
   // if pressure = 1 bar and temperature = 0, set temperature to 0.01 C (tripple point of water)
@@ -244,17 +253,29 @@ public static double epsJN(final double tC, final double pBar) throws IllegalArg
 
   if( // rho > 1.1 || // see Fig.2 in SUPCRT92 (Jonhson et al 1992) 
          rho < 0.05) {throw new IllegalArgumentException("\"epsJN(t,p)\": calculated density = "+rho+" at tC = "+tC+", pBar = "+pBar+" (must be >0.05 g/cm3)");}
-  final double[] a = new double[]{
-      0.1470333593E+2,
-      0.2128462733E+3,
-     -0.1154445173E+3,
-      0.1955210915E+2,
-     -0.8330347980E+2,
-      0.3213240048E+2,
-     -0.6694098645E+1,
-     -0.3786202045E+2,
-      0.6887359646E+2,
-     -0.2729401652E+2};
+  return epsJN_rho(t_C, rho);
+}
+
+/** The range of conditions of <code>epsJN</code>: 0 to 1000 C, and above zero up to 5 kbar
+ * (the vaporization boundary is checked separately).
+ * @param tC the temperature in degrees Celsius
+ * @param pBar the pressure in bar
+ * @return null if (tC,pBar) are within the range, otherwise a description of the problem */
+private static String epsJNRange(final double tC, final double pBar) {
+  if(Double.isNaN(tC)) {return "tC = NaN";}
+  if(tC < 0 || tC > 1000.001) {return "tC = "+tC+" (must be >=0 and <= 1000 C)";}
+  if(Double.isNaN(pBar)) {return "pBar = NaN";}
+  if(pBar > 5000.01 || pBar <= 0.) {return "pBar = "+pBar+" (must be >0 and <= 5 kbar)";}
+  return null;
+}
+
+/** The dielectric constant of water from eqn.(36) in Johnson and Norton (1991),
+ * once the density is known (see <code>epsJN(tC,pBar)</code>).
+ * @param t_C the temperature in degrees Celsius
+ * @param rho the density of water in g/cm3
+ * @return the dielectric constant of water (unitless) */
+private static double epsJN_rho(final double t_C, final double rho) {
+  final double[] a = JN_A;
   final double Tr = 298.15;
   final double T = t_C + 273.15;
   final double T_=T/Tr, T_2 = T_*T_;
@@ -297,9 +318,8 @@ public static double epsJN(final double tC, final double pBar) throws IllegalArg
  * @throws IllegalArgumentException
  */
 public static double gHKF(double tC, double pBar) throws IllegalArgumentException {
-  if(Double.isNaN(tC)) throw new IllegalArgumentException("\"gHKF(t,p)\": tC = NaN");
-  if(Double.isNaN(pBar)) throw new IllegalArgumentException("\"gHKF(t,p)\": pBar = NaN");
-  if(tC > 1000 || pBar <= 0 || pBar > 5000) throw new IllegalArgumentException("\"gHKF(t,p)\": tC = "+tC+", pBar = "+pBar+" (must be < 1000 C and zero to 5 kbar)");
+  String range = gHKFRange(tC, pBar);
+  if(range != null) throw new IllegalArgumentException("\"gHKF(t,p)\": "+range);
 //--------
   if(tC <= 100.01) {return 0;}
 //--------
@@ -318,6 +338,29 @@ public static double gHKF(double tC, double pBar) throws IllegalArgumentExceptio
         throw new IllegalArgumentException("\"gHKF(t,p)\": calculated density = "+rho+" at tC = "+tC+", pBar = "+pBar+" (must be >0.15 g/cm3)");
   }
   if(rho > 1.) {return 0;}
+  return gHKF_rho(tC, pBar, pSat, rho);
+}
+
+/** The range of conditions of <code>gHKF</code>: up to 1000 C, and above zero up to 5 kbar
+ * (the vaporization boundary is checked separately).
+ * @param tC the temperature in degrees Celsius
+ * @param pBar the pressure in bar
+ * @return null if (tC,pBar) are within the range, otherwise a description of the problem */
+private static String gHKFRange(final double tC, final double pBar) {
+  if(Double.isNaN(tC)) {return "tC = NaN";}
+  if(Double.isNaN(pBar)) {return "pBar = NaN";}
+  if(tC > 1000 || pBar <= 0 || pBar > 5000) {return "tC = "+tC+", pBar = "+pBar+" (must be < 1000 C and zero to 5 kbar)";}
+  return null;
+}
+
+/** The g-function of the HKF model once the density is known
+ * (see <code>gHKF(tC,pBar)</code>).
+ * @param tC the temperature in degrees Celsius
+ * @param pBar the pressure in bar
+ * @param pSat the saturation pressure (bar), or NaN above the critical temperature
+ * @param rho the density of water in g/cm3 (<=1)
+ * @return the g-function of the HKF model in metres (m) */
+private static double gHKF_rho(final double tC, final double pBar, final double pSat, final double rho) {
 // Expressions in Johnson et al (1992)
 //   g = a (1 − ρ*)^b − f(T,P)     (eq.49)
 //   a = a1 + a2 T + a3 T^2         (eq.50)
@@ -343,6 +386,90 @@ public static double gHKF(double tC, double pBar) throws IllegalArgumentExceptio
 }
 // </editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="arrays of (T,P): epsJN, gHKF">
+/** The dielectric constant of water for arrays of temperatures and pressures,
+ * see <code>epsJN(tC,pBar)</code>. No exceptions are thrown: for (T,P)
+ * out of range the value is NaN and the status is
+ * <code>IAPWSF95.STATUS_OUT_OF_RANGE</code> (or
+ * <code>IAPWSF95.STATUS_NOT_CONVERGED</code> if the density could not be calculated).
+ * @param tC the temperatures in degrees Celsius
+ * @param pBar the pressures in bar
+ * @param eps output: the dielectric constants (unitless)
+ * @param status output: one of the <code>IAPWSF95.STATUS_</code> values
+ * @param parallel if true, large arrays are divided among several threads
+ * @throws IllegalArgumentException if the arrays do not have the same length
+ * @see #epsJN(double, double) epsJN
+ * @see lib.kemi.H2O.IAPWSF95#STATUS_OK IAPWSF95.STATUS_OK */
+public static void epsJN(final double[] tC, final double[] pBar, final double[] eps,
+        final int[] status, final boolean parallel) throws IllegalArgumentException {
+    H2OBatch.run(H2OBatch.EPSJN, tC, pBar, eps, status, parallel);
+}
+
+/** The g-function of the HKF model (in metres) for arrays of temperatures
+ * and pressures, see <code>gHKF(tC,pBar)</code>. No exceptions are thrown:
+ * for (T,P) out of range the value is NaN and the status is
+ * <code>IAPWSF95.STATUS_OUT_OF_RANGE</code> (or
+ * <code>IAPWSF95.STATUS_NOT_CONVERGED</code> if the density could not be calculated).
+ * @param tC the temperatures in degrees Celsius
+ * @param pBar the pressures in bar
+ * @param g output: the values of the g-function in metres
+ * @param status output: one of the <code>IAPWSF95.STATUS_</code> values
+ * @param parallel if true, large arrays are divided among several threads
+ * @throws IllegalArgumentException if the arrays do not have the same length
+ * @see #gHKF(double, double) gHKF
+ * @see lib.kemi.H2O.IAPWSF95#STATUS_OK IAPWSF95.STATUS_OK */
+public static void gHKF(final double[] tC, final double[] pBar, final double[] g,
+        final int[] status, final boolean parallel) throws IllegalArgumentException {
+    H2OBatch.run(H2OBatch.GHKF, tC, pBar, g, status, parallel);
+}
+
+static void epsJNLoop(final double[] tC, final double[] pBar, final double[] out, final int[] status,
+        final int from, final int to) {
+    final double[] rho = new double[1];
+    double t, p, pSat;
+    int st;
+    for(int k = from; k < to; k++) {
+        t = tC[k]; p = pBar[k];
+        out[k] = Double.NaN;
+        if(epsJNRange(t, p) != null) {status[k] = IAPWSF95.STATUS_OUT_OF_RANGE; continue;}
+        if(p >0.99999 && p < 1.00001 && Math.abs(t) < 0.001) {t = 0.01;}
+        if(t >= 0.01 && t < CRITICAL_TC) {
+            pSat = IAPWSF95.pSat(t);
+            if(p < (pSat*0.995)) {status[k] = IAPWSF95.STATUS_OUT_OF_RANGE; continue;}
+            if(p < (pSat*1.005) && t > 99.61) {out[k] = epsSat(t); status[k] = IAPWSF95.STATUS_OK; continue;}
+        }
+        st = IAPWSF95.rho(t, p, rho, 0);
+        if(st != IAPWSF95.STATUS_OK) {status[k] = st; continue;}
+        if(rho[0] < 0.05) {status[k] = IAPWSF95.STATUS_OUT_OF_RANGE; continue;}
+        out[k] = epsJN_rho(t, rho[0]);
+        status[k] = IAPWSF95.STATUS_OK;
+    }
+}
+
+static void gHKFLoop(final double[] tC, final double[] pBar, final double[] out, final int[] status,
+        final int from, final int to) {
+    final double[] rho = new double[1];
+    double t, p, pSat;
+    int st;
+    for(int k = from; k < to; k++) {
+        t = tC[k]; p = pBar[k];
+        out[k] = Double.NaN;
+        if(gHKFRange(t, p) != null) {status[k] = IAPWSF95.STATUS_OUT_OF_RANGE; continue;}
+        status[k] = IAPWSF95.STATUS_OK;
+        if(t <= 100.01) {out[k] = 0; continue;}
+        pSat = Double.NaN;
+        if(t < CRITICAL_TC) {
+            pSat = IAPWSF95.pSat(t);
+            if(p < (pSat*0.995)) {status[k] = IAPWSF95.STATUS_OUT_OF_RANGE; continue;}
+        }
+        st = IAPWSF95.rho(t, p, rho, 0);
+        if(st != IAPWSF95.STATUS_OK) {status[k] = st; continue;}
+        if(rho[0] < 0.15) {status[k] = IAPWSF95.STATUS_OUT_OF_RANGE; continue;}
+        out[k] = (rho[0] > 1.) ? 0 : gHKF_rho(t, p, pSat, rho[0]);
+    }
+}
+// </editor-fold>
+
 //<editor-fold defaultstate="collapsed" desc="A_gamma(tC,pbar)">
 /** Calculates the Debye-Hückel slope as defined in eqn(30) of:<br>
  * Staples, B.R., Nuttall, R.L., 1977.The activity and osmotic coefficients of
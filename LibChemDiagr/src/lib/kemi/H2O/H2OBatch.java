@@ -0,0 +1,85 @@
+package lib.kemi.H2O;
+
+/** Runs the calculations for arrays of (T,P) of <code>IAPWSF95</code> and
+ * <code>Dielectric</code>, either in the calling thread or, for large
+ * arrays, divided in chunks that are calculated in a shared ForkJoinPool.
+ * <br>
+ * Copyright (C) 2015-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+final class H2OBatch extends java.util.concurrent.RecursiveAction {
+private static final long serialVersionUID = 1L;
+static final int PSAT = 0, RHOSAT = 1, RHO = 2, EPSJN = 3, GHKF = 4;
+/** arrays shorter than this are always calculated in the calling thread */
+private static final int MIN_PARALLEL = 256;
+/** the largest number of points in a chunk */
+private static final int CHUNK = 128;
+private final int op, from, to;
+private final double[] tC, pBar, out;
+private final int[] status;
+
+private H2OBatch(int op, double[] tC, double[] pBar, double[] out, int[] status, int from, int to) {
+    this.op = op; this.tC = tC; this.pBar = pBar; this.out = out; this.status = status;
+    this.from = from; this.to = to;
+}
+
+/** @param op one of PSAT, RHOSAT, RHO, EPSJN or GHKF
+ * @param tC the temperatures in degrees Celsius
+ * @param pBar the pressures in bar (not used for PSAT and RHOSAT)
+ * @param out output: the calculated values
+ * @param status output: the IAPWSF95.STATUS_ values
+ * @param parallel if true, large arrays are divided among several threads
+ * @throws IllegalArgumentException if the arrays do not have the same length */
+static void run(int op, double[] tC, double[] pBar, double[] out, int[] status, boolean parallel)
+        throws IllegalArgumentException {
+    if(tC == null || out == null || status == null
+            || (pBar == null && op != PSAT && op != RHOSAT)) {
+        throw new IllegalArgumentException("\"H2O arrays\": null array.");
+    }
+    final int n = tC.length;
+    if(out.length != n || status.length != n || (pBar != null && pBar.length != n)) {
+        throw new IllegalArgumentException("\"H2O arrays\": arrays with different lengths.");
+    }
+    if(!parallel || n < MIN_PARALLEL || Runtime.getRuntime().availableProcessors() < 2) {
+        calc(op, tC, pBar, out, status, 0, n);
+        return;
+    }
+    PoolHolder.POOL.invoke(new H2OBatch(op, tC, pBar, out, status, 0, n));
+}
+
+@Override protected void compute() {
+    if((to - from) <= CHUNK) {calc(op, tC, pBar, out, status, from, to); return;}
+    int mid = (from + to) >>> 1;
+    invokeAll(new H2OBatch(op, tC, pBar, out, status, from, mid),
+              new H2OBatch(op, tC, pBar, out, status, mid, to));
+}
+
+private static void calc(int op, double[] tC, double[] pBar, double[] out, int[] status, int from, int to) {
+    switch (op) {
+        case PSAT:   IAPWSF95.pSatLoop(tC, out, status, from, to); break;
+        case RHOSAT: IAPWSF95.rhoSatLoop(tC, out, status, from, to); break;
+        case RHO:    IAPWSF95.rhoLoop(tC, pBar, out, status, from, to); break;
+        case EPSJN:  Dielectric.epsJNLoop(tC, pBar, out, status, from, to); break;
+        case GHKF:   Dielectric.gHKFLoop(tC, pBar, out, status, from, to); break;
+        default: throw new IllegalArgumentException("\"H2O arrays\": op = "+op);
+    }
+}
+
+/** the pool is created when first needed (its threads are daemon threads) */
+private static final class PoolHolder {
+    static final java.util.concurrent.ForkJoinPool POOL = new java.util.concurrent.ForkJoinPool();
+}
+}
@@ -0,0 +1,392 @@
+package lib.kemi.H2O;
+
+/** A thread-safe cache of the properties of water used in the activity
+ * coefficient models: the density (from <code>IAPWSF95.rho</code>), the
+ * dielectric constant (from <code>Dielectric.epsJN</code>, or from
+ * <code>Dielectric.eps</code> if epsJN fails), the Debye-Hückel parameters
+ * and the g-function of the HKF model. The saturated vapour pressure is
+ * also cached.
+ * <p>For repeated calls with the same temperature and pressure the results
+ * (or the exceptions) are exactly those of the methods in <code>IAPWSF95</code>
+ * and <code>Dielectric</code>, but they are only calculated once.  A limited
+ * number of (T,P) pairs is kept: the least recently used are discarded.
+ * <p>For calculations over a range of temperatures and pressures, for
+ * example in temperature or pressure diagrams, a <code>Table</code> may be
+ * created: it interpolates (bicubic) in a precalculated grid, and it reports
+ * the largest interpolation errors found when it was created.
+ * <br>
+ * Copyright (C) 2015-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+public class H2OCache {
+/** the maximum number of (T,P) pairs kept in the cache */
+private static final int MAX_ENTRIES = 512;
+/** the cached values, the least recently used first */
+private static final java.util.LinkedHashMap<Key,Values> CACHE =
+        new java.util.LinkedHashMap<Key,Values>(64, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(java.util.Map.Entry<Key,Values> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+private H2OCache() {}
+
+//<editor-fold defaultstate="collapsed" desc="rho, eps, gHKF, A_gamma, B_gamma, pSat">
+/** The density of water, see <code>IAPWSF95.rho</code>.
+ * @param tC the temperature in degrees Celsius
+ * @param pBar the pressure in bar
+ * @return the density in g/cm3
+ * @throws IllegalArgumentException
+ * @throws ArithmeticException
+ * @see lib.kemi.H2O.IAPWSF95#rho(double, double) IAPWSF95.rho */
+public static double rho(final double tC, final double pBar)
+        throws IllegalArgumentException, ArithmeticException {
+    Values e = entry(tC, pBar);
+    synchronized(e) {
+        if(!e.rhoDone) {
+            try {e.rho = IAPWSF95.rho(tC, pBar);}
+            catch (IllegalArgumentException ex) {e.rhoErr = ex;}
+            catch (ArithmeticException ex) {e.rhoErr = ex;}
+            e.rhoDone = true;
+        }
+        if(e.rhoErr != null) {throw rethrow(e.rhoErr);}
+        return e.rho;
+    }
+}
+
+/** The dielectric constant of water: the value from <code>Dielectric.epsJN</code>,
+ * or if that fails, the value from <code>Dielectric.eps</code>.
+ * @param tC the temperature in degrees Celsius
+ * @param pBar the pressure in bar
+ * @return the dielectric constant of water (unitless)
+ * @throws IllegalArgumentException if both epsJN and eps fail
+ * @see lib.kemi.H2O.Dielectric#epsJN(double, double) Dielectric.epsJN
+ * @see lib.kemi.H2O.Dielectric#eps(double, double) Dielectric.eps */
+public static double eps(final double tC, final double pBar) throws IllegalArgumentException {
+    Values e = entry(tC, pBar);
+    synchronized(e) {
+        if(!e.epsDone) {
+            double eps;
+            try {eps = Dielectric.epsJN(tC, pBar);}
+            catch (Exception ex) {eps = Double.NaN;}
+            if(Double.isNaN(eps)) {
+                try {eps = Dielectric.eps(tC, pBar);}
+                catch (IllegalArgumentException ex) {e.epsErr = ex;}
+            }
+            e.eps = eps;
+            e.epsDone = true;
+        }
+        if(e.epsErr != null) {throw rethrow(e.epsErr);}
+        return e.eps;
+    }
+}
+
+/** The g-function of the HKF model, see <code>Dielectric.gHKF</code>.
+ * @param tC the temperature in degrees Celsius
+ * @param pBar the pressure in bar
+ * @return the g-function of the HKF model in metres (m)
+ * @throws IllegalArgumentException
+ * @see lib.kemi.H2O.Dielectric#gHKF(double, double) Dielectric.gHKF */
+public static double gHKF(final double tC, final double pBar) throws IllegalArgumentException {
+    Values e = entry(tC, pBar);
+    synchronized(e) {
+        if(!e.gDone) {
+            try {e.g = Dielectric.gHKF(tC, pBar);}
+            catch (IllegalArgumentException ex) {e.gErr = ex;}
+            e.gDone = true;
+        }
+        if(e.gErr != null) {throw rethrow(e.gErr);}
+        return e.g;
+    }
+}
+
+/** The Debye-Hückel slope, see <code>Dielectric.A_gamma</code>, using the
+ * cached density and dielectric constant.
+ * @param tC the temperature in degrees Celsius
+ * @param pBar the pressure in bar
+ * @return the Debye-Hückel slope in units of (kg/mol)^0.5
+ * @throws IllegalArgumentException
+ * @throws ArithmeticException
+ * @see lib.kemi.H2O.Dielectric#A_gamma(double, double, double) Dielectric.A_gamma */
+public static double A_gamma(final double tC, final double pBar)
+        throws IllegalArgumentException, ArithmeticException {
+    return Dielectric.A_gamma(tC, rho(tC, pBar), eps(tC, pBar));
+}
+
+/** The Debye-Hückel parameter "B", see <code>Dielectric.B_gamma</code>, using
+ * the cached density and dielectric constant.
+ * @param tC the temperature in degrees Celsius
+ * @param pBar the pressure in bar
+ * @return the Debye-Hückel parameter "B" in units of ((kg/mol)^0.5 * Å^-1)
+ * @throws IllegalArgumentException
+ * @throws ArithmeticException
+ * @see lib.kemi.H2O.Dielectric#B_gamma(double, double, double) Dielectric.B_gamma */
+public static double B_gamma(final double tC, final double pBar)
+        throws IllegalArgumentException, ArithmeticException {
+    return Dielectric.B_gamma(tC, rho(tC, pBar), eps(tC, pBar));
+}
+
+/** The pressure of the vapor–liquid phase boundary, see <code>IAPWSF95.pSat</code>.
+ * @param tC input temperature in degrees Celsius (>= 0 and < 373.946)
+ * @return the pressure in units of bar
+ * @throws IllegalArgumentException
+ * @see lib.kemi.H2O.IAPWSF95#pSat(double) IAPWSF95.pSat */
+public static double pSat(final double tC) throws IllegalArgumentException {
+    // the entry with pressure = NaN is used for pSat (its other values
+    // are never valid: rho, eps and gHKF throw for pBar = NaN)
+    Values e = entry(tC, Double.NaN);
+    synchronized(e) {
+        if(!e.pSatDone) {
+            try {e.pSat = IAPWSF95.pSat(tC);}
+            catch (IllegalArgumentException ex) {e.pSatErr = ex;}
+            e.pSatDone = true;
+        }
+        if(e.pSatErr != null) {throw rethrow(e.pSatErr);}
+        return e.pSat;
+    }
+}
+
+/** Removes all values from the cache. */
+public static void clear() {
+    synchronized(CACHE) {CACHE.clear();}
+}
+// </editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="private: entry, Key, Values">
+private static Values entry(final double tC, final double pBar) {
+    Key k = new Key(tC, pBar);
+    synchronized(CACHE) {
+        Values e = CACHE.get(k);
+        if(e == null) {e = new Values(); CACHE.put(k, e);}
+        return e;
+    }
+}
+
+/** a new exception of the same type and with the same message */
+private static RuntimeException rethrow(RuntimeException ex) {
+    if(ex instanceof ArithmeticException) {return new ArithmeticException(ex.getMessage());}
+    return new IllegalArgumentException(ex.getMessage());
+}
+
+private static final class Key {
+    private final long t, p;
+    Key(double tC, double pBar) {
+        t = Double.doubleToLongBits(tC);
+        p = Double.doubleToLongBits(pBar);
+    }
+    @Override public int hashCode() {
+        long h = t * 31 + p;
+        return (int)(h ^ (h >>> 32));
+    }
+    @Override public boolean equals(Object o) {
+        if(!(o instanceof Key)) {return false;}
+        Key k = (Key)o;
+        return k.t == t && k.p == p;
+    }
+}
+
+/** the values for one (T,P) pair, calculated when first needed */
+private static final class Values {
+    boolean rhoDone, epsDone, gDone, pSatDone;
+    double rho, eps, g, pSat;
+    RuntimeException rhoErr, epsErr, gErr, pSatErr;
+}
+// </editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="class Table">
+/** A grid of precalculated values of the density, the dielectric constant
+ * and the g-function of water, with bicubic (4x4 point Lagrange)
+ * interpolation. Grid points where water is not liquid (or the calculation
+ * fails) are not used: for (T,P) values where the interpolation would need
+ * such points, or outside the grid, the exact (cached) values are returned.
+ * <p>When the table is created the interpolated values at the centre of
+ * every grid cell are compared with the exact values, and the largest
+ * differences are stored in <code>errRho</code>, <code>errEps</code> and
+ * <code>errG</code>.  These are the errors at the cell centres only, where
+ * cubic interpolation is expected to be least accurate: they are estimates,
+ * not strict bounds for every (T,P) in the grid.  A table is not changed
+ * after it is created, it may be used by several threads, and the
+ * interpolation does not allocate any objects.
+ * <pre>
+ *   H2OCache.Table tbl = new H2OCache.Table(0,350,71, 1,1000,41);
+ *   if(tbl.errRho &lt; 1e-6) {rho = tbl.rho(tC, pBar);}
+ * </pre> */
+public static final class Table {
+    /** the temperature range (Celsius) */
+    public final double tMin, tMax;
+    /** the pressure range (bar) */
+    public final double pMin, pMax;
+    /** the largest relative error found in the density (at the cell centres) */
+    public final double errRho;
+    /** the largest relative error found in the dielectric constant (at the cell centres) */
+    public final double errEps;
+    /** the largest absolute error found in the g-function (m) (at the cell centres) */
+    public final double errG;
+    private final int nT, nP;
+    private final double dT, dP;
+    private final double[] rhoT, epsT, gT;
+
+    /** Calculates the values at the grid points and checks the errors
+     * of the interpolation.
+     * @param tMin lowest temperature (Celsius)
+     * @param tMax highest temperature (Celsius)
+     * @param nT number of temperatures (at least 4)
+     * @param pMin lowest pressure (bar)
+     * @param pMax highest pressure (bar)
+     * @param nP number of pressures (at least 4)
+     * @throws IllegalArgumentException */
+    public Table(double tMin, double tMax, int nT, double pMin, double pMax, int nP)
+            throws IllegalArgumentException {
+        if(nT < 4 || nP < 4 || !(tMax > tMin) || !(pMax > pMin) || pMin <= 0) {
+            throw new IllegalArgumentException("\"H2OCache.Table\": tMin="+tMin+", tMax="+tMax+", nT="+nT
+                    +", pMin="+pMin+", pMax="+pMax+", nP="+nP);
+        }
+        this.tMin = tMin; this.tMax = tMax; this.nT = nT;
+        this.pMin = pMin; this.pMax = pMax; this.nP = nP;
+        dT = (tMax - tMin)/(nT-1);
+        dP = (pMax - pMin)/(nP-1);
+        rhoT = new double[nT*nP];
+        epsT = new double[nT*nP];
+        gT = new double[nT*nP];
+        double[] v = new double[3];
+        int i, j;
+        for(i =0; i <nT; i++) {
+            for(j =0; j <nP; j++) {
+                exact(tMin + i*dT, pMin + j*dP, v);
+                rhoT[i*nP+j] = v[0]; epsT[i*nP+j] = v[1]; gT[i*nP+j] = v[2];
+            }
+        }
+        // ---- check the interpolation at the centre of each cell
+        double eR = 0, eE = 0, eG = 0, t, p, r, e, g;
+        for(i =0; i <nT-1; i++) {
+            t = tMin + (i+0.5)*dT;
+            for(j =0; j <nP-1; j++) {
+                p = pMin + (j+0.5)*dP;
+                r = interpolate(rhoT, t, p);
+                e = interpolate(epsT, t, p);
+                if(Double.isNaN(r) || Double.isNaN(e)) {continue;}
+                g = interpolate(gT, t, p);
+                exact(t, p, v);
+                if(!Double.isNaN(v[0])) {eR = Math.max(eR, Math.abs(r-v[0])/v[0]);}
+                if(!Double.isNaN(v[1])) {eE = Math.max(eE, Math.abs(e-v[1])/v[1]);}
+                if(!Double.isNaN(v[2]) && !Double.isNaN(g)) {eG = Math.max(eG, Math.abs(g-v[2]));}
+            }
+        }
+        errRho = eR; errEps = eE; errG = eG;
+    }
+
+    /** @param tC the temperature in degrees Celsius
+     * @param pBar the pressure in bar
+     * @return the density in g/cm3
+     * @throws IllegalArgumentException
+     * @throws ArithmeticException
+     * @see lib.kemi.H2O.H2OCache#rho(double, double) H2OCache.rho */
+    public double rho(double tC, double pBar) throws IllegalArgumentException, ArithmeticException {
+        double r = interpolate(rhoT, tC, pBar);
+        if(!Double.isNaN(r)) {return r;}
+        return H2OCache.rho(tC, pBar);
+    }
+
+    /** @param tC the temperature in degrees Celsius
+     * @param pBar the pressure in bar
+     * @return the dielectric constant of water (unitless)
+     * @throws IllegalArgumentException
+     * @see lib.kemi.H2O.H2OCache#eps(double, double) H2OCache.eps */
+    public double eps(double tC, double pBar) throws IllegalArgumentException {
+        double e = interpolate(epsT, tC, pBar);
+        if(!Double.isNaN(e)) {return e;}
+        return H2OCache.eps(tC, pBar);
+    }
+
+    /** @param tC the temperature in degrees Celsius
+     * @param pBar the pressure in bar
+     * @return the g-function of the HKF model in metres (m)
+     * @throws IllegalArgumentException
+     * @see lib.kemi.H2O.H2OCache#gHKF(double, double) H2OCache.gHKF */
+    public double gHKF(double tC, double pBar) throws IllegalArgumentException {
+        double g = interpolate(gT, tC, pBar);
+        if(!Double.isNaN(g)) {return g;}
+        return H2OCache.gHKF(tC, pBar);
+    }
+
+    /** @param tC the temperature in degrees Celsius
+     * @param pBar the pressure in bar
+     * @return the Debye-Hückel slope in units of (kg/mol)^0.5
+     * @throws IllegalArgumentException
+     * @throws ArithmeticException
+     * @see lib.kemi.H2O.Dielectric#A_gamma(double, double, double) Dielectric.A_gamma */
+    public double A_gamma(double tC, double pBar) throws IllegalArgumentException, ArithmeticException {
+        double r = interpolate(rhoT, tC, pBar), e = interpolate(epsT, tC, pBar);
+        if(!Double.isNaN(r) && !Double.isNaN(e)) {return Dielectric.A_gamma(tC, r, e);}
+        return H2OCache.A_gamma(tC, pBar);
+    }
+
+    /** @param tC the temperature in degrees Celsius
+     * @param pBar the pressure in bar
+     * @return the Debye-Hückel parameter "B" in units of ((kg/mol)^0.5 * Å^-1)
+     * @throws IllegalArgumentException
+     * @throws ArithmeticException
+     * @see lib.kemi.H2O.Dielectric#B_gamma(double, double, double) Dielectric.B_gamma */
+    public double B_gamma(double tC, double pBar) throws IllegalArgumentException, ArithmeticException {
+        double r = interpolate(rhoT, tC, pBar), e = interpolate(epsT, tC, pBar);
+        if(!Double.isNaN(r) && !Double.isNaN(e)) {return Dielectric.B_gamma(tC, r, e);}
+        return H2OCache.B_gamma(tC, pBar);
+    }
+
+    /** The exact values (not cached: they are calculated only once for each
+     * grid point). NaN if the calculation fails. */
+    private static void exact(double t, double p, double[] v) {
+        try {v[0] = IAPWSF95.rho(t, p);} catch (Exception ex) {v[0] = Double.NaN;}
+        try {v[1] = Dielectric.epsJN(t, p);} catch (Exception ex) {v[1] = Double.NaN;}
+        if(Double.isNaN(v[1])) {
+            try {v[1] = Dielectric.eps(t, p);} catch (Exception ex) {v[1] = Double.NaN;}
+        }
+        try {v[2] = Dielectric.gHKF(t, p);} catch (Exception ex) {v[2] = Double.NaN;}
+    }
+
+    /** Interpolates in one of the grids <code>rhoT</code>, <code>epsT</code>
+     * or <code>gT</code>, without allocating any arrays.
+     * @return NaN if (t,p) is outside the grid, or if the value at one of
+     * the 4x4 grid points is not known */
+    private double interpolate(final double[] v, double t, double p) {
+        if(Double.isNaN(t) || Double.isNaN(p)
+                || t < tMin || t > tMax || p < pMin || p > pMax) {return Double.NaN;}
+        double u = (t - tMin)/dT, s = (p - pMin)/dP;
+        int i0 = Math.min(Math.max((int)Math.floor(u) - 1, 0), nT-4);
+        int j0 = Math.min(Math.max((int)Math.floor(s) - 1, 0), nP-4);
+        // the weights of cubic Lagrange interpolation through points 0,1,2,3
+        double x = s - j0;
+        double b0 = -(x-1.)*(x-2.)*(x-3.)/6., b1 = x*(x-2.)*(x-3.)/2.,
+               b2 = -x*(x-1.)*(x-3.)/2., b3 = x*(x-1.)*(x-2.)/6.;
+        x = u - i0;
+        double a, sum = 0;
+        int k;
+        for(int i =0; i <4; i++) {
+            switch (i) {
+                case 0: a = -(x-1.)*(x-2.)*(x-3.)/6.; break;
+                case 1: a = x*(x-2.)*(x-3.)/2.; break;
+                case 2: a = -x*(x-1.)*(x-3.)/2.; break;
+                default: a = x*(x-1.)*(x-2.)/6.;
+            }
+            k = (i0+i)*nP + j0;
+            sum = sum + a*(b0*v[k] + b1*v[k+1] + b2*v[k+2] + b3*v[k+3]);
+        }
+        return sum;
+    }
+}
+// </editor-fold>
+
+}
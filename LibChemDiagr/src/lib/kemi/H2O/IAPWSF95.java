@@ -52,6 +52,15 @@ public static final double CRITICAL_p = 22.064; // MPa
 public static final double CRITICAL_pBar = 220.64; // bar
 /** Critical density = 322 (+/- 3) kg/m3 (= 0.322 g/cm3) */
 public static final double CRITICAL_rho = 322; // kg/m3
+/** status returned by the methods for arrays of (T,P): the value was calculated */
+public static final int STATUS_OK = 0;
+/** status returned by the methods for arrays of (T,P): the temperature or
+ * pressure is outside the range of the calculation, or water is not
+ * liquid (the value is NaN) */
+public static final int STATUS_OUT_OF_RANGE = 1;
+/** status returned by the methods for arrays of (T,P): the iterations
+ * did not converge (the value is NaN) */
+public static final int STATUS_NOT_CONVERGED = 2;
 
 //<editor-fold defaultstate="collapsed" desc="private constants">
 /** temperature of melting ice Ih at highest pressure = 251.165 K (= -20.95 C) at p = 2085.66 bar */
@@ -92,10 +101,18 @@ private static final double R = 0.46151805;
  */
 static public double pSat(final double tC) throws IllegalArgumentException {
  if(Double.isNaN(tC))  throw new IllegalArgumentException("\"pSat\": tC = NaN");
+ if(!satRange(tC)) throw new IllegalArgumentException("\"pSat\": tC = "+tC+" (must be zero or >=0.01 and <373.946 C )");
+ return pSat0(tC);
+}
+/** true if tC is zero (the triple point), or between 0.01 and 373.946 C */
+static private boolean satRange(final double tC) {
+ // Critical temperature = 647.096 (+/- 0.01) K  (= 373.946 C)
+ return tC == 0. || (tC >= TRIPLE_POINT_TC && tC < CRITICAL_TC);
+}
+/** pSat without checks of the temperature */
+static private double pSat0(final double tC) {
  if(tC == 0.) {return TRIPLE_POINT_pBar;}
  else if(Math.abs(tC-25.)<0.01) {return 0.031698246;}
- // Critical temperature = 647.096 (+/- 0.01) K  (= 373.946 C)
- if(tC < TRIPLE_POINT_TC || tC >= CRITICAL_TC) throw new IllegalArgumentException("\"pSat\": tC = "+tC+" (must be zero or >=0.01 and <373.946 C )");
  final double a1 = -7.85951783, a2 = 1.84408259, a3 = -11.7866497, a4 = 22.6807411, a5 = -15.9618719,
               a6 = 1.80122502;
  final double tK = tC + T0;
@@ -127,9 +144,13 @@ static public double pSat(final double tC) throws IllegalArgumentException {
 static public double rhoSat(final double tC)
     throws IllegalArgumentException {
  if(Double.isNaN(tC)) throw new IllegalArgumentException("\"rhoSat\": tC = NaN");
+ if(!satRange(tC)) throw new IllegalArgumentException("\"rhoSat\": tC = "+tC+" (must be zero or >=0.01 and <373.946 C )");
+ return rhoSat0(tC);
+}
+/** rhoSat without checks of the temperature */
+static private double rhoSat0(final double tC) {
  if(tC == 0.) {return 0.9997891;} // the calculated density at 0.01 C and 0.00611657 bar
  else if(Math.abs(tC-25.)<0.01) {return 0.9969994;}
- if(tC < TRIPLE_POINT_TC || tC >= CRITICAL_TC) throw new IllegalArgumentException("\"rhoSat\": tC = "+tC+" (must be zero or >=0.01 and <373.946 C )");
  final double b1 = 1.99274064, b2 = 1.09965342, b3 = -0.510839303, b4 = -1.75493479,
               b5 = -45.5170352, b6 = -6.74694450e+5;
  final double tK = tC + T0;
@@ -162,9 +183,6 @@ static public double rhoSat(final double tC)
  */
 static public double rho(final double tC, final double pBar) 
         throws IllegalArgumentException, ArithmeticException {
-  // ---- debug print-out
-          boolean dbg = false;
-  // ---- 
   if(Double.isNaN(tC)) throw new IllegalArgumentException("\"rho(T,P)\" tC = NaN");
   if(tC < -30. || tC > 1000.001) throw new IllegalArgumentException("\"rho(T,P)\" tC = "+tC+" (must be >=-30 and <=1000 C)");
   if(Double.isNaN(pBar)) throw new IllegalArgumentException("\"rho(T,P)\" pBar = NaN");
@@ -174,7 +192,24 @@ static public double rho(final double tC, final double pBar)
   if(pBar >0.99999 && pBar < 1.00001 && Math.abs(tC) < 0.001) {t_C = 0.01;} else {t_C = tC;}
   String str = isWaterLiquid(t_C, pBar);
   if(str.length() >0) throw new IllegalArgumentException("\"rho(T,P)\" "+str);
+  return rhoLiquid(t_C, pBar, true);
+}
 
+/** Calculates the density (g/cm3) of liquid (or supercritical fluid) water
+ * at a given pressure (bar) and temperature (Celsius), once it has been
+ * checked that water is liquid (see <code>rho(tC,pBar)</code>).
+ * @param t_C the temperature in degrees Celsius
+ * @param pBar the pressure in bar
+ * @param thrw if true, an exception is thrown if the iterations do not
+ * converge; if false, NaN is returned instead
+ * @return the density (g/cm3)
+ * @throws ArithmeticException
+ * @see #rho(double, double) rho */
+static private double rhoLiquid(final double t_C, final double pBar, final boolean thrw)
+        throws ArithmeticException {
+  // ---- debug print-out
+          boolean dbg = false;
+  // ---- 
   if(dbg) System.out.println("rho(T,P): input tC="+(float)t_C+", pbar="+(float)pBar);
   double step = 0.010, r = 1.000, rMax = 2.000, rMin = 0, pMax = 1e25, pMin = -1e25, pCalc;
   double rTop = 2.000, rBottom = 0;
@@ -186,6 +221,13 @@ static public double rho(final double tC, final double pBar)
       rBottom = rMin*0.9;
   }
 
+  // ---- Newton iterations using the analytic derivative dp/drho, starting
+  //      at the saturated liquid density (or at 1 g/cm3).  If they fail,
+  //      the bracketing and "cord shooting" below are used
+  r = rhoNewton(t_C, pBar, (rMin > 0 ? rMin : r), rBottom, rTop, tolP, dbg);
+  if(!Double.isNaN(r)) {return r;}
+  r = 1.000;
+
   // ---- Find two values of rho (rMin and rMax) separated less than 5 units (kg/m3), such
   //      that they give calculated pressures (pMin and pMax) above and below pbar
   int sign, iter = 0, iterMax = 200;
@@ -208,6 +250,7 @@ static public double rho(final double tC, final double pBar)
       if(pMin != -1e25 && pMax != 1e25) {step = 0.5*step;}
       r = r + sign*step;
       if(iter > iterMax) {
+        if(!thrw) {return Double.NaN;}
         throw new ArithmeticException("\"rho("+(float)t_C+","+(float)pBar+")\": too many iterations."+
               " rhoMin = "+(float)rMin+" at pMin="+(float)pMin+
               ", rhoMax = "+(float)rMax+" at pMax="+(float)pMax);
@@ -230,6 +273,7 @@ static public double rho(final double tC, final double pBar)
     if(Math.abs(r-rOld)<tolRho && Math.abs(pBar-pCalc)<tolP) {break;}
     rOld = r;
     if(iter > iterMax) {
+      if(!thrw) {return Double.NaN;}
       throw new ArithmeticException("\"rho\": too many iterations."+
               " rhoMin = "+(float)rMin+" at pMin="+(float)pMin+
               ", rhoMax = "+(float)rMax+" at pMax="+(float)pMax+"; target p="+(float)pBar);
@@ -239,7 +283,89 @@ static public double rho(final double tC, final double pBar)
   return r; // g/cm3
 }
 
+/** Newton iterations for the density at a given temperature and pressure.
+ * @param tC the temperature in degrees Celsius
+ * @param pBar the pressure in bar
+ * @param r0 the starting density (g/cm3)
+ * @param rLow the density (g/cm3) must stay above this value
+ * @param rHigh the density (g/cm3) must stay below this value
+ * @param tolP the tolerance in the pressure (bar)
+ * @param dbg if true the iterations are printed
+ * @return the density in g/cm3, or NaN if the iterations fail */
+static private double rhoNewton(final double tC, final double pBar, final double r0,
+        final double rLow, final double rHigh, final double tolP, boolean dbg) {
+  final double[] dp_drho = new double[1];
+  double r = r0, pCalc;
+  for(int iter = 1; iter <= 50; iter++) {
+    pCalc = p4rhoT(r, tC, false, dp_drho) * 10.; // convert MPa to bar
+    if(dbg) System.out.println("Newton iter="+iter+", r="+(float)r+", pCalc="+(float)pCalc+", dp/drho="+(float)(dp_drho[0]*10.));
+    if(Math.abs(pCalc-pBar) <= tolP) {return r;}
+    if(Double.isNaN(pCalc) || !(dp_drho[0] > 0)) {break;}
+    r = r + (pBar-pCalc)/(dp_drho[0]*10.);
+    if(!(r > rLow && r < rHigh)) {break;}
+  }
+  return Double.NaN;
+}
+
 //<editor-fold defaultstate="collapsed" desc="p4rhoT(rho,tC,dbg)">
+//<editor-fold defaultstate="collapsed" desc="(parameters)">
+// the parameters in Table 6.2 of Wagner and Pruß, (2002)
+private static final double[] N_I = new double[]{
+    0.12533547935523e-1, 0.78957634722828e1, -0.87803203303561e1,
+    0.31802509345418, -0.26145533859358, -0.78199751687981e-2,
+    0.88089493102134e-2, -0.66856572307965, 0.20433810950965,
+    -0.66212605039687e-4, -0.19232721156002, -0.25709043003438,
+    0.16074868486251, -0.40092828925807e-1, 0.39343422603254e-6,
+    -0.75941377088144e-5, 0.56250979351888e-3, -0.15608652257135e-4,
+    0.11537996422951e-8, 0.36582165144204e-6, -0.13251180074668e-11,
+    -0.62639586912454e-9, -0.10793600908932, 0.17611491008752e-1,
+    0.22132295167546, -0.40247669763528, 0.58083399985759,
+    0.49969146990806e-2, -0.31358700712549e-1, -0.74315929710341,
+    0.47807329915480, 0.20527940895948e-1, -0.13636435110343,
+    0.14180634400617e-1, 0.83326504880713e-2, -0.29052336009585e-1,
+    0.38615085574206e-1, -0.20393486513704e-1, -0.16554050063734e-2,
+    0.19955571979541e-2, 0.15870308324157e-3, -0.16388568342530e-4,
+    0.43613615723811e-1, 0.34994005463765e-1, -0.76788197844621e-1,
+    0.22446277332006e-1, -0.62689710414685e-4, -0.55711118565645e-9,
+    -0.19905718354408, 0.31777497330738, -0.11841182425981,
+    -0.31306260323435e2, 0.31546140237781e2, -0.25213154341695e4,
+    -0.14874640856724, 0.31806110878444 };
+private static final double[] C_I = new double[]{
+    Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, 1, 1,
+    1, 1, 1, 1, 1, 1, 1, 1, 1,
+    1, 1, 1, 1, 2, 2, 2, 2, 2,
+    2, 2, 2, 2, 2, 2, 2, 2, 2,
+    2, 2, 2, 2, 2, 2, 3, 3, 3,
+    3, 4, 6, 6, 6, 6, Double.NaN, Double.NaN, Double.NaN };
+private static final double[] D_I = new double[]{
+    1, 1, 1, 2, 2, 3, 4, 1, 1,
+    1, 2, 2, 3, 4, 4, 5, 7, 9,
+    10, 11, 13, 15, 1, 2, 2, 2, 3,
+    4, 4, 4, 5, 6, 6, 7, 9, 9,
+    9, 9, 9, 10, 10, 12, 3, 4, 4,
+    5, 14, 3, 6, 6, 6, 3, 3, 3 };
+private static final double[] T_I = new double[]{
+    -0.5, 0.875, 1, 0.5, 0.75, 0.375, 1, 4, 6,
+    12, 1, 5, 4, 2, 13, 9, 3, 4,
+    11, 4, 13, 1, 7, 1, 9, 10, 10,
+    3, 7, 10, 10, 6, 10, 10, 1, 2,
+    3, 4, 8, 6, 9, 8, 16, 22, 23,
+    23, 10, 50, 44, 46, 50, 0, 1, 4 };
+// terms 51 to 53 (Gaussian bell-shaped terms)
+private static final double[] ALPHA_I = new double[]{20, 20, 20};
+private static final double[] BETA_I = new double[]{150, 150, 250};
+private static final double[] GAMMA_I = new double[]{1.21, 1.21, 1.25};
+private static final double[] EPS_I = new double[]{1, 1, 1};
+// terms 54 and 55 (non-analytical terms)
+private static final double[] A_I = new double[]{3.5, 3.5};
+private static final double[] B_I = new double[]{0.85, 0.95};
+private static final double[] BB_I = new double[]{0.2, 0.2};
+private static final double[] CC_I = new double[]{28, 32};
+private static final double[] DD_I = new double[]{700, 800};
+private static final double[] AA_I = new double[]{0.32, 0.32};
+private static final double[] BETA2_I = new double[]{0.3, 0.3};
+// </editor-fold>
+
 /** Calculates the pressure (MPa) at a given density (g/cm3) and temperature (Celsius)
  * using the "H2O" model in:
  * Wagner, W., Pruß, A. (2002) The IAPWS Formulation 1995 for the thermodynamic
@@ -252,261 +378,26 @@ static public double rho(final double tC, final double pBar)
  * @return the pressure in MPa
  */
 static private double p4rhoT(final double rho_gcm3, final double tC, boolean dbg) {
-//<editor-fold defaultstate="collapsed" desc="(parameters)">
-    // the parameters in Table 6.2 of Wagner and Pruß, (2002)
-    final double[] n = new double[]{
-        0.12533547935523e-1,
-        0.78957634722828e1,
-        -0.87803203303561e1,
-        0.31802509345418,
-        -0.26145533859358,
-        -0.78199751687981e-2,
-        0.88089493102134e-2,
-        -0.66856572307965,
-        0.20433810950965,
-        -0.66212605039687e-4,
-        -0.19232721156002,
-        -0.25709043003438,
-        0.16074868486251,
-        -0.40092828925807e-1,
-        0.39343422603254e-6,
-        -0.75941377088144e-5,
-        0.56250979351888e-3,
-        -0.15608652257135e-4,
-        0.11537996422951e-8,
-        0.36582165144204e-6,
-        -0.13251180074668e-11,
-        -0.62639586912454e-9,
-        -0.10793600908932,
-        0.17611491008752e-1,
-        0.22132295167546,
-        -0.40247669763528,
-        0.58083399985759,
-        0.49969146990806e-2,
-        -0.31358700712549e-1,
-        -0.74315929710341,
-        0.47807329915480,
-        0.20527940895948e-1,
-        -0.13636435110343,
-        0.14180634400617e-1,
-        0.83326504880713e-2,
-        -0.29052336009585e-1,
-        0.38615085574206e-1,
-        -0.20393486513704e-1,
-        -0.16554050063734e-2,
-        0.19955571979541e-2,
-        0.15870308324157e-3,
-        -0.16388568342530e-4,
-        0.43613615723811e-1,
-        0.34994005463765e-1,
-        -0.76788197844621e-1,
-        0.22446277332006e-1,
-        -0.62689710414685e-4,
-        -0.55711118565645e-9,
-        -0.19905718354408,
-        0.31777497330738,
-        -0.11841182425981,
-        -0.31306260323435e2,
-        0.31546140237781e2,
-        -0.25213154341695e4,
-        -0.14874640856724,
-        0.31806110878444  };
-    final double[] a = new double[56];
-    final double[] b = new double[56];
-    final double[] B = new double[56];
-    final double[] C = new double[56];
-    final double[] D = new double[56];
-    final double[] A = new double[56];
-    final double[] α = new double[54];
-    final double[] β = new double[56];
-    final double[] γ = new double[54];
-    final double[] ε = new double[54];
-    for(int i=0; i<56; i++){
-        a[i]=Double.NaN;
-        b[i]=Double.NaN;
-        B[i]=Double.NaN;
-        C[i]=Double.NaN;
-        D[i]=Double.NaN;
-        A[i]=Double.NaN;
-        β[i]=Double.NaN;
-        if(i >= 54) continue;
-        α[i]=Double.NaN;
-        γ[i]=Double.NaN;
-        ε[i]=Double.NaN;
-    }
-    α[51]=20; β[51]=150; γ[51]=1.21; ε[51]=1;
-    α[52]=20; β[52]=150; γ[52]=1.21; ε[52]=1;
-    α[53]=20; β[53]=250; γ[53]=1.25; ε[53]=1;
-        a[54]=3.5;  b[54]=0.85;  B[54]=0.2;  C[54]=28;  D[54]=700;  A[54]=0.32; β[54]=0.3;
-        a[55]=3.5;  b[55]=0.95;  B[55]=0.2;  C[55]=32;  D[55]=800;  A[55]=0.32; β[55]=0.3;
-    final double[] c = new double[]{
-        Double.NaN,
-        Double.NaN,
-        Double.NaN,
-        Double.NaN,
-        Double.NaN,
-        Double.NaN,
-        Double.NaN,
-        1,
-        1,
-        1,
-        1,
-        1,
-        1,
-        1,
-        1,
-        1,
-        1,
-        1,
-        1,
-        1,
-        1,
-        1,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        2,
-        3,
-        3,
-        3,
-        3,
-        4,
-        6,
-        6,
-        6,
-        6,
-        Double.NaN,
-        Double.NaN,
-        Double.NaN };
-    final double[] d = new double[]{
-        1,
-        1,
-        1,
-        2,
-        2,
-        3,
-        4,
-        1,
-        1,
-        1,
-        2,
-        2,
-        3,
-        4,
-        4,
-        5,
-        7,
-        9,
-        10,
-        11,
-        13,
-        15,
-        1,
-        2,
-        2,
-        2,
-        3,
-        4,
-        4,
-        4,
-        5,
-        6,
-        6,
-        7,
-        9,
-        9,
-        9,
-        9,
-        9,
-        10,
-        10,
-        12,
-        3,
-        4,
-        4,
-        5,
-        14,
-        3,
-        6,
-        6,
-        6,
-        3,
-        3,
-        3 };
-    final double[] t = new double[]{
-        -0.5,
-        0.875,
-        1,
-        0.5,
-        0.75,
-        0.375,
-        1,
-        4,
-        6,
-        12,
-        1,
-        5,
-        4,
-        2,
-        13,
-        9,
-        3,
-        4,
-        11,
-        4,
-        13,
-        1,
-        7,
-        1,
-        9,
-        10,
-        10,
-        3,
-        7,
-        10,
-        10,
-        6,
-        10,
-        10,
-        1,
-        2,
-        3,
-        4,
-        8,
-        6,
-        9,
-        8,
-        16,
-        22,
-        23,
-        23,
-        10,
-        50,
-        44,
-        46,
-        50,
-        0,
-        1,
-        4 };
-// </editor-fold>
+    return p4rhoT(rho_gcm3, tC, dbg, null);
+}
+
+/** Calculates the pressure (MPa) at a given density (g/cm3) and temperature
+ * (Celsius), and optionally its derivative with respect to the density.
+ * @param rho_gcm3 the input density in g/cm3
+ * @param tC the input temperature in degrees Celsius
+ * @param dbg if true then results of intermediate calculations are printed
+ * @param dp_drho if not null, on output dp_drho[0] is the derivative of the
+ * pressure with respect to density, in MPa/(g/cm3), or NaN if it can not be
+ * calculated (at the critical density)
+ * @return the pressure in MPa
+ * @see #p4rhoT(double, double, boolean) p4rhoT */
+static private double p4rhoT(final double rho_gcm3, final double tC, boolean dbg, double[] dp_drho) {
+    final boolean deriv = dp_drho != null;
     double Δ, θ, ψ, δ_1_2, dψ_dδ,dΔbi_dδ,dΔ_dδ;
+    double d2ψ_dδ2, d2Δ_dδ2, d2Δbi_dδ2, w, ai, bi, Bi, Ci, Di, Ai, βi, di, ci, ti;
     double sum7 = 0, sum51 = 0, sum54 = 0, sum56 = 0;
+    // the second derivatives: φr_δδ
+    double sum7dd = 0, sum51dd = 0, sum54dd = 0, sum56dd = 0;
     double tK = tC + T0;  // absolute temperature
     double τ = CRITICAL_T/tK;  // inverse reduced temperature
     final double rho = rho_gcm3 * 1000.; // convert to kg/m3
@@ -519,33 +410,69 @@ static private double p4rhoT(final double rho_gcm3, final double tC, boolean dbg
     // of Wagner and Pruß (2002). See also the derivatives of the
     // distance function Δ^b[i] and of the exponential function ψ at the
     // end of that table.
+    // The derivative of the pressure with respect to the density is
+    //    dp/drho = R * tK * ( 1 + 2 * δ * φr_δ + δ^2 * φr_δδ )
+    // where φr_δδ is the third expression in Table 6.5.
     if(dbg) System.out.println("tK="+tK+", τ="+(float)τ+", δ="+(float)δ);
     for(int i=54; i<56; i++) {
+        ai = A_I[i-54]; bi = B_I[i-54]; Bi = BB_I[i-54]; Ci = CC_I[i-54];
+        Di = DD_I[i-54]; Ai = AA_I[i-54]; βi = BETA2_I[i-54];
         δ_1_2 = Math.pow(δ-1.,2.);
-        ψ = Math.exp(-C[i]*δ_1_2 -D[i]*Math.pow(τ-1.,2.));
-        θ = (1.-τ)+ A[i]*Math.pow(δ_1_2,(1./(2.*β[i])));
-        Δ = Math.pow(θ,2.) + B[i]*Math.pow(δ_1_2,a[i]);
-        dψ_dδ = -2.*C[i]*(δ-1.)*ψ;
-        dΔ_dδ = (δ-1.)*( A[i]*θ*(2./β[i])*Math.pow(δ_1_2,(1./(2.*β[i]))-1.)
-                        + 2.*B[i]*a[i]*Math.pow(δ_1_2,(a[i]-1.)) );
-        dΔbi_dδ = b[i]*Math.pow(Δ,b[i]-1.)*dΔ_dδ;
+        ψ = Math.exp(-Ci*δ_1_2 -Di*Math.pow(τ-1.,2.));
+        θ = (1.-τ)+ Ai*Math.pow(δ_1_2,(1./(2.*βi)));
+        Δ = Math.pow(θ,2.) + Bi*Math.pow(δ_1_2,ai);
+        dψ_dδ = -2.*Ci*(δ-1.)*ψ;
+        dΔ_dδ = (δ-1.)*( Ai*θ*(2./βi)*Math.pow(δ_1_2,(1./(2.*βi))-1.)
+                        + 2.*Bi*ai*Math.pow(δ_1_2,(ai-1.)) );
+        dΔbi_dδ = bi*Math.pow(Δ,bi-1.)*dΔ_dδ;
         if(dbg) System.out.println("i="+i+", θ="+(float)θ+", ψ="+(float)ψ+", Δ="+(float)Δ
                 +", dψ_dδ="+(float)dψ_dδ+", dΔ_dδ="+(float)dΔ_dδ+", dΔbi_dδ="+(float)dΔbi_dδ);
-        sum56 = sum56 +n[i]
-                * ( Math.pow(Δ,b[i])*(ψ+δ*(dψ_dδ)) + dΔbi_dδ *δ*ψ );
+        sum56 = sum56 +N_I[i]
+                * ( Math.pow(Δ,bi)*(ψ+δ*(dψ_dδ)) + dΔbi_dδ *δ*ψ );
+        if(deriv) {
+            d2ψ_dδ2 = (2.*Ci*δ_1_2 - 1.)*2.*Ci*ψ;
+            w = Ai*(1./βi)*Math.pow(δ_1_2,(1./(2.*βi))-1.);
+            d2Δ_dδ2 = (dΔ_dδ/(δ-1.))
+                    + δ_1_2*( 4.*Bi*ai*(ai-1.)*Math.pow(δ_1_2,(ai-2.))
+                        + 2.*w*w
+                        + Ai*θ*(4./βi)*(1./(2.*βi)-1.)*Math.pow(δ_1_2,(1./(2.*βi))-2.) );
+            d2Δbi_dδ2 = bi*( Math.pow(Δ,bi-1.)*d2Δ_dδ2
+                        + (bi-1.)*Math.pow(Δ,bi-2.)*dΔ_dδ*dΔ_dδ );
+            sum56dd = sum56dd +N_I[i]
+                * ( Math.pow(Δ,bi)*(2.*dψ_dδ + δ*d2ψ_dδ2) + 2.*dΔbi_dδ*(ψ+δ*dψ_dδ)
+                    + d2Δbi_dδ2*δ*ψ );
+        }
     }
     for(int i=0; i<7; i++) {
-        sum7 = sum7 +n[i]*d[i]*Math.pow(δ,(d[i]-1.))*Math.pow(τ,t[i]);
+        di = D_I[i]; ti = T_I[i];
+        sum7 = sum7 +N_I[i]*di*Math.pow(δ,(di-1.))*Math.pow(τ,ti);
+        if(deriv) {sum7dd = sum7dd +N_I[i]*di*(di-1.)*Math.pow(δ,(di-2.))*Math.pow(τ,ti);}
     }
     for(int i=7; i<51; i++) {
-        sum51 = sum51 +n[i]*Math.exp(-Math.pow(δ,c[i]))
-                *( Math.pow(δ,(d[i]-1.))*Math.pow(τ,t[i])
-                    *(d[i]-c[i]*Math.pow(δ,c[i])) );
+        di = D_I[i]; ci = C_I[i]; ti = T_I[i];
+        w = Math.pow(δ,ci);
+        sum51 = sum51 +N_I[i]*Math.exp(-w)
+                *( Math.pow(δ,(di-1.))*Math.pow(τ,ti)
+                    *(di-ci*w) );
+        if(deriv) {
+            sum51dd = sum51dd +N_I[i]*Math.exp(-w)
+                *( Math.pow(δ,(di-2.))*Math.pow(τ,ti)
+                    *((di-ci*w)*(di-1.-ci*w) - ci*ci*w) );
+        }
     }
     for(int i=51; i<54; i++) {
-        sum54 = sum54 +n[i]*Math.pow(δ,d[i])*Math.pow(τ,t[i])
-                * Math.exp(-α[i]*Math.pow(δ-ε[i],2.)-β[i]*Math.pow(τ-γ[i],2.))
-                * ( (d[i]/δ)-2.*α[i]*(δ-ε[i]) );
+        di = D_I[i]; ti = T_I[i];
+        final double α = ALPHA_I[i-51], β = BETA_I[i-51], γ = GAMMA_I[i-51], ε = EPS_I[i-51];
+        w = N_I[i]*Math.pow(τ,ti)
+                * Math.exp(-α*Math.pow(δ-ε,2.)-β*Math.pow(τ-γ,2.));
+        sum54 = sum54 +N_I[i]*Math.pow(δ,di)*Math.pow(τ,ti)
+                * Math.exp(-α*Math.pow(δ-ε,2.)-β*Math.pow(τ-γ,2.))
+                * ( (di/δ)-2.*α*(δ-ε) );
+        if(deriv) {
+            sum54dd = sum54dd + w
+                * ( -2.*α*Math.pow(δ,di) + 4.*α*α*Math.pow(δ,di)*Math.pow(δ-ε,2.)
+                    - 4.*di*α*Math.pow(δ,di-1.)*(δ-ε) + di*(di-1.)*Math.pow(δ,di-2.) );
+        }
     }
     // Add up "φr_δ": the partial derivative of the residual part (φr)
     // with respect to δ at constant τ
@@ -554,12 +481,114 @@ static private double p4rhoT(final double rho_gcm3, final double tC, boolean dbg
     // Calcuate the pressure using the first equation of Table 6.3
     // of Wagner and Pruß, (2002)
     double p = (rho * R * tK) * ( 1 + δ * φr_δ );
+    if(deriv) {
+        double φr_δδ = sum7dd + sum51dd + sum54dd + sum56dd;
+        // kPa/(kg/m3) = MPa/(g/cm3)
+        dp_drho[0] = (R * tK) * ( 1 + 2.*δ*φr_δ + δ*δ*φr_δδ );
+        if(Double.isInfinite(dp_drho[0])) {dp_drho[0] = Double.NaN;}
+        if(dbg) System.out.println("φr_δδ="+(float)φr_δδ+", dp/drho="+(float)dp_drho[0]);
+    }
     // System.out.println("( 1 + δ * φr_δ )="+( 1 + δ * φr_δ ));
     return p/1000.; // convert to MPa units (the constant R is given in kJ instead of J)
 }
 // </editor-fold>
 // </editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="arrays of (T,P): pSat, rhoSat, rho">
+/** Saturation pressures (bar) for an array of temperatures, see
+ * <code>pSat(tC)</code>. No exceptions are thrown for temperatures out of range:
+ * the value is NaN and the status is <code>STATUS_OUT_OF_RANGE</code>.
+ * @param tC the temperatures in degrees Celsius
+ * @param pSat output: the pressures in bar
+ * @param status output: <code>STATUS_OK</code> or <code>STATUS_OUT_OF_RANGE</code>
+ * @param parallel if true, large arrays are divided among several threads
+ * @throws IllegalArgumentException if the arrays do not have the same length
+ * @see #pSat(double) pSat */
+static public void pSat(final double[] tC, final double[] pSat, final int[] status,
+        final boolean parallel) throws IllegalArgumentException {
+    H2OBatch.run(H2OBatch.PSAT, tC, null, pSat, status, parallel);
+}
+
+/** Densities (g/cm3) at the vapor–liquid phase boundary for an array of
+ * temperatures, see <code>rhoSat(tC)</code>. No exceptions are thrown for
+ * temperatures out of range: the value is NaN and the status is
+ * <code>STATUS_OUT_OF_RANGE</code>.
+ * @param tC the temperatures in degrees Celsius
+ * @param rhoSat output: the densities in g/cm3
+ * @param status output: <code>STATUS_OK</code> or <code>STATUS_OUT_OF_RANGE</code>
+ * @param parallel if true, large arrays are divided among several threads
+ * @throws IllegalArgumentException if the arrays do not have the same length
+ * @see #rhoSat(double) rhoSat */
+static public void rhoSat(final double[] tC, final double[] rhoSat, final int[] status,
+        final boolean parallel) throws IllegalArgumentException {
+    H2OBatch.run(H2OBatch.RHOSAT, tC, null, rhoSat, status, parallel);
+}
+
+/** Densities (g/cm3) of liquid (or supercritical fluid) water for arrays of
+ * temperatures and pressures, see <code>rho(tC,pBar)</code>. No exceptions
+ * are thrown: for (T,P) out of range, or where water is not liquid, the value
+ * is NaN and the status is <code>STATUS_OUT_OF_RANGE</code>; if the iterations
+ * fail the status is <code>STATUS_NOT_CONVERGED</code>.
+ * @param tC the temperatures in degrees Celsius
+ * @param pBar the pressures in bar
+ * @param rho output: the densities in g/cm3
+ * @param status output: <code>STATUS_OK</code>, <code>STATUS_OUT_OF_RANGE</code>
+ * or <code>STATUS_NOT_CONVERGED</code>
+ * @param parallel if true, large arrays are divided among several threads
+ * @throws IllegalArgumentException if the arrays do not have the same length
+ * @see #rho(double, double) rho */
+static public void rho(final double[] tC, final double[] pBar, final double[] rho,
+        final int[] status, final boolean parallel) throws IllegalArgumentException {
+    H2OBatch.run(H2OBatch.RHO, tC, pBar, rho, status, parallel);
+}
+
+static void pSatLoop(final double[] tC, final double[] out, final int[] status,
+        final int from, final int to) {
+    double t;
+    for(int k = from; k < to; k++) {
+        t = tC[k];
+        if(satRange(t)) {out[k] = pSat0(t); status[k] = STATUS_OK;}
+        else {out[k] = Double.NaN; status[k] = STATUS_OUT_OF_RANGE;}
+    }
+}
+
+static void rhoSatLoop(final double[] tC, final double[] out, final int[] status,
+        final int from, final int to) {
+    double t;
+    for(int k = from; k < to; k++) {
+        t = tC[k];
+        if(satRange(t)) {out[k] = rhoSat0(t); status[k] = STATUS_OK;}
+        else {out[k] = Double.NaN; status[k] = STATUS_OUT_OF_RANGE;}
+    }
+}
+
+static void rhoLoop(final double[] tC, final double[] pBar, final double[] out, final int[] status,
+        final int from, final int to) {
+    for(int k = from; k < to; k++) {status[k] = rho(tC[k], pBar[k], out, k);}
+}
+
+/** The density without exceptions: the same checks as in <code>rho(tC,pBar)</code>.
+ * @param tC the temperature in degrees Celsius
+ * @param pBar the pressure in bar
+ * @param out output: out[k] is the density (g/cm3) or NaN
+ * @param k the index in <code>out</code>
+ * @return the status: <code>STATUS_OK</code>, <code>STATUS_OUT_OF_RANGE</code>
+ * or <code>STATUS_NOT_CONVERGED</code> */
+static int rho(final double tC, final double pBar, final double[] out, final int k) {
+    out[k] = Double.NaN;
+    if(!(tC >= -30. && tC <= 1000.001 && pBar > 0. && pBar <= 10000.01)) {return STATUS_OUT_OF_RANGE;}
+    final double t_C;
+    if(pBar >0.99999 && pBar < 1.00001 && Math.abs(tC) < 0.001) {t_C = 0.01;} else {t_C = tC;}
+    if(isWaterLiquid(t_C, pBar).length() >0) {return STATUS_OUT_OF_RANGE;}
+    final double r;
+    try {r = rhoLiquid(t_C, pBar, false);}
+    catch (IllegalArgumentException ex) {return STATUS_OUT_OF_RANGE;} // 0 < tC < 0.01
+    if(Double.isNaN(r)) {return STATUS_NOT_CONVERGED;}
+    out[k] = r;
+    return STATUS_OK;
+}
+// </editor-fold>
+
 //<editor-fold defaultstate="collapsed" desc="isWaterLiquid(tC,pbar)">
 /** Finds out if water is liquid at the given input values of temperature and pressure.
  * Uses the eqns.(6), (7), (8), (9) and (10) in:<br>
@@ -86,6 +86,71 @@ public Chem(int Na, int Ms, int mSol, int solidC)
     // eps = new SITepsilon(Ms - mSol);
 } // Chem constructor
 
+//<editor-fold defaultstate="collapsed" desc="copyChem()">
+/** Makes an independent ("deep") copy of this instance: the chemical system,
+ * the names, the concentrations and the diagram data. Intended for programs
+ * that run several <code>HaltaFall</code> calculations simultaneously in
+ * different threads: each thread must have its own copy, because both
+ * <code>HaltaFall</code> and <code>Factor</code> store results in the
+ * <code>ChemConcs</code> and <code>Diagr</code> objects.
+ * @return a new instance of <code>Chem</code> with the same contents as this one
+ * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+public Chem copyChem() throws ChemicalParameterException {
+    ChemSystem cs0 = this.chemSystem;
+    Chem c = new Chem(cs0.Na, cs0.Ms, cs0.mSol, cs0.solidC);
+    ChemSystem cs = c.chemSystem;
+    cs.jWater = cs0.jWater;
+    for(int i=0; i < cs0.a.length; i++) {
+        System.arraycopy(cs0.a[i], 0, cs.a[i], 0, cs0.a[i].length);
+    }
+    System.arraycopy(cs0.lBeta, 0, cs.lBeta, 0, cs0.lBeta.length);
+    System.arraycopy(cs0.noll, 0, cs.noll, 0, cs0.noll.length);
+    // --- names, electric charges, etc
+    if(cs0.namn != null) {
+        ChemSystem.NamesEtc n0 = cs0.namn, n = cs.namn;
+        if(n0.identC != null) {n.identC = n0.identC.clone();}
+        if(n0.ident != null) {n.ident = n0.ident.clone();}
+        if(n0.nameLength != null) {n.nameLength = n0.nameLength.clone();}
+        if(n0.iel != null) {n.iel = n0.iel.clone();}
+        if(n0.z != null) {n.z = n0.z.clone();}
+        if(n0.comment != null) {n.comment = n0.comment.clone();}
+    } else {cs.namn = null;}
+    // --- concentrations
+    ChemSystem.ChemConcs cc0 = cs0.chemConcs, cc = cs.chemConcs;
+    System.arraycopy(cc0.kh, 0, cc.kh, 0, cc0.kh.length);
+    System.arraycopy(cc0.tot, 0, cc.tot, 0, cc0.tot.length);
+    System.arraycopy(cc0.solub, 0, cc.solub, 0, cc0.solub.length);
+    System.arraycopy(cc0.C, 0, cc.C, 0, cc0.C.length);
+    System.arraycopy(cc0.logA, 0, cc.logA, 0, cc0.logA.length);
+    System.arraycopy(cc0.logf, 0, cc.logf, 0, cc0.logf.length);
+    cc.tol = cc0.tol;
+    cc.dbg = cc0.dbg;
+    cc.cont = cc0.cont;
+    cc.errFlags = cc0.errFlags;
+    cc.actCoefCalc = cc0.actCoefCalc;
+    cc.actCoefAccel = cc0.actCoefAccel;
+    cc.tolLogF = cc0.tolLogF;
+    // --- diagram data
+    if(this.diag != null) {
+        try {c.diag = (Diagr)this.diag.clone();}
+        catch (CloneNotSupportedException ex) {
+            throw new ChemicalParameterException("Error in \"copyChem\": "+ex.getMessage());
+        }
+        // these are not copied by "Diagr.clone()"
+        c.diag.activityCoeffsModel = this.diag.activityCoeffsModel;
+        c.diag.ionicStrCalc = this.diag.ionicStrCalc;
+        c.diag.phi = this.diag.phi;
+        c.diag.sumM = this.diag.sumM;
+    } else {c.diag = null;}
+    if(this.diagrConcs != null) {
+        System.arraycopy(this.diagrConcs.hur, 0, c.diagrConcs.hur, 0, cs0.Na);
+        System.arraycopy(this.diagrConcs.cLow, 0, c.diagrConcs.cLow, 0, cs0.Na);
+        System.arraycopy(this.diagrConcs.cHigh, 0, c.diagrConcs.cHigh, 0, cs0.Na);
+    } else {c.diagrConcs = null;}
+    return c;
+} // copyChem()
+//</editor-fold>
+
 /** The parameters supplied to a constructor are invalid: either outside the
  * allowed range or incompatible with each other.
  * The constractor can not be executed. */
@@ -374,6 +439,13 @@ public class ChemConcs{
  * @see lib.kemi.chem.Chem.Diagr#ionicStrength Chem.Diagr.ionicStrength
  * @see lib.kemi.haltaFall.Factor#ionicStrengthCalc haltaFall.Factor.ionicStrengthCalc */
     public boolean actCoefCalc = false;
+/** If it is <b><code>true</code></b> (and <code>actCoefCalc</code> is also true)
+ * <code>HaltaFall</code> accelerates the activity coefficient iterations by
+ * mixing the results from the last few iterations (Anderson mixing) instead
+ * of only damping the changes.  This may save many iterations for
+ * concentrated solutions.  The default is <b><code>false</code></b>.
+ * @see #actCoefCalc actCoefCalc */
+    public boolean actCoefAccel = false;
  /** The tolerance (log-10 scale) being used to iterate activity coefficient calculations.
   * For systems where the highest concentration for a ionic species is less
   * than 1 (mol/L), the tolerance is 0.001 in log-10 scale. If one or more
@@ -415,6 +487,7 @@ public class ChemConcs{
         this.cont = false;
         this.errFlags = 0;
         this.actCoefCalc = false;
+        this.actCoefAccel = false;
         }
 
     //<editor-fold defaultstate="collapsed" desc="errFlagsSet(i)">
@@ -733,6 +806,20 @@ public double sumM;
  * @see lib.kemi.chem.Chem.Diagr#ionicStrength Chem.Diagr.ionicStrength
  * @see lib.kemi.haltaFall.Factor#ionicStrengthCalc haltaFall.Factor.ionicStrengthCalc */
 public int activityCoeffsModel = -1;
+/** The relative change of the ionic strength (and of the sum of molalities)
+ * below which the activity coefficients are not recalculated with the Davies
+ * and HKF models.  If zero (the default): with a calculated ionic strength
+ * (<code>ionicStrength</code> &lt; 0) they are recalculated every time, and
+ * with a given ionic strength they are recalculated if it changes by more
+ * than 0.001.  The value used is reported back in <code>ionicStrTolUsed</code>.
+ * @see lib.kemi.chem.Chem.Diagr#activityCoeffsModel Chem.Diagr.activityCoeffsModel
+ * @see lib.kemi.chem.Chem.Diagr#ionicStrength Chem.Diagr.ionicStrength */
+public double ionicStrTol = 0;
+/** The relative tolerance in the ionic strength used by <code>Factor</code>
+ * with the Davies and HKF models: zero if the activity coefficients are
+ * recalculated every time, NaN for the other models.
+ * @see lib.kemi.chem.Chem.Diagr#ionicStrTol Chem.Diagr.ionicStrTol */
+public double ionicStrTolUsed = Double.NaN;
   /** the minimum fraction value that a species must reach
    * to be displayed in a fraction diagram. A value of 0.03 means that
    * a species must have a fraction above 3% in order to be displayed
@@ -758,6 +845,7 @@ public Diagr(){
     temperature = 25;
     pressure = 1;
     activityCoeffsModel = -1;
+    ionicStrTol = 0;
     fractionThreshold = 0.03f;
 } // constructor
 @Override public Object clone() throws CloneNotSupportedException {
@@ -783,6 +871,7 @@ public Diagr(){
     d.ionicStrength = this.ionicStrength;
     d.temperature = this.temperature;
     d.pressure = this.pressure;
+    d.ionicStrTol = this.ionicStrTol;
     d.fractionThreshold = this.fractionThreshold;
     return d;
 } // clone()
@@ -0,0 +1,372 @@
+package lib.kemi.chem;
+
+/** A "family" of diagrams: the same chemical system and the same diagram
+ * calculated for several values of either the ionic strength, the
+ * temperature, the pressure, or the concentration of one component.
+ * Each value is a "member" of the family. A family is described by a text
+ * such as (for example in the command-line option "-fam="):
+ * <pre>
+ *   I:0,0.1,1,3           ionic strength (molal), -1 to calculate it at each point
+ *   T:25,50,100           temperature (Celsius)
+ *   P:1,500,1000          pressure (bar)
+ *   C:Fe 2+:1E-6,1E-4     total concentration (or log(activity)) of a component
+ *   C:H+:-2/-8,-4/-10     lowest/highest values for a component that is varied
+ * </pre>
+ * For a component whose concentration is varied along an axis, the
+ * values must be given as a range, "low/high". The values of each member
+ * replace those given in the input data file; all other data are the same
+ * for all members.
+ * <p>Each member is calculated with its own copy of the chemical system
+ * (see <code>memberChem</code>), because the calculations change some of
+ * the plot information, for example the limits of the Y-axis.  Programs
+ * that calculate the members one after the other may use a
+ * <code>DiagrFamily.Sequence</code>, and programs that calculate them
+ * concurrently may use <code>calculateAll</code>.
+ * <br>
+ * Copyright (C) 2014-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+public class DiagrFamily {
+  private static final String nl = System.getProperty("line.separator");
+  /** kind of family: the ionic strength changes */
+  public static final int IONIC_STRENGTH = 1;
+  /** kind of family: the temperature changes */
+  public static final int TEMPERATURE = 2;
+  /** kind of family: the pressure changes */
+  public static final int PRESSURE = 3;
+  /** kind of family: the concentration of a component changes */
+  public static final int CONCENTRATION = 4;
+
+  /** IONIC_STRENGTH, TEMPERATURE, PRESSURE or CONCENTRATION */
+  public final int kind;
+  /** for CONCENTRATION families: the component whose concentration changes, otherwise -1 */
+  public final int component;
+  /** the value for each member (the lowest value of a range) */
+  private final double[] low;
+  /** the highest value of the range for each member, or NaN */
+  private final double[] high;
+  /** the text given for each member, used in file names */
+  private final String[] txt;
+
+  //<editor-fold defaultstate="collapsed" desc="constructor">
+  /** @param spec the description of the family, for example "I:0,0.1,1"
+   * @param ch the chemical system, needed for CONCENTRATION families
+   * (the component is searched among <code>namn.identC</code> and its type
+   * of concentration in <code>diagrConcs.hur</code>)
+   * @throws IllegalArgumentException if the description is not correct */
+  public DiagrFamily(String spec, Chem ch) throws IllegalArgumentException {
+    if(spec == null || spec.trim().length() <= 0) {
+        throw new IllegalArgumentException("Empty description of the diagram family.");
+    }
+    String s = spec.trim();
+    int i = s.indexOf(':');
+    if(i != 1) {throw new IllegalArgumentException("Wrong description of the diagram family: \""+spec+"\""+nl+help());}
+    char c = Character.toUpperCase(s.charAt(0));
+    if(c == 'I') {kind = IONIC_STRENGTH;}
+    else if(c == 'T') {kind = TEMPERATURE;}
+    else if(c == 'P') {kind = PRESSURE;}
+    else if(c == 'C') {kind = CONCENTRATION;}
+    else {throw new IllegalArgumentException("Wrong description of the diagram family: \""+spec+"\""+nl+help());}
+    s = s.substring(2);
+    int hur = 0;
+    if(kind == CONCENTRATION) {
+        i = s.lastIndexOf(':');
+        if(i <= 0) {throw new IllegalArgumentException("No component given in the description of the diagram family: \""+spec+"\""+nl+help());}
+        String name = s.substring(0, i).trim();
+        s = s.substring(i+1);
+        if(name.startsWith("*")) {name = name.substring(1);}
+        int found = -1;
+        if(ch != null) {
+            String ide;
+            for(int j = 0; j < ch.chemSystem.Na; j++) {
+                ide = ch.chemSystem.namn.identC[j];
+                if(ide.startsWith("*")) {ide = ide.substring(1);}
+                if(ide.equalsIgnoreCase(name)) {found = j; break;}
+            }
+        }
+        if(found < 0) {throw new IllegalArgumentException("\""+name+"\" is not a component (diagram family \""+spec+"\").");}
+        component = found;
+        hur = ch.diagrConcs.hur[component];
+    } else {component = -1;}
+    String[] t = s.split(",");
+    int n = 0;
+    for(String t1 : t) {if(t1.trim().length() > 0) {n++;}}
+    if(n <= 0) {throw new IllegalArgumentException("No values given in the description of the diagram family: \""+spec+"\"");}
+    low = new double[n]; high = new double[n]; txt = new String[n];
+    n = 0;
+    for(String t1 : t) {
+        String v = t1.trim();
+        if(v.length() <= 0) {continue;}
+        txt[n] = v;
+        i = v.indexOf('/');
+        try {
+            if(i > 0) {
+                low[n] = Double.parseDouble(v.substring(0, i).trim());
+                high[n] = Double.parseDouble(v.substring(i+1).trim());
+            } else {
+                low[n] = Double.parseDouble(v);
+                high[n] = Double.NaN;
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Wrong numeric format \""+v+"\" in the description of the diagram family: \""+spec+"\"");
+        }
+        if(kind == CONCENTRATION) {
+            // hur =2 "TV", =3 "LTV", =5 "LAV": the concentration is varied
+            boolean varied = (hur == 2 || hur == 3 || hur == 5);
+            if(varied && Double.isNaN(high[n])) {
+                throw new IllegalArgumentException("The concentration of \""+ch.chemSystem.namn.identC[component]+
+                        "\" is varied: a range \"low/high\" is needed (diagram family \""+spec+"\").");
+            }
+            if(!varied && !Double.isNaN(high[n])) {
+                throw new IllegalArgumentException("The concentration of \""+ch.chemSystem.namn.identC[component]+
+                        "\" is not varied: a range \""+v+"\" may not be given (diagram family \""+spec+"\").");
+            }
+        } else if(!Double.isNaN(high[n])) {
+            throw new IllegalArgumentException("A range \""+v+"\" may only be given for a concentration (diagram family \""+spec+"\").");
+        }
+        n++;
+    }
+  }
+  //</editor-fold>
+
+  /** Finds the description of a diagram family in a command-line argument,
+   * "-fam=description" (or "/fam=", or with ":" instead of "=").
+   * Enclosing quotes are removed.
+   * @param arg the command-line argument
+   * @return the description of the family, or null if <code>arg</code>
+   * is not a "-fam" argument */
+  public static String option(String arg) {
+    if(arg == null || arg.length() <= 5) {return null;}
+    String a0 = arg.substring(0, 4).toLowerCase();
+    if(!a0.equals("-fam") && !a0.equals("/fam")) {return null;}
+    if(arg.charAt(4) != '=' && arg.charAt(4) != ':') {return null;}
+    String t = arg.substring(5);
+    if(t.length() > 1 && t.startsWith("\"") && t.endsWith("\"")) { //remove enclosing quotes
+        t = t.substring(1, t.length()-1);
+    }
+    return t;
+  }
+
+  /** @return a description of the text that describes a family */
+  public static String help() {
+    return "A diagram family is given as:"+nl+
+        "   I:<value>,<value>,...  for the ionic strength (-1 = calculated)"+nl+
+        "   T:<value>,<value>,...  for the temperature (C)"+nl+
+        "   P:<value>,<value>,...  for the pressure (bar)"+nl+
+        "   C:<component>:<value>,<value>,...  for a concentration (or log(activity))"+nl+
+        "       where each <value> is <low>/<high> if the concentration is varied.";
+  }
+
+  /** @return the number of members in the family */
+  public int size() {return low.length;}
+
+  /** @param m the member, from zero to size()-1
+   * @return the value for the member (for concentrations, the lowest value) */
+  public double value(int m) {return low[m];}
+
+  /** @param m the member, from zero to size()-1
+   * @return the highest value of the concentration range for the member,
+   * or NaN if the concentration of the component is not varied */
+  public double high(int m) {return high[m];}
+
+  /** @param m the member, from zero to size()-1
+   * @return a short text describing the member, for example "I=0.1" */
+  public String label(int m) {
+    if(kind == IONIC_STRENGTH) {return "I="+txt[m];}
+    if(kind == TEMPERATURE) {return "t="+txt[m];}
+    if(kind == PRESSURE) {return "p="+txt[m];}
+    return "c="+txt[m];
+  }
+
+  /** The name of an output file for a member of the family: the text given
+   * for the member is appended to the name, before the extension.
+   * For example "Fe.plt" becomes "Fe_I0.1.plt" and "Fe_C-2_-8.plt".
+   * @param f the output file for the whole family
+   * @param m the member, from zero to size()-1
+   * @return the file for the member */
+  public java.io.File memberFile(java.io.File f, int m) {
+    String name = f.getName();
+    String ext = "";
+    int i = name.lastIndexOf('.');
+    if(i > 0) {ext = name.substring(i); name = name.substring(0, i);}
+    String k;
+    if(kind == IONIC_STRENGTH) {k = "I";}
+    else if(kind == TEMPERATURE) {k = "T";}
+    else if(kind == PRESSURE) {k = "P";}
+    else {k = "C";}
+    name = name + "_" + k + txt[m].replace('/', '_') + ext;
+    return new java.io.File(f.getAbsoluteFile().getParentFile(), name);
+  }
+
+  /** A copy of the chemical system for a member of the family: for
+   * CONCENTRATION families with the concentration of the member (see
+   * <code>setConcs</code>).  The ionic strength, temperature or pressure of
+   * the member must be given to the calculations by the program.
+   * @param ch the chemical system, which is not changed
+   * @param m the member, from zero to size()-1
+   * @return a new copy of <code>ch</code>
+   * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+  public Chem memberChem(Chem ch, int m) throws Chem.ChemicalParameterException {
+    Chem c = ch.copyChem();
+    setConcs(c, m);
+    return c;
+  }
+
+  /** For CONCENTRATION families, sets the concentration (and the
+   * concentration range) of the component in
+   * <code>ch.diagrConcs.cLow</code> and <code>cHigh</code>.
+   * Nothing is done for other kinds of families.
+   * @param ch the chemical system
+   * @param m the member, from zero to size()-1 */
+  public void setConcs(Chem ch, int m) {
+    if(kind != CONCENTRATION) {return;}
+    ch.diagrConcs.cLow[component] = low[m];
+    if(!Double.isNaN(high[m])) {ch.diagrConcs.cHigh[component] = high[m];}
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="class Sequence">
+  /** The members of a family calculated one after the other, for example
+   * by a program that makes one diagram at a time:
+   * <pre>
+   *   DiagrFamily.Sequence seq = new DiagrFamily.Sequence(family, ch, pltFile);
+   *   while(seq.hasNext()) {
+   *     ch = seq.next();
+   *     ... set the ionic strength, temperature or pressure of seq.member()
+   *     ... calculate and save the diagram in seq.pltFile()
+   *   }
+   * </pre>
+   * A copy of the chemical system is kept when the sequence is created, and
+   * each member starts from a new copy of it, so that nothing changed by the
+   * calculations of a member is used by the next one. */
+  public static class Sequence {
+    /** the description of the family */
+    public final DiagrFamily family;
+    private final Chem ch0;
+    private final java.io.File pltFile0;
+    private int m = -1;
+
+    /** @param family the description of the family
+     * @param ch the chemical system, which is copied (it is not changed)
+     * @param pltFile the plot file for the whole family
+     * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+    public Sequence(DiagrFamily family, Chem ch, java.io.File pltFile)
+            throws Chem.ChemicalParameterException {
+      this.family = family;
+      this.ch0 = ch.copyChem();
+      this.pltFile0 = pltFile;
+    }
+
+    /** @return true if there are members not yet given by <code>next()</code> */
+    public boolean hasNext() {return (m+1) < family.size();}
+
+    /** Moves to the next member of the family
+     * @return a new copy of the chemical system given to the constructor,
+     * for the new member (see <code>memberChem</code>)
+     * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+    public Chem next() throws Chem.ChemicalParameterException {
+      if(!hasNext()) {throw new java.util.NoSuchElementException("No more members in the diagram family.");}
+      m++;
+      return family.memberChem(ch0, m);
+    }
+
+    /** @return the present member, from zero to size()-1 (-1 before the
+     * first call to <code>next()</code>) */
+    public int member() {return m;}
+
+    /** @return the value for the present member, see <code>DiagrFamily.value</code> */
+    public double value() {return family.value(m);}
+
+    /** @return the plot file for the present member */
+    public java.io.File pltFile() {return family.memberFile(pltFile0, m);}
+
+    /** @param f an output file for the whole family, for example a table file
+     * @return the file for the present member, see <code>DiagrFamily.memberFile</code> */
+    public java.io.File memberFile(java.io.File f) {return family.memberFile(f, m);}
+
+    /** @return a text such as "Diagram family: member 2 of 3 (I=0.1)" */
+    public String description() {
+      return "Diagram family: member "+(m+1)+" of "+family.size()+" ("+family.label(m)+")";
+    }
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="calculateAll">
+  /** The calculations for one member of a family, see <code>calculateAll</code>
+   * @param <R> the results of the calculations */
+  public interface MemberCalculation<R> {
+    /** @param ch a copy of the chemical system for the member (see <code>memberChem</code>)
+     * @param m the member, from zero to size()-1
+     * @return the results for the member
+     * @throws Exception if the calculations fail: the message of the exception
+     * is included in the <code>FamilyException</code> */
+    R calculate(Chem ch, int m) throws Exception;
+  }
+
+  /** Calculates all the members of the family in parallel, in a
+   * ForkJoinPool with at most <code>nThreads</code> threads.  Each member
+   * is calculated with its own copy of <code>ch</code> (which is not changed).
+   * @param <R> the results of the calculations
+   * @param ch the chemical system
+   * @param nThreads the number of members calculated at the same time
+   * @param calc the calculations for one member
+   * @return the results for each member of the family
+   * @throws lib.kemi.chem.DiagrFamily.FamilyException if the calculations fail
+   * for any of the members, with a message for each of them */
+  public <R> java.util.List<R> calculateAll(final Chem ch, int nThreads,
+          final MemberCalculation<R> calc) throws FamilyException {
+    final int n = size();
+    final java.util.List<R> r = new java.util.ArrayList<R>(java.util.Collections.<R>nCopies(n, null));
+    final String[] errors = new String[n];
+    java.util.List<java.util.concurrent.RecursiveAction> tasks =
+            new java.util.ArrayList<java.util.concurrent.RecursiveAction>(n);
+    for(int m = 0; m < n; m++) {
+        final int member = m;
+        tasks.add(new java.util.concurrent.RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+            @Override protected void compute() {
+              R rm = null;
+              try {rm = calc.calculate(memberChem(ch, member), member);}
+              catch (RuntimeException ex) {errors[member] = lib.common.Util.stack2string(ex);}
+              catch (Exception ex) {errors[member] = ex.getMessage();}
+              synchronized (r) {r.set(member, rm);}
+            }
+        });
+    }
+    java.util.concurrent.ForkJoinPool pool =
+            new java.util.concurrent.ForkJoinPool(Math.max(1, Math.min(n, nThreads)));
+    try {
+        for(java.util.concurrent.RecursiveAction t : tasks) {pool.execute(t);}
+        for(java.util.concurrent.RecursiveAction t : tasks) {t.join();}
+    } finally {pool.shutdown();}
+    StringBuilder msg = new StringBuilder();
+    for(int m = 0; m < n; m++) {
+        if(errors[m] == null) {continue;}
+        if(msg.length() >0) {msg.append(nl);}
+        msg.append("Diagram family member ").append(m+1).append(" (")
+                .append(label(m)).append("):").append(nl).append(errors[m]);
+    }
+    if(msg.length() >0) {throw new FamilyException(msg.toString());}
+    return r;
+  }
+
+  /** The calculations failed for some members of a family */
+  public static class FamilyException extends Exception {
+    private static final long serialVersionUID = 1L;
+    public FamilyException() {super();}
+    public FamilyException(String txt) {super(txt);}
+  }
+  //</editor-fold>
+}
@@ -16,7 +16,8 @@ import lib.common.Util;
  * re-paint the jPannel when needed.
  *
  * The output plot file is a text file that may later be displayed by the
- * user, or for example sent by e-mail, etc.
+ * user, or for example sent by e-mail, etc. The plot file may also be
+ * written in a compact binary format (see <code>PltFile</code>).
  *
  * The graphic information is a vector format ("go to", "draw to",
  * "change colour", "display a text"). The units are to be thought as "cm",
@@ -64,6 +65,8 @@ private String label;
 private boolean save;
 /** The output file */
 private java.io.Writer w;
+/** The output file if it is written in binary format, otherwise null */
+private PltFile.Writer bw;
 private double xL =1; private double yL =1;
 private double xI =0; private double yI =0;
 private double sizeSym =0;
@@ -181,15 +184,32 @@ public void GraphLib() {
  * @throws lib.kemi.graph_lib.GraphLib.OpenPlotFileException  */
 public void start(PltData pD, java.io.File plotFile, boolean txtWithFonts)
         throws WritePlotFileException {
+    start(pD, plotFile, txtWithFonts, false);
+} //start(pD, plotFile, txtWithFonts)
+/** Open the output plot file; set the PltData for storing the graphic
+ * @param pD where the graphic information will be stored
+ * for painting events. If null, the diagram will neither be saved
+ * nor displayed
+ * @param plotFile for storing graphic information, it may be "null".
+ * If an error occurs while opening the file for writing, an exception is
+ * thrown, the file will not be saved, but the diagram will be displayed.
+ * @param txtWithFonts true if texts are to be displayed on the JPanel using
+ * a font, that is, not by using the line-sketches stored in the plot file.
+ * @param binary if true the plot file is written in the compact binary
+ * format (see <code>PltFile</code>), otherwise as a text file
+ * @throws lib.kemi.graph_lib.GraphLib.OpenPlotFileException  */
+public void start(PltData pD, java.io.File plotFile, boolean txtWithFonts, boolean binary)
+        throws WritePlotFileException {
     if(pD == null) {return;}
     this.pd = pD;
     this.textWithFonts = txtWithFonts; 
     String msg = null;
     if(plotFile != null && plotFile.getName().length()>0) {
-        w = null;
+        w = null; bw = null;
         try{
-            w = new java.io.BufferedWriter(
-                    new java.io.OutputStreamWriter(new java.io.FileOutputStream(plotFile),"UTF8"));
+            if(binary) {bw = new PltFile.Writer(plotFile);}
+            else {w = new java.io.BufferedWriter(
+                    new java.io.OutputStreamWriter(new java.io.FileOutputStream(plotFile),"UTF8"));}
             pd.pltFile_Name = plotFile.getPath();
             save = true;
         } catch (java.io.IOException ex) {
@@ -202,7 +222,7 @@ public void start(PltData pD, java.io.File plotFile, boolean txtWithFonts)
     } else {pd.pltFile_Name = null; save = false;}
     if (msg != null) {throw new WritePlotFileException(msg);}
     //return;
-} //start(pD, plotFile)
+} //start(pD, plotFile, txtWithFonts, binary)
 public static class WritePlotFileException extends Exception {
     public WritePlotFileException() {}
     public WritePlotFileException(String txt) {super(txt);}
@@ -228,7 +248,9 @@ public void end() throws WritePlotFileException {
     int yShift = Math.round(Math.max( (100f-userSpace_w)/2f, userSpace_w*xtra ) );
     pd.userSpaceMax.y = pd.userSpaceMax.y + yShift;
     pd.userSpaceMin.y = pd.userSpaceMin.y - yShift;
-    try{if(label != null && save) {w.write("0   0   0 "+label+nl);}}
+    try{if(label != null && save) {
+            if(bw != null) {bw.write(0,0,0,label);} else {w.write("0   0   0 "+label+nl);}
+        }}
     catch(Exception ex) {
         save = false;
         pd.pltFile_Name = null;
@@ -238,9 +260,9 @@ public void end() throws WritePlotFileException {
                            "   \""+pd.pltFile_Name+"\"");
     }
     // close output file
-    if(w != null) {
+    if(w != null || bw != null) {
         save = false;
-        try{w.flush(); w.close();}
+        try{if(bw != null) {bw.close(); bw = null;} else {w.flush(); w.close();}}
         catch(Exception ex) {
             pd.pltFile_Name = null;
             throw new WritePlotFileException("Error: \""+ex.getMessage()+"\","+nl+
@@ -258,7 +280,7 @@ public void end() throws WritePlotFileException {
  * @param txt String */
 public void setLabel(String txt) throws WritePlotFileException {
     if(label != null && save) {
-        try{w.write("0   0   0 "+label+nl);}
+        try{if(bw != null) {bw.write(0,0,0,label);} else {w.write("0   0   0 "+label+nl);}}
         catch(Exception ex) {
             save = false;
             pd.pltFile_Name = null;
@@ -285,11 +307,14 @@ public void setPen(int pen) throws WritePlotFileException {
     pd.pltFileAList.add(new PltData.PlotStep(n,i,0));
     if(save) {
         try{
-        if(label != null) {
+        if(bw != null) {bw.write(n,i,0,label); label = null;}
+        else {
+            if(label != null) {
                 w.write(String.format("%1d%4d     %s%n", n,i,label));
                 label = null;
-        } else {w.write(String.format("%1d%4d%n", n,i));}
-        w.flush();
+            } else {w.write(String.format("%1d%4d%n", n,i));}
+            w.flush();
+        }
         } catch (Exception ex) {
             save = false;
             pd.pltFile_Name = null;
@@ -727,11 +752,14 @@ public void moveToDrawTo(double x, double y, int flag) throws WritePlotFileExcep
     i2Last = i1;  i3Last = i2;
     if(save) {
         try{
-            if(label != null) {
-                w.write(String.format("%1d%4d%4d %s%n", i0,i1,i2,label));
-                label = null; }
-            else {w.write(String.format("%1d%4d%4d%n", i0,i1,i2));}
-            w.flush();
+            if(bw != null) {bw.write(i0,i1,i2,label); label = null;}
+            else {
+                if(label != null) {
+                    w.write(String.format("%1d%4d%4d %s%n", i0,i1,i2,label));
+                    label = null; }
+                else {w.write(String.format("%1d%4d%4d%n", i0,i1,i2));}
+                w.flush();
+            }
         } catch (Exception ex) {
             save = false;
             pd.pltFile_Name = null;
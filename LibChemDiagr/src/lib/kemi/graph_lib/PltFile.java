@@ -0,0 +1,316 @@
+package lib.kemi.graph_lib;
+
+/** Reading and writing of plot files. A plot file is either a text file,
+ * where each line is formatted as
+ * <pre>   "%1d%4d%4d %s"  (i0, i1, i2, comment)</pre>
+ * or a compact binary file with the same information. Both formats may be
+ * read with a <code>PltFile.Reader</code>, which gives the contents one
+ * line (record) at a time. Text files are written by <code>GraphLib</code>,
+ * and binary files with a <code>PltFile.Writer</code> (see
+ * <code>GraphLib.start</code>).
+ * <p>In both formats i0 is: 0 = "move to" (i1,i2); 1 = "draw to" (i1,i2);
+ * 5 = change the screen colour to i1; 8 = change the plotter pen to i1.
+ * The (x,y) positions are in units of 0.01 cm.
+ * <p>The binary format:
+ * <pre>
+ *  bytes 0 to 3:  "PLTB"
+ *  byte 4:        the version of the format (=1)
+ *  bytes 5 to 20: the smallest and largest positions in the "move to" and
+ *                 "draw to" records: xMin, yMin, xMax, yMax (4-byte big-endian
+ *                 integers; if there are no positions xMin = yMin = Integer.MAX_VALUE
+ *                 and xMax = yMax = Integer.MIN_VALUE)
+ *  and then, until the end of the file, records each made of:
+ *   - one byte: i0, plus 128 if the record has a comment;
+ *   - i1 and i2: for "move to" and "draw to" the difference from the previous
+ *     "move to" or "draw to" position (starting at 0,0), otherwise the values,
+ *     both as signed variable-length integers (see below);
+ *   - if the record has a comment, an unsigned variable-length integer k:
+ *     if k = 0 a new text follows (the number of bytes, as an unsigned
+ *     variable-length integer, followed by the text in UTF-8) which is added
+ *     to the table of texts; otherwise the comment is text number k in the
+ *     table (the first text is k = 1).
+ * </pre>
+ * Unsigned variable-length integers are written seven bits at a time, the
+ * lowest bits first, with the highest bit of each byte set if more bytes
+ * follow. Signed integers are first changed to unsigned as
+ * <code>(n &lt;&lt; 1) ^ (n &gt;&gt; 31)</code> (0,-1,1,-2,... become 0,1,2,3,...).
+ * <p>Files with another version of the format are not read (an
+ * IOException is thrown): if the format is changed, VERSION must be
+ * increased.
+ * <p>The programs PlotPS and PlotPDF do not use this library, and each has
+ * its own copy of the reader (class "PltReader" in PlotPS.java and in
+ * PlotPDF.java): any change in the format must also be made there.
+ * <br>
+ * Copyright (C) 2014-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+public final class PltFile {
+  /** the first bytes of a binary plot file */
+  private static final byte[] MAGIC = {'P','L','T','B'};
+  /** the version of the binary format */
+  private static final int VERSION = 1;
+  /** the size of the header of a binary plot file */
+  private static final int HEADER = 21;
+  private static final int COMMENT = 128;
+  private static final int BUF_SIZE = 65536;
+  private static final String nl = System.getProperty("line.separator");
+
+  private PltFile() {}
+
+  //<editor-fold defaultstate="collapsed" desc="isBinary(File)">
+  /** @param f a plot file
+   * @return true if the file starts as a binary plot file, false otherwise
+   * (also if the file can not be read) */
+  public static boolean isBinary(java.io.File f) {
+    if(f == null || !f.isFile() || f.length() < HEADER) {return false;}
+    byte[] b = new byte[MAGIC.length];
+    java.io.FileInputStream fis = null;
+    try {
+        fis = new java.io.FileInputStream(f);
+        int n = 0, r;
+        while(n < b.length && (r = fis.read(b, n, b.length - n)) > 0) {n = n + r;}
+        return n == b.length && java.util.Arrays.equals(b, MAGIC);
+    } catch (java.io.IOException ex) {return false;}
+    finally {
+        if(fis != null) {try {fis.close();} catch (java.io.IOException ex) {}}
+    }
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="class Writer">
+  /** Writes a binary plot file */
+  public static class Writer {
+    private final java.io.FileOutputStream fos;
+    private final byte[] buf = new byte[BUF_SIZE];
+    private int n = 0;
+    /** the texts written so far and their number in the table (starting at 1) */
+    private final java.util.HashMap<String,Integer> texts = new java.util.HashMap<String,Integer>();
+    /** the last "move to" or "draw to" position */
+    private int x = 0, y = 0;
+    private int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+    private int xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
+
+    /** Opens the file and writes the header
+     * @param f the output file
+     * @throws java.io.IOException */
+    public Writer(java.io.File f) throws java.io.IOException {
+      fos = new java.io.FileOutputStream(f);
+      for(byte b : MAGIC) {buf[n++] = b;}
+      buf[n++] = (byte)VERSION;
+      n = n + 16; // xMin, yMin, xMax, yMax: written by close()
+    }
+
+    /** Writes a record
+     * @param i0 0 = "move to"; 1 = "draw to"; 5 = screen colour; 8 = plotter pen
+     * @param i1 the x-position, or the colour or pen number
+     * @param i2 the y-position (zero for colours or pens)
+     * @param comment a comment, or null
+     * @throws java.io.IOException */
+    public void write(int i0, int i1, int i2, String comment) throws java.io.IOException {
+      if(n > BUF_SIZE - 32) {flushBuf();}
+      buf[n++] = (byte)(comment != null ? (i0 | COMMENT) : i0);
+      if(i0 == 0 || i0 == 1) {
+          putSigned(i1 - x); putSigned(i2 - y);
+          x = i1; y = i2;
+          if(i1 < xMin) {xMin = i1;}
+          if(i1 > xMax) {xMax = i1;}
+          if(i2 < yMin) {yMin = i2;}
+          if(i2 > yMax) {yMax = i2;}
+      } else {putSigned(i1); putSigned(i2);}
+      if(comment == null) {return;}
+      Integer k = texts.get(comment);
+      if(k != null) {putUnsigned(k); return;}
+      texts.put(comment, texts.size()+1);
+      byte[] b = comment.getBytes("UTF-8");
+      putUnsigned(0); putUnsigned(b.length);
+      if(n + b.length > BUF_SIZE) {flushBuf();}
+      if(b.length > BUF_SIZE) {fos.write(b); return;}
+      System.arraycopy(b, 0, buf, n, b.length);
+      n = n + b.length;
+    }
+
+    /** Writes the smallest and largest positions in the header and closes the file
+     * @throws java.io.IOException */
+    public void close() throws java.io.IOException {
+      try {
+        flushBuf();
+        java.nio.ByteBuffer h = java.nio.ByteBuffer.allocate(16);
+        h.putInt(xMin).putInt(yMin).putInt(xMax).putInt(yMax);
+        h.flip();
+        long pos = MAGIC.length + 1;
+        while(h.hasRemaining()) {pos = pos + fos.getChannel().write(h, pos);}
+      } finally {fos.close();}
+    }
+
+    private void flushBuf() throws java.io.IOException {
+      if(n > 0) {fos.write(buf, 0, n); n = 0;}
+    }
+    private void putSigned(int v) {putUnsigned((v << 1) ^ (v >> 31));}
+    private void putUnsigned(int v) {
+      while((v & ~0x7F) != 0) {
+          buf[n++] = (byte)((v & 0x7F) | 0x80);
+          v = v >>> 7;
+      }
+      buf[n++] = (byte)v;
+    }
+  } // class Writer
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="class Reader">
+  /** Reads a plot file, either text or binary, one line (record) at a time:
+   * <pre>
+   *  PltFile.Reader rd = new PltFile.Reader(f);
+   *  try {
+   *    while(rd.next()) {... rd.i0, rd.i1, rd.i2, rd.comment ...}
+   *  } finally {rd.close();}
+   * </pre> */
+  public static class Reader {
+    /** the values in the last record read: i0 is -1 for a text line that
+     * has no value in the first column */
+    public int i0, i1, i2;
+    /** the comment in the last record read, or null if it has none.
+     * In text files the comment is found after the first nine characters of
+     * the line (the blank separating it from i2 is not included) */
+    public String comment;
+    /** true if the file is a binary plot file */
+    public final boolean binary;
+    /** for binary files, the smallest and largest (x,y) positions found in
+     * "move to" and "draw to" records (from the header of the file);
+     * null for text files */
+    public final java.awt.Point userSpaceMin, userSpaceMax;
+    private final java.io.BufferedReader br;
+    private final java.io.InputStream is;
+    private final byte[] buf;
+    private int n = 0, nRead = 0;
+    private final java.util.ArrayList<String> texts;
+    private int x = 0, y = 0;
+
+    /** Opens a plot file, text or binary
+     * @param f the plot file
+     * @throws java.io.IOException */
+    public Reader(java.io.File f) throws java.io.IOException {
+      binary = isBinary(f);
+      if(!binary) {
+          br = new java.io.BufferedReader(new java.io.InputStreamReader(
+                    new java.io.FileInputStream(f),"UTF8"));
+          is = null; buf = null; texts = null;
+          userSpaceMin = null; userSpaceMax = null;
+          return;
+      }
+      br = null;
+      is = new java.io.FileInputStream(f);
+      buf = new byte[BUF_SIZE];
+      texts = new java.util.ArrayList<String>();
+      for(int i = 0; i < MAGIC.length; i++) {getByte();}
+      int version = getByte();
+      if(version != VERSION) {
+          is.close();
+          throw new java.io.IOException("Binary plot file \""+f.getName()+"\":"+nl+
+                  "format version "+version+" can not be read (only version "+VERSION+").");
+      }
+      int xMin = getInt(), yMin = getInt(), xMax = getInt(), yMax = getInt();
+      userSpaceMin = new java.awt.Point(xMin, yMin);
+      userSpaceMax = new java.awt.Point(xMax, yMax);
+    }
+
+    /** Reads the next record
+     * @return false at the end of the file
+     * @throws java.io.IOException */
+    public boolean next() throws java.io.IOException {
+      if(!binary) {return nextLine();}
+      if(n >= nRead && !fill()) {return false;}
+      int b = getByte();
+      i0 = b & ~COMMENT;
+      i1 = getSigned(); i2 = getSigned();
+      if(i0 == 0 || i0 == 1) {
+          i1 = i1 + x; i2 = i2 + y;
+          x = i1; y = i2;
+      }
+      if((b & COMMENT) == 0) {comment = null; return true;}
+      int k = getUnsigned();
+      if(k > 0) {
+          if(k > texts.size()) {throw new java.io.IOException("Error in binary plot file: text number "+k+" not found.");}
+          comment = texts.get(k-1);
+          return true;
+      }
+      byte[] t = new byte[getUnsigned()];
+      for(int i = 0; i < t.length; i++) {t[i] = (byte)getByte();}
+      comment = new String(t, "UTF8");
+      texts.add(comment);
+      return true;
+    }
+
+    /** Closes the file
+     * @throws java.io.IOException */
+    public void close() throws java.io.IOException {
+      if(br != null) {br.close();}
+      if(is != null) {is.close();}
+    }
+
+    private boolean nextLine() throws java.io.IOException {
+      String line = br.readLine();
+      if(line == null) {return false;}
+      String s0, s1, s2;
+      if(line.length() > 0) {s0= line.substring(0,1).trim();} else {s0 = "";}
+      if(line.length() > 4) {s1= line.substring(1,5).trim();} else {s1 = "";}
+      if(line.length() > 8) {s2= line.substring(5,9).trim();} else {s2 = "";}
+      if(s0.length() > 0) {i0 = readInt(s0);} else {i0 = -1;}
+      if(s1.length() > 0) {i1 = readInt(s1);} else {i1 = 0;}
+      if(s2.length() > 0) {i2 = readInt(s2);} else {i2 = 0;}
+      if(line.length() > 9) {
+          comment = line.substring(9);
+          if(comment.startsWith(" ")) {comment = comment.substring(1);}
+      } else {comment = null;}
+      return true;
+    }
+    private static int readInt(String t) {
+      try {return Integer.parseInt(t);}
+      catch (NumberFormatException ex) {
+          lib.common.MsgExceptn.exception("Error: "+ex.toString()+nl+
+                  "   while reading an integer from String: \""+t+"\"");
+          return 0;
+      }
+    }
+
+    private boolean fill() throws java.io.IOException {
+      nRead = is.read(buf); n = 0;
+      if(nRead <= 0) {nRead = 0; return false;}
+      return true;
+    }
+    private int getByte() throws java.io.IOException {
+      if(n >= nRead && !fill()) {throw new java.io.EOFException("Unexpected end of binary plot file.");}
+      return buf[n++] & 0xFF;
+    }
+    private int getInt() throws java.io.IOException {
+      return (getByte() << 24) | (getByte() << 16) | (getByte() << 8) | getByte();
+    }
+    private int getSigned() throws java.io.IOException {
+      int v = getUnsigned();
+      return (v >>> 1) ^ -(v & 1);
+    }
+    private int getUnsigned() throws java.io.IOException {
+      int v = 0, shift = 0, b;
+      do {
+          b = getByte();
+          v = v | ((b & 0x7F) << shift);
+          shift = shift + 7;
+      } while((b & 0x80) != 0 && shift < 35);
+      return v;
+    }
+  } // class Reader
+  //</editor-fold>
+
+}
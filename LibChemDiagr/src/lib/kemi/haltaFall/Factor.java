@@ -2,7 +2,6 @@ package lib.kemi.haltaFall;
 
 import lib.common.Util;
 import lib.kemi.chem.Chem;
-import lib.kemi.readDataLib.ReadDataLib;
 
 /** A class to calculate single ion activity coefficients in aqueous solutions.
  * The method "factor(double[] C, double[] lnf)" is to be called repeatedly by
@@ -84,6 +83,31 @@ public class Factor {
   /** Object of a class containing the array "z" with electric charges */
   private Chem.ChemSystem.NamesEtc namn;
   private SITeps eps; // class with ion interaction coefficients
+  /** The SIT coefficients at the temperature <code>epsTemperature</code>, as a
+   * square symmetric matrix of size (nIon+2): epsilon(i,j) = <code>epsT[i*(nIon+2)+j]</code>
+   * @see lib.kemi.haltaFall.Factor#sitMatrix(int[]) sitMatrix */
+  private double[] epsT = null;
+  /** the temperature used to calculate <code>epsT</code> */
+  private double epsTemperature = Double.NaN;
+  /** The species j contributing to the activity coefficient of species i
+   * (j != i, opposite charge or neutral, and non-zero SIT coefficient) are
+   * <code>sitCol[k]</code> for k = <code>sitStart[i]</code> to
+   * <code>sitStart[i+1]-1</code>, with SIT coefficients <code>sitVal[k]</code> */
+  private int[] sitStart, sitCol;
+  private double[] sitVal;
+  /** The terms of the osmotic coefficient for the neutral species
+   * <code>sitNeu[n]</code>, stored as <code>sitStart/sitCol/sitVal</code>
+   * (the ion-neutral terms are the same as for the activity coefficients, but
+   * the neutral-neutral terms use epsilon(i,i)). <code>osmHalf[k]</code>
+   * is true for terms between two neutral species */
+  private int[] osmStart, osmCol;
+  private double[] osmVal;
+  private boolean[] osmHalf;
+  /** the species (excluding gases, solids, etc) that are cations, anions
+   * or neutral, and the species whose activity coefficients are not calculated */
+  private int[] sitCat, sitAn, sitNeu, sitGas;
+  /** work array: the concentrations limited to the range 0 to MAX_CONC */
+  private double[] sitC;
   /** directories to search for the SIT-file */
   private String[] pathToSITdataFile = new String[3];
   private final String SIT_FILE = "SIT-coefficients.dta";
@@ -94,6 +118,20 @@ public class Factor {
    * if noll[] = true. Then the activity coefficient does not need to be
    * calculated. False otherwise. */
   private boolean[] gas;
+  /** The different values of z*z among the species that need activity
+   * coefficients: with the Davies and HKF models lnf depends only on z*z. */
+  private int[] zzClass;
+  /** For each species: the index in <code>zzClass</code>, or -1 if the
+   * activity coefficient is one (gas[] = true or an electrically neutral
+   * species) */
+  private int[] ionClass;
+  /** the values of lnf for each value in <code>zzClass</code> */
+  private double[] lnfClass;
+  /** the value of lnf for water (the log of the activity of water) */
+  private double lnfWater = 0;
+  /** true if <code>lnfClass</code> and <code>lnfWater</code> contain the
+   * values last calculated with either the Davies or the HKF model */
+  private boolean lnfClassOK = false;
   /** the temperature given by the user the last time this procedure was executed
    * @see lib.kemi.chem.Chem.Diagr#temperature Chem.Diagr.temperature */
   private double lastTemperature = Float.MAX_VALUE;
@@ -104,6 +142,9 @@ public class Factor {
    * @see lib.kemi.haltaFall.Factor#ionicStr haltaFall.Factor.ionicStr
    * @see lib.kemi.chem.Chem.Diagr#ionicStrength Chem.Diagr.ionicStrength */
   private double lastIonicStr = 0;
+  /** the sum of molalities the last time the activity coefficients were
+   * calculated with a calculated ionic strength */
+  private double lastSumM = 0;
   /** The ionic strength, either provided by the user
    * in <code>diag.ionicStrength</code>, or calculated
    * (if <code>diag.ionicStrength</code> is negative).
@@ -260,23 +301,21 @@ private void checks_and_start() throws IllegalArgumentException, ArithmeticExcep
         if(namn.z[i] != 0) {continue;}
         if(isGasOrLiquid(namn.ident[i])) {gas[i]=true;}
     }
+    chargeClasses();
     lastTemperature = diag.temperature;
     lastPressure = diag.pressure;
-    try{rho = lib.kemi.H2O.IAPWSF95.rho(diag.temperature, diag.pressure);}
+    try{rho = lib.kemi.H2O.H2OCache.rho(diag.temperature, diag.pressure);}
     catch (Exception ex) {
         throw new ArithmeticException("\"haltaFall.Factor\": "+ex.getMessage());
     }
-    try{eps_H2O = lib.kemi.H2O.Dielectric.epsJN(diag.temperature, diag.pressure);}
-    catch (Exception ex) {eps_H2O = Double.NaN;}
-    if(Double.isNaN(eps_H2O)) {
-        try{eps_H2O = lib.kemi.H2O.Dielectric.eps(diag.temperature, diag.pressure);}
-        catch (Exception ex) {
-            throw new IllegalArgumentException("\"haltaFall.Factor\": "+ex.getMessage());
-        }
+    // epsJN, or if it fails, eps
+    try{eps_H2O = lib.kemi.H2O.H2OCache.eps(diag.temperature, diag.pressure);}
+    catch (Exception ex) {
+        throw new IllegalArgumentException("\"haltaFall.Factor\": "+ex.getMessage());
     }
     Agamma = lib.kemi.H2O.Dielectric.A_gamma(diag.temperature, rho, eps_H2O);
     if(diag.activityCoeffsModel == 2) { // HKF model
-        try{g_function = lib.kemi.H2O.Dielectric.gHKF(diag.temperature,diag.pressure)*1.e+10;} // convert to Å
+        try{g_function = lib.kemi.H2O.H2OCache.gHKF(diag.temperature,diag.pressure)*1.e+10;} // convert to Å
         catch (Exception ex) {
             throw new IllegalArgumentException("\"haltaFall.Factor\": "+ex.getMessage());
         }
@@ -303,7 +342,7 @@ private void checks_and_start() throws IllegalArgumentException, ArithmeticExcep
  * @throws lib.kemi.haltaFall.Factor.SITdataException */
 public void factor(double[] C, double[] lnf)
         throws IllegalArgumentException, ArithmeticException, SITdataException {
-  boolean tChanged, iChanged;
+  boolean tChanged, iChanged, useTol = false;
   //-----------------------------------------------------------
   //  Define upper and lower bounds on the concentrations if concentrations far
   //  from the equilibrium values can cause exponents out of the range allowed
@@ -355,7 +394,11 @@ public void factor(double[] C, double[] lnf)
   // (or is this the first time?)
   if(Double.isNaN(diag.ionicStrength)) {iChanged = true; ionicStr = 0; sumM =0; electricBalance =0;}
   else if(diag.ionicStrength ==0) {iChanged = (lastIonicStr ==0); ionicStr = 0;  sumM =0; electricBalance =0;}
-  else if(diag.ionicStrength >0) {iChanged = (Math.abs(1-(lastIonicStr/diag.ionicStrength)) > 1e-3); ionicStr = Math.min(diag.ionicStrength,200);}
+  else if(diag.ionicStrength >0) {
+      double tol = (diag.ionicStrTol > 0) ? diag.ionicStrTol : 1e-3;
+      iChanged = (Math.abs(1-(lastIonicStr/diag.ionicStrength)) > tol); ionicStr = Math.min(diag.ionicStrength,200);
+      diag.ionicStrTolUsed = tol;
+  }
   else {iChanged = true; ionicStr = -1;} // diag.ionicStrength < 0
 
   tChanged = (Math.abs(lastTemperature - diag.temperature) > 0.1 ||
@@ -364,29 +407,37 @@ public void factor(double[] C, double[] lnf)
   if(tChanged) {
     lastTemperature = diag.temperature;
     lastPressure = diag.pressure;
-    try{rho = lib.kemi.H2O.IAPWSF95.rho(diag.temperature, diag.pressure);}
+    try{rho = lib.kemi.H2O.H2OCache.rho(diag.temperature, diag.pressure);}
     catch (Exception ex) {
         diag.activityCoeffsModel = -1;
         diag.ionicStrength = Double.NaN; diag.ionicStrCalc = Double.NaN;
         diag.phi = Double.NaN;           diag.sumM = Double.NaN;
         throw new ArithmeticException("\"haltaFall.Factor\": "+ex.getMessage());
     }
-    try{eps_H2O = lib.kemi.H2O.Dielectric.epsJN(diag.temperature, diag.pressure);}
-    catch (Exception ex) {eps_H2O = Double.NaN;}
-    if(Double.isNaN(eps_H2O)) {
-        try{eps_H2O = lib.kemi.H2O.Dielectric.eps(diag.temperature, diag.pressure);}
-        catch (Exception ex) {
-            diag.activityCoeffsModel = -1;
-            diag.ionicStrength = Double.NaN; diag.ionicStrCalc = Double.NaN;
-            diag.phi = Double.NaN;           diag.sumM = Double.NaN;
-            throw new IllegalArgumentException("\"haltaFall.Factor\": "+ex.getMessage());
-        }
+    // epsJN, or if it fails, eps
+    try{eps_H2O = lib.kemi.H2O.H2OCache.eps(diag.temperature, diag.pressure);}
+    catch (Exception ex) {
+        diag.activityCoeffsModel = -1;
+        diag.ionicStrength = Double.NaN; diag.ionicStrCalc = Double.NaN;
+        diag.phi = Double.NaN;           diag.sumM = Double.NaN;
+        throw new IllegalArgumentException("\"haltaFall.Factor\": "+ex.getMessage());
     }
     Agamma = lib.kemi.H2O.Dielectric.A_gamma(diag.temperature, rho, eps_H2O);
   }
 
   // calculate: ionicStrength, electricBalance and sumM.
-  if(ionicStr < 0) {ionicStr = calcIonicStr(C,namn.z);}
+  if(ionicStr < 0) {
+      ionicStr = calcIonicStr(C,namn.z);
+      // with Davies and HKF the activity coefficients are not recalculated
+      // if neither the ionic strength nor sumM have changed "much"
+      if(diag.ionicStrTol > 0 && ionicStr > 0 && sumM > 0) {
+          iChanged = (Math.abs(1-(lastIonicStr/ionicStr)) > diag.ionicStrTol
+                    || Math.abs(1-(lastSumM/sumM)) > diag.ionicStrTol);
+          useTol = true;
+          diag.ionicStrTolUsed = diag.ionicStrTol;
+      } else {diag.ionicStrTolUsed = 0;}
+  }
+  if(diag.activityCoeffsModel == 1) {diag.ionicStrTolUsed = Double.NaN;}
 
   // ionicStr should now be >=0
   rootI = 0;
@@ -402,7 +453,7 @@ public void factor(double[] C, double[] lnf)
                 diag.phi = Double.NaN;           diag.sumM = Double.NaN;
                 throw new IllegalArgumentException("\"haltaFall.Factor\": "+ex.getMessage());
             }
-      }
+      } else if(useTol) {scatterLnf(lnf);}
   } //Davies
 
   if(diag.activityCoeffsModel == 1) { //SIT
@@ -433,7 +484,7 @@ public void factor(double[] C, double[] lnf)
               // Shock et al., 1992 J. Chem. Soc., Faraday Trans., 88, 803–826. doi: 10.1039/FT9928800803
               // Table 9(b) r_e(Cl-)=1.81, Table 9(a) r_e(Na+)=1.91 (=0.97+0.94)
               // Eqs.(3)-(5) where kz = 0.94 for cations and zero for anions.
-              g_function = lib.kemi.H2O.Dielectric.gHKF(diag.temperature, diag.pressure)*1.e+10; // convert to Å
+              g_function = lib.kemi.H2O.H2OCache.gHKF(diag.temperature, diag.pressure)*1.e+10; // convert to Å
               bgi = b_gamma_NaCl(diag.temperature, diag.pressure, eps_H2O, g_function);
             } catch (Exception ex) {
                 diag.activityCoeffsModel = -1;
@@ -445,10 +496,16 @@ public void factor(double[] C, double[] lnf)
                                                 * ( (1.81+g_function) + (0.97 + (0.94+g_function)) );
           }
           calcHKF(lnf, namn.z);
-      }
+      } else if(useTol) {scatterLnf(lnf);}
   } //HKF
 
-  lastIonicStr = ionicStr;
+  // with a calculated ionic strength keep the value for which lnf[] was
+  // calculated, so that small changes do not accumulate
+  if(diag.ionicStrength >= 0 || Double.isNaN(diag.ionicStrength)
+          || tChanged || iChanged) {
+      lastIonicStr = ionicStr;
+      lastSumM = sumM;
+  }
   diag.ionicStrCalc = ionicStr;
 
   //return;
@@ -456,22 +513,56 @@ public void factor(double[] C, double[] lnf)
 } // factor
 // </editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="chargeClasses">
+/** Finds the different values of z*z among the species that need
+ * activity coefficients (zzClass[]) and the class of each species (ionClass[]) */
+private void chargeClasses() {
+    ionClass = new int[nIon];
+    int[] zz = new int[nIon];
+    int nClass = 0, k;
+    for(int i = 0; i < nIon; i++) {
+        ionClass[i] = -1;
+        if(gas[i] || namn.z[i] == 0) {continue;}
+        for(k = 0; k < nClass; k++) {if(zz[k] == namn.z[i]*namn.z[i]) {break;}}
+        if(k == nClass) {zz[nClass] = namn.z[i]*namn.z[i]; nClass++;}
+        ionClass[i] = k;
+    }
+    zzClass = new int[nClass];
+    System.arraycopy(zz, 0, zzClass, 0, nClass);
+    lnfClass = new double[nClass];
+} //chargeClasses
+// </editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="scatterLnf">
+/** Copies the values of lnf last calculated for each charge class (and for
+ * water) into lnf[], as the calling program may have changed lnf[] since then.
+ * @param lnf the natural logs of the activity coefficients */
+private void scatterLnf(double[] lnf) {
+  if(!lnfClassOK) {return;}
+  for(int i = 0; i < lnf.length; i++) {
+    if(ionClass[i] >= 0) {lnf[i] = lnfClass[ionClass[i]];} else {lnf[i] = 0;}
+  }
+  if(cs.jWater >= 0) {lnf[cs.jWater] = lnfWater;}
+} //scatterLnf
+// </editor-fold>
+
 //<editor-fold defaultstate="collapsed" desc="calcDavies">
 private void calcDavies(double[] lnf, int[] z) {
   if(ionicStr <=0) {return;}
+  if(ionClass == null) {chargeClasses();}
   // the number "1" assumed to be temperature independent
   double w = - Agamma *((rootI/(1. + rootI)) -(DAVIES * ionicStr));
   double logf; int zz;
+  // lnf depends only on z*z: calculate it once for each charge class
+  for(int k = 0; k < zzClass.length; k++) {
+    zz = zzClass[k];
+    logf =  zz * w;
+    logf = Math.max(-MAX_LOG_G*zz,Math.min(logf,MAX_LOG_G*zz));
+    lnfClass[k] = ln10 * logf;
+  }
+  lnfClassOK = true;
   for(int i = 0; i < lnf.length; i++) {
-    if(!gas[i]) {
-        if(z[i] != 0) {
-            zz = z[i]*z[i];
-            logf =  zz * w;
-            logf = Math.max(-MAX_LOG_G*zz,Math.min(logf,MAX_LOG_G*zz));
-            lnf[i] = ln10 * logf;
-        } else {lnf[i] = 0;}
-        //lg_ACF(I)=lg_ACF(I) + LNW
-    } else {lnf[i] = 0;}
+    if(ionClass[i] >= 0) {lnf[i] = lnfClass[ionClass[i]];} else {lnf[i] = 0;}
   }
 
   if(cs.jWater < 0) {return;}
@@ -490,6 +581,7 @@ private void calcDavies(double[] lnf, int[] z) {
                     (-osmoticCoeff * sumM / (ln10* molH2Oin1kg)) ) );
 
   lnf[cs.jWater] = ln10 * log10aH2O;
+  lnfWater = lnf[cs.jWater];
   diag.phi = osmoticCoeff;
   diag.sumM = sumM;
 } //calcDavies
@@ -509,20 +601,21 @@ private void calcDavies(double[] lnf, int[] z) {
  */
 private void calcHKF(double[] lnf, int[] z) {
   if(ionicStr <= 0) {return;}
+  if(ionClass == null) {chargeClasses();}
   // note that "sumM" is not used in this verions of HKF
   double w = -Agamma * (rootI/(1+(rB*rootI)));
   double gamma = Math.log10(1+(0.0180153*ionicStr)); // sumM));
   double logf; int zz;
+  // lnf depends only on z*z: calculate it once for each charge class
+  for(int k = 0; k < zzClass.length; k++) {
+    zz = zzClass[k];
+    logf = zz * w - gamma + bgi*ionicStr;
+    logf = Math.max(-MAX_LOG_G*zz,Math.min(logf,MAX_LOG_G*zz));
+    lnfClass[k] = ln10 * logf;
+  }
+  lnfClassOK = true;
   for(int i = 0; i < lnf.length; i++) {
-    if(!gas[i]) {
-      logf = 0;
-      if(z[i] != 0) {
-        zz = z[i]*z[i];
-        logf = zz * w - gamma + bgi*ionicStr;
-        logf = Math.max(-MAX_LOG_G*zz,Math.min(logf,MAX_LOG_G*zz));
-      } //if z != 0
-      lnf[i] = ln10 * logf;
-    } else { lnf[i] = 0; }
+    if(ionClass[i] >= 0) {lnf[i] = lnfClass[ionClass[i]];} else {lnf[i] = 0;}
   }
 
   if(cs.jWater < 0) {return;}
@@ -542,6 +635,7 @@ private void calcHKF(double[] lnf, int[] z) {
                     / (ln10* molH2Oin1kg)) ) );
 
   lnf[cs.jWater] = ln10 * log10aH2O;
+  lnfWater = lnf[cs.jWater];
   diag.phi = osmoticCoeff;
   diag.sumM = sumM;
 } //calcHKF
@@ -565,103 +659,105 @@ private void calcSIT(double[] C, double[] lnf, int[] z) throws SITdataException
   }
 
   if(ionicStr <= 0) {return;}
+  // --- the SIT coefficients at this temperature
+  if(epsT == null || diag.temperature != epsTemperature) {sitMatrix(z);}
+  final int n2 = nIon+2;
+  final boolean water = (cs.jWater >= 0);
   double elBal = Math.abs(electricBalance);
-  float ε; //epsilon
   double DH = -Agamma * rootI/(1. + (rB * rootI));
-  double sumEpsM, Ci, logf;
-  int zz;
-  // --- Calculate the individual ionic activity coefficients
+  double sumEpsM, Ci, Cj, logf, t;
+  int i, j, zz;
+  // --- the concentrations, limited to 0 - MAX_CONC, are needed
+  //     many times below: calculate them only once
+  final double[] cLim = sitC;
+  for(j = 0; j < nIon; j++) {cLim[j] = Math.max(0, Math.min(MAX_CONC, C[j]));}
+  final double elBalLim = Math.max(0, Math.min(MAX_CONC, elBal));
+  // --- Calculate the individual ionic activity coefficients and, for
+  //     the osmotic coefficient, the sum of products of conc. times epsilon.
   // For neutral species this program uses ε(i,MX)*[M] + ε(i,MX)*[X]
   // As a consequence:
   //   for a MX electrolyte: ε(i,M)*[MX] + ε(i,X)*[MX]
   //   for a M2X (or MX2) electrolyte: ε(i,M)*2*[M2X] + ε(i,X)*[M2X]
   //   (or ε(i,M)*[MX2] + ε(i,X)*2*[MX2])
   // In the SIT-file you must enter ε = ε(i,MX)/2 (or ε = ε(i,M2X)/3)
-  for(int i = 0; i < nIon; i++) {
-    if(gas[i]) {lnf[i] = 0; continue;}
+  for(j = 0; j < sitGas.length; j++) {lnf[sitGas[j]] = 0;}
+  // Na+ or Cl- added for electric balance
+  final int nEl = (electricBalance < -1e-10) ? nIon : nIon+1;
+  sumPrd = 0;
+  // --- cations: the sum over the anions is used both for lnf
+  //     and for the osmotic coefficient
+  for(int ic = 0; ic < sitCat.length; ic++) {
+    i = sitCat[ic];
+    Ci = cLim[i];
     sumEpsM = 0;
-    if(z[i] ==0) {
-        ε = getEpsilon(i,i);
-        Ci = Math.max(0, Math.min(MAX_CONC, C[i]));
-        sumEpsM = ε * Ci;
-    } else if(elBal > 1e-10) {
-        ε = 0;
-        if(electricBalance < -1e-10) {ε = getEpsilon(nIon,i);}
-        else if(electricBalance > -1e-10) {ε = getEpsilon(nIon+1,i);}
-        sumEpsM = sumEpsM + ε * Math.max(0, Math.min(MAX_CONC, elBal));
+    if(elBal > 1e-10) {sumEpsM = epsT[nEl*n2+i] * elBalLim;}
+    double sumPrd_i = 0;
+    for(int k = sitStart[i]; k < sitStart[i+1]; k++) {
+        j = sitCol[k];
+        t = sitVal[k] * cLim[j];
+        sumEpsM = sumEpsM + t;
+        if(z[j] < 0) {sumPrd_i = sumPrd_i + t;}
+    } //for k
+    if(water) {
+        if(electricBalance > 1e-10) { //interaction with Cl- (elec.balance)
+            sumPrd_i = sumPrd_i + epsT[i*n2+nIon+1] * electricBalance;
+        }
+        sumPrd = sumPrd + Ci * sumPrd_i;
     }
-    for(int j=0; j<nIon; j++) {
-        if(j==i || z[i]*z[j] >0) {continue;}
-        ε = getEpsilon(i,j);
-        Ci = Math.max(0, Math.min(MAX_CONC, C[j]));
-        sumEpsM = sumEpsM + ε * Ci;
-    } //for j
     zz = z[i]*z[i];
     logf = zz*DH + sumEpsM;
-    // lg_ACF(I) = lg_ACF(I) + LNW
     logf = Math.max(-MAX_LOG_G*zz, Math.min(logf,MAX_LOG_G*zz));
     lnf[i] = ln10 * logf;
-  } //for i =0 to (nIon-1)
+  } //for ic
+  // --- anions
+  for(int ia = 0; ia < sitAn.length; ia++) {
+    i = sitAn[ia];
+    sumEpsM = 0;
+    if(elBal > 1e-10) {sumEpsM = epsT[nEl*n2+i] * elBalLim;}
+    for(int k = sitStart[i]; k < sitStart[i+1]; k++) {
+        sumEpsM = sumEpsM + sitVal[k] * cLim[sitCol[k]];
+    } //for k
+    zz = z[i]*z[i];
+    logf = zz*DH + sumEpsM;
+    logf = Math.max(-MAX_LOG_G*zz, Math.min(logf,MAX_LOG_G*zz));
+    lnf[i] = ln10 * logf;
+    // the remaining cation is Na+ "added" for electic balance
+    if(water && electricBalance < -1e-10) {
+        sumPrd = sumPrd - epsT[i*n2+nIon] * electricBalance * cLim[i];
+    }
+  } //for ia
+  // --- neutral species
+  for(int in = 0; in < sitNeu.length; in++) {
+    i = sitNeu[in];
+    Ci = cLim[i];
+    sumEpsM = epsT[i*n2+i] * Ci;
+    for(int k = sitStart[i]; k < sitStart[i+1]; k++) {
+        sumEpsM = sumEpsM + sitVal[k] * cLim[sitCol[k]];
+    } //for k
+    zz = z[i]*z[i];
+    logf = zz*DH + sumEpsM;
+    logf = Math.max(-MAX_LOG_G*zz, Math.min(logf,MAX_LOG_G*zz));
+    lnf[i] = ln10 * logf;
+    if(water) {
+        double sumPrd_i = 0;
+        for(int k = osmStart[in]; k < osmStart[in+1]; k++) {
+            Cj = cLim[osmCol[k]];
+            if(osmHalf[k]) {sumPrd_i = sumPrd_i + (osmVal[k] * Cj)/2;}
+            else {sumPrd_i = sumPrd_i + osmVal[k] * Cj;}
+        } //for k
+        if(elBal > 1e-10) { //interaction with Na+ (elec.balance)
+            sumPrd_i = sumPrd_i + epsT[i*n2+nIon] * elBal;
+        }
+        sumPrd = sumPrd + Ci * sumPrd_i;
+    }
+  } //for in
 
   // --- Calculate Osmotic Coeff.
-  if(cs.jWater < 0) {return;}
+  if(!water) {return;}
 
   osmoticCoeff = 1;
   // Debye-Huckel term for phi
   phiDH = ((2d*ln10)/3d) * Agamma * ionicStr*rootI * sigma(rB*rootI);
-  //Calculte the sum of ions and the sum of products of conc. times epsilon
-  double Cj;
-  sumPrd = 0;
-  double sumPrd_i;
-  // loop through cations and neutral species
-  for(int i = 0; i < nIon; i++) {
-    if(gas[i]) {continue;}
-    Ci = Math.max(0, Math.min(MAX_CONC, C[i]));
-    sumPrd_i = 0;
-    if(z[i] < 0) {continue;} // skip anions
-    // --- neutral species ---
-    if(z[i] == 0) {
-        for(int j = 0; j < nIon; j++) {
-          Cj = Math.max(0, Math.min(MAX_CONC, C[j]));
-          if(z[j]==0) {
-            ε = getEpsilon(i,i);
-            sumPrd_i = sumPrd_i + (ε * Ci * Cj)/2;
-            continue;
-          }
-          ε = getEpsilon(i,j);
-          sumPrd_i = sumPrd_i + ε * Ci * Cj;
-        } //for j=0 to (nIon-1)
-        if(elBal > 1e-10) {
-          ε = getEpsilon(i,nIon); //interaction with Na+ (elec.balance)
-          sumPrd_i = sumPrd_i + ε * Ci * elBal;
-        }
-    } else {
-    // --- cations ---
-        for(int j = 0; j < nIon; j++) {
-          if(i==j) {continue;}
-          if(z[j] < 0) {
-            Cj = Math.max(0, Math.min(MAX_CONC, C[j]));
-            ε = getEpsilon(i,j);
-            sumPrd_i = sumPrd_i + ε * Ci * Cj;
-          }
-        } //for j=0 to (nIon-1)
-        if(electricBalance > 1e-10) {
-          ε = getEpsilon(i,nIon+1); //interaction with Cl- (elec.balance)
-          sumPrd_i = sumPrd_i + ε * Ci * electricBalance;
-        }
-      } // --- cations
-    sumPrd = sumPrd + sumPrd_i;
-  } //for i=0 to (nIon-1)
-
-  // the remaining cation is Na+ "added" for electic balance
-  if(electricBalance < -1e-10) {
-    for(int i = 0; i < nIon; i++) {
-      if(z[i] >= 0 || gas[i]) {continue;}
-      ε = getEpsilon(i,nIon);
-      Ci = Math.max(0, Math.min(MAX_CONC, C[i]));
-      sumPrd = sumPrd - ε * electricBalance * Ci;
-    } //for i=0 to (nIon-1)
-  }
 
   if(sumM > 1e-15) {
       osmoticCoeff = 1 - (phiDH/sumM) + (ln10 * sumPrd)/sumM;
@@ -683,6 +779,89 @@ private double sigma(double x) {
 } //sigma
 // </editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="sitMatrix">
+/** Calculates the SIT coefficients at the present temperature for all pairs
+ * of species (in <code>epsT</code>), and makes the lists of the non-zero
+ * interactions used in <code>calcSIT</code>. Called when the
+ * temperature changes, instead of evaluating the triangular arrays of
+ * <code>SITeps</code> for each pair of species in each calculation.
+ * The first time, the species are also grouped into cations, anions and
+ * neutral species.
+ * @param z the charge of each aqueous species */
+private void sitMatrix(int[] z) {
+  final int n2 = nIon+2;
+  int i, j, n;
+  if(epsT == null) {
+      epsT = new double[n2*n2];
+      sitStart = new int[nIon+1];
+      sitC = new double[nIon];
+      // --- the species grouped by electric charge
+      int nCat = 0, nAn = 0, nNeu = 0, nGas = 0;
+      for(i = 0; i < nIon; i++) {
+          if(gas[i]) {nGas++;} else if(z[i] > 0) {nCat++;} else if(z[i] < 0) {nAn++;} else {nNeu++;}
+      }
+      sitCat = new int[nCat]; sitAn = new int[nAn]; sitNeu = new int[nNeu]; sitGas = new int[nGas];
+      nCat = 0; nAn = 0; nNeu = 0; nGas = 0;
+      for(i = 0; i < nIon; i++) {
+          if(gas[i]) {sitGas[nGas++] = i;}
+          else if(z[i] > 0) {sitCat[nCat++] = i;}
+          else if(z[i] < 0) {sitAn[nAn++] = i;}
+          else {sitNeu[nNeu++] = i;}
+      }
+      osmStart = new int[nNeu+1];
+  }
+  for(i = 0; i < n2; i++) {
+      for(j = 0; j <= i; j++) {
+          epsT[i*n2+j] = getEpsilon(i,j);
+          epsT[j*n2+i] = epsT[i*n2+j];
+      }
+  }
+  epsTemperature = diag.temperature;
+  // --- the interactions for the activity coefficients
+  n = 0;
+  for(i = 0; i < nIon; i++) {
+      for(j = 0; j < nIon; j++) {
+          if(j==i || z[i]*z[j] >0) {continue;}
+          if(epsT[i*n2+j] != 0) {n++;}
+      }
+  }
+  if(sitCol == null || sitCol.length != n) {sitCol = new int[n]; sitVal = new double[n];}
+  n = 0;
+  for(i = 0; i < nIon; i++) {
+      sitStart[i] = n;
+      for(j = 0; j < nIon; j++) {
+          if(j==i || z[i]*z[j] >0) {continue;}
+          if(epsT[i*n2+j] != 0) {sitCol[n] = j; sitVal[n] = epsT[i*n2+j]; n++;}
+      }
+  }
+  sitStart[nIon] = n;
+  // --- the interactions of the neutral species for the osmotic coefficient:
+  //     epsilon(i,i) with the other neutral species and epsilon(i,j) with the ions
+  n = 0;
+  for(int in = 0; in < sitNeu.length; in++) {
+      i = sitNeu[in];
+      for(j = 0; j < nIon; j++) {
+          if(((z[j] == 0) ? epsT[i*n2+i] : epsT[i*n2+j]) != 0) {n++;}
+      }
+  }
+  if(osmCol == null || osmCol.length != n) {
+      osmCol = new int[n]; osmVal = new double[n]; osmHalf = new boolean[n];
+  }
+  n = 0;
+  for(int in = 0; in < sitNeu.length; in++) {
+      i = sitNeu[in];
+      osmStart[in] = n;
+      for(j = 0; j < nIon; j++) {
+          double e = (z[j] == 0) ? epsT[i*n2+i] : epsT[i*n2+j];
+          if(e == 0) {continue;}
+          osmCol[n] = j; osmVal[n] = e; osmHalf[n] = (z[j] == 0);
+          n++;
+      }
+  }
+  osmStart[sitNeu.length] = n;
+} //sitMatrix
+// </editor-fold>
+
 //<editor-fold defaultstate="collapsed" desc="readSITdata">
 
 //<editor-fold defaultstate="collapsed" desc="readSITdataFiles">
@@ -709,52 +888,34 @@ private void readSITdataFiles() throws SITdataException {
       for(int j=0; j<(i+1); j++) {setEpsilon(i,j, Float.NaN, 0f, 0f);}
   }
   boolean someFile = false;
-  for(String pathToSITdataFile1 : pathToSITdataFile) {
-      if (pathToSITdataFile1 == null) {continue;}
+  // the files are parsed only if they are not found in the cache
+  java.io.File[] sitFiles = new java.io.File[pathToSITdataFile.length];
+  for(int i = 0; i < pathToSITdataFile.length; i++) {
+      if (pathToSITdataFile[i] == null) {continue;}
       // --- prepare the file for reading:
-      java.io.File pathToSITfile = new java.io.File(pathToSITdataFile1);
+      java.io.File pathToSITfile = new java.io.File(pathToSITdataFile[i]);
       if(!pathToSITfile.exists() || !pathToSITfile.isDirectory()) {
           out.println(nl+line+nl+"Error in \"haltaFall.Factor.readSITdataFile\":"+nl+
                       "   path = \""+pathToSITfile.getPath()+"\""+nl+
                       "   either does not exist or it is not a directory."+nl+line);
           continue; // try to read next path
       }
-      java.io.File SITdata = new java.io.File(pathToSITdataFile1
+      sitFiles[i] = new java.io.File(pathToSITdataFile[i]
                                         + java.io.File.separator + SIT_FILE);
-      // create a ReadDataLib instance
-      ReadDataLib rd;
-      try {rd = new ReadDataLib(SITdata);}
-      catch (ReadDataLib.DataFileException ex) {
-          out.println("Note - SIT file NOT found: \""+SITdata+"\"");
-          continue; // try to read next path: read next SIT-file if any
+  }
+  SITfile[] sit = SITfile.load(sitFiles, SIT_FILE);
+  for(int i = 0; i < sitFiles.length; i++) {
+      if(sitFiles[i] == null) {continue;}
+      if(sit[i] == null) {
+          out.println("Note - SIT file NOT found: \""+sitFiles[i]+"\"");
+          continue; // read next SIT-file if any
       }
       someFile = true;
-      out.println("Reading SIT data from \""+SITdata+"\"");
+      out.println("Reading SIT data from \""+sitFiles[i]+"\"");
+      if(sit[i].error != null) {throw sit[i].error;}
       // --- Search the SIT-file
       //    (compare names such as "Fe+2" and "Fe 2+")
-      try {readSITfileSection(1,rd);}
-      catch (ReadDataLib.DataEofException | ReadDataLib.DataReadException ex) {throw new SITdataException(ex.getMessage());}
-      catch (SITdataException ex) {
-          throw new SITdataException(ex.getMessage()+nl+"reading file \""+SITdata+"\".");
-      }
-      // --- Search the SIT-file for epsilon-values for neutral species with MX
-      //    (compare names with and without "(aq)", etc)
-      try {readSITfileSection(2,rd);}
-      catch (ReadDataLib.DataEofException | ReadDataLib.DataReadException ex) {throw new SITdataException(ex.getMessage());}
-      catch (SITdataException ex) {
-          throw new SITdataException(ex.getMessage()+nl+"reading file \""+SITdata+"\".");
-      }
-      // --- Search the SIT-file for epsilon-values for neutral species with
-      //     themselves or other neutral species
-      //    (compare names with and without "(aq)", etc)
-      try {readSITfileSection(3,rd);}
-      catch (ReadDataLib.DataEofException | ReadDataLib.DataReadException ex) {throw new SITdataException(ex.getMessage());}
-      catch (SITdataException ex) {
-          throw new SITdataException(ex.getMessage()+nl+"reading file \""+SITdata+"\".");
-      }
-      // --- The End
-      try{rd.close();}
-      catch (Exception ex) {}
+      applySITfile(sit[i]);
   } //for i=0 to <pathToSITdataFile.length
   if(!someFile) {
       throw new SITdataException("SIT model for activity coefficients requested,"+nl+
@@ -906,91 +1067,27 @@ private void readSITdataFiles() throws SITdataException {
 } //readSITdataFiles
 // </editor-fold>
 
-//<editor-fold defaultstate="collapsed" desc="readSITfileSection">
-/** Read a section of the SIT file. The SIT file has three sections:
+//<editor-fold defaultstate="collapsed" desc="applySITfile">
+/** Finds the epsilon values for the species in the chemical system
+ * in the contents of a SIT file. The SIT file has three sections:
  * 1) "normal" epsilon values; 2) epsilon values for neutral species with
  * electrolytes; and 3) epsilon values for neutral species with neutral species
  *
- * @param section the section to read, 1, 2 or 3
- * @param rd a reference to the class used for reading the SIT-file
- * @throws lib.kemi.haltaFall.Factor.SITdataException
- * @throws lib.kemi.readDataLib.ReadDataLib.ReadDataLib.DataReadException
- * @throws lib.kemi.readDataLib.ReadDataLib.ReadDataLib.ReadDataLib.DataEofException  */
-private void readSITfileSection(int section, ReadDataLib rd)
-        throws SITdataException, ReadDataLib.DataReadException, ReadDataLib.DataEofException {
-  if(section < 1 || section > 3) {
-      throw new SITdataException("Error in \"haltaFall.Factor.readSITfileSection\": section = "
-                    +section+" (must be 1,2 or 3).");
-  }
-  if(rd == null) {
-      throw new SITdataException(
-            "Error in \"haltaFall.Factor.readSITfileSection\":"
-                    +" instance of ReadDataLib is \"null\"");
-  }
-  // --- Search the SIT-file
-  //    (compare names such as "Fe+2" and "Fe 2+")
-  int zCat;
-  int zAn = 0;
-  float w0, w1, w2;
+ * @param sit the contents of a SIT file */
+private void applySITfile(SITfile sit) {
+  if(sit.noDefaults) {setDefaultValues = false;}
   String identNa = "Na"; String identCl = "Cl";
-  String cation, identCation;
-  String anion ="", identAnion ="";
-  String identI;
-  boolean firstLine = true;
-  loopWhile:
-  while (true) {
-    //-- get the cation (or neutral species)
-    rd.nowReading = "Cation name";
-    if(section > 1) {rd.nowReading = "Neutral species name";}
-    cation = rd.readA();
-    if(cation.equalsIgnoreCase("NoDefaults") && firstLine) {
-        setDefaultValues = false;
-        continue;  // loopWhile
-    }
-    firstLine = false;
-    if(cation.equalsIgnoreCase("END")) {break;} // loopWhile
-    zCat = Util.chargeOf(cation);
-    if(section < 2 && zCat<=0) {
-        throw new SITdataException(
-            "Error reading file \""+SIT_FILE+"\":"+nl+
-            "   Trying to read a cation name, found: \""+cation+"\""+nl+
-            "   but the charge is: "+zCat+" (must be >0)");
-    } else if(section >= 2 && zCat!=0) {
-        throw new SITdataException(
-            "Error reading file \""+SIT_FILE+"\":"+nl+
-            "   Trying to read a neutral species name, found: \""+cation+"\""+nl+
-            "   but the charge is: "+zCat+" (must be zero)");
-    }
-    //get name without charge, and without "(aq)", etc
-    identCation = Util.nameOf(cation);
-    if(section == 1) {
-        //-- get the anion
-        rd.nowReading = "Anion name";
-        anion = rd.readA();
-        zAn = Util.chargeOf(anion);
-        if(zAn>=0) {
-            throw new SITdataException(
-                "Error reading file \""+SIT_FILE+"\":"+nl+
-                "   Trying to read an anion name, found: \""+anion+"\""+nl+
-                "   but the charge is: "+zAn+" (must be <0)");
-        }
-        identAnion = Util.nameOf(anion);
-    }
-    //-- get three parameters for the interaction coefficient
-    //   epsilon = eps0 + eps1 * T + eps2 * T*T  (T = temperature in Kelvins)
-    if(section == 1) {
-        rd.nowReading = "SIT interaction coefficient eps0["+cation+","+anion+"]";
-        w0 = (float)rd.readR();
-        if(Math.abs(w0)>=10f) {
-            throw new SITdataException(
-                "Error reading file \""+SIT_FILE+"\":"+nl+
-                "   Trying to read the SIT coefficient eps0["+cation+","+anion+"]"+nl+
-                "   but the value is: "+w0+" (must be between <10 and >-10)");
-        }
-        rd.nowReading = "SIT interaction coefficient eps1["+cation+","+anion+"]";
-        w1 = (float)rd.readR();
-        rd.nowReading = "SIT interaction coefficient eps2["+cation+","+anion+"]";
-        w2 = (float)rd.readR();
+  String identCation, identAnion, identI;
+  int zCat, zAn;
+  float w0, w1, w2;
+  // names without charge, and without "(aq)", etc
+  String[] nameOf = new String[nIon];
+  for(int i=0; i<nIon; i++) {nameOf[i] = Util.nameOf(namn.ident[i]);}
+  for(int line = 0; line < sit.n; line++) {
+    identCation = sit.identCation[line]; identAnion = sit.identAnion[line];
+    zCat = sit.zCat[line]; zAn = sit.zAn[line];
+    w0 = sit.eps0[line]; w1 = sit.eps1[line]; w2 = sit.eps2[line];
+    if(sit.section[line] == 1) {
         //-- search the chemical system for this cation-anion couple
         loopForI:
         for(int i=0; i<nIon; i++) {
@@ -1001,7 +1098,7 @@ private void readSITfileSection(int section, ReadDataLib rd)
             //    if Z<0 and the cation is the same as that in the SIT-file
             //           find only:  epsilon(Na+,anion)
             if(gas[i]) {continue;}
-            identI = Util.nameOf(namn.ident[i]);
+            identI = nameOf[i];
             if(namn.z[i]<0) { // is this the anion in the SIT-file?
               if(!identI.equalsIgnoreCase(identAnion)
                       || namn.z[i] != zAn) {continue;}
@@ -1022,7 +1119,7 @@ private void readSITfileSection(int section, ReadDataLib rd)
               String identI2;
               for(int i2=0; i2<nIon; i2++) {
                 if(gas[i]) {continue;}
-                identI2 = Util.nameOf(namn.ident[i2]);
+                identI2 = nameOf[i2];
                 if(!identI2.equalsIgnoreCase(identAnion)
                         || namn.z[i2] != zAn) {continue;}
                 // found both cation and anion, get value and quit search
@@ -1038,22 +1135,10 @@ private void readSITfileSection(int section, ReadDataLib rd)
         }
     } //if(section == 1)
     else
-    if(section == 2) {
-        rd.nowReading = "SIT interaction coefficient eps0["+cation+",MX]";
-        w0 = (float)rd.readR();
-        if(Math.abs(w0)>=10f) {
-            throw new SITdataException(
-                    "Error reading file \""+SIT_FILE+"\":"+nl+
-                    "   When trying to read the SIT coefficient eps["+cation+",MX]"+nl+
-                    "   but the value is: "+w0+" (must be <10 and >-10)");
-        }
-        rd.nowReading = "SIT interaction coefficient eps1["+cation+",MX]";
-        w1 = (float)rd.readR();
-        rd.nowReading = "SIT interaction coefficient eps2["+cation+",MX]";
-        w2 = (float)rd.readR();
+    if(sit.section[line] == 2) {
         for(int i=0; i<nIon; i++) {
             if(cs.noll[i] || namn.z[i] != 0) {continue;}
-            identI = Util.nameOf(namn.ident[i]);
+            identI = nameOf[i];
             if(!identI.equalsIgnoreCase(identCation)) {continue;}
             // found the neutral species
             for(int i2=0; i2<nIon; i2++) {
@@ -1063,30 +1148,18 @@ private void readSITfileSection(int section, ReadDataLib rd)
             setEpsilon(i, nIon, w0, w1, w2);
             setEpsilon(i, nIon+1, w0, w1, w2);
         } //for i
-    } //if(section == 3)
+    } //if(section == 2)
     else
-    if(section == 3) {
-        rd.nowReading = "SIT interaction coefficient eps["+cation+",neutral]";
-        w0 = (float)rd.readR();
-        if(Math.abs(w0)>=10f) {
-            throw new SITdataException(
-                    "Error reading file \""+SIT_FILE+"\":"+nl+
-                    "   When trying to read the SIT coefficient eps["+cation+",neutral]"+nl+
-                    "   but the value is: "+w0+" (must be <10 and >-10)");
-        }
-        rd.nowReading = "SIT interaction coefficient eps1["+cation+",MX]";
-        w1 = (float)rd.readR();
-        rd.nowReading = "SIT interaction coefficient eps2["+cation+",MX]";
-        w2 = (float)rd.readR();
+    if(sit.section[line] == 3) {
         for(int i=0; i<nIon; i++) {
             if(cs.noll[i] || namn.z[i] != 0) {continue;}
-            identI = Util.nameOf(namn.ident[i]);
+            identI = nameOf[i];
             if(!identI.equalsIgnoreCase(identCation)) {continue;}
             setEpsilon(i, i, w0, w1, w2);
         } //for i
-    } //if(section == 4)
-  } //while
-} //readSITfileSection
+    } //if(section == 3)
+  } //for line
+} //applySITfile
 // </editor-fold>
 // </editor-fold>
 
@@ -126,6 +126,13 @@ public class HaltaFall {
   * @see lib.kemi.chem.Chem.ChemSystem.ChemConcs#tolLogF tolLogF
   * @see #actCoeffs() actCoeffs() */
   private final double TOL_LNG =  0.0023026; // =0.001 in log10 scale
+ /** number of previous iterations kept by the accelerated activity
+  * coefficient iterations
+  * @see #mixLnG(double) mixLnG */
+  private static final int MIX_DEPTH = 4;
+ /** largest change in lnG[] accepted from an accelerated (mixed) step
+  * @see #mixLnG(double) mixLnG */
+  private static final double MIX_MAX_STEP = 2.;
 
   private final int MXA;  // nax nbr components
   private final int MXX;  // max nbr species
@@ -331,6 +338,18 @@ public class HaltaFall {
  /** the ln(activity coeff.) from the previous iteration of activity coefficient
   * calculations using procedure <code>factor</code> */
   private double[] oldLnG;
+ /** work arrays for the accelerated activity coefficient iterations,
+  * allocated on first use
+  * @see #mixLnG(double) mixLnG */
+  private double[] mixR, mixB, mixXprev, mixRprev, mixA, mixG;
+ /** differences in lnG[] and in the residuals for the last MIX_DEPTH
+  * accelerated activity coefficient iterations
+  * @see #mixLnG(double) mixLnG */
+  private double[][] mixDX, mixDR;
+ /** number of accelerated iterations stored in mixDX and mixDR
+  * (-1 if there is no previous iteration)
+  * @see #mixLnG(double) mixLnG */
+  private int mixN = -1;
  /** matrix combining stoichiometric coefficients and "rut1" (eqn.16b)
   * at ANFALL in procedure fasta()
   * @see lib.kemi.haltaFall.HaltaFall#rut1 rut1 */
@@ -345,6 +364,43 @@ public class HaltaFall {
   * Note that ruta must be inverted.
   * @see lib.kemi.haltaFall.HaltaFall#singFall singFall */
   private double[][] ruta;
+  /** work array for procedure <code>invert</code>: the LU decomposition of
+   * "ruta" stored row by row, size MXS*MXS
+   * @see lib.kemi.haltaFall.HaltaFall#ruta ruta */
+  private double[] luA;
+  /** work array for procedure <code>invert</code>: the row interchanges, size MXS */
+  private int[] luPerm;
+  /** work array for procedure <code>invert</code>: the column interchanges, size MXS */
+  private int[] luCol;
+  /** work array for procedure <code>invert</code>: a column of the inverse, size MXS */
+  private double[] luX;
+ /** the stoichiometric coefficients of all complexes and solids, copied
+  * row by row from <code>cs.a</code>: aF[lix*Na + ia] = cs.a[lix][ia]
+  * @see lib.kemi.chem.Chem.ChemSystem#a cs.a */
+  private double[] aF;
+ /** the stoichiometric coefficients of all complexes and solids, transposed
+  * (component by component): aT[ia*(Ms-Na) + lix] = cs.a[lix][ia].
+  * Used in the loops over all complexes for a given component.
+  * @see lib.kemi.chem.Chem.ChemSystem#a cs.a */
+  private double[] aT;
+ /** sparse view of the non-zero stoichiometric coefficients of the soluble
+  * complexes: for complex "lix" the values are
+  * <code>aCsrVal[k]</code> for component <code>aCsrCol[k]</code>, with
+  * <code>k</code> from <code>aCsrStart[lix]</code> to <code>aCsrStart[lix+1]-1</code>
+  * @see lib.kemi.chem.Chem.ChemSystem#a cs.a */
+  private int[] aCsrStart;
+ /** @see lib.kemi.haltaFall.HaltaFall#aCsrStart aCsrStart */
+  private int[] aCsrCol;
+ /** @see lib.kemi.haltaFall.HaltaFall#aCsrStart aCsrStart */
+  private double[] aCsrVal;
+ /** the aqueous species (components and soluble complexes) whose concentrations
+  * are calculated in <code>cBer</code>, that is, those that are not "noll"
+  * @see lib.kemi.chem.Chem.ChemSystem#noll cs.noll */
+  private int[] aqCalc;
+ /** the aqueous species (components and soluble complexes) that are "noll":
+  * their concentrations are always zero
+  * @see lib.kemi.chem.Chem.ChemSystem#noll cs.noll */
+  private int[] aqNoll;
  /** step for adjusting lnA in procedure kille
   * @see lib.kemi.haltaFall.HaltaFall#kille() kille()
   * @see lib.kemi.haltaFall.HaltaFall#STEG0 STEG0
@@ -448,23 +504,7 @@ public HaltaFall (Chem.ChemSystem cs, Factor factor,
                     "Error in \"HaltaFall\": noll.length ="+cs.noll.length+
                     "   must be >= "+cs.Ms+" (= Ms)");
     }
-    if(c.kh.length != cs.Na) {
-        throw new Chem.ChemicalParameterException(
-                    "Error in \"HaltaFall\": kh.length ="+c.kh.length+
-                    "   must be = "+cs.Na+" (= Na)");
-    }
-    if(c.logA.length < cs.Ms) {
-        throw new Chem.ChemicalParameterException(
-                    "Error in \"HaltaFall\": logA.length ="+c.logA.length+
-                    "   must be >= "+cs.Ms+" (= Ms)");
-    }
-    //check values of kh[]
-    for(int i =0; i < cs.Na; i++) {
-        if(c.kh[i] <1 || c.kh[i] >2) {
-            throw new Chem.ChemicalParameterException(
-                    "Error in \"HaltaFall\": kh["+i+"]="+c.kh[i]+
-                    " (must be = 1 or 2). Note: component numbers start at zero.");
-        } } //for i
+    checkConcs(c);
     if(c.dbg >= ERR_RESL_INPUT_3) {
         out.println("Debug output requested from HaltaFall at level "+c.dbg+nl+
                     "   Note that arrays start at \"zero\":  numbers for"+nl+
@@ -502,6 +542,10 @@ public HaltaFall (Chem.ChemSystem cs, Factor factor,
         lnKmi = new double[MXS];
         fall = new boolean[MXS];
         ruta = new double[MXS][MXS];
+        luA = new double[MXS*MXS];
+        luPerm = new int[MXS];
+        luCol = new int[MXS];
+        luX = new double[MXS];
         rut1 = new double[MXA][MXA];
         fscal = new double[MXS];
     }
@@ -524,6 +568,7 @@ public HaltaFall (Chem.ChemSystem cs, Factor factor,
  // balance equations, some variables are initialized, etc.
 
     nIon = cs.Na + cs.nx;
+    stoichiometryArrays();
     int liax, liaf;
     for(int lix =0; lix <cs.nx; lix++) {lnBeta[lix] = ln10*cs.lBeta[lix];}
     if(cs.mSol != 0) {
@@ -577,9 +622,47 @@ public HaltaFall (Chem.ChemSystem cs, Factor factor,
             if(ober[li][lj]) nober[li] = nober[li] +1;
             } // for lj
         } // for li
+    planConcs();
+
+    if(c.dbg >=ERR_RESL_INPUT_3){
+        printInput();
+        out.println("HaltaFall object constructor ends");
+    }
+
+} // HaltaFall - constructor
+
+/** Checks the arrays in an instance of <code>ChemConcs</code>
+ * @param cc the concentrations to check
+ * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+private void checkConcs(Chem.ChemSystem.ChemConcs cc)
+        throws Chem.ChemicalParameterException {
+    if(cc.kh.length != cs.Na) {
+        throw new Chem.ChemicalParameterException(
+                    "Error in \"HaltaFall\": kh.length ="+cc.kh.length+
+                    "   must be = "+cs.Na+" (= Na)");
+    }
+    if(cc.logA.length < cs.Ms) {
+        throw new Chem.ChemicalParameterException(
+                    "Error in \"HaltaFall\": logA.length ="+cc.logA.length+
+                    "   must be >= "+cs.Ms+" (= Ms)");
+    }
+    //check values of kh[]
+    for(int i =0; i < cs.Na; i++) {
+        if(cc.kh[i] <1 || cc.kh[i] >2) {
+            throw new Chem.ChemicalParameterException(
+                    "Error in \"HaltaFall\": kh["+i+"]="+cc.kh[i]+
+                    " (must be = 1 or 2). Note: component numbers start at zero.");
+        } } //for i
+} // checkConcs
+
+/** The part of the planning that depends on the concentrations:
+ * for which components the calculation is possible (noCalc[]) and
+ * the order in which the mass balance equations are solved (haltaGetIva) */
+private void planConcs() {
     for(int ia=0; ia <cs.Na; ia++) {
+        noCalc[ia] = false;
         if(c.kh[ia] == 2) {continue;} //calculation not requested
-        noCalc[ia] = false; // that is, calc = true, calculation is possible
+        // that is, calc = true, calculation is possible
         if(!(pos[ia] && neg[ia]) &&
            !(pos[ia] && c.tot[ia] > 0) &&
            !(neg[ia] && c.tot[ia] < 0)) {
@@ -589,13 +672,47 @@ public HaltaFall (Chem.ChemSystem cs, Factor factor,
     } // for ia
 
     haltaGetIva();
-
-    if(c.dbg >=ERR_RESL_INPUT_3){
-        printInput();
-        out.println("HaltaFall object constructor ends");
+} // planConcs()
+
+/** Makes the copies of the stoichiometric coefficients (<code>cs.a</code>)
+ * used in the inner loops: row by row (aF), transposed (aT)
+ * and a sparse view of the soluble complexes (aCsrStart, aCsrCol and aCsrVal).
+ * Also the lists of aqueous species that are "noll" (aqNoll) and not (aqCalc).
+ * Note that the stoichiometric coefficients may not be changed
+ * after this HaltaFall object has been created. */
+private void stoichiometryArrays() {
+    int nRows = cs.Ms - cs.Na;
+    aF = new double[nRows*cs.Na];
+    aT = new double[nRows*cs.Na];
+    int nz = 0;
+    for(int lix =0; lix < nRows; lix++) {
+        for(int lia =0; lia < cs.Na; lia++) {
+            aF[lix*cs.Na +lia] = cs.a[lix][lia];
+            aT[lia*nRows +lix] = cs.a[lix][lia];
+            if(lix < cs.nx && cs.a[lix][lia] != 0) {nz++;}
+        }
     }
-
-} // HaltaFall - constructor
+    aCsrStart = new int[cs.nx+1];
+    aCsrCol = new int[nz];
+    aCsrVal = new double[nz];
+    int k = 0;
+    for(int lix =0; lix < cs.nx; lix++) {
+        aCsrStart[lix] = k;
+        for(int lia =0; lia < cs.Na; lia++) {
+            if(cs.a[lix][lia] != 0) {aCsrCol[k] = lia; aCsrVal[k] = cs.a[lix][lia]; k++;}
+        }
+    }
+    aCsrStart[cs.nx] = k;
+    // the aqueous species, split into those that are "noll" and those that are not
+    int nNoll = 0;
+    for(int li =0; li < nIon; li++) {if(cs.noll[li]) {nNoll++;}}
+    aqCalc = new int[nIon - nNoll];
+    aqNoll = new int[nNoll];
+    int iCalc = 0; nNoll = 0;
+    for(int li =0; li < nIon; li++) {
+        if(cs.noll[li]) {aqNoll[nNoll] = li; nNoll++;} else {aqCalc[iCalc] = li; iCalc++;}
+    }
+} // stoichiometryArrays()
 // </editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="haltaCalc">
@@ -994,6 +1111,118 @@ public void haltaCalc()
 public void haltaCancel() {panic = true;}
 // </editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="reset">
+/** Prepares this instance of <code>HaltaFall</code> to be used with another
+ * instance of <code>ChemConcs</code>, for example for a copy of the same
+ * chemical system used in another thread, or for new values of
+ * <code>kh[]</code>. The planning that depends only on the chemical system
+ * (the stoichiometric coefficients) is kept, while everything that depends
+ * on the concentrations, and the solid phases found in the last calculation,
+ * are reset. The next calculation starts with <code>cont = false</code>.
+ * <b>Note</b> that the <code>ChemConcs</code> must belong to a chemical system
+ * identical to the one given to the constructor.
+ * @param concs the concentrations to be used in the next calls to <code>haltaCalc</code>
+ * @throws lib.kemi.chem.Chem.ChemicalParameterException if the arrays
+ * in <code>concs</code> do not fit the chemical system
+ * @see lib.kemi.haltaFall.HaltaFallPool HaltaFallPool
+ */
+public void reset(Chem.ChemSystem.ChemConcs concs)
+        throws Chem.ChemicalParameterException {
+    if(concs == null) {throw new Chem.ChemicalParameterException("Error in \"HaltaFall.reset\": concs = null");}
+    checkConcs(concs);
+    c = concs;
+    panic = false;
+    c.errFlags = 0;
+    c.cont = false;
+    planConcs();
+} // reset
+
+/** Used by <code>HaltaFallPool</code> to give a recycled instance
+ * a chemical system (identical to the one used in the constructor),
+ * a <code>Factor</code> and a PrintStream.
+ * @param cs0 the chemical system
+ * @param factor0 used to calculate activity coefficients
+ * @param ut where messages will be printed, or null
+ * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+void reset(Chem.ChemSystem cs0, Factor factor0, java.io.PrintStream ut)
+        throws Chem.ChemicalParameterException {
+    if(ut != null) {this.out = ut;} else {this.out = System.out;}
+    this.cs = cs0;
+    this.factor = factor0;
+    reset(cs0.chemConcs);
+} // reset(cs, factor, ut)
+
+/** @return the chemical system given to the constructor
+ * (or to <code>HaltaFallPool.get</code>) */
+Chem.ChemSystem getChemSystem() {return cs;}
+/** the fingerprint of the chemical system, set by <code>HaltaFallPool.get</code>
+ * @see lib.kemi.haltaFall.HaltaFallPool#fingerprint(lib.kemi.chem.Chem.ChemSystem) HaltaFallPool.fingerprint */
+Long poolKey = null;
+// </editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="warmStartSave / warmStartRestore">
+/** Saves the results of the last call to <code>haltaCalc</code>: the
+ * activities of the components, the activity coefficients and the
+ * solid phases present at equilibrium. Nothing is saved (and <code>ws</code>
+ * is cleared) if the calculation was not successful, that is, if
+ * <code>Chem.ChemSystem.ChemConcs.cont</code> is false.
+ * @param ws where the state is saved
+ * @see lib.kemi.haltaFall.HaltaFall#warmStartRestore(lib.kemi.haltaFall.WarmStart) warmStartRestore
+ */
+public void warmStartSave(WarmStart ws) {
+    if(ws == null) {return;}
+    if(!c.cont) {ws.ok = false; return;}
+    if(ws.logA == null) {
+        ws.logA = new double[cs.Na];
+        ws.logf = new double[c.logf.length];
+        ws.noCalc = new boolean[cs.Na];
+        ws.ifall = new int[Math.max(1,cs.mSol)];
+        ws.fall = new boolean[Math.max(1,cs.mSol)];
+        ws.iber = new int[cs.Na+1];
+    }
+    System.arraycopy(c.logA, 0, ws.logA, 0, cs.Na);
+    System.arraycopy(c.logf, 0, ws.logf, 0, ws.logf.length);
+    System.arraycopy(noCalc, 0, ws.noCalc, 0, cs.Na);
+    ws.nfall = nfall;
+    for(int li =0; li < nfall; li++) {ws.ifall[li] = ifall[li]; ws.iber[li] = iber[li];}
+    for(int lif =0; lif < cs.mSol; lif++) {ws.fall[lif] = fall[lif];}
+    ws.ok = true;
+} // warmStartSave
+
+/** Sets the starting point for the next call to <code>haltaCalc</code>
+ * from a state saved with <code>warmStartSave</code>, usually at a
+ * neighbouring point in a diagram. The activities are only changed for the
+ * components with a given total concentration (kh=1).
+ * <code>Chem.ChemSystem.ChemConcs.cont</code> is set to true.
+ * @param ws a saved state
+ * @return false if <code>ws</code> contains no saved state, and nothing is changed
+ * @see lib.kemi.haltaFall.HaltaFall#warmStartSave(lib.kemi.haltaFall.WarmStart) warmStartSave
+ */
+public boolean warmStartRestore(WarmStart ws) {
+    if(ws == null || !ws.ok) {return false;}
+    for(int ia =0; ia < cs.Na; ia++) {
+        if(c.kh[ia] == 1) {c.logA[ia] = ws.logA[ia];}
+        noCalc[ia] = ws.noCalc[ia];
+    }
+    System.arraycopy(ws.logf, 0, c.logf, 0, ws.logf.length);
+    haltaGetIva(); // the plan: nva, iva[], etc; sets nfall = 0
+    if(ws.nfall > 0) {
+        nfall = ws.nfall;
+        for(int lif =0; lif < cs.mSol; lif++) {fall[lif] = ws.fall[lif];}
+        for(int li =0; li < nfall; li++) {ifall[li] = ws.ifall[li]; iber[li] = ws.iber[li];}
+        iber[nfall] = -1;
+        utFall(); // calculates and inverts ruta[][]
+        if(indik == 1) { // singular: start without solids
+            haltaGetIva();
+        } else {
+            anFall(); // ibe[], ivaf[], rut1[][] and pva[][]
+        }
+    }
+    c.cont = true;
+    return true;
+} // warmStartRestore
+// </editor-fold>
+
 //<editor-fold defaultstate="collapsed" desc="printConcs">
 /** Prints the data stored the instance of <code>Chem.ChemSystem.ChemConcs</code>
  * that is associated with this instance of <code>HaltaFall</code>. If called
@@ -1096,15 +1325,17 @@ public void printConcs() {
  */
 private void nog() {
     if(c.dbg >=ERR_XTRA_DEBUG_6) {out.println("nog() in;");}
-    int lia, lix, liax, liaf;
+    int lia, lix, liax, liaf, off;
+    int nRows = cs.Ms - cs.Na;
     for(lia =0; lia < cs.Na; lia++) {
         c.logf[lia] = lnG[lia]/ln10; //activity coeff.
         c.solub[lia] = 0.;
         if(!cs.noll[lia]) {c.solub[lia] = c.C[lia];}
+        off = lia*nRows;
         for(lix =0; lix <cs.nx; lix++) {
             liax = cs.Na +lix;
             if(!cs.noll[liax]) {
-                c.solub[lia] = c.solub[lia] +cs.a[lix][lia]*c.C[liax];
+                c.solub[lia] = c.solub[lia] +aT[off +lix]*c.C[liax];
             }
         } //for lix
         if(c.kh[lia] ==2) { //logA given as input
@@ -1117,7 +1348,7 @@ private void nog() {
                 liax = nIon +lix;
                 liaf = cs.nx +lix;
                 if(!cs.noll[liax]) {
-                        c.tot[lia] = c.tot[lia] +cs.a[liaf][lia]*c.C[liax];
+                        c.tot[lia] = c.tot[lia] +aT[off +liaf]*c.C[liax];
                 }
             } //for lix
             } //if mSol >0
@@ -1487,7 +1718,7 @@ private void fasta() {
  */
 private void fallProv_InFall() {
   boolean bra, foundOne;
-  int nyfall, lj, lq, lf, lqa, ia, li, lia, lix, lif, liax, liaf;
+  int nyfall, lj, lq, lf, lqa, ia, li, lia, lix, lif, liax, liaf, off;
   double w;
   double zMax; int kMax;
 // ---------------------------------------------------------
@@ -1514,7 +1745,8 @@ private void fallProv_InFall() {
           liaf = cs.nx + lif;
           c.C[liax] =0.;
           w =0.;
-          for(lia =0; lia < cs.Na; lia++) {w = w + cs.a[liaf][lia]*lnA[lia];}
+          off = liaf*cs.Na;
+          for(lia =0; lia < cs.Na; lia++) {w = w + aF[off +lia]*lnA[lia];}
           lnA[liax] = w -lnKf[lif]; // lnA is now the (over)saturation index
           if(w <= lnKf[lif] || cs.noll[liax] || nva == 0) {continue;}
           // ---- Block added 2013-Jan.
@@ -1529,7 +1761,7 @@ private void fallProv_InFall() {
           // loop through components for which the total conc. is given
           for(lia =0; lia < nva; lia++) {
               // is the stoichiometric coefficient non-zero?
-              if(Math.abs(cs.a[liaf][iva[lia]]) >0.00001) {foundOne = true; break;}
+              if(Math.abs(aF[off +iva[lia]]) >0.00001) {foundOne = true; break;}
           }
           if(!foundOne) {continue;} // all coefficients zero?
           // calculate the scaled oversaturation
@@ -1599,9 +1831,10 @@ private void fallProv_InFall() {
     for(li =0; li < nfall; li++) {
         ia = ibe[li];
         w = c.tot[ia] - c.C[ia];
+        off = ia*(cs.Ms - cs.Na);
         for(lix =0; lix < cs.nx; lix++) {
             liax = cs.Na + lix;
-            w = w - cs.a[lix][ia]*c.C[liax];
+            w = w - aT[off +lix]*c.C[liax];
         }
         totBe[li] = w;
     }
@@ -2100,32 +2333,48 @@ private boolean hopp(int lista[], int max) {
 // </editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="invert">
-/** Invert: Matrix inversion.<br>
- * Adapted from "www.csee.umbc.edu/~squire/".<br>
- * Sets variable indik = 1 (matrix is singular)
- * otherwise indik = 0 (ok).  */
+/** Invert: Matrix inversion by LU decomposition with complete pivoting.<br>
+ * The decomposition is made in place in the work array <code>luA</code>
+ * (a flat, row-major copy of the matrix) and the inverse is then obtained
+ * column by column by forward and back substitution. No arrays are created:
+ * the work arrays are allocated with size MXS in the constructor.<br>
+ * The pivot is the largest element of the remaining submatrix, and the pivot
+ * row is scaled with the reciprocal of the pivot before the reduction, as in
+ * the Gauss-Jordan procedure used earlier (adapted from
+ * "www.csee.umbc.edu/~squire/"): the same pivots are found, and the matrix
+ * is found to be singular in the same cases.<br>
+ * Sets variable indik = 1 (matrix is singular: the largest element of the
+ * remaining submatrix is smaller than 1E-10) otherwise indik = 0 (ok).
+ * @param a the matrix to invert, it is replaced by its inverse. It is
+ * not changed if the matrix is singular
+ * @param n the size of the matrix (n &lt;= MXS) */
 private void invert(double a[][], int n) {
-    int row[] = new int[n];
-    int col[] = new int[n];
-    double temp[] = new double[n];
-    int hold , iPivot , jPivot;
-    double pivot;
+    int i, j, k, iPivot, jPivot, hold, ik, kk;
+    double pivot, w;
     if(c.dbg >= ERR_DEBUG_FASTA_4) {out.println("invert(ruta[][],"+n+") in");}
 
-    // set up row and column interchange vectors
-    for(int k=0; k<n; k++) {row[k] = k ; col[k] = k ;}
-    // begin main reduction loop
-    for(int k=0; k<n; k++) {
-      // find largest element for pivot
-      pivot = a[row[k]][col[k]] ;
+    // copy the matrix into the flat work array
+    for(i=0; i<n; i++) {
+      System.arraycopy(a[i], 0, luA, i*n, n);
+      luPerm[i] = i;
+      luCol[i] = i;
+    }
+    // LU decomposition: L has the pivots in its diagonal and U has ones.
+    // Row "k" of L·U corresponds to row luPerm[k] of "a", and
+    // column "k" corresponds to column luCol[k] of "a"
+    for(k=0; k<n; k++) {
+      kk = k*n;
+      // find largest element in the remaining submatrix for pivot
+      pivot = luA[kk+k];
       iPivot = k;
       jPivot = k;
-      for(int i=k; i<n; i++) {
-        for(int j=k; j<n; j++) {
-          if(Math.abs(a[row[i]][col[j]]) > Math.abs(pivot)) {
+      for(i=k; i<n; i++) {
+        ik = i*n;
+        for(j=k; j<n; j++) {
+          if(Math.abs(luA[ik+j]) > Math.abs(pivot)) {
             iPivot = i;
             jPivot = j;
-            pivot = a[row[i]][col[j]];
+            pivot = luA[ik+j];
           }
         }
       }
@@ -2136,41 +2385,52 @@ private void invert(double a[][], int n) {
         }
         return;
       }
-      hold = row[k];
-      row[k]= row[iPivot];
-      row[iPivot] = hold ;
-      hold = col[k];
-      col[k]= col[jPivot];
-      col[jPivot] = hold ;
-      // reduce about pivot
-      a[row[k]][col[k]] = 1.0 / pivot ;
-      for(int j=0; j<n; j++) {
-        if(j != k) {a[row[k]][col[j]] = a[row[k]][col[j]] * a[row[k]][col[k]];}
+      if(iPivot != k) { // interchange rows
+        ik = iPivot*n;
+        for(j=0; j<n; j++) {w = luA[kk+j]; luA[kk+j] = luA[ik+j]; luA[ik+j] = w;}
+        hold = luPerm[k];
+        luPerm[k] = luPerm[iPivot];
+        luPerm[iPivot] = hold;
       }
-      // inner reduction loop
-      for(int i=0; i<n; i++) {
-        if(k != i) {
-          for(int j=0; j<n; j++) {
-            if(k != j) {
-                a[row[i]][col[j]] = a[row[i]][col[j]]
-                                    - a[row[i]][col[k]] * a[row[k]][col[j]];
-            }
-          }
-          a[row[i]][col [k]] = - a[row[i]][col[k]] * a[row[k]][col[k]];
+      if(jPivot != k) { // interchange columns
+        for(i=0; i<n; i++) {
+          ik = i*n;
+          w = luA[ik+k]; luA[ik+k] = luA[ik+jPivot]; luA[ik+jPivot] = w;
         }
+        hold = luCol[k];
+        luCol[k] = luCol[jPivot];
+        luCol[jPivot] = hold;
+      }
+      // scale the pivot row (this gives the row of U)
+      w = 1.0 / pivot;
+      for(j=k+1; j<n; j++) {luA[kk+j] = luA[kk+j] * w;}
+      // reduce the rows below the pivot (column "k" is kept: it is the column of L)
+      for(i=k+1; i<n; i++) {
+        ik = i*n;
+        w = luA[ik+k];
+        if(w == 0) {continue;}
+        for(j=k+1; j<n; j++) {luA[ik+j] = luA[ik+j] - w * luA[kk+j];}
       }
     }
-    // end main reduction loop
-
-    // unscramble rows
-    for(int j=0; j<n; j++) {
-      for(int i=0; i<n; i++) {temp[col[i]] = a[row[i]][j];}
-      for(int i=0; i<n; i++) {a[i][j] = temp[i];}
-    }
-    // unscramble columns
-    for(int i=0; i<n; i++) {
-      for(int j=0; j<n; j++) {temp[row[j]] = a[i][col[j]];}
-      System.arraycopy(temp, 0, a[i], 0, n);
+    // end of LU decomposition
+
+    // the inverse, one column at a time
+    for(j=0; j<n; j++) {
+      // forward substitution
+      for(i=0; i<n; i++) {
+        if(luPerm[i] == j) {w = 1;} else {w = 0;}
+        ik = i*n;
+        for(k=0; k<i; k++) {w = w - luA[ik+k] * luX[k];}
+        luX[i] = w / luA[ik+i];
+      }
+      // back substitution (the diagonal of U is 1)
+      for(i=n-1; i>=0; i--) {
+        ik = i*n;
+        w = luX[i];
+        for(k=i+1; k<n; k++) {w = w - luA[ik+k] * luX[k];}
+        luX[i] = w;
+      }
+      for(i=0; i<n; i++) {a[luCol[i]][j] = luX[i];}
     }
     indik = 0;
     if(c.dbg >= ERR_DEBUG_FASTA_4) {
@@ -2269,30 +2529,31 @@ private void invert0(double a[][], int n) {
 private void cBer(int ivar) {
     if(c.dbg >=ERR_XTRA_DEBUG_6) {out.println("cBer("+ivar+") in");}
     // Calculate activities of soluble complexes
-    int lix, liax, lia;
-    double q;
-    for(lix =0; lix <cs.nx; lix++) {
-        liax = cs.Na +lix;
-        if(noCalc[ivar]) {
-            q = Math.abs(cs.a[lix][ivar]);
-        } else {
-            q = cs.a[lix][ivar];
-        }
-        lnA[liax] = lnBA[lix] + q * lnA[ivar];
-    } //for lix
+    int lix, lia;
+    int off = ivar*(cs.Ms - cs.Na);
+    double w = lnA[ivar];
+    if(noCalc[ivar]) {
+        for(lix =0; lix <cs.nx; lix++) {
+            lnA[cs.Na +lix] = lnBA[lix] + Math.abs(aT[off +lix]) * w;
+        } //for lix
+    } else {
+        for(lix =0; lix <cs.nx; lix++) {
+            lnA[cs.Na +lix] = lnBA[lix] + aT[off +lix] * w;
+        } //for lix
+    }
     // Calculate Concentrations:
-    //   components and soluble complexes
+    //   components and soluble complexes.
+    //   A single loop over the species that are not "noll", without
+    //   tests except for the limits: max concentration 1.5E+35 (lnC = 81)
+    //   and min concentration 1.8E-45 (lnC = -103)
+    final double[] cC = c.C;
     double lnC;
-    for(lia =0; lia <nIon; lia++) {
-        c.C[lia] = 0.;
-        if(!cs.noll[lia]) {
-            lnC = lnA[lia] - lnG[lia];
-            if(lnC >  81.) {lnC = 81.;} //max concentration 1.5E+35
-            if(lnC > -103.) { // min concentration 1.8E-45
-                c.C[lia] = Math.exp(lnC);
-            }
-        } //if !noll
-    } //for i
+    for(int k =0; k < aqCalc.length; k++) {
+        lia = aqCalc[k];
+        lnC = Math.min(lnA[lia] - lnG[lia], 81.);
+        cC[lia] = (lnC > -103.) ? Math.exp(lnC) : 0.;
+    } //for k
+    for(int k =0; k < aqNoll.length; k++) {cC[aqNoll[k]] = 0.;}
     if(c.dbg >=ERR_XTRA_DEBUG_6) {out.println("cBer() returns");}
 } // cBer()
 // </editor-fold>
@@ -2312,7 +2573,7 @@ private void lnaBer1() {
         liaf = cs.nx + iF;
         w = lnKf[iF];
         for (lia = 0; lia <cs.Na; lia++) {
-            if(!ber[lia]) {w = w - cs.a[liaf][lia]*lnA[lia];}
+            if(!ber[lia]) {w = w - aF[liaf*cs.Na +lia]*lnA[lia];}
         } //for i
         lnKmi[li] = w;
     } //for li
@@ -2338,18 +2599,21 @@ private void lnaBer1() {
  * @return x
  */
 private double lnaBas(int ivar) {
-    int lix; int li;
+    int lix; int li, k;
     if(c.dbg >=ERR_XTRA_DEBUG_6) {out.println("lnaBas("+ivar+") in, lnA["+ivar+"] = "+lnA[ivar]);}
     double w = lnA[ivar];
-    double q;
+    double q, sum;
+    // only the non-zero stoichiometric coefficients are used
     for(lix = 0; lix < cs.nx; lix++) {
-        lnBA[lix] = lnBeta[lix];
-        for(li = 0; li < cs.Na; li++) {
+        sum = lnBeta[lix];
+        for(k = aCsrStart[lix]; k < aCsrStart[lix+1]; k++) {
+            li = aCsrCol[k];
             if(li != ivar) {
-                if(noCalc[li]) {q = Math.abs(cs.a[lix][li]);} else {q = cs.a[lix][li];}
-                lnBA[lix] = lnBA[lix] + q*lnA[li];
+                if(noCalc[li]) {q = Math.abs(aCsrVal[k]);} else {q = aCsrVal[k];}
+                sum = sum + q*lnA[li];
             }
-        } //for li
+        } //for k
+        lnBA[lix] = sum;
     } //for lix
     if(c.dbg >=ERR_XTRA_DEBUG_6) {out.println("lnaBas() returns,  x = "+w);}
     return w;
@@ -2371,88 +2635,87 @@ private void totBer() {
     int lix, liax;
     double w = 0.;
     if(c.dbg >=ERR_XTRA_DEBUG_6) {out.println("totBer() in, ivar="+ivar+", indik="+indik);}
-    try { //catch too many iterations
-        y = c.C[ivar];
-        if(nfall > 0) { // Some solid is assumed to be present
-            for (lix =0; lix < cs.nx; lix++) {
-                liax = cs.Na + lix;
-                y = y + pva[ivar][lix] * c.C[liax];
-            } //for lix
-            y = y - totVA[ivar];
-            y0 = 0.;
-            w = Math.abs(y-y0);
-            if(tolY[ivar] >0 &&
-                    Math.abs(totVA[ivar]) > 1. &&
-                    w < Math.abs(tolY[ivar]*totVA[ivar])) {w = 0.;}
-        } //if nfall !=0
-        else { // No solid phase assumed to be present
-            for (lix =0; lix < cs.nx; lix++) {
-                liax = cs.Na + lix;
-                y = y + cs.a[lix][ivar] * c.C[liax];
-            } //for lix
-            y0 = c.tot[ivar];
-            w = Math.abs(y-y0);
-        } //if nfall >0
-
-        // Compare Y with Y0
-        if(tolY[ivar] < w) { // It was not OK
-            if(catchRoundingErrors[ivar] == 3) { //the solution can not be made better: it is uncertain
-                indik = 2; // ok
-                karl[ivar] = 1;
-                steg[ivar] = STEG0_CONT;
-                //iter[ivar] = 0;
-                if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik = 2 (ok), but \"rounding errors\"; iter["+ivar+"]="+iter[ivar]);}
-                return;
-            }
-            if(mono[ivar] && nfall == 0) { // mononuclear component
-                if(y0 <= 0. || y <= 0.) {
-                    indik = 3;
-                    iter[ivar]++;
-                    if(iter[ivar] >= ITER_MAX) {throw new TooManyIterationsException();}
-                    if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik =3 (not ok & not mono or solids); iter["+ivar+"]="+iter[ivar]);}
-                    return;
-                }
-                lnA[ivar] = lnA[ivar] + Math.log(y0) - Math.log(y);
-                x = lnA[ivar];
-                indik = 1; // goto TJAT
-                iter[ivar]++;
-                if(iter[ivar] >= ITER_MAX) {throw new TooManyIterationsException();}
-                if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik =1 (not ok & mono & no solids), mono["+ivar+"]=true, iter["+ivar+"]="+iter[ivar]);}
-                //return;
-            } else { // !mono or nfall !=0
-                indik = 3;
-                iter[ivar]++;
-                if(iter[ivar] >= ITER_MAX) {throw new TooManyIterationsException();}
-                if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik =3  (not ok & not mono or solids); iter["+ivar+"]="+iter[ivar]);}
-                //return;
-            } //if !mono | nfall !=0
-        } else { // OK
-            indik = 2; // goto PROV
+    y = c.C[ivar];
+    if(nfall > 0) { // Some solid is assumed to be present
+        for (lix =0; lix < cs.nx; lix++) {
+            liax = cs.Na + lix;
+            y = y + pva[ivar][lix] * c.C[liax];
+        } //for lix
+        y = y - totVA[ivar];
+        y0 = 0.;
+        w = Math.abs(y-y0);
+        if(tolY[ivar] >0 &&
+                Math.abs(totVA[ivar]) > 1. &&
+                w < Math.abs(tolY[ivar]*totVA[ivar])) {w = 0.;}
+    } //if nfall !=0
+    else { // No solid phase assumed to be present
+        int off = ivar*(cs.Ms - cs.Na);
+        for (lix =0; lix < cs.nx; lix++) {
+            liax = cs.Na + lix;
+            y = y + aT[off +lix] * c.C[liax];
+        } //for lix
+        y0 = c.tot[ivar];
+        w = Math.abs(y-y0);
+    } //if nfall >0
+
+    // Compare Y with Y0
+    if(tolY[ivar] < w) { // It was not OK
+        if(catchRoundingErrors[ivar] == 3) { //the solution can not be made better: it is uncertain
+            indik = 2; // ok
             karl[ivar] = 1;
             steg[ivar] = STEG0_CONT;
+            //iter[ivar] = 0;
+            if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik = 2 (ok), but \"rounding errors\"; iter["+ivar+"]="+iter[ivar]);}
+            return;
+        }
+        if(mono[ivar] && nfall == 0) { // mononuclear component
+            if(y0 <= 0. || y <= 0.) {
+                indik = 3;
+                iter[ivar]++;
+                if(iter[ivar] >= ITER_MAX) {tooManyIterations(w); return;}
+                if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik =3 (not ok & not mono or solids); iter["+ivar+"]="+iter[ivar]);}
+                return;
+            }
+            lnA[ivar] = lnA[ivar] + Math.log(y0) - Math.log(y);
+            x = lnA[ivar];
+            indik = 1; // goto TJAT
             iter[ivar]++;
-            if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik =2 (ok); iter["+ivar+"]="+iter[ivar]);}
+            if(iter[ivar] >= ITER_MAX) {tooManyIterations(w); return;}
+            if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik =1 (not ok & mono & no solids), mono["+ivar+"]=true, iter["+ivar+"]="+iter[ivar]);}
             //return;
-        } //if OK
-    }
-    catch (TooManyIterationsException ex) {
-        if(c.dbg >=ERR_XTRA_DEBUG_6) {out.println("--- Too many iterations for ivar="+ivar);}
-        if(ivaBra[ivar] == -1) { // only print error message for the "outer" loop component
-            if(c.dbg >= ERR_DEBUG_FASTA_4) {printTooManyIterations(w);} //debug print-out
-        }
-        if(iter[ivar] > (ITER_MAX+1)) {
-            indik = 4; // break the iterations
-            karl[ivar] = 1;
-            if(!c.cont) {steg[ivar] = STEG0;} else {steg[ivar] = STEG0_CONT;}
-        }
-        if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik ="+indik+"; iter["+ivar+"]="+iter[ivar]+", too many iterations.");}
-    } //catch //catch
+        } else { // !mono or nfall !=0
+            indik = 3;
+            iter[ivar]++;
+            if(iter[ivar] >= ITER_MAX) {tooManyIterations(w); return;}
+            if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik =3  (not ok & not mono or solids); iter["+ivar+"]="+iter[ivar]);}
+            //return;
+        } //if !mono | nfall !=0
+    } else { // OK
+        indik = 2; // goto PROV
+        karl[ivar] = 1;
+        steg[ivar] = STEG0_CONT;
+        iter[ivar]++;
+        if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik =2 (ok); iter["+ivar+"]="+iter[ivar]);}
+        //return;
+    } //if OK
 
 } // totBer()
-private class TooManyIterationsException extends Exception {
-    public TooManyIterationsException() {}
-    public TooManyIterationsException(String txt) {super(txt);}
-} //TooManyIterationsException
+/** Called from totBer() when the iteration counter for "ivar" reaches ITER_MAX.
+ * Sets <code>indik=4</code> (break the iterations) if iter[ivar] is larger
+ * than ITER_MAX+1, otherwise "indik" is left as set by totBer().
+ * @param w the absolute value of the difference between Y and Y0 */
+private void tooManyIterations(double w) {
+    if(c.dbg >=ERR_XTRA_DEBUG_6) {out.println("--- Too many iterations for ivar="+ivar);}
+    if(ivaBra[ivar] == -1) { // only print error message for the "outer" loop component
+        if(c.dbg >= ERR_DEBUG_FASTA_4) {printTooManyIterations(w);} //debug print-out
+    }
+    if(iter[ivar] > (ITER_MAX+1)) {
+        indik = 4; // break the iterations
+        karl[ivar] = 1;
+        if(!c.cont) {steg[ivar] = STEG0;} else {steg[ivar] = STEG0_CONT;}
+    }
+    if(c.dbg >=ERR_XTRA_DEBUG_6) {prnt(); out.println("totBer() returns; indik ="+indik+"; iter["+ivar+"]="+iter[ivar]+", too many iterations.");}
+} // tooManyIterations(w)
 // </editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="lnaBer2">
@@ -2533,44 +2796,48 @@ private boolean actCoeffs() {
 
     //print C[], lnG and diff =lnG-oldLnG
     if(c.dbg >= ERR_DEBUG_ACT_COEF_5) {printLnG(0);}
-    ok = true;
-    iMaxDiff = -1;
-    maxAbsDiff = -1;
-    for(i =0; i <nIon; i++) {
-        if(c.C[i] < tolFasta) {oldLnG[i] = lnG[i]; continue;}
-        diff = lnG[i] - oldLnG[i];
-        absDiff = Math.abs(diff);
-        if(absDiff > tolLnG) {
-            ok = false;
-            if(maxAbsDiff < absDiff) {iMaxDiff = i; maxAbsDiff = absDiff;}
-            // ---- instead of going ahead and use the new activity coefficients in
-            //      a new iteration step, for species with "large" contribution to
-            //      the ionic strength we do not apply the full change:
-            //      it is scaled down to avoid oscillations
-            final double cLim=0.25, fL=0.50;
-            // f = fraction giving how much change in lnG should be applied
-            w = cs.chemConcs.C[i]*cs.namn.z[i]*cs.namn.z[i]; 
-            if(w > cLim) {
-                f = fL/(Math.sqrt(w));
-                // --- f is less than one
-                newDiff = diff * f;
-                if(c.dbg >= ERR_DEBUG_ACT_COEF_5) {
-                    out.println("note, for \""+cs.namn.ident[i]+"\" C["+i+"] = "
-                        +(float)cs.chemConcs.C[i]+" diff="+(float)diff
-                        +" f="+(float)f+" applying lnG-change = "+(float)newDiff);
+    if(c.actCoefAccel) {
+        ok = mixLnG(tolLnG);
+    } else {
+        ok = true;
+        iMaxDiff = -1;
+        maxAbsDiff = -1;
+        for(i =0; i <nIon; i++) {
+            if(c.C[i] < tolFasta) {oldLnG[i] = lnG[i]; continue;}
+            diff = lnG[i] - oldLnG[i];
+            absDiff = Math.abs(diff);
+            if(absDiff > tolLnG) {
+                ok = false;
+                if(maxAbsDiff < absDiff) {iMaxDiff = i; maxAbsDiff = absDiff;}
+                // ---- instead of going ahead and use the new activity coefficients in
+                //      a new iteration step, for species with "large" contribution to
+                //      the ionic strength we do not apply the full change:
+                //      it is scaled down to avoid oscillations
+                final double cLim=0.25, fL=0.50;
+                // f = fraction giving how much change in lnG should be applied
+                w = cs.chemConcs.C[i]*cs.namn.z[i]*cs.namn.z[i]; 
+                if(w > cLim) {
+                    f = fL/(Math.sqrt(w));
+                    // --- f is less than one
+                    newDiff = diff * f;
+                    if(c.dbg >= ERR_DEBUG_ACT_COEF_5) {
+                        out.println("note, for \""+cs.namn.ident[i]+"\" C["+i+"] = "
+                            +(float)cs.chemConcs.C[i]+" diff="+(float)diff
+                            +" f="+(float)f+" applying lnG-change = "+(float)newDiff);
+                    }
+                    lnG[i] = oldLnG[i] + newDiff;
                 }
-                lnG[i] = oldLnG[i] + newDiff;
+            }
+            oldLnG[i] = lnG[i];
+        } //for i
+        if(c.dbg >= ERR_DEBUG_ACT_COEF_5) {
+            if(iterAc >0 && !ok) {out.println("New values:"); printLnG(1);}
+            if(maxAbsDiff > 0) {
+                out.println("Max abs(diff) for \""+cs.namn.ident[iMaxDiff]
+                        +"\", abs(diff["+iMaxDiff+"])="+(float)maxAbsDiff);
             }
         }
-        oldLnG[i] = lnG[i];
-    } //for i
-    if(c.dbg >= ERR_DEBUG_ACT_COEF_5) {
-        if(iterAc >0 && !ok) {out.println("New values:"); printLnG(1);}
-        if(maxAbsDiff > 0) {
-            out.println("Max abs(diff) for \""+cs.namn.ident[iMaxDiff]
-                    +"\", abs(diff["+iMaxDiff+"])="+(float)maxAbsDiff);
-        }
-    }
+    } //if !actCoefAccel
 
     iterAc++;
     if(ok) { // some aqueous concentration(s) too large?
@@ -2601,6 +2868,136 @@ private boolean actCoeffs() {
 } // actCoeffs()
 // </editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="mixLnG">
+/** Accelerated update of lnG[] used by actCoeffs() when
+ * <code>ChemConcs.actCoefAccel</code> is set.  The activity coefficient
+ * iterations are a fixed-point problem: lnG = g(lnG), where g() is the
+ * equilibrium composition followed by <code>factor</code>.  Here the residuals
+ * r = g(x) - x of the last (at most) MIX_DEPTH iterations are combined
+ * (Anderson mixing) to predict the next lnG[].  The plain step is the same
+ * damped step used in actCoeffs(), so that if the history is not useful
+ * (first iteration, singular least-squares matrix or an unreasonable step)
+ * the result is the same as without acceleration.
+ * On input lnG[] = g(x) and oldLnG[] = x; on output lnG[] = oldLnG[] = the
+ * new estimate.
+ * @param tolLnG the tolerance in lnG
+ * @return true if all changes in lnG[] are within the tolerance (ok) */
+private boolean mixLnG(double tolLnG) {
+    final int n = nIon;
+    int i, k, l;
+    double w;
+    if(mixR == null || mixR.length < n) {
+        mixR = new double[n];
+        mixB = new double[n];
+        mixXprev = new double[n];
+        mixRprev = new double[n];
+        mixDX = new double[MIX_DEPTH][n];
+        mixDR = new double[MIX_DEPTH][n];
+        mixA = new double[MIX_DEPTH*MIX_DEPTH];
+        mixG = new double[MIX_DEPTH];
+    }
+    if(iterAc == 0) {mixN = -1;} // new equilibrium problem: forget the history
+    boolean ok = true;
+    for(i =0; i <n; i++) {
+        if(c.C[i] < tolFasta) {mixR[i] = 0.; mixB[i] = 0.; continue;}
+        mixR[i] = lnG[i] - oldLnG[i];
+        if(Math.abs(mixR[i]) > tolLnG) {ok = false;}
+        // same damping as in actCoeffs() for species with large
+        // contribution to the ionic strength
+        w = c.C[i]*cs.namn.z[i]*cs.namn.z[i];
+        mixB[i] = (w > 0.25) ? 0.5/Math.sqrt(w) : 1.;
+    }
+    if(ok) {
+        System.arraycopy(lnG, 0, oldLnG, 0, n);
+        return true;
+    }
+    // --- store the differences with the previous iteration
+    if(mixN >= 0) {
+        k = mixN % MIX_DEPTH;
+        for(i =0; i <n; i++) {
+            mixDX[k][i] = oldLnG[i] - mixXprev[i];
+            mixDR[k][i] = mixR[i] - mixRprev[i];
+        }
+    }
+    mixN++;
+    System.arraycopy(oldLnG, 0, mixXprev, 0, n);
+    System.arraycopy(mixR, 0, mixRprev, 0, n);
+    // --- least squares: minimise |r - DR*gamma|  (normal equations)
+    int m = Math.min(mixN, MIX_DEPTH);
+    if(m > 0) {
+        double trace = 0.;
+        for(k =0; k <m; k++) {
+            double[] dRk = mixDR[k];
+            for(l =0; l <=k; l++) {
+                double[] dRl = mixDR[l];
+                w = 0.;
+                for(i =0; i <n; i++) {w = w + dRk[i]*dRl[i];}
+                mixA[k*m+l] = w; mixA[l*m+k] = w;
+            }
+            trace = trace + mixA[k*m+k];
+            w = 0.;
+            for(i =0; i <n; i++) {w = w + dRk[i]*mixR[i];}
+            mixG[k] = w;
+        }
+        for(k =0; k <m; k++) {mixA[k*m+k] = mixA[k*m+k] + 1e-10*trace;}
+        if(trace <= 0. || !solveSym(mixA, mixG, m)) {m = 0; mixN = 0;}
+    }
+    // --- new estimate: x + B*r - (DX + B*DR)*gamma
+    double step;
+    boolean mixed = m > 0;
+    for(i =0; i <n; i++) {
+        if(c.C[i] < tolFasta) {continue;} // lnG[i] = g(x)
+        step = mixB[i]*mixR[i];
+        if(mixed) {
+            for(k =0; k <m; k++) {step = step - (mixDX[k][i] + mixB[i]*mixDR[k][i])*mixG[k];}
+            if(Double.isNaN(step) || Math.abs(step) > MIX_MAX_STEP) {
+                // unreasonable extrapolation: plain damped step and restart the history
+                mixed = false; m = 0; mixN = 0; i = -1; continue;
+            }
+        }
+        lnG[i] = oldLnG[i] + step;
+    }
+    System.arraycopy(lnG, 0, oldLnG, 0, n);
+    if(c.dbg >= ERR_DEBUG_ACT_COEF_5) {
+        out.println("mixLnG: depth used = "+m);
+        if(iterAc >0) {out.println("New values:"); printLnG(1);}
+    }
+    return false;
+} // mixLnG
+
+/** Solves the symmetric system a*x = b (a is m*m, stored by rows)
+ * by Gaussian elimination with partial pivoting.
+ * @param a the matrix, destroyed on output
+ * @param b on input the right hand side; on output the solution
+ * @param m the size of the system
+ * @return false if the matrix is singular */
+private static boolean solveSym(double[] a, double[] b, int m) {
+    int i, j, k, p;
+    double t;
+    for(k =0; k <m; k++) {
+        p = k;
+        for(i =k+1; i <m; i++) {if(Math.abs(a[i*m+k]) > Math.abs(a[p*m+k])) {p = i;}}
+        if(!(Math.abs(a[p*m+k]) > 1e-300)) {return false;}
+        if(p != k) {
+            for(j =0; j <m; j++) {t = a[k*m+j]; a[k*m+j] = a[p*m+j]; a[p*m+j] = t;}
+            t = b[k]; b[k] = b[p]; b[p] = t;
+        }
+        for(i =k+1; i <m; i++) {
+            t = a[i*m+k]/a[k*m+k];
+            if(t == 0.) {continue;}
+            for(j =k; j <m; j++) {a[i*m+j] = a[i*m+j] - t*a[k*m+j];}
+            b[i] = b[i] - t*b[k];
+        }
+    }
+    for(k =m-1; k >=0; k--) {
+        t = b[k];
+        for(j =k+1; j <m; j++) {t = t - a[k*m+j]*b[j];}
+        b[k] = t/a[k*m+k];
+    }
+    return true;
+}
+// </editor-fold>
+
 //<editor-fold defaultstate="collapsed" desc="print arrays, etc">
 
 private void prnt() {
@@ -0,0 +1,133 @@
+package lib.kemi.haltaFall;
+
+import lib.kemi.chem.Chem;
+
+/** A pool of <code>HaltaFall</code> objects that may be reused. Creating an
+ * instance of <code>HaltaFall</code> involves some planning that depends only
+ * on the chemical system (the stoichiometry, <code>noll[]</code>,
+ * <code>lBeta[]</code> and <code>kh[]</code>), and the allocation of all
+ * working arrays. When the same chemical system is calculated again, for
+ * example by several threads or in repeated calculations where only the
+ * concentrations change, an instance released to the pool is recycled
+ * instead (see <code>HaltaFall.reset</code>).
+ * <p>
+ * The instances are grouped by a "fingerprint" (a hash code) of the chemical
+ * system. As two different systems might have the same fingerprint, the
+ * systems are also compared element by element before an instance is reused.
+ * The methods of this class are thread-safe; the <code>HaltaFall</code>
+ * objects are not, and each one should be used by a single thread at a time.
+ * <pre>
+ *  HaltaFall h = pool.get(cs, factor, out);
+ *  try {
+ *      ... h.haltaCalc(); ...
+ *  } finally {pool.release(h);}
+ * </pre>
+ *
+ * Copyright (C) 2014-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ * @see lib.kemi.haltaFall.HaltaFall#reset(lib.kemi.chem.Chem.ChemSystem.ChemConcs) HaltaFall.reset
+ * @author Ignasi Puigdomenech */
+public class HaltaFallPool {
+  /** the idle instances, for each fingerprint */
+  private final java.util.HashMap<Long, java.util.ArrayList<HaltaFall>> idle =
+          new java.util.HashMap<Long, java.util.ArrayList<HaltaFall>>();
+  /** the maximum number of idle instances kept for each fingerprint */
+  private final int maxIdle;
+
+  /** A pool keeping at most 64 idle instances for each chemical system */
+  public HaltaFallPool() {this(64);}
+  /** @param maxIdle the maximum number of idle instances kept for each chemical system */
+  public HaltaFallPool(int maxIdle) {this.maxIdle = Math.max(1,maxIdle);}
+
+  /** Returns an instance of <code>HaltaFall</code> for the chemical system
+   * <code>cs</code>: either an idle instance for an identical system, or
+   * a new instance.
+   * @param cs the chemical system, including the concentrations (<code>cs.chemConcs</code>)
+   * @param factor used to calculate activity coefficients
+   * @param out where messages will be printed, or null
+   * @return an instance of HaltaFall, to be given back with <code>release</code>
+   * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+  public HaltaFall get(Chem.ChemSystem cs, Factor factor, java.io.PrintStream out)
+          throws Chem.ChemicalParameterException {
+    HaltaFall h = null;
+    Long key = fingerprint(cs);
+    synchronized(this) {
+        java.util.ArrayList<HaltaFall> list = idle.get(key);
+        if(list != null) {
+            for(int i = list.size()-1; i >= 0; i--) {
+                if(sameSystem(list.get(i).getChemSystem(), cs)) {h = list.remove(i); break;}
+            }
+        }
+    }
+    if(h == null) {h = new HaltaFall(cs, factor, out);} else {h.reset(cs, factor, out);}
+    h.poolKey = key;
+    return h;
+  }
+
+  /** Gives back to the pool an instance obtained with <code>get</code>.
+   * The instance may not be used after this call.
+   * @param h an instance of HaltaFall (nothing is done if it is null) */
+  public void release(HaltaFall h) {
+    if(h == null) {return;}
+    // the fingerprint of the system when the planning was done
+    Long key = h.poolKey != null ? h.poolKey : fingerprint(h.getChemSystem());
+    synchronized(this) {
+        java.util.ArrayList<HaltaFall> list = idle.get(key);
+        if(list == null) {list = new java.util.ArrayList<HaltaFall>(); idle.put(key, list);}
+        if(list.size() < maxIdle && !list.contains(h)) {list.add(h);}
+    }
+  }
+
+  /** Removes all idle instances from the pool */
+  public synchronized void clear() {idle.clear();}
+
+  /** A hash code of the data that determines the planning done in the
+   * <code>HaltaFall</code> constructor: the number of components, species
+   * and solids, the stoichiometric coefficients, <code>noll[]</code>,
+   * <code>lBeta[]</code> and <code>kh[]</code>.
+   * @param cs a chemical system
+   * @return the fingerprint */
+  public static long fingerprint(Chem.ChemSystem cs) {
+    long h = 17;
+    h = 31*h + cs.Na; h = 31*h + cs.Ms; h = 31*h + cs.mSol; h = 31*h + cs.jWater;
+    int nRows = cs.Ms - cs.Na;
+    for(int i=0; i < nRows; i++) {
+        for(int j=0; j < cs.Na; j++) {h = 31*h + Double.doubleToLongBits(cs.a[i][j]);}
+        h = 31*h + Double.doubleToLongBits(cs.lBeta[i]);
+    }
+    for(int i=0; i < cs.Ms; i++) {h = 31*h + (cs.noll[i] ? 1 : 0);}
+    for(int i=0; i < cs.Na; i++) {h = 31*h + cs.chemConcs.kh[i];}
+    return h;
+  }
+
+  /** Compares the data used in <code>fingerprint</code> element by element
+   * @param cs1 a chemical system
+   * @param cs2 a chemical system
+   * @return true if the two systems are identical */
+  private static boolean sameSystem(Chem.ChemSystem cs1, Chem.ChemSystem cs2) {
+    if(cs1.Na != cs2.Na || cs1.Ms != cs2.Ms || cs1.mSol != cs2.mSol
+            || cs1.jWater != cs2.jWater) {return false;}
+    int nRows = cs1.Ms - cs1.Na;
+    for(int i=0; i < nRows; i++) {
+        if(Double.doubleToLongBits(cs1.lBeta[i]) != Double.doubleToLongBits(cs2.lBeta[i])) {return false;}
+        for(int j=0; j < cs1.Na; j++) {
+            if(Double.doubleToLongBits(cs1.a[i][j]) != Double.doubleToLongBits(cs2.a[i][j])) {return false;}
+        }
+    }
+    for(int i=0; i < cs1.Ms; i++) {if(cs1.noll[i] != cs2.noll[i]) {return false;}}
+    for(int i=0; i < cs1.Na; i++) {if(cs1.chemConcs.kh[i] != cs2.chemConcs.kh[i]) {return false;}}
+    return true;
+  }
+}
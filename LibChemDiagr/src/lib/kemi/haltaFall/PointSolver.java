@@ -0,0 +1,122 @@
+package lib.kemi.haltaFall;
+
+import lib.kemi.chem.Chem;
+
+/** Calculates with <code>HaltaFall</code> the equilibrium composition at the
+ * points of a diagram, one point at a time. When the calculation at a point
+ * fails it is tried again: with smaller tolerances if there were too many
+ * iterations when solving the mass balance equations (errFlags 2), and
+ * without the previous equilibrium composition if no satisfactory
+ * combination of solids was found (errFlags 3). The points with problems
+ * are counted, and messages describing the failed calculations are kept.
+ * <p>
+ * The tolerance in <code>chemConcs.tol</code> when the instance is created is
+ * used for every point. The input for each point (<code>tot[]</code> or
+ * <code>logA[]</code>) must be set before calling <code>solve</code>.
+ * An instance should be used by a single thread at a time.
+ * <pre>
+ *  PointSolver s = new PointSolver(h, dbg, out);
+ *  for(...) {
+ *      ... set csC.tot[] or csC.logA[] for this point
+ *      if(!s.solve()) {s.failure("at point "+n+nl+csC.errFlagsGetMessages());}
+ *  }
+ * </pre>
+ *
+ * Copyright (C) 2014-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ * @see lib.kemi.chem.Chem.ChemSystem.ChemConcs#errFlags Chem.ChemSystem.ChemConcs.errFlags
+ * @author Ignasi Puigdomenech */
+public class PointSolver {
+  private static final String nl = System.getProperty("line.separator");
+  /** the smallest tolerance tried when there are too many iterations */
+  public static final double TOL_MIN = 1e-9;
+  private final HaltaFall h;
+  private final Chem.ChemSystem.ChemConcs csC;
+  private final double tolHalta0;
+  private final boolean dbg;
+  private final java.io.PrintStream out;
+  /** the number of points where the results are uncertain (errFlags 1) */
+  public int nbrUncertain = 0;
+  /** the number of points with too large concentrations (errFlags 5) */
+  public int nbrTooLargeConcs = 0;
+  /** the number of points where the calculations failed (errFlags 2, 3, 4 or 6) */
+  public int nbrErrors = 0;
+  /** the messages given to <code>failure</code>, separated by new-lines */
+  public final StringBuilder failures = new StringBuilder();
+
+  /** @param h the instance of HaltaFall used for the calculations
+   * @param dbg if true, the retries are reported in <code>out</code>
+   * (they are also reported if <code>chemConcs.dbg</code> is larger than
+   * the default value)
+   * @param out where the retries are reported, or null */
+  public PointSolver(HaltaFall h, boolean dbg, java.io.PrintStream out) {
+    this.h = h;
+    this.csC = h.getChemSystem().chemConcs;
+    this.tolHalta0 = csC.tol;
+    this.dbg = dbg;
+    this.out = out != null ? out : System.out;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="solve">
+  /** Calculates the equilibrium composition at a point, trying again if
+   * the calculation fails, and counts the problems found.
+   * @return false if the calculation failed (errFlags 2, 3, 4 or 6 are set),
+   * true otherwise
+   * @throws lib.kemi.chem.Chem.ChemicalParameterException */
+  public boolean solve() throws Chem.ChemicalParameterException {
+    final boolean report = dbg || csC.dbg > Chem.DBGHALTA_DEF;
+    csC.tol = tolHalta0;
+    h.haltaCalc();
+    if(csC.isErrFlagsSet(2)) { // too many iterations when solving the mass balance equations
+        do {
+            csC.tol = csC.tol * 0.1; // decrease tolerance and try again
+            if(report) {
+                out.println("Too many iterations when solving the mass balance equations"+nl+
+                        "  decreasing tolerance to: "+(float)csC.tol+" and trying again.");
+            }
+            h.haltaCalc();
+        } while (csC.isErrFlagsSet(2) && csC.tol >= TOL_MIN);
+        csC.tol = tolHalta0;
+        if(report) {
+            out.println("Restoring tolerance to: "+(float)tolHalta0+" for next calculations.");
+        }
+    }
+    if(csC.isErrFlagsSet(3)) { // failed to find a satisfactory combination of solids
+        if(report) {
+            out.println("Failed to find a satisfactory combination of solids. Trying again...");
+        }
+        csC.cont = false;      // try again
+        h.haltaCalc();
+    }
+    if(csC.isErrFlagsSet(1)) {nbrUncertain++;}
+    if(csC.isErrFlagsSet(5)) {nbrTooLargeConcs++;}
+    if(csC.isErrFlagsSet(2) || csC.isErrFlagsSet(3) || csC.isErrFlagsSet(4)
+                        || csC.isErrFlagsSet(6)) {
+        nbrErrors++;
+        return false;
+    }
+    return true;
+  }
+  //</editor-fold>
+
+  /** Keeps a message describing a failed calculation
+   * @param msg the message, for example the position of the point and
+   * <code>chemConcs.errFlagsGetMessages()</code> */
+  public void failure(String msg) {
+    if(failures.length() >0) {failures.append(nl);}
+    failures.append(msg);
+  }
+
+}
@@ -0,0 +1,430 @@
+package lib.kemi.haltaFall;
+
+import lib.common.Util;
+import lib.kemi.readDataLib.ReadDataLib;
+
+/** The contents of a SIT-coefficients file, parsed once and independent of
+ * any chemical system: for each line of the three sections of the file the
+ * names (without charge) and charges of the species and the three
+ * parameters of the interaction coefficient.  <code>Factor</code> looks up
+ * the species of its chemical system in these lists.
+ * <p>Parsed files are kept in memory, and they are also written to a binary
+ * cache file in a directory of the user (<code>.eq-diagr/cache</code> in
+ * <code>user.home</code>, readable only by the user where the file system
+ * allows it), so that other program runs may read them instead of parsing
+ * the text file again.  Both caches are keyed by the
+ * file path, size and time of last modification.  Cache files not used
+ * for <code>MAX_AGE_DAYS</code> are deleted.  If several files have to be
+ * parsed, they are parsed concurrently.
+ *
+ * Copyright (C) 2014-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+final class SITfile {
+  private static final String nl = System.getProperty("line.separator");
+  /** "SITC" */
+  private static final int MAGIC = 0x53495443;
+  private static final int VERSION = 1;
+  private static final String CACHE_PREFIX = "eq-diagr-SIT-";
+  /** binary cache files not read or written for this number of days are deleted */
+  private static final int MAX_AGE_DAYS = 60;
+  /** binary cache files larger than this (bytes) are not read */
+  private static final int MAX_CACHE_SIZE = 16*1024*1024;
+  /** true when old cache files have been deleted (once per program run) */
+  private static boolean cleanedUp = false;
+  /** parsed files: canonical path to SITfile */
+  private static final java.util.HashMap<String,SITfile> MEM = new java.util.HashMap<String,SITfile>();
+
+  /** the canonical path, size and time of last modification of the file */
+  final String path;
+  final long size, mTime;
+  /** true if "NoDefaults" is found at the start of a section */
+  final boolean noDefaults;
+  /** the number of lines read (in all three sections) */
+  final int n;
+  /** for each line: the section of the file (1, 2 or 3) */
+  final byte[] section;
+  /** for each line: the name of the cation (or neutral species) without
+   * charge, and of the anion (only in section 1, otherwise empty) */
+  final String[] identCation, identAnion;
+  /** for each line: the charge of the cation and of the anion */
+  final int[] zCat, zAn;
+  /** for each line: epsilon = eps0 + eps1 * T + eps2 * T*T */
+  final float[] eps0, eps1, eps2;
+  /** if not null, the error found when reading the file */
+  final Factor.SITdataException error;
+
+  private SITfile(String path, long size, long mTime, boolean noDefaults, int n) {
+    this.path = path; this.size = size; this.mTime = mTime;
+    this.noDefaults = noDefaults; this.n = n;
+    section = new byte[n];
+    identCation = new String[n]; identAnion = new String[n];
+    zCat = new int[n]; zAn = new int[n];
+    eps0 = new float[n]; eps1 = new float[n]; eps2 = new float[n];
+    error = null;
+  }
+  private SITfile(String path, long size, long mTime, Factor.SITdataException error) {
+    this.path = path; this.size = size; this.mTime = mTime;
+    noDefaults = false; n = 0;
+    section = null; identCation = null; identAnion = null;
+    zCat = null; zAn = null; eps0 = null; eps1 = null; eps2 = null;
+    this.error = error;
+  }
+
+  /** Empties the memory cache (the binary cache files are not deleted) */
+  static void clearCache() {synchronized (MEM) {MEM.clear();}}
+
+  //<editor-fold defaultstate="collapsed" desc="load">
+  /** Gets the contents of the SIT files, from the caches if they are up to
+   * date, otherwise by parsing the files (concurrently if there are several).
+   * @param files the SIT files; some may be null
+   * @param fileName the name used in error messages
+   * @return for each file either null, if the file does not exist or can
+   * not be read, or its contents; the field <code>error</code> is not null
+   * if the file could not be parsed */
+  static SITfile[] load(final java.io.File[] files, final String fileName) {
+    final SITfile[] sit = new SITfile[files.length];
+    final String[] key = new String[files.length];
+    java.util.ArrayList<Integer> toParse = new java.util.ArrayList<Integer>();
+    for(int i = 0; i < files.length; i++) {
+      final java.io.File f = files[i];
+      if(f == null || !f.isFile() || !f.canRead()) {continue;}
+      try {key[i] = f.getCanonicalPath();} catch (java.io.IOException ex) {key[i] = f.getAbsolutePath();}
+      final long size = f.length(), mTime = f.lastModified();
+      SITfile s;
+      synchronized (MEM) {s = MEM.get(key[i]);}
+      if(s == null || s.size != size || s.mTime != mTime) {
+        s = readCache(key[i], size, mTime);
+        if(s != null) {synchronized (MEM) {MEM.put(key[i], s);}}
+      }
+      if(s != null && s.size == size && s.mTime == mTime) {sit[i] = s;}
+      else {toParse.add(i);}
+    }
+    if(toParse.isEmpty()) {return sit;}
+    // --- parse the files: all but the last in new threads
+    java.util.ArrayList<java.util.concurrent.FutureTask<SITfile>> tasks =
+            new java.util.ArrayList<java.util.concurrent.FutureTask<SITfile>>(toParse.size());
+    for(int k = 0; k < toParse.size(); k++) {
+      final int i = toParse.get(k);
+      java.util.concurrent.FutureTask<SITfile> task = new java.util.concurrent.FutureTask<SITfile>(
+              new java.util.concurrent.Callable<SITfile>() {
+                @Override public SITfile call() {return parse(files[i], key[i], fileName);}
+              });
+      tasks.add(task);
+      if(k < toParse.size()-1) {
+        Thread t = new Thread(task, "SIT file "+k);
+        t.setDaemon(true);
+        t.start();
+      }
+    }
+    tasks.get(tasks.size()-1).run();
+    for(int k = 0; k < tasks.size(); k++) {
+      final int i = toParse.get(k);
+      try {sit[i] = tasks.get(k).get();}
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        sit[i] = new SITfile(key[i], 0, 0, new Factor.SITdataException(ex.toString()));
+      }
+      catch (java.util.concurrent.ExecutionException ex) {
+        sit[i] = new SITfile(key[i], 0, 0, new Factor.SITdataException(ex.getCause().toString()));
+      }
+      if(sit[i] != null && sit[i].error == null) {
+        synchronized (MEM) {MEM.put(key[i], sit[i]);}
+        writeCache(sit[i]);
+      }
+    }
+    return sit;
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="parse">
+  /** Reads the three sections of a SIT file.
+   * @return the contents of the file, or null if it can not be opened */
+  private static SITfile parse(java.io.File f, String key, String fileName) {
+    final long size = f.length(), mTime = f.lastModified();
+    ReadDataLib rd;
+    try {rd = new ReadDataLib(f);}
+    catch (ReadDataLib.DataFileException ex) {return null;}
+    Lines lines = new Lines();
+    try {
+      for(int sect = 1; sect <= 3; sect++) {
+        try {readSection(sect, rd, lines, fileName);}
+        catch (ReadDataLib.DataEofException | ReadDataLib.DataReadException ex) {
+          return new SITfile(key, size, mTime, new Factor.SITdataException(ex.getMessage()));
+        }
+        catch (Factor.SITdataException ex) {
+          return new SITfile(key, size, mTime,
+                  new Factor.SITdataException(ex.getMessage()+nl+"reading file \""+f+"\"."));
+        }
+      }
+    } finally {
+      try{rd.close();} catch (Exception ex) {}
+    }
+    SITfile s = new SITfile(key, size, mTime, lines.noDefaults, lines.n);
+    for(int i = 0; i < s.n; i++) {
+      s.section[i] = lines.section.get(i);
+      s.identCation[i] = lines.identCation.get(i); s.identAnion[i] = lines.identAnion.get(i);
+      s.zCat[i] = lines.zCat.get(i); s.zAn[i] = lines.zAn.get(i);
+      s.eps0[i] = lines.eps0.get(i); s.eps1[i] = lines.eps1.get(i); s.eps2[i] = lines.eps2.get(i);
+    }
+    return s;
+  }
+
+  /** the lines read so far */
+  private static final class Lines {
+    boolean noDefaults = false;
+    int n = 0;
+    java.util.ArrayList<Byte> section = new java.util.ArrayList<Byte>();
+    java.util.ArrayList<String> identCation = new java.util.ArrayList<String>();
+    java.util.ArrayList<String> identAnion = new java.util.ArrayList<String>();
+    java.util.ArrayList<Integer> zCat = new java.util.ArrayList<Integer>();
+    java.util.ArrayList<Integer> zAn = new java.util.ArrayList<Integer>();
+    java.util.ArrayList<Float> eps0 = new java.util.ArrayList<Float>();
+    java.util.ArrayList<Float> eps1 = new java.util.ArrayList<Float>();
+    java.util.ArrayList<Float> eps2 = new java.util.ArrayList<Float>();
+  }
+
+  /** Read a section of the SIT file. The SIT file has three sections:
+   * 1) "normal" epsilon values; 2) epsilon values for neutral species with
+   * electrolytes; and 3) epsilon values for neutral species with neutral species */
+  private static void readSection(int section, ReadDataLib rd, Lines lines, String fileName)
+        throws Factor.SITdataException, ReadDataLib.DataReadException, ReadDataLib.DataEofException {
+    int zCat;
+    int zAn = 0;
+    float w0, w1, w2;
+    String cation, identCation;
+    String anion ="", identAnion ="";
+    boolean firstLine = true;
+    while (true) {
+      //-- get the cation (or neutral species)
+      rd.nowReading = "Cation name";
+      if(section > 1) {rd.nowReading = "Neutral species name";}
+      cation = rd.readA();
+      if(cation.equalsIgnoreCase("NoDefaults") && firstLine) {
+          lines.noDefaults = true;
+          continue;
+      }
+      firstLine = false;
+      if(cation.equalsIgnoreCase("END")) {break;}
+      zCat = Util.chargeOf(cation);
+      if(section < 2 && zCat<=0) {
+          throw new Factor.SITdataException(
+              "Error reading file \""+fileName+"\":"+nl+
+              "   Trying to read a cation name, found: \""+cation+"\""+nl+
+              "   but the charge is: "+zCat+" (must be >0)");
+      } else if(section >= 2 && zCat!=0) {
+          throw new Factor.SITdataException(
+              "Error reading file \""+fileName+"\":"+nl+
+              "   Trying to read a neutral species name, found: \""+cation+"\""+nl+
+              "   but the charge is: "+zCat+" (must be zero)");
+      }
+      //get name without charge, and without "(aq)", etc
+      identCation = Util.nameOf(cation);
+      if(section == 1) {
+          //-- get the anion
+          rd.nowReading = "Anion name";
+          anion = rd.readA();
+          zAn = Util.chargeOf(anion);
+          if(zAn>=0) {
+              throw new Factor.SITdataException(
+                  "Error reading file \""+fileName+"\":"+nl+
+                  "   Trying to read an anion name, found: \""+anion+"\""+nl+
+                  "   but the charge is: "+zAn+" (must be <0)");
+          }
+          identAnion = Util.nameOf(anion);
+      }
+      //-- get three parameters for the interaction coefficient
+      //   epsilon = eps0 + eps1 * T + eps2 * T*T  (T = temperature in Kelvins)
+      if(section == 1) {
+          rd.nowReading = "SIT interaction coefficient eps0["+cation+","+anion+"]";
+          w0 = (float)rd.readR();
+          if(Math.abs(w0)>=10f) {
+              throw new Factor.SITdataException(
+                  "Error reading file \""+fileName+"\":"+nl+
+                  "   Trying to read the SIT coefficient eps0["+cation+","+anion+"]"+nl+
+                  "   but the value is: "+w0+" (must be between <10 and >-10)");
+          }
+          rd.nowReading = "SIT interaction coefficient eps1["+cation+","+anion+"]";
+          w1 = (float)rd.readR();
+          rd.nowReading = "SIT interaction coefficient eps2["+cation+","+anion+"]";
+          w2 = (float)rd.readR();
+      } else if(section == 2) {
+          rd.nowReading = "SIT interaction coefficient eps0["+cation+",MX]";
+          w0 = (float)rd.readR();
+          if(Math.abs(w0)>=10f) {
+              throw new Factor.SITdataException(
+                      "Error reading file \""+fileName+"\":"+nl+
+                      "   When trying to read the SIT coefficient eps["+cation+",MX]"+nl+
+                      "   but the value is: "+w0+" (must be <10 and >-10)");
+          }
+          rd.nowReading = "SIT interaction coefficient eps1["+cation+",MX]";
+          w1 = (float)rd.readR();
+          rd.nowReading = "SIT interaction coefficient eps2["+cation+",MX]";
+          w2 = (float)rd.readR();
+      } else {
+          rd.nowReading = "SIT interaction coefficient eps["+cation+",neutral]";
+          w0 = (float)rd.readR();
+          if(Math.abs(w0)>=10f) {
+              throw new Factor.SITdataException(
+                      "Error reading file \""+fileName+"\":"+nl+
+                      "   When trying to read the SIT coefficient eps["+cation+",neutral]"+nl+
+                      "   but the value is: "+w0+" (must be <10 and >-10)");
+          }
+          rd.nowReading = "SIT interaction coefficient eps1["+cation+",MX]";
+          w1 = (float)rd.readR();
+          rd.nowReading = "SIT interaction coefficient eps2["+cation+",MX]";
+          w2 = (float)rd.readR();
+      }
+      lines.section.add((byte)section);
+      lines.identCation.add(identCation);
+      lines.identAnion.add(section == 1 ? identAnion : "");
+      lines.zCat.add(zCat);
+      lines.zAn.add(section == 1 ? zAn : 0);
+      lines.eps0.add(w0); lines.eps1.add(w1); lines.eps2.add(w2);
+      lines.n++;
+    } //while
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="binary cache">
+  /** The directory of the binary cache files: ".eq-diagr/cache" in the home
+   * directory of the user, created if needed, and if the file system allows
+   * it, with read-write permissions only for the user.  The temporary
+   * directory is not used: other users could write files there.
+   * @return the directory, or null if it can not be used */
+  private static java.io.File cacheDir() {
+    String home = System.getProperty("user.home");
+    if(home == null || home.trim().length() <= 0) {return null;}
+    java.io.File dir = new java.io.File(new java.io.File(home, ".eq-diagr"), "cache");
+    if(!dir.isDirectory()) {
+      if(!dir.mkdirs()) {return null;}
+      try {
+        java.nio.file.Files.setPosixFilePermissions(dir.toPath(),
+              java.nio.file.attribute.PosixFilePermissions.fromString("rwx------"));
+      } catch (Exception ex) {} // not a POSIX file system
+    }
+    if(!dir.canWrite()) {return null;}
+    return dir;
+  }
+
+  private static java.io.File cacheFile(String key) {
+    java.io.File dir = cacheDir();
+    if(dir == null) {return null;}
+    return new java.io.File(dir, CACHE_PREFIX + Integer.toHexString(key.hashCode()) + ".bin");
+  }
+
+  /** Deletes the cache files (and any temporary files left by an interrupted
+   * <code>writeCache</code>) that have not been used for <code>MAX_AGE_DAYS</code>.
+   * This is done only once per program run. */
+  private static void cleanUp(java.io.File dir) {
+    synchronized (MEM) {
+      if(cleanedUp) {return;}
+      cleanedUp = true;
+    }
+    java.io.File[] old = dir.listFiles();
+    if(old == null) {return;}
+    long limit = System.currentTimeMillis() - MAX_AGE_DAYS * 24L*3600L*1000L;
+    for(java.io.File f : old) {
+      if(f.isFile() && f.getName().startsWith(CACHE_PREFIX) && f.lastModified() < limit) {
+        f.delete();
+      }
+    }
+  }
+
+  /** Reads the binary cache for a SIT file.  The file is small, and it is
+   * read into memory and closed at once: a memory-mapped file could not be
+   * deleted or replaced (on Windows) by <code>writeCache</code> until the
+   * mapping is garbage collected.
+   * @return the cached contents, or null if there is no valid cache for
+   * this file path, size and time of modification */
+  private static SITfile readCache(String key, long size, long mTime) {
+    java.io.File cf = cacheFile(key);
+    if(cf == null || !cf.isFile()) {return null;}
+    java.nio.ByteBuffer b;
+    try (java.io.FileInputStream fis = new java.io.FileInputStream(cf);
+         java.nio.channels.FileChannel ch = fis.getChannel()) {
+      long len = ch.size();
+      if(len < 8 || len > MAX_CACHE_SIZE) {return null;}
+      b = java.nio.ByteBuffer.allocate((int)len);
+      while(b.hasRemaining()) {if(ch.read(b) < 0) {return null;}}
+      b.flip();
+    } catch (Exception ex) {return null;}
+    try {
+      if(b.getInt() != MAGIC || b.getInt() != VERSION) {return null;}
+      if(!key.equals(getString(b)) || b.getLong() != size || b.getLong() != mTime) {return null;}
+      boolean noDefaults = (b.get() != 0);
+      int n = b.getInt();
+      if(n < 0 || n > b.remaining()) {return null;}
+      SITfile s = new SITfile(key, size, mTime, noDefaults, n);
+      for(int i = 0; i < n; i++) {
+        s.section[i] = b.get();
+        s.identCation[i] = getString(b);
+        s.identAnion[i] = getString(b);
+        s.zCat[i] = b.getInt(); s.zAn[i] = b.getInt();
+        s.eps0[i] = b.getFloat(); s.eps1[i] = b.getFloat(); s.eps2[i] = b.getFloat();
+      }
+      if(b.getInt() != MAGIC) {return null;}
+      cf.setLastModified(System.currentTimeMillis()); // used: not deleted by cleanUp
+      return s;
+    } catch (Exception ex) {return null;}
+  }
+
+  /** Writes the binary cache for a SIT file.  Errors are ignored: the
+   * text file will then be parsed again the next time. */
+  private static void writeCache(SITfile s) {
+    java.io.File cf = cacheFile(s.path);
+    if(cf == null) {return;}
+    cleanUp(cf.getParentFile());
+    java.io.File tmp = null;
+    try {
+      tmp = java.io.File.createTempFile(CACHE_PREFIX, ".tmp", cf.getParentFile());
+      try (java.io.DataOutputStream o = new java.io.DataOutputStream(
+              new java.io.BufferedOutputStream(new java.io.FileOutputStream(tmp)))) {
+        o.writeInt(MAGIC); o.writeInt(VERSION);
+        putString(o, s.path); o.writeLong(s.size); o.writeLong(s.mTime);
+        o.writeByte(s.noDefaults ? 1 : 0);
+        o.writeInt(s.n);
+        for(int i = 0; i < s.n; i++) {
+          o.writeByte(s.section[i]);
+          putString(o, s.identCation[i]);
+          putString(o, s.identAnion[i]);
+          o.writeInt(s.zCat[i]); o.writeInt(s.zAn[i]);
+          o.writeFloat(s.eps0[i]); o.writeFloat(s.eps1[i]); o.writeFloat(s.eps2[i]);
+        }
+        o.writeInt(MAGIC);
+      }
+      java.nio.file.Files.move(tmp.toPath(), cf.toPath(),
+              java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    } catch (Exception ex) {
+      if(tmp != null) {tmp.delete();}
+    }
+  }
+
+  private static void putString(java.io.DataOutputStream o, String t) throws java.io.IOException {
+    byte[] bytes = t.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+    o.writeInt(bytes.length);
+    o.write(bytes);
+  }
+
+  private static String getString(java.nio.ByteBuffer b) {
+    int len = b.getInt();
+    if(len < 0 || len > b.remaining()) {throw new java.nio.BufferUnderflowException();}
+    byte[] bytes = new byte[len];
+    b.get(bytes);
+    return new String(bytes, java.nio.charset.StandardCharsets.UTF_8);
+  }
+  //</editor-fold>
+}
@@ -0,0 +1,122 @@
+package lib.kemi.haltaFall;
+
+/** A copy of the state of <code>HaltaFall</code> after a successful
+ * calculation: the activities of the components, the activity coefficients
+ * and the solid phases found at equilibrium. It is used as the starting point
+ * ("warm start") for the calculation at a neighbouring point of a diagram,
+ * instead of starting from scratch or from the point calculated last.
+ * The contents are stored and retrieved with the methods
+ * <code>warmStartSave</code> and <code>warmStartRestore</code> of a
+ * <code>HaltaFall</code> object. A WarmStart may only be used with the
+ * chemical system for which it was saved.
+ * <p>
+ * The nested class <code>Grid</code> stores WarmStart objects
+ * for the points of a two-dimensional grid.
+ *
+ * Copyright (C) 2014-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ * @see lib.kemi.haltaFall.HaltaFall#warmStartSave(lib.kemi.haltaFall.WarmStart) warmStartSave
+ * @see lib.kemi.haltaFall.HaltaFall#warmStartRestore(lib.kemi.haltaFall.WarmStart) warmStartRestore
+ * @author Ignasi Puigdomenech */
+public class WarmStart {
+  /** true if this object contains a saved state */
+  boolean ok = false;
+  /** log10 of the activities of the components */
+  double[] logA;
+  /** log10 of the activity coefficients of all species */
+  double[] logf;
+  /** the components for which the calculation was not possible */
+  boolean[] noCalc;
+  /** the number of solids present at equilibrium */
+  int nfall;
+  /** the solids present at equilibrium */
+  int[] ifall;
+  /** true for the solids present at equilibrium */
+  boolean[] fall;
+  /** the components whose activities are calculated from the
+   * solubility products of the solids present at equilibrium */
+  int[] iber;
+
+  public WarmStart() {}
+
+  /** @return true if this object contains a saved state */
+  public boolean isSaved() {return ok;}
+  /** Removes the saved state */
+  public void clear() {ok = false;}
+
+//<editor-fold defaultstate="collapsed" desc="class Grid">
+/** Stores WarmStart objects for the points (iX,iY) of a grid with
+ * <code>nY</code> points along the Y-axis. Only the last <code>nX</code>
+ * columns are kept (X-values), so the memory needed does not depend on the
+ * number of columns in the grid: when a new column is stored, it replaces
+ * the column <code>iX-nX</code>. */
+public static class Grid {
+  private final int nX, nY;
+  private final WarmStart[][] slot;
+  /** the column stored in each slot, or -1 */
+  private final int[][] key;
+  /** @param nX the number of columns (X-values) to keep, at least 1
+   * @param nY the number of points along the Y-axis */
+  public Grid(int nX, int nY) {
+    this.nX = Math.max(1,nX); this.nY = nY;
+    slot = new WarmStart[this.nX][nY];
+    key = new int[this.nX][nY];
+    for(int i=0; i < this.nX; i++) {
+        for(int j=0; j < nY; j++) {slot[i][j] = new WarmStart(); key[i][j] = -1;}
+    }
+  }
+
+  /** Returns the WarmStart object where the state for point (iX,iY) is to be
+   * saved. The object is cleared if it held the state of another column.
+   * @param iX the column (X-value), zero or larger
+   * @param iY the row (Y-value), from zero to nY-1
+   * @return the WarmStart for point (iX,iY) */
+  public WarmStart slot(int iX, int iY) {
+    int i = iX % nX;
+    if(key[i][iY] != iX) {slot[i][iY].ok = false; key[i][iY] = iX;}
+    return slot[i][iY];
+  }
+
+  /** Returns the saved state at point (iX,iY)
+   * @param iX the column (X-value)
+   * @param iY the row (Y-value)
+   * @return the saved state at (iX,iY), or null if the state of
+   * that point has not been saved (or it is no longer kept) */
+  public WarmStart get(int iX, int iY) {
+    if(iX < 0 || iY < 0 || iY >= nY) {return null;}
+    int i = iX % nX;
+    if(key[i][iY] != iX || !slot[i][iY].ok) {return null;}
+    return slot[i][iY];
+  }
+
+  /** Finds the nearest point below (same column) or at the left (same row)
+   * of point (iX,iY) with a saved state. At equal distance the point
+   * below is preferred.
+   * @param iX the column (X-value)
+   * @param iY the row (Y-value)
+   * @param maxDist the maximum distance (in grid steps) to search
+   * @return the column in <code>ret[0]</code> and the row in
+   * <code>ret[1]</code>; or null if no saved state is found */
+  public int[] nearest(int iX, int iY, int maxDist) {
+    for(int d = 1; d <= Math.min(maxDist, nX); d++) {
+        if(get(iX, iY-d) != null) {return new int[]{iX, iY-d};}
+        if(get(iX-d, iY) != null) {return new int[]{iX-d, iY};}
+    }
+    return null;
+  }
+} // class Grid
+// </editor-fold>
+
+}
@@ -21,10 +21,76 @@ package lib.kemi.interpolate;
 public class Interpolate {
   private static final String nl = System.getProperty("line.separator");
 
+  //<editor-fold defaultstate="collapsed" desc="look-up grid">
+  //                                     index:  0   1   2    3    4    5    6    7    8    9   10   11   12   13
+  /** the temperatures (Celsius) of the look-up tables of logK */
+  static final float[] TEMPERATURES = new float[]{0f,25f,50f,100f,150f,200f,250f,300f,350f,400f,450f,500f,550f,600f};
+  //                                  index:  0   1     2     3     4
+  /** the pressures (bar) of the look-up tables of logK */
+  static final float[] PRESSURES = new float[]{1f,500f,1000f,3000f,5000f};
+  //                     index:                0    1   2   3       4       5       6       7        8       9   10   11   12   13
+  //                 temperature:              0   25  50  100     150     200     250     300     350 C   400C 450C 500C 550C 600C
+  /** the pressures used instead of "1" (at temperatures up to 400 C) and
+   * instead of "500" (above 450 C) at each temperature of the look-up tables */
+  static final float[] PSAT = new float[]{1f, 1f, 1f,1.0141f,4.7615f,15.549f,39.762f,85.878f,165.29f, 300f,500f,650f,800f,950f};
+  /** the number of temperatures at saturated vapour pressure {0 to 350 C} */
+  static final int N_PSAT = 9;
+  /** the pressure at each node of the look-up table, with the values of PSAT
+   * used instead of "1" or "500": <code>P_NODE[iT*5+iP]</code> */
+  static final double[] P_NODE = new double[TEMPERATURES.length*PRESSURES.length];
+  /** the denominators of the Lagrange polynomials in pressure,
+   * 1/((p[j]-p[k])*(p[j]-p[l])), for each temperature, for each group of
+   * three pressures (starting at iP = 0 to 2) and for each pressure in the
+   * group: <code>P_DEN[(iT*3+iP)*3+j]</code> */
+  static final double[] P_DEN = new double[TEMPERATURES.length*3*3];
+  /** the denominators of the Lagrange polynomials in temperature for
+   * each group of three temperatures (ending at iT = 2 to 13) and for each
+   * temperature in the group: <code>T_DEN[iT*3+i]</code> */
+  static final double[] T_DEN = new double[TEMPERATURES.length*3];
+  static {
+    for(int i = 0; i < TEMPERATURES.length; i++) {
+        for(int j = 0; j < PRESSURES.length; j++) {
+            double p = PRESSURES[j];
+            // 1st pressure (="1"): at tC < 400C use pSat instead of "1"
+            if(TEMPERATURES[i] <= 400 && j == 0) {p = PSAT[i];}
+            // 2nd pressure (="500"): at tC > 450C use the pSat array
+            if(TEMPERATURES[i] > 450 && j == 1) {p = PSAT[i];}
+            P_NODE[i*5+j] = p;
+        }
+        for(int iP = 0; iP < 3; iP++) {
+            for(int j = 0; j < 3; j++) {
+                double d = 1;
+                for(int k = 0; k < 3; k++) {
+                    if(k != j) {d = d * (P_NODE[i*5+iP+j] - P_NODE[i*5+iP+k]);}
+                }
+                P_DEN[(i*3+iP)*3+j] = 1/d;
+            }
+        }
+    }
+    for(int iT = 2; iT < TEMPERATURES.length; iT++) {
+        for(int i = 0; i < 3; i++) {
+            double d = 1;
+            for(int k = 0; k < 3; k++) {
+                if(k != i) {d = d * (TEMPERATURES[iT-2+i] - TEMPERATURES[iT-2+k]);}
+            }
+            T_DEN[iT*3+i] = 1/d;
+        }
+    }
+  }
+  //</editor-fold>
+
   //<editor-fold defaultstate="collapsed" desc="logKinterpolateTP">
 /** Returns the value of logK at the requested tC and pBar, interpolated
  * from a provided array grid, at temperatures (0 to 600 C)
  * and pressures (1 to 5000 bar).
+ * <p>To interpolate many times in the same array use instead
+ * <code>LogKGrid</code>, which gives the same values.
+ * <p>The interpolation is done in double precision.  Earlier versions used
+ * single precision (float) arithmetic, and the values returned may differ
+ * from those in the last digits (for logK values of the order of 10,
+ * about 1e-6; with large values and steep tables up to about 1e-4).
+ * The values at saturated vapour pressure (<code>logKinterpolatePsat</code>)
+ * are unchanged.
  * @param tC the input temperature in degrees Celsius
  * @param pBar the input pressure in bar
  * @param logKarray an array of logK values (logKarray[5][14])
@@ -35,229 +101,214 @@ public class Interpolate {
  * <b>Note:</b> provide NaN (Not-a-Number) where no data is available,
  * for example at a pressure = 500 bar and temperatures above 450C, etc.
  * @return the value of logK interpolated at the provided values of tC and pBar
+ * @see lib.kemi.interpolate.LogKGrid LogKGrid
  */
 public static float logKinterpolateTP(final float tC, final float pBar,
         final float[][] logKarray) throws IllegalArgumentException {
-    //-------------------
-    boolean dbg = false;
-    //-------------------
-    //                     index:            0   1   2    3    4    5    6    7    8    9   10   11   12   13
-    final float[] temperatures = new float[]{0f,25f,50f,100f,150f,200f,250f,300f,350f,400f,450f,500f,550f,600f};
-    //                     index:         0   1     2     3     4
-    final float[] pressures = new float[]{1f,500f,1000f,3000f,5000f};
-    //                     index:    0    1   2   3       4       5       6       7        8       9   10   11   12   13
-    //                 temperature:  0   25  50  100     150     200     250     300     350 C   400C 450C 500C 550C 600C
-    final float[] pSat = new float[]{1f, 1f, 1f,1.0141f,4.7615f,15.549f,39.762f,85.878f,165.29f, 300f,500f,650f,800f,950f};
-
     if(logKarray == null) {
         throw new IllegalArgumentException("\"interpolate3D\": logKarray = \"null\"");}
-    if(Float.isNaN(tC) || Float.isNaN(pBar)) {
-        throw new IllegalArgumentException("\"interpolate3D\": tC = "+tC+", pBar = "+pBar+"; both must be numbers");}
-    if(tC < 0 || tC > temperatures[temperatures.length-1]) {
-        throw new IllegalArgumentException("\"interpolate3D\": tC = "+tC+", must be >"+temperatures[0]+" and <"+temperatures[temperatures.length-1]);}
-    if(pBar < 1 || pBar > pressures[pressures.length-1]) {
-        throw new IllegalArgumentException("\"interpolate3D\": pBar = "+pBar+", must be >"+pressures[0]+" and <"+ pressures[pressures.length-1]);}
-    if(logKarray.length != pressures.length) {
-        throw new IllegalArgumentException("\"interpolate3D\": length of logKarray must be "+pressures.length);}
-    for(int i = 0; i < pressures.length; i++) {
+    checkTP(tC, pBar);
+    if(logKarray.length != PRESSURES.length) {
+        throw new IllegalArgumentException("\"interpolate3D\": length of logKarray must be "+PRESSURES.length);}
+    for(int i = 0; i < PRESSURES.length; i++) {
         if(logKarray[i] == null) {throw new IllegalArgumentException("\"interpolate3D\": logKarray["+i+"] = \"null\"");}
     }
+    final int group = groupTP(tC, pBar, logKarray);
+    final int iT = group >> 2, iP = group & 3;
+    // Get three (3) interpolated logK's at the selected pressure,
+    // at the three temperatures bracketing the selected temperature.
+    double lgK0 = 0, lgK1 = 0, lgK2 = 0;
+    int i, k;
+    for(int n = 0; n < 3; n++) {
+        i = iT-2+n;
+        k = (i*3+iP)*3;
+        double lgK = lagrangeP(pBar, i*5+iP,
+                (double)logKarray[iP][i] * P_DEN[k],
+                (double)logKarray[iP+1][i] * P_DEN[k+1],
+                (double)logKarray[iP+2][i] * P_DEN[k+2]);
+        if(n == 0) {lgK0 = lgK;} else if(n == 1) {lgK1 = lgK;} else {lgK2 = lgK;}
+    }
+    // Interpolate logK at the selected temperature using
+    // the three temperature values
+    return (float)lagrangeT(tC, iT, lgK0, lgK1, lgK2);
+}
+
+/** Checks the temperature and pressure given to <code>logKinterpolateTP</code>.
+ * @param tC the temperature in degrees Celsius
+ * @param pBar the pressure in bar
+ * @throws IllegalArgumentException if either is NaN or outside the look-up grid */
+static void checkTP(final float tC, final float pBar) throws IllegalArgumentException {
+    if(Float.isNaN(tC) || Float.isNaN(pBar)) {
+        throw new IllegalArgumentException("\"interpolate3D\": tC = "+tC+", pBar = "+pBar+"; both must be numbers");}
+    if(tC < 0 || tC > TEMPERATURES[TEMPERATURES.length-1]) {
+        throw new IllegalArgumentException("\"interpolate3D\": tC = "+tC+", must be >"+TEMPERATURES[0]+" and <"+TEMPERATURES[TEMPERATURES.length-1]);}
+    if(pBar < 1 || pBar > PRESSURES[PRESSURES.length-1]) {
+        throw new IllegalArgumentException("\"interpolate3D\": pBar = "+pBar+", must be >"+PRESSURES[0]+" and <"+ PRESSURES[PRESSURES.length-1]);}
+}
 
-    // --- Locate the place in the tables of temperatures and pressures,
-    //     given tC and pBar (at which the logK evaluation is desired).
-    java.awt.Point indx = indexer3D(tC,pBar,temperatures,pressures, dbg);
-    int iT = indx.x, iP = indx.y;
-    // --- The values of "iT,iP" define a 3x3 matrix of temperature and pressure
-    //     (iT-2, iT-1, iT)x(iP,iP+1,iP+2). The values of tC and pBar are inside
-    //     this sub-grid of logKarray.  If a NaN value for logK is found at some
-    //     of the edges of this 3x3: grid move the grid (if possible).
+/** Finds the 3x3 group of temperatures and pressures of the look-up grid
+ * used for the interpolation: (iT-2, iT-1, iT)x(iP,iP+1,iP+2).
+ * The values of tC and pBar are inside this sub-grid of logKarray, but
+ * if a NaN value for logK is found at some of the edges of this 3x3 grid
+ * the grid is moved (if possible).
+ * @param tC the temperature in degrees Celsius (already checked)
+ * @param pBar the pressure in bar (already checked)
+ * @param logKarray the look-up table, logKarray[5][14]
+ * @return iT*4+iP */
+static int groupTP(final float tC, final float pBar, final float[][] logKarray) {
+    int iT = indexT(tC), iP = indexP(pBar);
     int iTnew = iT, iPnew = iP;
-    double[] press = new double[pressures.length];
-    for(int i = 0; i < pressures.length; i++) {press[i] = pressures[i];}
-    for(int i = iT-2; i <= iT; i++) {
-        if(i == iT-1) {continue;}
-        for(int j = iP; j <= iP+2; j++) {
-            if(j == iP+1) {continue;}
-            if(temperatures[i] <= 400 && press[j] < 1.1) {press[j] = pSat[i];}
-            else if(temperatures[i] > 450 && press[j] > 500 && press[j] <= 1000) {press[j] = pSat[i];}
-            if(Double.isNaN(logKarray[j][i])) {
+    double pLow = PRESSURES[iP], pHigh = PRESSURES[iP+2], p;
+    for(int i = iT-2; i <= iT; i = i+2) {
+        for(int j = iP; j <= iP+2; j = j+2) {
+            p = (j == iP) ? pLow : pHigh;
+            if(TEMPERATURES[i] <= 400 && p < 1.1) {p = PSAT[i];}
+            else if(TEMPERATURES[i] > 450 && p > 500 && p <= 1000) {p = PSAT[i];}
+            if(j == iP) {pLow = p;} else {pHigh = p;}
+            if(Float.isNaN(logKarray[j][i])) {
                 if(j == iP) {
-                    if(pBar >= press[iP] && iP+3 < pressures.length) {iPnew++; break;}
-                } else if(j == iP+2) {
-                    if(pBar <= press[iP+2] && iP > 0) {iPnew--; break;}
+                    if(pBar >= pLow && iP+3 < PRESSURES.length) {iPnew++; break;}
+                } else {
+                    if(pBar <= pHigh && iP > 0) {iPnew--; break;}
                 }
                 if(i == iT-2) {
-                    if(tC >= temperatures[iT-2] && iT+1 < temperatures.length) {iTnew++; break;}
-                } else if(i == iT) {
-                    if(tC <= temperatures[iT] && iT > 2) {iTnew--; break;}
+                    if(tC >= TEMPERATURES[iT-2] && iT+1 < TEMPERATURES.length) {iTnew++; break;}
+                } else {
+                    if(tC <= TEMPERATURES[iT] && iT > 2) {iTnew--; break;}
                 }
             }
         }
         if(iT != iTnew || iP != iPnew) {break;}
     }
-    iT = iTnew; iP = iPnew;
-    if(dbg){if(temperatures[iT] <= 400  && press[iP] < 1.1) {press[iP] = pSat[iT];}
-            else if(temperatures[iT] > 450 && press[iP] > 500 && press[iP] <= 1000) {press[iP] = pSat[iT];}
-            System.out.println("\"interpolate3D\": tC="+tC+", pBar="+pBar+
-            ", new x="+iT+", y="+iP+";"+
-            " t["+iT+"]="+temperatures[iT]+","+
-            "  p["+iP+"]="+press[iP]);}
+    return (iTnew << 2) | iPnew;
+}
 
-    // Get three (3) interpolated logK's at the selected pressure,
-    // at the three temperatures bracketing the selected temperature.
-    // Note that lowest iT value passed by indexer3D is 2 and the
-    // lowest iP value passed is 0.
-    // The highest values are (temperatures.length-1) and (pressures.length-3).
-    float sum, logK,pK,pJ;
-    float[] lgK = new float[3];
-    for(int i = 0; i < lgK.length; i++) {lgK[i] = 0f;}
-    logK = 0f;
-    int i,j,k,l = 0;
-    for(i = iT-2; i <= iT; i++) {
-        for(j = iP; j <= iP+2; j++) {
-            sum = logKarray[j][i];
-            for(k = iP; k <= iP+2; k++) {
-                if(k != j) {
-                    pK = pressures[k]; pJ = pressures[j];
-                    if(temperatures[i] <= 400) {
-                        // 1st pressure (="1"): at tC < 400C use pSat instead of "1"
-                        if(k == 0) {pK = pSat[i];} else if(j == 0) {pJ = pSat[i];}
-                    }
-                    if(temperatures[i] > 450) {
-                        // 2nd pressure (="500"): at tC > 450C use the pSat array
-                        if(k == 1) {pK = pSat[i];} else if(j == 1) {pJ = pSat[i];}
-                    }
-                    sum = sum *(pBar-pK)/(pJ-pK);
-                }
-            }
-            lgK[l] = lgK[l] + sum;
-        }
-        l++;
-    }
-    if(dbg) {
-        System.out.println("tC="+tC+", pBar="+pBar+", iT="+iT+", iP="+iP+" lgK 0 to 2 = "+java.util.Arrays.toString(lgK));
-        System.out.println("temperatures 0 to "+(temperatures.length-1)+", pressures 0 to "+(pressures.length-1));
-    }
-    // Interpolate logK at the selected temperature using
-    // the three temperature values in lgK[]
-    k = 0;
-    for(i = iT-2; i <= iT; i++) {
-        sum = lgK[k];
-        for(j = iT-2; j <= iT; j++) {
-            if(j != i) {sum = sum *(tC-temperatures[j])/(temperatures[i]-temperatures[j]);}
-        }
-        logK = logK + sum;
-        k++;
-    }
-    if(dbg) {System.out.println("tC="+tC+", pBar="+pBar+", iT="+iT+", iP="+iP+" logK = "+logK);}
-    return logK;
+/** Lagrange interpolation in pressure at one temperature of the look-up grid.
+ * @param pBar the pressure in bar
+ * @param node the index in P_NODE of the first of the three pressures
+ * @param w0 the first logK value multiplied by its value in P_DEN
+ * @param w1 the second logK value multiplied by its value in P_DEN
+ * @param w2 the third logK value multiplied by its value in P_DEN
+ * @return the interpolated logK */
+static double lagrangeP(final double pBar, final int node,
+        final double w0, final double w1, final double w2) {
+    final double d0 = pBar - P_NODE[node], d1 = pBar - P_NODE[node+1], d2 = pBar - P_NODE[node+2];
+    return w0*(d1*d2) + w1*(d0*d2) + w2*(d0*d1);
 }
 
-  //<editor-fold defaultstate="collapsed" desc="indexer3D">
-/** Returns array indices using the specified temperature and pressure.
- * 
- * For <b>temperature</b>, the minimum value returned is 2 so that the first
+/** Lagrange interpolation in temperature.
+ * @param tC the temperature in degrees Celsius
+ * @param iT the index of the highest of the three temperatures (2 to 13)
+ * @param lgK0 logK at the temperature iT-2
+ * @param lgK1 logK at the temperature iT-1
+ * @param lgK2 logK at the temperature iT
+ * @return the interpolated logK */
+static double lagrangeT(final double tC, final int iT,
+        final double lgK0, final double lgK1, final double lgK2) {
+    final double d0 = tC - TEMPERATURES[iT-2], d1 = tC - TEMPERATURES[iT-1], d2 = tC - TEMPERATURES[iT];
+    return lgK0*T_DEN[iT*3]*(d1*d2) + lgK1*T_DEN[iT*3+1]*(d0*d2) + lgK2*T_DEN[iT*3+2]*(d0*d1);
+}
+
+  //<editor-fold defaultstate="collapsed" desc="indexT and indexP">
+/** Returns the index in the array of temperatures for the specified temperature.
+ * The minimum value returned is 2 so that the first
  * three temperature values may be used for the subsequent extrapolation.
  * For example, if the temperature array is [0, 25, 50, 100, 150], with indices
  * 0 to 4, then if tC=5 or tC=45, the returned index value is 2, but if tC=85,
  * the returned value is 3 (so that temperatures 25, 50 and 100 may be used
  * for the extrapolation).
- * 
- * For <b>pressure</b>, the returned value is always less
- * than (length-3), so that the last three pressures may be used for the
- * subsequent extrapolation. For example if the pressure array is
- * [1, 500, 1000, 3000, 5000], with indices 0 to 4, then if pBar = 4500
- * the returned "y" value is 2 (so that the pressures 1000, 3000 and 5000 may
- * be used for the subsequent extrapolation), but if pBar = 50, the returned
- * value is 0 (pressures 1, 500 and 1000 may be used for the extrapolation).
- * 
- * @param tC temperature in degrees C
- * @param pBar pressure in bar
- * @param temperatures array of temperature values
- * @param pressures array of pressure values
- * @return the index for the temperature as "x" and the index for the pressure
- * as the "y" fields  */
-private static java.awt.Point indexer3D(final float tC, final float pBar,
-        final float[] temperatures, final float[] pressures, final boolean dbg)
-        throws IllegalArgumentException {
-    
-    int iT,iP;
-    if(temperatures.length <=3 || pressures.length <= 3) {
-        throw new IllegalArgumentException("\"indexer3D\": "+
-                "the length of the temperature and pressure arrays must be >3.");}
-    
-
-    int jLow = 0, jUpp = temperatures.length-1, jMid;
-    if(tC < temperatures[jLow] || tC > temperatures[jUpp]) {
-        throw new IllegalArgumentException("\"indexer3D\": t = "+tC+
-                " must be >="+temperatures[jLow]+" and <="+temperatures[jUpp]);}
-
-    if(tC == temperatures[jLow]) {iT = jLow;}
-    else if(tC == temperatures[jUpp]) {iT = jUpp;}
+ * @param tC temperature in degrees C, between the first and last temperatures
+ * @return the index for the temperature */
+private static int indexT(final float tC) {
+    int iT;
+    int jLow = 0, jUpp = TEMPERATURES.length-1, jMid;
+    if(tC == TEMPERATURES[jLow]) {iT = jLow;}
+    else if(tC == TEMPERATURES[jUpp]) {iT = jUpp;}
     else{
         while((jUpp - jLow) > 1) {
             jMid = (jLow + jUpp) /2;
-            if(tC > temperatures[jMid]) {jLow = jMid;} else {jUpp = jMid;}
+            if(tC > TEMPERATURES[jMid]) {jLow = jMid;} else {jUpp = jMid;}
         }
         iT = jUpp;
     }
-    iT = Math.min(temperatures.length-1,Math.max(2, iT));
-
-    jLow = 0; jUpp = pressures.length-1;
-    if(pBar < pressures[jLow] || pBar > pressures[jUpp]) {
-        throw new IllegalArgumentException("\"indexer3D\": p = "+pBar+
-                " must be >="+pressures[jLow]+" and <="+pressures[jUpp]);}
+    return Math.min(TEMPERATURES.length-1,Math.max(2, iT));
+}
 
-    if(pBar <= pressures[jLow]) {iP = jLow;}
-    else if(pBar > pressures[jUpp]) {iP = jUpp;}
+/** Returns the index in the array of pressures for the specified pressure.
+ * The returned value is always less
+ * than (length-3), so that the last three pressures may be used for the
+ * subsequent extrapolation. For example if the pressure array is
+ * [1, 500, 1000, 3000, 5000], with indices 0 to 4, then if pBar = 4500
+ * the returned value is 2 (so that the pressures 1000, 3000 and 5000 may
+ * be used for the subsequent extrapolation), but if pBar = 50, the returned
+ * value is 0 (pressures 1, 500 and 1000 may be used for the extrapolation).
+ * @param pBar pressure in bar, between the first and last pressures
+ * @return the index for the pressure */
+private static int indexP(final float pBar) {
+    int iP;
+    int jLow = 0, jUpp = PRESSURES.length-1, jMid;
+    if(pBar <= PRESSURES[jLow]) {iP = jLow;}
     else{
         while((jUpp - jLow) > 1) {
             jMid = (jLow + jUpp) /2;
-            if(pBar >= pressures[jMid]) {jLow = jMid;} else {jUpp = jMid;}
+            if(pBar >= PRESSURES[jMid]) {jLow = jMid;} else {jUpp = jMid;}
         }
         iP = jLow;
     }
-    iP = Math.min(pressures.length-3,Math.max(0, iP));
-    if(dbg) {System.out.println("\"indexer3D\": tC="+tC+", pBar="+pBar+
-            ", returns x="+iT+", y="+iP+";"+
-            " t["+iT+"]="+temperatures[iT]+","+
-            "  p["+iP+"]="+pressures[iP]);}
-    java.awt.Point indexes = new java.awt.Point();
-    indexes.x = iT;
-    indexes.y = iP;
-    return indexes;
+    return Math.min(PRESSURES.length-3,Math.max(0, iP));
 }
   //</editor-fold>
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="logKinterpolatePsat">
 /** Returns the value of logK at the requested tC, interpolated
- * from the provided array, at temperatures 0 to 350 C 
+ * from the provided array, at temperatures 0 to 350 C
  * @param tC the input temperature in degrees Celsius
- * @param logKarray an array of logK values (logKarray[9]) at
+ * @param logKarray an array of logK values at
  * the temperatures {0,25,50,100,150,200,250,300,350} corresponding
  * to saturated vapor pressure. Set absent logK values to not-a-number (NaN).
+ * Only the first nine values are used, so that the first row of a look-up
+ * table (logKarray[5][14]) may be given.
  * @return the value of logK interpolated at the provided tC value */
 public static float logKinterpolatePsat(final float tC, final float[] logKarray) {
-    //                     index:            0   1   2   3    4    5    6    7    8
-    final float[] temperatures = new float[]{0f,25f,50f,100f,150f,200f,250f,300f,350f};
-    if(logKarray.length != temperatures.length) {
-        throw new IllegalArgumentException("\"interpolate2D\": the length of logKarray must be "+temperatures.length+".");
+    if(logKarray.length < N_PSAT) {
+        throw new IllegalArgumentException("\"interpolate2D\": the length of logKarray must be "+N_PSAT+".");
     }
     // Locate the place in the table of temperatures
     // of tC (at which the logK evaluation is desired).
-    int min = 0, max = temperatures.length-1;
-    for (int i = 0; i < temperatures.length; i++) {
+    final int minMax = minMaxPsat(logKarray);
+    if(minMax < 0) {
+        throw new IllegalArgumentException("\"interpolate2D\": found NaN value in logKarray["+(-minMax-1)+"], in between two numeric values.");
+    }
+    return interpolatePsat(tC, logKarray, minMax >> 4, minMax & 15);
+}
+
+/** Finds the first and last values of logK at pSat that are not NaN.
+ * @param logKarray the values of logK at pSat (at least nine values)
+ * @return min*16+max, or (-i-1) if logKarray[i] is NaN and it is
+ * between two numeric values */
+static int minMaxPsat(final float[] logKarray) {
+    int min = 0, max = N_PSAT-1;
+    for (int i = 0; i < N_PSAT; i++) {
         if(!Float.isNaN(logKarray[i])) {min = i; break;}
     }
-    for (int i = temperatures.length-1; i > -1; i--) {
+    for (int i = N_PSAT-1; i > -1; i--) {
         if(!Float.isNaN(logKarray[i])) {max = i; break;}
     }
     for (int i = min; i <= max; i++) {
-        if(Float.isNaN(logKarray[i])) {
-            throw new IllegalArgumentException("\"interpolate2D\": found NaN value in logKarray["+i+"], in between two numeric values.");
-        }
+        if(Float.isNaN(logKarray[i])) {return -i-1;}
     }
+    return (min << 4) | max;
+}
+
+/** The interpolation in <code>logKinterpolatePsat</code>.
+ * @param tC the temperature in degrees Celsius
+ * @param logKarray the values of logK at pSat
+ * @param min the first value of logKarray that is not NaN
+ * @param max the last value of logKarray that is not NaN
+ * @return the value of logK interpolated at tC */
+static float interpolatePsat(final float tC, final float[] logKarray, final int min, final int max) {
+    final float[] temperatures = TEMPERATURES;
     // -----------------
     //   Special cases
     // -----------------
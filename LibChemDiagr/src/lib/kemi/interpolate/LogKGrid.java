@@ -0,0 +1,142 @@
+package lib.kemi.interpolate;
+
+/** A look-up table of logK values prepared for repeated interpolations.
+ * The values of logK at each node of the grid of temperatures and pressures
+ * are multiplied by the denominators of the Lagrange polynomials when the
+ * object is created, and the first and last values at the saturated vapour
+ * pressure are located, so that the interpolations are made without
+ * allocating any arrays.  The values are the same as those of
+ * <code>Interpolate.logKinterpolateTP</code> and
+ * <code>Interpolate.logKinterpolatePsat</code>.
+ * <p>The data are copied when the object is created: if the look-up table
+ * is changed afterwards, a new object must be created.
+ *
+ * Copyright (C) 2014-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech
+ * @see lib.kemi.interpolate.Interpolate#logKinterpolateTP(float, float, float[][]) Interpolate.logKinterpolateTP */
+public final class LogKGrid {
+  private static final int NT = Interpolate.TEMPERATURES.length;
+  private static final int NP = Interpolate.PRESSURES.length;
+  /** a copy of the look-up table (needed to find NaN values), or null */
+  private final float[][] logK;
+  /** the logK values times the Lagrange denominators: [(iT*3+iP)*3+j] */
+  private final double[] w;
+  /** a copy of the values at pSat, or null */
+  private final float[] logKpSat;
+  /** the first and last values at pSat that are not NaN */
+  private final int min, max;
+  /** the index of a NaN value at pSat in between two numeric values, or -1 */
+  private final int nanPsat;
+  /** why the interpolation in (T,P) can not be made, or null */
+  private final String errTP;
+  /** why the interpolation at pSat can not be made, or null */
+  private final String errPsat;
+
+  /** Prepares a look-up table for the interpolations.
+   * @param logKarray an array of logK values (logKarray[5][14])
+   * with pressures as the first index {pSat, 500, 1000, 3000 and 5000} and
+   * temperatures as the second index
+   * {0,25,50,100,150,200,250,300,350,400,450,500,550,600}.
+   * Where no data is available the values must be NaN.
+   * If some of the arrays are missing, only the interpolations that do not
+   * need them may be made.
+   * @throws IllegalArgumentException if logKarray is null
+   * @see lib.kemi.interpolate.Interpolate#logKinterpolateTP(float, float, float[][]) Interpolate.logKinterpolateTP */
+  public LogKGrid(final float[][] logKarray) throws IllegalArgumentException {
+    if(logKarray == null) {
+        throw new IllegalArgumentException("\"LogKGrid\": logKarray = \"null\"");}
+    // --- at pSat
+    if(logKarray.length < 1 || logKarray[0] == null) {
+        errPsat = "\"LogKGrid\": logKarray[0] = \"null\"";
+    } else if(logKarray[0].length < Interpolate.N_PSAT) {
+        errPsat = "\"interpolate2D\": the length of logKarray must be "+Interpolate.N_PSAT+".";
+    } else {errPsat = null;}
+    int minMax = 0;
+    if(errPsat == null) {
+        logKpSat = new float[Interpolate.N_PSAT];
+        System.arraycopy(logKarray[0], 0, logKpSat, 0, logKpSat.length);
+        minMax = Interpolate.minMaxPsat(logKpSat);
+    } else {logKpSat = null;}
+    if(minMax < 0) {nanPsat = -minMax-1; minMax = 0;} else {nanPsat = -1;}
+    min = minMax >> 4; max = minMax & 15;
+    // --- the look-up table
+    String err = null;
+    if(logKarray.length != NP) {
+        err = "\"interpolate3D\": length of logKarray must be "+NP;
+    } else {
+        for(int i = 0; i < NP; i++) {
+            if(logKarray[i] == null) {err = "\"interpolate3D\": logKarray["+i+"] = \"null\""; break;}
+            if(logKarray[i].length < NT) {err = "\"LogKGrid\": the length of logKarray["+i+"] must be "+NT; break;}
+        }
+    }
+    errTP = err;
+    if(errTP != null) {logK = null; w = null; return;}
+    logK = new float[NP][NT];
+    for(int i = 0; i < NP; i++) {System.arraycopy(logKarray[i], 0, logK[i], 0, NT);}
+    w = new double[NT*3*3];
+    int k;
+    for(int i = 0; i < NT; i++) {
+        for(int iP = 0; iP < 3; iP++) {
+            k = (i*3+iP)*3;
+            for(int j = 0; j < 3; j++) {
+                w[k+j] = (double)logK[iP+j][i] * Interpolate.P_DEN[k+j];
+            }
+        }
+    }
+  }
+
+  /** Returns the value of logK at the requested tC and pBar, the same as
+   * <code>Interpolate.logKinterpolateTP</code>.
+   * @param tC the temperature in degrees Celsius
+   * @param pBar the pressure in bar
+   * @return the value of logK interpolated at the provided values of tC and pBar
+   * @throws IllegalArgumentException if tC or pBar are NaN or outside the
+   * look-up table, or if the look-up table is not complete
+   * @see lib.kemi.interpolate.Interpolate#logKinterpolateTP(float, float, float[][]) Interpolate.logKinterpolateTP */
+  public float logKatTP(final float tC, final float pBar) throws IllegalArgumentException {
+    Interpolate.checkTP(tC, pBar);
+    if(errTP != null) {throw new IllegalArgumentException(errTP);}
+    final int group = Interpolate.groupTP(tC, pBar, logK);
+    final int iT = group >> 2, iP = group & 3;
+    int k = ((iT-2)*3+iP)*3;
+    final double lgK0 = Interpolate.lagrangeP(pBar, (iT-2)*5+iP, w[k], w[k+1], w[k+2]);
+    k = ((iT-1)*3+iP)*3;
+    final double lgK1 = Interpolate.lagrangeP(pBar, (iT-1)*5+iP, w[k], w[k+1], w[k+2]);
+    k = (iT*3+iP)*3;
+    final double lgK2 = Interpolate.lagrangeP(pBar, iT*5+iP, w[k], w[k+1], w[k+2]);
+    return (float)Interpolate.lagrangeT(tC, iT, lgK0, lgK1, lgK2);
+  }
+
+  /** Returns the value of logK at the requested tC and at the saturated
+   * vapour pressure, the same as <code>Interpolate.logKinterpolatePsat</code>
+   * with the first nine values of logKarray[0].
+   * @param tC the temperature in degrees Celsius
+   * @return the value of logK interpolated at the provided tC value
+   * @throws IllegalArgumentException if logKarray[0] is missing or if it
+   * contains NaN in between two numeric values
+   * @see lib.kemi.interpolate.Interpolate#logKinterpolatePsat(float, float[]) Interpolate.logKinterpolatePsat */
+  public float logKatPsat(final float tC) throws IllegalArgumentException {
+    if(errPsat != null) {throw new IllegalArgumentException(errPsat);}
+    if(nanPsat >= 0) {
+        throw new IllegalArgumentException("\"interpolate2D\": found NaN value in logKarray["+nanPsat+"], in between two numeric values.");
+    }
+    return Interpolate.interpolatePsat(tC, logKpSat, min, max);
+  }
+
+  /** @return true if the values at the saturated vapour pressure are available */
+  public boolean hasPsat() {return errPsat == null;}
+}
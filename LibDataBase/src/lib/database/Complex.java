@@ -1,5 +1,6 @@
 package lib.database;
 
+import lib.kemi.H2O.H2OCache;
 import lib.kemi.H2O.IAPWSF95;
 import lib.common.Util;
 
@@ -1230,9 +1231,8 @@ public class Complex implements Comparable<Complex>, Cloneable {
     if(this.lookUp)  {
         if(logKarray[0] == null) {return Double.NaN;}
         //   t=  0, 25, 50, 100, 150, 200, 250, 300, 350 C
-        float[] logK = new float[9];
-        System.arraycopy(logKarray[0], 0, logK, 0, logK.length);
-        return lib.kemi.interpolate.Interpolate.logKinterpolatePsat((float)tC, logK);
+        //   (only the first nine values of logKarray[0] are used)
+        return lib.kemi.interpolate.Interpolate.logKinterpolatePsat((float)tC, logKarray[0]);
     } else {
         return analyticExpression(this, tC);
     }
@@ -1271,7 +1271,7 @@ public class Complex implements Comparable<Complex>, Cloneable {
     }
     if(tC < 373.) { // crtitical point of water = 373.946
         // is the pressure = vapour-liquid equilibrium?
-        double pSat = Math.max(1,IAPWSF95.pSat(tC));
+        double pSat = Math.max(1,H2OCache.pSat(tC));
         // if tC <=100 and pBar = 1
         if(tC <= 100.001 && Math.abs(pBar-1)<0.001) {return logKatTpSat(tC);}
         if(pBar < (pSat*0.99)) {  // below saturated liquid-vapor pressure
@@ -1281,11 +1281,7 @@ public class Complex implements Comparable<Complex>, Cloneable {
         }
     } else if(tC <= 376.) {return Double.NaN;} // between 373 and 376 C
     // if tC > 376
-    double[] tLimit = new double[]{373.946,400,410,430,440,460,470,490,510,520,540,550,570,580,600};
-    double[] pLimit = new double[]{        300,350,400,450,500,550,600,650,700,750,800,850,900,950};
-    for(int i = 0; i < (tLimit.length-1); i++) {
-        if(tC > tLimit[i] && tC <= tLimit[i+1] && pBar < pLimit[i]) {return Double.NaN;}
-    }
+    if(tpInLowDensityRegion(tC, pBar)) {return Double.NaN;}
     // If there is no second row of logKarray, it means that the look-up-table
     // (if it is not null) has been constructed from array a[].
     if(thereIsLookUpTable)  {
@@ -1296,6 +1292,21 @@ public class Complex implements Comparable<Complex>, Cloneable {
     }
   }
 
+  /** temperatures (C) and pressures (bar) limiting the low-density region
+   * above the critical point, where logK values are not calculated */
+  private static final double[] T_LIMIT = new double[]{373.946,400,410,430,440,460,470,490,510,520,540,550,570,580,600};
+  private static final double[] P_LIMIT = new double[]{        300,350,400,450,500,550,600,650,700,750,800,850,900,950};
+  /** @param tC the temperature in degrees Celsius (above the critical point)
+   * @param pBar the pressure in bar
+   * @return true if (tC,pBar) is in the low-density region, where logK values
+   * are not calculated */
+  static boolean tpInLowDensityRegion(final double tC, final double pBar) {
+    for(int i = 0; i < (T_LIMIT.length-1); i++) {
+        if(tC > T_LIMIT[i] && tC <= T_LIMIT[i+1] && pBar < P_LIMIT[i]) {return true;}
+    }
+    return false;
+  }
+
   //<editor-fold defaultstate="collapsed" desc="Not used: constCp(complex,tC)">
   /** Extrapolates the log10 of an equilibrium constant "logK0" using the
    * the constant heat capacity approximation, or if deltaCp is not provided,
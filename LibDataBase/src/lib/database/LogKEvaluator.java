@@ -0,0 +1,212 @@
+package lib.database;
+
+import lib.kemi.H2O.H2OCache;
+import lib.kemi.interpolate.LogKGrid;
+
+/** An immutable, "compiled" form of a list of reactions (<code>Complex</code>)
+ * used to calculate logK at a given temperature and pressure for all the
+ * reactions at once.  Each reaction is classified when the evaluator is
+ * created: a look-up table, an analytic expression (power series in T), a
+ * constant (only available at 25 C), or no data.  The temperature and
+ * pressure limits are also stored, normalised as in
+ * <code>Complex.logKatTandP</code>, but the <code>Complex</code> objects
+ * are not changed.  The values at a (T,P) are the same as those of
+ * <code>Complex.logKatTandP</code>, while the saturated vapour pressure and
+ * the checks that only depend on (T,P) are made only once for all reactions,
+ * and the look-up tables are prepared for the interpolations
+ * (see <code>LogKGrid</code>).
+ * <p>The data are copied when the evaluator is created: if a reaction is
+ * changed afterwards, a new evaluator must be created.
+ * <pre>
+ *   LogKEvaluator ev = new LogKEvaluator(list);
+ *   double[] logK = new double[ev.size()];
+ *   ev.logK(tC, pBar, logK);
+ * </pre>
+ * Copyright (C) 2015-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech
+ * @see lib.database.Complex#logKatTandP(double, double) Complex.logKatTandP */
+public final class LogKEvaluator {
+  /** kind of reaction: no logK data */
+  public static final int NONE = 0;
+  /** kind of reaction: only logK at 25 C is available */
+  public static final int CONSTANT = 1;
+  /** kind of reaction: an analytic logK(T) expression (or enthalpy and heat capacity) */
+  public static final int ANALYTIC = 2;
+  /** kind of reaction: a look-up table of logK values */
+  public static final int LOOKUP = 3;
+
+  private final int n;
+  /** the kind of analytic expression: NONE, CONSTANT or ANALYTIC */
+  private final int[] kindA;
+  private final boolean[] lookUp;
+  /** true if the second row of logKarray has some value */
+  private final boolean[] hasTable;
+  private final double[] tMax, pMax, constant;
+  /** a[0] to a[5] for each reaction, with EMPTY replaced by zero */
+  private final double[] a;
+  /** the look-up tables prepared for the interpolations, or null */
+  private final LogKGrid[] grid;
+
+  //<editor-fold defaultstate="collapsed" desc="constructor">
+  /** Classifies the reactions and stores their data.
+   * @param list the reactions
+   * @throws IllegalArgumentException if the list is null */
+  public LogKEvaluator(java.util.List<Complex> list) throws IllegalArgumentException {
+    if(list == null) {throw new IllegalArgumentException("\"LogKEvaluator\": null list.");}
+    n = list.size();
+    kindA = new int[n];
+    lookUp = new boolean[n];
+    hasTable = new boolean[n];
+    tMax = new double[n]; pMax = new double[n]; constant = new double[n];
+    a = new double[6*n];
+    grid = new LogKGrid[n];
+    Complex c;
+    for(int i = 0; i < n; i++) {
+      c = list.get(i);
+      constant[i] = c.constant;
+      tMax[i] = Math.min(1000,Math.max(25, c.tMax));
+      pMax[i] = Math.min(5000,Math.max(1, c.pMax));
+      lookUp[i] = c.lookUp;
+      if(Double.isNaN(c.constant) || c.constant == Complex.EMPTY) {kindA[i] = NONE;}
+      else if(c.a == null || c.a[0] == Complex.EMPTY) {kindA[i] = CONSTANT;}
+      else {
+        kindA[i] = ANALYTIC;
+        for(int k = 0; k < 6; k++) {
+          if(c.a[k] != Complex.EMPTY) {a[6*i+k] = c.a[k];}
+        }
+      }
+      if(c.logKarray != null) {
+        grid[i] = new LogKGrid(c.logKarray);
+        if(c.logKarray.length > 1 && c.logKarray[1] != null) {
+          for(int j = 0; j < c.logKarray[1].length; j++) {
+            if(!Float.isNaN(c.logKarray[1][j])) {hasTable[i] = true; break;}
+          }
+        }
+      }
+    }
+  }
+  // </editor-fold>
+
+  /** @return the number of reactions */
+  public int size() {return n;}
+
+  /** @param i the index of a reaction
+   * @return the kind of reaction: LOOKUP, ANALYTIC, CONSTANT or NONE */
+  public int kind(int i) {return lookUp[i] ? LOOKUP : kindA[i];}
+
+  /** @param i the index of a reaction
+   * @return the highest temperature (Celsius) for the logK calculations,
+   * between 25 and 1000 */
+  public double tMax(int i) {return tMax[i];}
+
+  /** @param i the index of a reaction
+   * @return the highest pressure (bar) for the logK calculations,
+   * between 1 and 5000 */
+  public double pMax(int i) {return pMax[i];}
+
+  //<editor-fold defaultstate="collapsed" desc="logK(tC,pBar,logK[])">
+  /** Calculates logK for all the reactions at the given temperature and
+   * pressure.  The values are those of <code>Complex.logKatTandP</code>,
+   * except that NaN is returned where the interpolation in a look-up
+   * table fails, instead of an exception.
+   * @param tC0 the temperature in degrees Celsius
+   * @param pBar the pressure in bar
+   * @param logK output: the values of logK, or NaN where they can not be calculated
+   * @throws IllegalArgumentException if logK is shorter than the number of reactions
+   * @see lib.database.Complex#logKatTandP(double, double) Complex.logKatTandP */
+  public void logK(final double tC0, final double pBar, final double[] logK)
+        throws IllegalArgumentException {
+    if(logK == null || logK.length < n) {
+        throw new IllegalArgumentException("\"LogKEvaluator.logK\": the output array must have "+n+" elements.");
+    }
+    final int region = region(tC0, pBar);
+    final double tC = Math.max(tC0,0.01);
+    for(int i = 0; i < n; i++) {
+      try {logK[i] = logK(i, region, tC0, tC, pBar);}
+      catch (IllegalArgumentException ex) {logK[i] = Double.NaN;}
+    }
+  }
+
+  /** Calculates logK for one reaction, the same as <code>Complex.logKatTandP</code>.
+   * @param i the index of the reaction
+   * @param tC0 the temperature in degrees Celsius
+   * @param pBar the pressure in bar
+   * @return the value of logK, or NaN
+   * @throws IllegalArgumentException if the interpolation in a look-up table fails
+   * @see lib.database.Complex#logKatTandP(double, double) Complex.logKatTandP */
+  public double logK(final int i, final double tC0, final double pBar)
+        throws IllegalArgumentException {
+    return logK(i, region(tC0, pBar), tC0, Math.max(tC0,0.01), pBar);
+  }
+
+  /** where is (T,P)? */
+  private static final int R_NAN = 0, R_SAT = 1, R_TP = 2;
+
+  /** The checks in <code>Complex.logKatTandP</code> that do not depend on the reaction.
+   * @return R_NAN if logK can not be calculated at (T,P), R_SAT if
+   * logK is to be calculated at pSat, or R_TP otherwise */
+  private static int region(final double tC0, final double pBar) {
+    if(Double.isNaN(tC0) || Double.isNaN(pBar)) {return R_NAN;}
+    final double tC = Math.max(tC0,0.01); // triple point of water
+    if(tC < 373.) { // crtitical point of water = 373.946
+        if(tC <= 100.001 && Math.abs(pBar-1)<0.001) {return R_SAT;}
+        double pSat = Math.max(1,H2OCache.pSat(tC));
+        if(pBar < (pSat*0.99)) {return R_NAN;} // pBar is in the gas range
+        if(pBar < (pSat*1.01)) {return R_SAT;}
+    } else if(tC <= 376.) {return R_NAN;} // between 373 and 376 C
+    if(Complex.tpInLowDensityRegion(tC, pBar)) {return R_NAN;}
+    return R_TP;
+  }
+
+  private double logK(final int i, final int region, final double tC0, final double tC, final double pBar) {
+    if(region == R_NAN) {return Double.NaN;}
+    if(tC0 > tMax[i]+0.001 || pBar > pMax[i]*1.01) {return Double.NaN;}
+    if(region == R_SAT) {
+        // as in Complex.logKatTpSat
+        if(lookUp[i]) {
+            if(grid[i] == null || !grid[i].hasPsat()) {return Double.NaN;}
+            return grid[i].logKatPsat((float)tC);
+        }
+        return analytic(i, tC);
+    }
+    if(hasTable[i]) {
+        return grid[i].logKatTP((float)tC, (float)pBar);
+    }
+    if(pBar > 221) {return Double.NaN;}
+    return analytic(i, tC);
+  }
+
+  /** as in Complex.analyticExpression */
+  private double analytic(final int i, final double tC) {
+    if(kindA[i] == NONE) {return Double.NaN;}
+    if(tC>24.99 && tC<25.01) {return constant[i];}
+    if(kindA[i] == CONSTANT) {return Double.NaN;}
+    if(tC > tMax[i]+0.001) {return Double.NaN;}
+    final double tK = Math.max(0.01,tC)+273.15; // triple point of water
+    final int k = 6*i;
+    double logK = a[k];
+    // log K = A0 + A1 T + A2/T +  A3 log(T)  + A4 / T^2 + A5 T^2
+    if(a[k+1] != 0.) {logK = logK + a[k+1]*tK;}
+    if(a[k+2] != 0.) {logK = logK + a[k+2]/tK;}
+    if(a[k+3] != 0.) {logK = logK + a[k+3]*Math.log10(tK);}
+    if(a[k+4] != 0.) {logK = logK + a[k+4]/(tK*tK);}
+    if(a[k+5] != 0.) {logK = logK + a[k+5]*(tK*tK);}
+    return logK;
+  }
+  // </editor-fold>
+
+}
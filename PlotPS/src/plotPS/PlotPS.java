@@ -41,7 +41,7 @@ private String psFile_name;
 private java.io.File psFile;
 /** has the file conversion finished ? */
 private boolean finished = false;
-private java.io.BufferedReader bufReader;
+private PltReader pltReader;
 private java.io.BufferedWriter outputFile;
 /** has an error occurred? if so, delete the output file */
 private boolean delete = false;
@@ -299,7 +299,7 @@ private static class BoundingBox {
     }
 
     // --- close streams
-    try{if(bufReader != null) {bufReader.close();}}
+    try{if(pltReader != null) {pltReader.close();}}
     catch (java.io.IOException ex) {
         exception(ex, "while closing file:"+nl+"   \""+pltFile+"\"", doNotStop);
     }
@@ -611,39 +611,33 @@ private static class BoundingBox {
     }
 
     //--- open the input plt-file
-    bufReader = getBufferedReader(pltFile, doNotStop);
-    if(bufReader == null) {return;}
+    pltReader = getPltReader(pltFile, doNotStop);
+    if(pltReader == null) {return;}
 
     psInit(outputFile);
 
     // ----------------------------------------------------
     int i0, i1, i2;
-    String s0, s1, s2;
-    String line;
+    boolean more;
     String comment;
     boolean readingText = false;
     /** -1=Left  0=center  +1=right */
     int align = 0, alignDef = 0;
     // ----- read all lines
     while(true) {
-        try {line = bufReader.readLine();}
+        try {more = pltReader.next();}
         catch (java.io.IOException ex) {
             msg = "while reading the plot file:"+nl+
                   "   \""+pltFile.getAbsolutePath()+"\"";
             exception(ex, msg, doNotStop);
             break;
         }
-        if(line == null) {break;}
+        if(!more) {break;}
 
         // --- get i0, i1, i2 and any comment
-        if(line.length() > 0) {s0= line.substring(0,1).trim();} else {s0 = "";}
-        if(line.length() > 4) {s1= line.substring(1,5).trim();} else {s1 = "";}
-        if(line.length() > 8) {s2= line.substring(5,9).trim();} else {s2 = "";}
-        if(s0.length() > 0) {i0 = readInt(s0);} else {i0 = -1;}
-        if(s1.length() > 0) {i1 = readInt(s1);} else {i1 = 0;}
-        if(s2.length() > 0) {i2 = readInt(s2);} else {i2 = 0;}
-        if(line.length() > 9) {
-            comment= line.substring(9).trim();
+        i0 = pltReader.i0; i1 = pltReader.i1; i2 = pltReader.i2;
+        if(pltReader.comment != null) {
+            comment= pltReader.comment.trim();
             if(comment.equals("TextEnd")) {readingText = false; continue;}
         } else {comment = "";}
         if(readingText) {continue;}
@@ -680,21 +674,20 @@ private static class BoundingBox {
                 else if(t.equalsIgnoreCase("C")) {align = 0;}                     
             } else {align = alignDef;}
             // the text is in next line
-            try{line = bufReader.readLine();}
+            try{more = pltReader.next();}
             catch(java.io.IOException ex) {
                 msg = "while reading the plot file:"+nl+
                       "   \""+pltFile.getAbsolutePath()+"\"";
                 exception(ex, msg, doNotStop);
                 break;
             }
-            if(line != null) {
-                if(line.length() > 9) {
-                    comment= rTrim(line.substring(9));
-                    if(comment.startsWith(" ")) {comment = comment.substring(1);}
+            if(more) {
+                if(pltReader.comment != null) {
+                    comment= rTrim(pltReader.comment);
                 } else {comment = "";}
                 // print the text
                 printText(i1,i2,comment,isFormula,align,txtSize,txtAngle,outputFile);
-            } // if line != null
+            } // if more
             // ------ read all lines until "TextEnd"
             readingText = true;
             } // if "TextBegin"
@@ -704,29 +697,131 @@ private static class BoundingBox {
 
   } //convert2PS
 
-  //<editor-fold defaultstate="collapsed" desc="getBufferedReader">
-  private static java.io.BufferedReader getBufferedReader(java.io.File f, boolean noStop) {
+  //<editor-fold defaultstate="collapsed" desc="getPltReader">
+  private static PltReader getPltReader(java.io.File f, boolean noStop) {
     String msg;
-    java.io.BufferedReader bufReader;
-    java.io.InputStreamReader isr;
-    try{
-        isr = new java.io.InputStreamReader(new java.io.FileInputStream(f) , "UTF-8");
-        bufReader = new java.io.BufferedReader(isr);
-    }
+    PltReader rd;
+    try{rd = new PltReader(f);}
     catch (java.io.FileNotFoundException ex) {
         msg = "File not found:"+nl+
               "   \""+f.getAbsolutePath()+"\"";
         exception(ex, msg, noStop);
         return null;
-    } catch (java.io.UnsupportedEncodingException ex) {
+    } catch (java.io.IOException ex) {
         msg = "while reading the plot file:"+nl+
                 "   \""+f.getAbsolutePath()+"\"";
         exception(ex, msg, noStop);
         return null;
     }
-    return bufReader;
+    return rd;
   }
   //</editor-fold>
+  //<editor-fold defaultstate="collapsed" desc="class PltReader">
+  /** Reads a plot file one line at a time. The plot file may be either a
+   * text file, with lines "%1d%4d%4d %s" (i0, i1, i2, comment), or a
+   * binary file written by "GraphLib" (the format is described in
+   * class "lib.kemi.graph_lib.PltFile"). */
+  private static class PltReader {
+    /** the values in the last line read (i0 = -1 if the first column is empty) */
+    int i0, i1, i2;
+    /** the comment in the last line read (the text after the first nine
+     * characters of the line, without the separating blank), or null */
+    String comment;
+    private final java.io.BufferedReader br;
+    private final java.io.InputStream is;
+    private final java.util.ArrayList<String> texts = new java.util.ArrayList<String>();
+    private final byte[] buf = new byte[65536];
+    private int n = 0, nRead = 0;
+    private int x = 0, y = 0;
+    /** the version of the binary format that can be read */
+    private static final int VERSION = 1;
+
+    PltReader(java.io.File f) throws java.io.IOException {
+      java.io.InputStream in = new java.io.FileInputStream(f);
+      byte[] b = new byte[21]; // "PLTB", the version and the size of the diagram
+      int m = 0, r;
+      try {while(m < b.length && (r = in.read(b, m, b.length - m)) > 0) {m = m + r;}}
+      catch (java.io.IOException ex) {in.close(); throw ex;}
+      if(m == b.length && b[0] == 'P' && b[1] == 'L' && b[2] == 'T' && b[3] == 'B') {
+          if(b[4] != VERSION) {
+              in.close();
+              throw new java.io.IOException("Binary plot file \""+f.getName()+"\":"+nl+
+                  "format version "+b[4]+" can not be read (only version "+VERSION+").");
+          }
+          is = in; br = null;
+      } else {
+          in.close();
+          is = null;
+          br = new java.io.BufferedReader(new java.io.InputStreamReader(new java.io.FileInputStream(f), "UTF-8"));
+      }
+    }
+
+    /** @return false at the end of the file */
+    boolean next() throws java.io.IOException {
+      if(br != null) {
+          String line = br.readLine();
+          if(line == null) {return false;}
+          String s0, s1, s2;
+          if(line.length() > 0) {s0= line.substring(0,1).trim();} else {s0 = "";}
+          if(line.length() > 4) {s1= line.substring(1,5).trim();} else {s1 = "";}
+          if(line.length() > 8) {s2= line.substring(5,9).trim();} else {s2 = "";}
+          if(s0.length() > 0) {i0 = readInt(s0);} else {i0 = -1;}
+          if(s1.length() > 0) {i1 = readInt(s1);} else {i1 = 0;}
+          if(s2.length() > 0) {i2 = readInt(s2);} else {i2 = 0;}
+          if(line.length() > 9) {
+              comment = line.substring(9);
+              if(comment.startsWith(" ")) {comment = comment.substring(1);}
+          } else {comment = null;}
+          return true;
+      }
+      if(n >= nRead && !fill()) {return false;}
+      int b = getByte();
+      i0 = b & 127;
+      i1 = getSigned(); i2 = getSigned();
+      if(i0 == 0 || i0 == 1) {i1 = i1 + x; i2 = i2 + y; x = i1; y = i2;}
+      if((b & 128) == 0) {comment = null; return true;}
+      int k = getUnsigned();
+      if(k > 0) {
+          if(k > texts.size()) {throw new java.io.IOException("Error in binary plot file: text number "+k+" not found.");}
+          comment = texts.get(k-1);
+          return true;
+      }
+      byte[] t = new byte[getUnsigned()];
+      for(int i = 0; i < t.length; i++) {t[i] = (byte)getByte();}
+      comment = new String(t, "UTF-8");
+      texts.add(comment);
+      return true;
+    }
+
+    void close() throws java.io.IOException {
+      if(br != null) {br.close();}
+      if(is != null) {is.close();}
+    }
+
+    private boolean fill() throws java.io.IOException {
+      nRead = is.read(buf); n = 0;
+      if(nRead <= 0) {nRead = 0; return false;}
+      return true;
+    }
+    private int getByte() throws java.io.IOException {
+      if(n >= nRead && !fill()) {throw new java.io.EOFException("Unexpected end of binary plot file.");}
+      return buf[n++] & 0xFF;
+    }
+    private int getSigned() throws java.io.IOException {
+      int v = getUnsigned();
+      return (v >>> 1) ^ -(v & 1);
+    }
+    private int getUnsigned() throws java.io.IOException {
+      int v = 0, shift = 0, b;
+      do {
+          b = getByte();
+          v = v | ((b & 0x7F) << shift);
+          shift = shift + 7;
+      } while((b & 0x80) != 0 && shift < 35);
+      return v;
+    }
+  } // class PltReader
+  //</editor-fold>
   //<editor-fold defaultstate="collapsed" desc="readInt(String)">
     private static int readInt(String t) {
       int i;
@@ -756,16 +851,16 @@ private static class BoundingBox {
   private BoundingBox getBoundingBox() {
     System.out.println("calculating BoundingBox (for EPS) ...");
     BoundingBox bb = new BoundingBox();
-    java.io.BufferedReader br = getBufferedReader(pltFile, doNotStop);
+    PltReader br = getPltReader(pltFile, doNotStop);
     if(br == null) {return null;}
     // ----- read all lines
-    String line, msg;
+    String msg;
+    boolean more;
     int i0,i1,i2;
-    String s0, s1, s2;
     double x,y;
     String comment;
     while(true) {
-        try {line = br.readLine();}
+        try {more = br.next();}
         catch (java.io.IOException ex) {
             msg = "while reading the plot file:"+nl+
                   "   \""+pltFile.getAbsolutePath()+"\"";
@@ -773,21 +868,16 @@ private static class BoundingBox {
             bb = null;
             break;
         }
-        if(line == null) {break;}
+        if(!more) {break;}
         // --- get i0, i1, i2 and any comment
-        if(line.length() > 0) {s0= line.substring(0,1).trim();} else {s0 = "";}
-        if(line.length() > 4) {s1= line.substring(1,5).trim();} else {s1 = "";}
-        if(line.length() > 8) {s2= line.substring(5,9).trim();} else {s2 = "";}
-        if(s0.length() > 0) {i0 = readInt(s0);} else {i0 = -1;}
-        if(s1.length() > 0) {i1 = readInt(s1);} else {i1 = 0;}
-        if(s2.length() > 0) {i2 = readInt(s2);} else {i2 = 0;}
+        i0 = br.i0; i1 = br.i1; i2 = br.i2;
         if(i0<0 || i0>1) {continue;}
         x = (double)i1 * scaleX;  y = (double)i2 * scaleY;
         if(bb.xMx < x) bb.xMx = x;
         if(bb.yMx < y) bb.yMx = y;
         if(bb.xMn > x) bb.xMn = x;
         if(bb.yMn > y) bb.yMn = y;
-        if (line.length() > 9) {comment= line.substring(9).trim();} else {comment = "";}
+        if (br.comment != null) {comment= br.comment.trim();} else {comment = "";}
         // read a TextBegin-TextEnd
         float txtSize; float txtAngle;
         if (i0 == 0 && comment.length()>41 && comment.startsWith("TextBegin")) {
@@ -799,7 +889,7 @@ private static class BoundingBox {
             if(txtAngle>180) {txtAngle=txtAngle-360f;}
             if(txtAngle<-180) {txtAngle=txtAngle+360f;}
             // the text is in next line
-            try {line = br.readLine();}
+            try {more = br.next();}
             catch (java.io.IOException ex) {
                 msg = "while reading the plot file:"+nl+
                   "   \""+pltFile.getAbsolutePath()+"\"";
@@ -807,10 +897,9 @@ private static class BoundingBox {
                 bb = null;
                 break;
             }
-            if(line == null) {break;}
-            if (line.length()>9) {
-                comment= rTrim(line.substring(9));
-                if(comment.startsWith(" ")) {comment = comment.substring(1);}
+            if(!more) {break;}
+            if (br.comment != null) {
+                comment= rTrim(br.comment);
             } else {comment = "";}
             // addjust userSpaceMax and userSpaceMin
             textBoxMinMax(i1, i2, (txtSize * 100f),
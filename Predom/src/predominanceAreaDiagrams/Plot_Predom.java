@@ -5,6 +5,11 @@ import lib.kemi.chem.Chem;
 import lib.kemi.graph_lib.GraphLib;
 
 /** Methods to create a chemical equilibrium diagram.
+ * The settings of the diagram (the units of the concentrations, the size
+ * of the texts, etc) are given in the fields of this class, by the
+ * <code>Predom</code> frame or by <code>PredomBatch</code>: nothing in this
+ * class uses the frame, so that plot files may also be written when
+ * <code>java.awt.headless=true</code>.
  * <br>
  * Copyright (C) 2014-2020 I.Puigdomenech.
  * 
@@ -23,7 +28,29 @@ import lib.kemi.graph_lib.GraphLib;
  * 
  * @author Ignasi Puigdomenech */
 public class Plot_Predom {
-  private Predom pred = null;
+/** debug output */
+  boolean dbg = false;
+/** if true the diagram shows only aqueous species */
+  boolean aqu = false;
+/** if true the plot file is written in the compact binary format
+ * (see <code>lib.kemi.graph_lib.PltFile</code>) instead of as a text file */
+  boolean binaryPlt = false;
+/** if true a dashed line is drawn at the pH of neutral water */
+  boolean neutral_pH = false;
+/** the concentration units:<ul><li>0="molal"</li><li>1="mol/kg_w"</li>
+ * <li>2="M"</li><li>-1=""</li></ul>
+ * 0 is changed to 2 ("M") by <code>drawPlot</code> at temperatures around 25 C */
+  int conc_units = 0;
+  private static final String[] cUnits = new String[]{"","molal","mol/kg`w'","M"};
+/** the notation for concentrations: 0 = no choice; 1 = scientific;
+ * 2 = engineering. 0 is changed to 2 by <code>drawPlot</code> */
+  int conc_nottn = 0;
+/** the factor to convert pe into Eh (V), or NaN if Eh is not used */
+  double peEh = Double.NaN;
+/** height scale for the texts in the diagram */
+  double tHeight = 1;
+/** the diagram, from the last call to <code>drawPlot</code> */
+  GraphLib.PltData dd = null;
   private static final java.util.Locale engl = java.util.Locale.ENGLISH;
 /** Where errors will be printed. It may be <code>System.err</code>.
  * If null, <code>System.err</code> is used. */
@@ -53,13 +80,11 @@ public class Plot_Predom {
 
 /**
  * Constructor.
- * @param pred0 The PREDOM "frame".
  * @param err0 Where errors will be printed. It may be <code>System.err</code>.
  * If null, <code>System.err</code> is used.
  * @param out0 Where messages will be printed. It may be <code>System.out</code>.
  * If null, <code>System.out</code> is used. */
-public Plot_Predom(Predom pred0, java.io.PrintStream err0, java.io.PrintStream out0) {
-    this.pred = pred0;
+public Plot_Predom(java.io.PrintStream err0, java.io.PrintStream out0) {
     if(err0 != null) {this.err = err0;} else {this.err = System.err;}
     if(out0 != null) {this.out = out0;} else {this.out = System.out;}
 } //constructor
@@ -70,9 +95,13 @@ public Plot_Predom(Predom pred0, java.io.PrintStream err0, java.io.PrintStream o
  * The values are stored in pd.xCentre and pd.yCentre
  * @param ch
  * @param pd
+ * @param traced true if the points were found by <code>PredomTrace</code>,
+ * following the lines between the areas; false if they were found by the
+ * calculations column by column.  Traced points are not in the order of
+ * the columns: they are first sorted along the Y-axis.
  */
-void minMax(Chem ch, PredomData pd){
-  if(pred.dbg) {
+void minMax(Chem ch, PredomData pd, boolean traced){
+  if(dbg) {
       out.println("--- minMax"+nl+"Calculating the position of the centre of each predominance area");
   }
   Chem.ChemSystem cs = ch.chemSystem;
@@ -87,12 +116,12 @@ void minMax(Chem ch, PredomData pd){
   int j;
   for (int i=0; i< pd.nPoint; i++) {
     for(int k=0; k<=2; k++) {
-        j = pd.pair[i][k];
+        j = pd.pair(i,k);
         if(j>=0) {
-            if(pd.xPl[i] > ax[j]) {ax[j]=pd.xPl[i];}
-            if(pd.xPl[i] < ix[j]) {ix[j]=pd.xPl[i];}
-            if(pd.yPl[i] > ay[j]) {ay[j]=pd.yPl[i];}
-            if(pd.yPl[i] < iy[j]) {iy[j]=pd.yPl[i];}
+            if(pd.xPl(i) > ax[j]) {ax[j]=pd.xPl(i);}
+            if(pd.xPl(i) < ix[j]) {ix[j]=pd.xPl(i);}
+            if(pd.yPl(i) > ay[j]) {ay[j]=pd.yPl(i);}
+            if(pd.yPl(i) < iy[j]) {iy[j]=pd.yPl(i);}
         } //pair[i][k] >=0
     }
   } //for nPoint
@@ -112,11 +141,15 @@ void minMax(Chem ch, PredomData pd){
   int nLines; double last;
   double w, w2, z1, z3, q1, q2, q3, q4, ay1, ay2, iy1, iy2, yCent1, yCent2, dist;
   int ij, i2nd;
+  // the points belonging to area "i" near the line X = xCentre[i],
+  // sorted along the Y-axis
+  int[] band = new int[Math.max(0,pd.nPoint)];
+  int nBand, ib;
   for(int i =0; i < cs.Ms; i++) { //loop through all possible areas
     pd.xCentre[i] = (ax[i]+ix[i])/2;
     pd.yCentre[i] = (ay[i]+iy[i])/2;
     if(pd.xCentre[i] < -1000 || pd.yCentre[i] < -1000) {continue;}
-    if(pred.dbg) {
+    if(dbg) {
         out.println(" Species "+i+", \""+cs.namn.ident[i]+"\", Centre = "+(float)pd.xCentre[i]+", "+(float)pd.yCentre[i]);
         out.println("   X from = "+(float)ix[i]+" to "+(float)ax[i]+", Y from = "+(float)iy[i]+" to "+(float)ay[i]);
     }
@@ -128,28 +161,45 @@ void minMax(Chem ch, PredomData pd){
     nLines = 0;
     last = -10000;
     w = pd.xCentre[i] + Math.abs(pd.stepX);
-    for(int ip=0; ip < pd.nPoint; ip++) {
-      if(pd.xPl[ip] < pd.xCentre[i] || pd.xPl[ip] >= w) {continue;}
+    nBand = 0;
+    for(ib=0; ib < pd.nPoint; ib++) {
+      if(pd.xPl(ib) < pd.xCentre[i] || pd.xPl(ib) >= w) {continue;}
       // Check that the point belongs to the area "i"
-      if(pd.pair[ip][1] !=i && pd.pair[ip][0] !=i && pd.pair[ip][2] !=i) {continue;}
-      // Check that the point is not inmediately following the previous one
-      z1 = last + pd.stepY;
+      if(pd.pair(ib,1) !=i && pd.pair(ib,0) !=i && pd.pair(ib,2) !=i) {continue;}
+      // the points from the column-wise calculations are already in order;
+      // those from PredomTrace are sorted along the Y-axis (insertion sort)
+      j = nBand;
+      if(traced) {
+        while(j > 0 && (pd.yPl(band[j-1])-pd.yPl(ib))/pd.stepY > 0) {band[j] = band[j-1]; j--;}
+      }
+      band[j] = ib;
+      nBand++;
+    } //for ib
+    for(int k=0; k < nBand; k++) {
+      ib = band[k];
       z3 = last;
-      last = pd.yPl[ip];
-      if(last == z3 || Math.abs(last-z1) < z2) {continue;}
+      last = pd.yPl(ib);
+      if(traced) {
+        // Check that the point is not within one step of the previous one
+        if(Math.abs(last-z3) <= Math.abs(pd.stepY)+z2) {continue;}
+      } else {
+        // Check that the point is not inmediately following the previous one
+        z1 = z3 + pd.stepY;
+        if(last == z3 || Math.abs(last-z1) < z2) {continue;}
+      }
       nLines++;
-      nCentr[nLines-1] = ip;
-      yCentr[nLines-1] = pd.yPl[ip];
+      nCentr[nLines-1] = ib;
+      yCentr[nLines-1] = pd.yPl(ib);
       if(nLines >= 4) {break;}
-    } //for ip
+    } //for k
     i2nd = i + cs.Ms;
 
-    if(pred.dbg) { // debug printout
+    if(dbg) { // debug printout
       out.println("   nLines = "+nLines);
       for(j=0; j<nLines; j++) {
         ij = nCentr[j];
-        out.println("   point: "+ij+" species: "+pd.pair[ij][0]+","+
-                pd.pair[ij][1]+"/"+pd.pair[ij][2]+",  x,y="+(float)pd.xPl[ij]+", "+(float)pd.yPl[ij]);
+        out.println("   point: "+ij+" species: "+pd.pair(ij,0)+","+
+                pd.pair(ij,1)+"/"+pd.pair(ij,2)+",  x,y="+(float)pd.xPl(ij)+", "+(float)pd.yPl(ij));
       }
     } //if dbg
 
@@ -171,14 +221,14 @@ void minMax(Chem ch, PredomData pd){
       ay1= -50000;  iy1= 10000;
       ay2= -50000;  iy2= 10000;
       for(int ip=0; ip <= pd.nPoint; ip++) {
-        if(pd.pair[ip][0] != i && pd.pair[ip][1] != i && pd.pair[ip][2] != i) {continue;}
-        if(pd.xPl[ip] >= q1 && pd.xPl[ip] <= q2) {
-            if(pd.yPl[ip] > ay1) {ay1 = pd.yPl[ip];}
-            if(pd.yPl[ip] < iy1) {iy1 = pd.yPl[ip];}
+        if(pd.pair(ip,0) != i && pd.pair(ip,1) != i && pd.pair(ip,2) != i) {continue;}
+        if(pd.xPl(ip) >= q1 && pd.xPl(ip) <= q2) {
+            if(pd.yPl(ip) > ay1) {ay1 = pd.yPl(ip);}
+            if(pd.yPl(ip) < iy1) {iy1 = pd.yPl(ip);}
         }
-        if(pd.xPl[ip] >= q3 && pd.xPl[ip] <= q4) {
-            if(pd.yPl[ip] > ay2) {ay2 = pd.yPl[ip];}
-            if(pd.yPl[ip] < iy2) {iy2 = pd.yPl[ip];}
+        if(pd.xPl(ip) >= q3 && pd.xPl(ip) <= q4) {
+            if(pd.yPl(ip) > ay2) {ay2 = pd.yPl(ip);}
+            if(pd.yPl(ip) < iy2) {iy2 = pd.yPl(ip);}
         }
       } //for ip
       yCent1 = (ay1+iy1)/2.;
@@ -188,7 +238,7 @@ void minMax(Chem ch, PredomData pd){
       if(yCent2 > -1000) {pd.yCentre[i2nd] = yCent2;}
       pd.xCentre[i] = ax[i] - zx5/2.;
       pd.xCentre[i2nd] = ix[i] + zx5/2.;
-      if(pred.dbg) {
+      if(dbg) {
         out.println("   q1,q2,q3,q4 = "+(float)q1+", "+(float)q2+", "+(float)q3+", "+(float)q4);
         out.println("   ay1,iy1,ay2,iy2 = "+(float)ay1+", "+(float)iy1+", "+(float)ay2+", "+(float)iy2);
         out.println("   (x/y)Centr[i] = "+(float)pd.xCentre[i]+", "+(float)pd.yCentre[i]+
@@ -204,7 +254,7 @@ void minMax(Chem ch, PredomData pd){
           pd.xCentre[i2nd] = -30000;
           pd.yCentre[i2nd] = -30000;
       }
-      if(pred.dbg) {
+      if(dbg) {
         out.println("   -- centres: "+(float)pd.xCentre[i]+", "+(float)pd.yCentre[i]+
                 "  and "+(float)pd.xCentre[i2nd]+", "+(float)pd.yCentre[i2nd]);
       }
@@ -224,7 +274,7 @@ void minMax(Chem ch, PredomData pd){
           pd.xCentre[i2nd] = -30000;
           pd.yCentre[i2nd] = -30000;
       }
-      if(pred.dbg) {
+      if(dbg) {
         out.println("   -- centres: "+(float)pd.xCentre[i]+", "+(float)pd.yCentre[i]+
                 "  and "+(float)pd.xCentre[i2nd]+", "+(float)pd.yCentre[i2nd]);
       }
@@ -241,6 +291,7 @@ void minMax(Chem ch, PredomData pd){
  * @param plotFile where the diagram will be saved
  * @param ch where the data for the chemical system are stored
  * @param diagP contains information on the diagram
+ * @throws GraphLib.WritePlotFileException if the plot file can not be written
  */
 void drawPlot(java.io.File plotFile, Chem ch, PredomData diagP)
         throws GraphLib.WritePlotFileException {
@@ -263,19 +314,19 @@ boolean xMolal, yMolal;
 //      engineering (millimolar, micromolar, etc)
 //   2- otherwise units = "molal" and the notation is engineering
 //      (10'-3` molal, 10'-6` molal, etc)
-pred.conc_units = Math.min(2, Math.max(pred.conc_units, -1));
-pred.conc_nottn = Math.min(2, Math.max(pred.conc_nottn, 0));
-if(pred.conc_nottn == 0) {pred.conc_nottn = 2;} // engineering    
+conc_units = Math.min(2, Math.max(conc_units, -1));
+conc_nottn = Math.min(2, Math.max(conc_nottn, 0));
+if(conc_nottn == 0) {conc_nottn = 2;} // engineering    
 if( (Double.isNaN(diag.temperature) || (diag.temperature >= 0 && diag.temperature <= 45))
         && (Double.isNaN(diag.pressure) || diag.pressure <=50)) {
     // temperatures around 25 and low pressures
-    if(pred.conc_units == 0) {pred.conc_units = 2;} // units = "M"
+    if(conc_units == 0) {conc_units = 2;} // units = "M"
 }
-String cUnit = pred.cUnits[(pred.conc_units+1)];
+String cUnit = cUnits[(conc_units+1)];
 String mUnit = ("×10'-3` "+cUnit).trim();
 String uUnit = ("×10'-6` "+cUnit).trim();
 String nUnit = ("×10'-9` "+cUnit).trim();
-if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
+if(conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
 
 //---- Max and Min values in the axes: xLow,xHigh, yLow,yHigh
     double xLow = dgrC.cLow[diag.compX];
@@ -296,15 +347,15 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
         else { // LAV
             xLow = -xLow;  xHigh = -xHigh;
             if(diag.pInX == 3) {
-                xLow  = pred.peEh * xLow;
-                xHigh = pred.peEh * xHigh;
+                xLow  = peEh * xLow;
+                xHigh = peEh * xHigh;
             }
         } // if LAV
     } // is H+ or engl-
     // standard scale in X-axis
     xMolal = true;
     if(dgrC.hur[diag.compX] <=2) { // T or TV
-        if((pred.conc_nottn == 2 || (pred.conc_nottn == 0 && pred.conc_units == 2)) &&
+        if((conc_nottn == 2 || (conc_nottn == 0 && conc_units == 2)) &&
                 Math.abs(xLow) <0.9 && Math.abs(xHigh) <0.9) {
             //milli units in X-axis
             xMolal = false;
@@ -324,16 +375,16 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
         else { // LAV
             yLow = -yLow;  yHigh = -yHigh;
             if(diag.pInY == 3) {
-                yLow  = pred.peEh * yLow;
-                yHigh = pred.peEh * yHigh;
+                yLow  = peEh * yLow;
+                yHigh = peEh * yHigh;
             }
         } // if LAV
     } // is H+ or engl-
     // standard scale in Y-axis
     yMolal = true;
     if(dgrC.hur[diag.compY] <=2) { // T or TV
-        if(pred.conc_nottn == 2 ||
-           (pred.conc_nottn == 0 && pred.conc_units == 2 && 
+        if(conc_nottn == 2 ||
+           (conc_nottn == 0 && conc_units == 2 && 
                 Math.abs(yLow) <0.9 && Math.abs(yHigh) <0.9)) {
             //milli molal units in Y-axis
             yMolal = false;
@@ -352,7 +403,7 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
 //---- Dimensions of the diagramData,  Size of text: height.  Origo: xOr,yOr
     float xAxl =10; float yAxl = 10;
     float heightAx = 0.035f * yAxl;
-    if(pred.tHeight > 0.0001) {heightAx = (float)pred.tHeight*heightAx;}
+    if(tHeight > 0.0001) {heightAx = (float)tHeight*heightAx;}
     float xOr; float yOr;
     //xOr = 7.5f * heightAx;
     //yOr = 4.0f * heightAx;
@@ -371,19 +422,19 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
     //  pInX=2 pe in X-axis
     //  pInX=3 Eh in X-axis
     if(diag.pInX ==1 || diag.pInX == 2) {xL = -xL;}
-    else if(diag.pInX ==3) {xL = -xL * (float)pred.peEh;}
+    else if(diag.pInX ==3) {xL = -xL * (float)peEh;}
     if(diag.pInY ==1 || diag.pInY == 2) {yL = -yL;}
-    else if(diag.pInY ==3) {yL = -yL * (float)pred.peEh;}
+    else if(diag.pInY ==3) {yL = -yL * (float)peEh;}
 
     // -------------------------------------------------------------------
     //          Create a PltData instance
-    pred.dd = new GraphLib.PltData();
+    dd = new GraphLib.PltData();
     //          Create a GraphLib instance
     GraphLib g = new GraphLib();
     boolean textWithFonts = true;
-    try {g.start(pred.dd, plotFile, textWithFonts);}
-    catch (GraphLib.WritePlotFileException ex) {pred.showErrMsgBx(ex.getMessage(),1); g.end(); return;}
-    pred.dd.axisInfo = false;
+    try {g.start(dd, plotFile, textWithFonts, binaryPlt);}
+    catch (GraphLib.WritePlotFileException ex) {g.end(); throw ex;}
+    dd.axisInfo = false;
     g.setLabel("-- PREDOM DIAGRAM --");
     // -------------------------------------------------------------------
     //                  Draw Axes
@@ -395,7 +446,7 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
     try {g.axes((float)xLow, (float)xHigh, (float)yLow, (float)yHigh,
             xOr,yOr, xAxl,yAxl, heightAx,
             false, false, true);}
-    catch (GraphLib.AxesDataException ex) {pred.showMsg(ex); g.end(); return;}
+    catch (GraphLib.AxesDataException ex) {showMsg(ex); g.end(); return;}
     //---- Write text under axes
     // Concentration types:
     // hur =1 for "T" (fixed Total conc.)
@@ -483,28 +534,30 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
     int j, now, ia, pairI0,pairI1, pairJ0,pairJ1, k;
     int ipoint = -1;
     double w1, w2, dist, dMin;
+    double xPlI, yPlI;
     boolean b;
     // ------------------------------------
     //   loop through all points to plot
     //
     // ---- Take a point ----
     for(int i = 0; i <= diagP.nPoint; i++) {
-        pairI0 = diagP.pair[i][0];
-        pairI1 = diagP.pair[i][1];
+        pairI0 = diagP.pair(i,0);
+        pairI1 = diagP.pair(i,1);
         if(pairI0 <= -1 || pairI1 <= -1) {continue;}
         if(diag.oneArea >=0 &&
                 pairI0 != diag.oneArea && pairI1 != diag.oneArea) {continue;}
+        xPlI = diagP.xPl(i); yPlI = diagP.yPl(i);
         lineContinued = false;
         iOther[pairI0] = 0; // no neighbouring points
         iOther[pairI1] = 0;
         now = -1;
         // ---- Take another point ----
         for(j = i+1; j <= diagP.nPoint; j++) {
-            pairJ0 = diagP.pair[j][0];
-            pairJ1 = diagP.pair[j][1];
+            pairJ0 = diagP.pair(j,0);
+            pairJ1 = diagP.pair(j,1);
             //-- See that both points are within the minimum distance
-            w1 = Math.abs(diagP.xPl[i]-diagP.xPl[j])*xL;
-            w2 = Math.abs(diagP.yPl[i]-diagP.yPl[j])*yL;
+            w1 = Math.abs(xPlI-diagP.xPl(j))*xL;
+            w2 = Math.abs(yPlI-diagP.yPl(j))*yL;
             dist = Math.sqrt((w1*w1)+(w2*w2));
             if(dist > xDMin) {continue;}
             if(!lineContinued || iFL[i] <= 1) {
@@ -514,8 +567,8 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
                       pairJ0 != diag.oneArea && pairJ1 != diag.oneArea) {continue;}
                 if(pairJ0 == pairI0 && pairJ1 == pairI1) {
                     //-- draw the line between the two points
-                    if(now != i) {g.moveToDrawTo((diagP.xPl[i]*xL-xI), (diagP.yPl[i]*yL-yI), 0);}
-                    g.moveToDrawTo((diagP.xPl[j]*xL-xI), (diagP.yPl[j]*yL-yI), 1);
+                    if(now != i) {g.moveToDrawTo((diagP.xPl(i)*xL-xI), (diagP.yPl(i)*yL-yI), 0);}
+                    g.moveToDrawTo((diagP.xPl(j)*xL-xI), (diagP.yPl(j)*yL-yI), 1);
 
                     now = j;
                     iFL[j]++;
@@ -551,8 +604,8 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
             dMin = 0;
             for(int ip = 0; ip < iOther[ia]; ip++) {
               j = neighb[ia][ip];
-              w1 = Math.abs(diagP.xCentre[ia]-diagP.xPl[j]);
-              w2 = Math.abs(diagP.yCentre[ia]-diagP.yPl[j]);
+              w1 = Math.abs(diagP.xCentre[ia]-diagP.xPl(j));
+              w2 = Math.abs(diagP.yCentre[ia]-diagP.yPl(j));
               dist = Math.sqrt((w1*w1)+(w2*w2));
               if(dist < dMin) {continue;}
               dMin = dist;
@@ -560,8 +613,8 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
             } //for ip
             //-- draw the line between "i" and "ipoint"
             j = ipoint;
-            if(now != i) {g.moveToDrawTo((diagP.xPl[i]*xL-xI), (diagP.yPl[i]*yL-yI), 0);}
-            g.moveToDrawTo((diagP.xPl[j]*xL-xI), (diagP.yPl[j]*yL-yI), 1);
+            if(now != i) {g.moveToDrawTo((diagP.xPl(i)*xL-xI), (diagP.yPl(i)*yL-yI), 0);}
+            g.moveToDrawTo((diagP.xPl(j)*xL-xI), (diagP.yPl(j)*yL-yI), 1);
             now = j;
             b = true;
         } while (ia == pairI0 && iOther[pairI1] >0);
@@ -617,14 +670,14 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
     // -------------------------------------------------------------------
     //                  Neutral pH - Dotted line
     // for diagrams with pH in one axis
-    if(pred.neutral_pH && (diag.pInX ==1 || diag.pInY ==1)) {
+    if(neutral_pH && (diag.pInX ==1 || diag.pInY ==1)) {
       if(Double.isNaN(diag.temperature)) {
-        pred.showMsg("Error: Neutral pH line requested but temperature NOT available.",0);
+        showMsg("Error: Neutral pH line requested but temperature NOT available.",0);
       } else {
         double pHn;
         try {pHn = n_pH(diag.temperature, diag.pressure);}
         catch (Exception ex) {
-            pred.showMsg(ex);  pHn = -10;
+            showMsg(ex);  pHn = -10;
         }
         if(pHn > 0) {
           g.setLabel("-- DOT LINE: neutral pH --"); g.moveToDrawTo(0, 0, 0);
@@ -652,7 +705,7 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
       //   O2(g)  +  4 H+  +  4 e-  =  2 H2O(l)   logK(1)=4pH+4pe
       //   H2(g)  =  2 H+  +  2 e-              (logK(2)=0  at every temp)
       if(Double.isNaN(diag.temperature)) {
-        pred.showMsg("Temperature NOT available in a pH/(pe or Eh) diagram.",2);
+        showMsg("Temperature NOT available in a pH/(pe or Eh) diagram.",2);
       } else {
         double lgKO2;
         final double CRITICAL_TC = 373.946;
@@ -663,8 +716,8 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
         }
         if(Double.isNaN(diag.pressure)) {diag.pressure = 1000;}
         try {lgKO2 = logK_O2(diag.temperature, diag.pressure);}
-        catch (Exception ex) {pred.showMsg(ex);  lgKO2 = -1;}
-        if(pred.dbg) {out.println("logK_O2("+diag.temperature+","+diag.pressure+") = "+lgKO2);}
+        catch (Exception ex) {showMsg(ex);  lgKO2 = -1;}
+        if(dbg) {out.println("logK_O2("+diag.temperature+","+diag.pressure+") = "+lgKO2);}
         if(!Double.isNaN(lgKO2) && lgKO2 > 0) {
           g.setLabel("-- DASH LINES: O2(g) and H2(g) = 1 atm --"); g.moveToDrawTo(0, 0, 0);
           g.setPen(4);
@@ -675,7 +728,7 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
           double[] line_H2 = new double[2];
               //the pH range:
               line_pH[0]=-10; line_pH[1]=+20;
-              if(diag.pInX == 3 || diag.pInY == 3) {w1 = pred.peEh;} else {w1 = 1;}
+              if(diag.pInX == 3 || diag.pInY == 3) {w1 = peEh;} else {w1 = 1;}
               line_O2[0]= ((0.25*lgKO2) - line_pH[0]) * w1;
               line_O2[1]= ((0.25*lgKO2) - line_pH[1]) * w1;
               line_H2[0] = -line_pH[0] * w1;
@@ -695,10 +748,10 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
     // -------------------------------------------------------------------
     //                  Text with concentrations as a Heading
     g.setLabel("-- HEADING --"); g.setPen(1); g.setPen(-1);
-    if(pred.dbg) {
-        out.print("Heading; concentration units: \""+pred.cUnits[pred.conc_units+1]+"\"");
-        if(pred.conc_nottn == 2 || (pred.conc_nottn == 0 && pred.conc_units == 2)) {out.print(",  notation: engineering");}
-        if(pred.conc_nottn == 1 || (pred.conc_nottn == 0 && pred.conc_units != 2)) {out.print(",  notation: scientific");}
+    if(dbg) {
+        out.print("Heading; concentration units: \""+cUnits[conc_units+1]+"\"");
+        if(conc_nottn == 2 || (conc_nottn == 0 && conc_units == 2)) {out.print(",  notation: engineering");}
+        if(conc_nottn == 1 || (conc_nottn == 0 && conc_units != 2)) {out.print(",  notation: scientific");}
         out.println();
     }
     float headColumnX = 0.5f*heightAx;
@@ -729,7 +782,7 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
         if(dgrC.hur[j] == 1) { //"T"
             w = csC.tot[j]; wa = Math.abs(w);
             // use engineering notation?
-            if(pred.conc_nottn == 2 || (pred.conc_nottn == 0 && pred.conc_units == 2)) {
+            if(conc_nottn == 2 || (conc_nottn == 0 && conc_units == 2)) {
                 if(wa < 1.E-99) {value = String.format(engl,"=%8.2f",(float)w);}
                 else if(wa < 1. && wa >= 0.9999E-4) {
                     w = w*1.E+3;
@@ -755,12 +808,12 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
             }
             t = "["+namn.ident[i]+"]`TOT' "+value;
         } // hur=1: "T"
-        else //if(pred.hur[j] == 4) { //"LA"
+        else //if(hur[j] == 4) { //"LA"
         {   String c;
             boolean volt = false;
             if(Util.isElectron(namn.ident[j])) {
                 w = -dgrC.cLow[j];
-                if(diag.Eh){c = "E`H' = "; w = w*pred.peEh; volt = true;}
+                if(diag.Eh){c = "E`H' = "; w = w*peEh; volt = true;}
                 else {c = "pe =";}
             } //isElectron
             else if(Util.isProton(namn.ident[i])) {
@@ -828,7 +881,7 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
 
     yP = yPMx;
     headColumnX = (float)(0.5d*heightAx);
-    if(pred.aqu) {
+    if(aqu) {
         yP = yP + 2f*heightAx;
         g.sym(headColumnX, yP, heightAx, "(aqueous species only)", 0, -1, false);
     }
@@ -850,6 +903,25 @@ if(pred.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
 } //drawPlot()
 //</editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="showMsg">
+/** Outputs a message to <code>out</code>, or to <code>err</code> if it is an error
+ * @param msg the message
+ * @param type =0 error; =2 warning; =3 information */
+private void showMsg(String msg, int type) {
+    if(type == 2 || type == 3) {
+        String flag = (type == 2) ? "Warning" : "Message";
+        out.println("- - - - "+flag+":"+nl+msg+nl+"- - - -");
+    } else {
+        err.println("- - - - Error:"+nl+msg+nl+"- - - -");
+    }
+}
+/** Outputs the exception message and the stack trace to <code>err</code>
+ * @param ex the exception */
+private void showMsg(Exception ex) {
+    err.println("- - - - Error:"+nl+ex.toString()+nl+nl+Util.stack2string(ex)+nl+"- - - -");
+}
+//</editor-fold>
+
 //<editor-fold defaultstate="collapsed" desc="n_pH(temperature)">
 /** Returns the neutral pH at the given temperature and pressure.
  * It uses the equation reported in
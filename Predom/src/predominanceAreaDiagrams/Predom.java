@@ -2,10 +2,13 @@ package predominanceAreaDiagrams;
 
 import lib.common.Util;
 import lib.kemi.chem.Chem;
+import lib.kemi.chem.DiagrFamily;
 import lib.kemi.graph_lib.DiagrPaintUtility;
 import lib.kemi.graph_lib.GraphLib;
 import lib.kemi.haltaFall.Factor;
 import lib.kemi.haltaFall.HaltaFall;
+import lib.kemi.haltaFall.HaltaFallPool;
+import lib.kemi.haltaFall.PointSolver;
 import lib.kemi.readDataLib.ReadDataLib;
 import lib.kemi.readWriteDataFiles.ReadChemSyst;
 
@@ -103,13 +106,15 @@ public class Predom extends javax.swing.JFrame {
 /** if true only aqueous species will be shown in the diagram, that is,
  * predominance areas for solids will not appear. */
     boolean aqu = false;
+/** if true the plot file is written in the compact binary format
+ * (see <code>lib.kemi.graph_lib.PltFile</code>) instead of as a text file */
+    boolean binaryPlt = false;
+/** if true, HaltaFall speeds up the iterations for the activity coefficients
+ * (see <code>Chem.ChemSystem.ChemConcs.actCoefAccel</code>) */
+    boolean actCoefAccel = false;
 /** if true a dashed line will be plotted in the diagram showing the pH of
  * neutral water, which is temperature dependent. At 25 C the neutral pH is 7. */
     boolean neutral_pH = false;
-/** This value is set in findTopSpecies() to the species predominating in the
- * diagram at the point being calculated. It is set to -2 if two solid species
- * have practically the same amount of "main component" */
-    private int topSpecies = -1;
 /** used to direct SED and Predom to draw concentration units
  * as either:<ul><li>0="molal"</li><li>1="mol/kg_w"</li><li>2="M"</li><li>-1=""</li></ul> */
     int conc_units = 0;
@@ -124,7 +129,7 @@ public class Predom extends javax.swing.JFrame {
     private ReadDataLib rd;
     private Plot_Predom plot = null;
 /** data from a plot-file needed by the paint methods */
-    GraphLib.PltData dd; // instantiated in "Plot_Predom.drawPlot"
+    GraphLib.PltData dd; // from "Plot_Predom.drawPlot"
                                    // it containts the info in the plot file
 
     private HelpAboutF helpAboutFrame = null;
@@ -153,9 +158,6 @@ public class Predom extends javax.swing.JFrame {
     /** The calculation step being performed along the outer loop (out of nSteps).
      * The first point corresponds to no step, <code>nStepOuter = 0</code> */
     private int nStepOuter;
-    /** The calculation step being performed along the inner loop (out of nSteps)
-     * The first point corresponds to no step, <code>nStepInner = 0</code> */
-    private int nStepInner;
     private final double ln10 = Math.log(10d);
     /** true if activity coeeficients have to be calculated */
     boolean calcActCoeffs = false;
@@ -174,6 +176,34 @@ public class Predom extends javax.swing.JFrame {
     /** output debug reporting in HaltaFall. Default = Chem.DBGHALTA_DEF = 1 (report errors only)
      * @see Chem.ChemSystem.ChemConcs#dbg Chem.ChemSystem.ChemConcs.dbg */
     private int dbgHalta = Chem.DBGHALTA_DEF;
+    /** The maximum number of threads used in the calculations */
+    private final static int NTHREADS_MAX = 64;
+    /** The number of threads used in the calculations. If larger than one,
+     * the diagram is divided into strips of columns (X-values) which are
+     * calculated simultaneously, each strip with its own instances of
+     * <code>Chem</code>, <code>Factor</code> and <code>HaltaFall</code>. */
+    private int nThreads = 1;
+    /** if true, the predominating species are first calculated on a coarse grid,
+     * and only the cells where the corners differ are refined down to the
+     * size given by <code>nSteps</code> */
+    private boolean adaptive = false;
+    /** The minimum number of coarse cells along each axis when <code>adaptive</code> = true */
+    private final static int ADAPT_CELLS = 16;
+    /** if true, the lines between the predominance areas are followed,
+     * instead of calculating all the points of the grid (see <code>PredomTrace</code>) */
+    private boolean trace = false;
+    /** the description of a diagram family given in the command line, or null */
+    private String familySpec = null;
+    /** a diagram family: several diagrams made one after the other, each
+     * one with its own copy of the chemical system, or null if only one
+     * diagram is made */
+    private DiagrFamily.Sequence family = null;
+    /** the HaltaFall instances used by the threads when <code>nThreads</code> &gt; 1 */
+    private final java.util.List<HaltaFall> hWorkers =
+            java.util.Collections.synchronizedList(new java.util.ArrayList<HaltaFall>());
+    /** the HaltaFall instances are recycled: the planning and the working
+     * arrays are reused by the next strip, or by the next calculation */
+    private final HaltaFallPool haltaPool = new HaltaFallPool();
     /** true if the component has either <code>noll</code> = false or it has positive
      * values for the stoichiometric coefficients (a[ix][ia]-values)
      * @see chem.Chem.ChemSystem#a a
@@ -253,7 +283,7 @@ public class Predom extends javax.swing.JFrame {
         javax.swing.Action ctrlCAction = new javax.swing.AbstractAction() {
             @Override public void actionPerformed(java.awt.event.ActionEvent e) {
                 if(jTabbedPane.getSelectedIndex() == 1) {
-                      if(h != null) {h.haltaCancel();}
+                      haltaCancel();
                       if(tsk != null) {tsk.cancel(true);}
                       finishedCalculations = true;
                       Predom.this.notify_All();
@@ -364,7 +394,7 @@ public class Predom extends javax.swing.JFrame {
                         jTextFieldIonicStgr.isEnabled()) {
                     jTextFieldIonicStgr.requestFocusInWindow();
                 } else if(jTabbedPane.getSelectedIndex() == 1) {
-                      if(h != null) {h.haltaCancel();}
+                      haltaCancel();
                       if(tsk != null) {tsk.cancel(true);}
                       finishedCalculations = true;
                       Predom.this.notify_All();
@@ -519,6 +549,29 @@ public class Predom extends javax.swing.JFrame {
             String plotFileN = txt.substring(0,txt.length()-3).concat("plt");
             outputPltFile = new java.io.File(plotFileN);
         }
+        if(familySpec != null) {
+            DiagrFamily fam = null;
+            try {fam = new DiagrFamily(familySpec, ch);}
+            catch (IllegalArgumentException ex) {
+                showErrMsgBx(ex.getMessage(), 1);
+                if(!doNotExit) {end_program(); return;}
+            }
+            if(fam != null && doNotStop && !doNotExit) {
+                // nothing is displayed: the members are calculated in parallel
+                calculateFamily(fam);
+                programEnded = false;
+                return;
+            }
+            if(fam != null) {
+                try {family = new DiagrFamily.Sequence(fam, ch, outputPltFile);}
+                catch (Chem.ChemicalParameterException ex) {
+                    showErrMsgBx(ex);
+                    if(!doNotExit) {end_program(); return;}
+                    family = null;
+                }
+            }
+            if(family != null) {setFamilyMember();}
+        }
         // note: as the calculations are done on a worker thread, this returns pretty quickly
         try {doCalculations();}
         catch (Exception ex) {showErrMsgBx(ex);}
@@ -1454,387 +1507,14 @@ private void jLabelHDMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:ev
   private boolean checkInput() {
     if(cs == null) {err.println("? Programming error in \"PREDOM.checkInput\": cs=null."); return false;}
     if(dbg) {out.println("--- checkInput()");}
-    // -------------------
-    //   CHEMICAL SYSTEM
-    // -------------------
-    // mg = total number of soluble species in the aqueous solution:
-    //      all components + soluble complexes
-    // Note that in HaltaFall the solid components are fictitious soluble
-    // components with "zero" concentration (with noll = true)
-    int mg = cs.Ms - cs.mSol; // = na + nx;
-    int i;
-
-    // ---- Remove asterisk "*" from the name of components
-    for(i=0; i<cs.Na; i++) {
-        if(namn.identC[i].startsWith("*")) {
-            namn.identC[i] = namn.identC[i].substring(1);
-            namn.ident[i]  = namn.identC[i];
-            cs.noll[i] = true;
-        }
-        //if(chem_syst.Chem.isWater(csNamn.identC[i]))
-        //            {water = i;}
-    } // for i=0...Na-1
-
-    // ---- Remove reaction products (soluble or solid) with
-    //      name starting with "*".
-    // Note that the solids corresponding to the components will
-    // not have a name starting with "*". This is already removed when
-    // reading the input file.
-    double w; int j; int js;
-    i = cs.Na;
-    while (i < cs.Ms) {
-        if(namn.ident[i].startsWith("*")) {
-            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
-            cs.Ms = cs.Ms -1;
-            if(i >= cs.Ms) {break;}
-            for(j=i; j<cs.Ms; j++) {
-                js = j - cs.Na;
-                cs.lBeta[js] = cs.lBeta[js+1];
-                // for(int ia=0; ia<cs.Na; ia++) {cs.a[js][ia] = cs.a[js+1][ia];}
-                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
-                namn.ident[j] = namn.ident[j+1];
-                cs.noll[j] = cs.noll[j+1];
-            }
-        }
-        else {i++;}
-    } //while (true)
-
-    // ---- get electric charge, length of name, etc
-    diag.aquSystem = false;
-    for(i=0; i<cs.Ms; i++) {
-        namn.nameLength[i] = getNameLength(namn.ident[i]);
-        // Species for which the concentration is not to be
-        // included in the Mass-Balance (for ex. the concentration
-        // of "free" electrons is excluded)
-        if(Util.isElectron(namn.ident[i]) ||
-           Util.isWater(namn.ident[i])) {
-                cs.noll[i] = true;
-                diag.aquSystem = true;} // e- or H2O
-        if(i < mg) { //aqueous species
-            namn.z[i]=0;
-            csC.logf[i] = 0;
-            if(namn.ident[i].length() >4 &&
-                namn.ident[i].toUpperCase().endsWith("(AQ)")) {
-                    diag.aquSystem = true;}
-                else { //does not end with "(aq)"
-                    namn.z[i] = Util.chargeOf(namn.ident[i]);
-                    if(namn.z[i] != 0) {diag.aquSystem = true;}
-                } // ends with "(aq)"?
-        }// if i < mg
-    } // for i=0...Ms-1
-    // The electric charge of two fictive species (Na+ and Cl-)
-    // that are used to ensure electrically neutral aqueous solutions
-    // when calculating the ionic strength and activity coefficients
-    namn.z[mg] = 1;     //electroneutrality "Na+"
-    namn.z[mg+1] =-1;   //electroneutrality "Na+"
-
-    // ---- set Gaseous species to have zero conc
-    //      if it is an aqueous system
-    if(diag.aquSystem) {
-        for(i =0; i < mg; i++) {
-            if(Util.isGas(namn.ident[i]) ||
-               Util.isLiquid(namn.ident[i]) ||
-               Util.isWater(namn.ident[i])) {
-                        cs.noll[i] = true;}
-        } //for i
-        } //if aquSystem
-
-    // ---- Remove H2O among the complexes, if found
-    if(diag.aquSystem) {
-      for(i=cs.Na; i<cs.Ms; i++) {
-        if(Util.isWater(namn.ident[i])) {
-            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
-            cs.Ms = cs.Ms -1;
-            if(i >= cs.Ms) {break;}
-            for(j=i; j<cs.Ms; j++) {
-                js = j - cs.Na;
-                cs.lBeta[js] = cs.lBeta[js+1];
-                //for(int ia=0; ia<cs.Na; ia++) {cs.a[js][ia] = cs.a[js+1][ia];}
-                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
-                namn.ident[j] = namn.ident[j+1];
-                cs.noll[j] = cs.noll[j+1];
-            }
-        } //ident[i]="H2O"
-      } //for i
-    } //if aquSystem
-
-    if(dbg) {cs.printChemSystem(out);}
-
-    // ---- Check that all reactions are charge balanced
-    if(calcActCoeffs) {
-        double zSum;
-        boolean ok = true;
-        for(i=cs.Na; i < mg; i++) {
-            int ix = i - cs.Na;
-            zSum = (double)(-namn.z[i]);
-            for(j=0; j < cs.Na; j++) {
-                zSum = zSum + cs.a[ix][j]*(double)namn.z[j];
-            } //for j
-            if(Math.abs(zSum) > 0.0005) {
-                ok = false;
-                err.format(engl,"--- Warning: %s, z=%3d, charge imbalance:%9.4f",
-                            namn.ident[i],namn.z[i],zSum);
-            }
-        } //for i
-        if(!ok) {
-            if(!showErrMsgBxCancel("There are charge imbalanced reactions in the input file.",1)) {
-                return false;
-            }
-        }
-    } // if calcActCoeffs
-
-    // ---- Check that at least there is one fuid species active
-    boolean foundOne = false;
-    for(i =0; i < mg; i++) {
-        if(!cs.noll[i]) {foundOne = true; break;}
-    } //for i
-    if(!foundOne) {
-        String t = "Error: There are no fluid species active ";
-        if(cs.mSol > 0) {t = t.concat("(Only solids)");}
-        t = t+nl+"This program can not handle such chemical systems.";
-        showErrMsgBx(t,1);
-        return false;
-    }
-
-    // --------------------
-    //   PLOT INFORMATION
-    // --------------------
-    diag.pInX =0; diag.pInY = 0;
-    //  pInX=0 "normal" X-axis
-    //  pInX=1 pH in X-axis
-    //  pInX=2 pe in X-axis
-    //  pInX=3 Eh in X-axis
-    if(Util.isElectron(namn.identC[diag.compX])) {
-        if(diag.Eh) {diag.pInX = 3;} else {diag.pInX = 2;}
-    } else if(Util.isProton(namn.identC[diag.compX])) {diag.pInX = 1;}
-    if(Util.isElectron(namn.identC[diag.compY])) {
-        if(diag.Eh) {diag.pInY = 3;} else {diag.pInY = 2;}
-    } else if(Util.isProton(namn.identC[diag.compY])) {diag.pInY = 1;}
-
-
-    // ----------------------------------------------
-    //   CHECK THE CONCENTRATION FOR EACH COMPONENT
-    // ----------------------------------------------
-
-    for(int ia =0; ia < cs.Na; ia++) {
-        if(dgrC.hur[ia]==1 && // T
-            ia==diag.compX) {
-                showErrMsgBx("Error: the concentration for component \""+namn.identC[ia]+"\" "+
-                    "must vary, as it belongs to the X-axis!",1);
-                return false;
-                }
-        if(ia==diag.compMain && dgrC.hur[ia]==1 && // T
-            Math.abs(dgrC.cLow[ia]) <= 0) {
-                if(!showErrMsgBxCancel("The concentration for "+nl
-                        +"the main component \""+namn.identC[ia]+"\" is zero!",1)) {return false;}
-                }
-        if(dgrC.hur[ia] >0 && dgrC.hur[ia]<=3) { //T, TV or LTV
-            if(Util.isWater(namn.identC[ia])) {
-                showErrMsgBx("Error: The calculations are made for 1kg H2O"+nl+
-                           "Give log(H2O-activity) instead of a total conc. for water.",1);
-                return false;
-           } // if water
-        } //if T, TV or LTV
-        if(dgrC.hur[ia] ==2 || dgrC.hur[ia] ==3 || dgrC.hur[ia] ==5) { //TV, LTV or LAV
-            if(ia != diag.compX && ia != diag.compY) {
-                String t;
-                if(dgrC.hur[ia] ==5) {t="log(activity)";} else {t="total conc.";}
-                String msg = "Error: The "+t+" is varied for \""+namn.identC[ia]+"\""+nl+
-                           "   but this component is neither the component in the Y-axis ("+namn.identC[diag.compY]+"),"+nl+
-                           "   nor the component in the X-axis ("+namn.identC[diag.compX]+")!";
-                showErrMsgBx(msg,2);
-                return false;
-            }
-        } //if TV, LTV or LAV
-        if((dgrC.hur[ia] ==1 || dgrC.hur[ia] ==4) && //T or LA
-           (ia == diag.compX || ia == diag.compY)) {
-                String t, ax;
-                if(dgrC.hur[ia] ==4) {t="log(activity)";} else {t="total conc.";}
-                if(ia == diag.compX) {ax="X";} else {ax="Y";}
-                showErrMsgBx("Error: The "+t+" of \""+namn.identC[ia]+"\""+nl+
-                        "can NOT be a fixed value because this component belongs to the "+ax+"-axis !",1);
-                return false;
-            }
-        if(dgrC.hur[ia] ==1 && // T
-           Math.abs(dgrC.cLow[ia]) >100) {
-                String t = String.format(engl,"Error:  For component: "+namn.identC[ia]+nl+
-                        "   Tot.Conc.=%12.4g mol/kg.  This is not a reasonable value!",dgrC.cLow[ia]);
-                showErrMsgBx(t,1);
-                return false;
-            }
-        if(dgrC.hur[ia] ==4 &&  // LA
-           Util.isProton(namn.identC[ia]) &&
-           (dgrC.cLow[ia] <-14 || dgrC.cLow[ia] >2)) {
-                String msg = String.format(engl,"Warning: In the input, you give  pH =%8.2f%n"+
-                        "This value could be due to an input error.",(-dgrC.cLow[ia]));
-                if(!showErrMsgBxCancel(msg,2)) {return false;}
-        }
-        if(dgrC.hur[ia] !=1 && dgrC.hur[ia] !=4) {//if TV, LTV or LAV
-            if(dgrC.cLow[ia] == dgrC.cHigh[ia] ||
-                    Math.max(Math.abs(dgrC.cLow[ia]), Math.abs(dgrC.cHigh[ia])) < 1e-15) {
-                showErrMsgBx("Error:  Min-value = Max-value for component \""+namn.identC[ia]+"\"",1);
-                return false;
-            }
-            if(dgrC.cLow[ia] > dgrC.cHigh[ia] && !reversedConcs) {
-                w = dgrC.cLow[ia];
-                dgrC.cLow[ia] = dgrC.cHigh[ia];
-                dgrC.cHigh[ia] = w;
-            }
-            if(!reversedConcs && dgrC.hur[ia] ==5 && // pH/pe/EH varied - LAV
-                   (Util.isProton(namn.identC[ia]) ||
-                    Util.isElectron(namn.identC[ia]))) {
-                w = dgrC.cLow[ia];
-                dgrC.cLow[ia] = dgrC.cHigh[ia];
-                dgrC.cHigh[ia] = w;
-            }
-            if(dgrC.hur[ia] ==5 && // LAV
-                    (Util.isProton(namn.identC[ia])) &&
-                     (dgrC.cLow[ia] <-14.00001 || dgrC.cLow[ia] >2.00001 ||
-                      dgrC.cHigh[ia] <-14.00001 || dgrC.cHigh[ia] >2.00001)) {
-                String msg = String.format(engl,"Warning: In the input, you give  pH =%8.2f to %7.2f%n"+
-                        "These values could be due to an input error.",(-dgrC.cLow[ia]),(-dgrC.cHigh[ia]));
-                if(!showErrMsgBxCancel(msg,2)) {return false;}
-            }
-            if(dgrC.hur[ia] ==2 && // TV
-                  (Math.max(Math.abs(dgrC.cHigh[ia]),Math.abs(dgrC.cLow[ia]))>100)) {
-                showErrMsgBx("Error:  You give  ABS(TOT.CONC.) > 100  for component: "+namn.identC[ia]+nl+
-                    "This value is too high and perhaps an input error."+nl+
-                    "Set the maximum ABS(TOT.CONC.) value to 100.",1);
-                return false;
-            }
-            if(dgrC.hur[ia] ==3) { // LTV
-                if((Math.min(dgrC.cLow[ia], dgrC.cHigh[ia]) < -7.0001) &&
-                      (Util.isProton(namn.identC[ia]))) {
-                    String msg = "Warning: You give a  LOG (TOT.CONC.) < -7  for component: "+namn.identC[ia]+nl+
-                        "This value is rather low and could be due to an input error."+nl+
-                        "Maybe you meant to set  LOG (ACTIVITY) < -7 ??";
-                    if(!showErrMsgBxCancel(msg,2)) {return false;}
-                    }
-                if(Math.max(dgrC.cLow[ia], dgrC.cHigh[ia]) > 2.0001) {
-                    showErrMsgBx("Error: You give a  LOG (TOT.CONC.) > 2  for component: "+namn.identC[ia]+nl+
-                        "This value is too high and it could be due to an input error."+nl+
-                        "Please set the LOG (TOT.CONC.) value to <=2.",1);
-                    return false;
-                }
-            } //if LTV
-        } //if TV, LTV or LAV
-
-    } // for ia = 0... Na-1
-
-    // ----------------
-    //   OTHER CHECKS
-    // ----------------
-
-    if(cs.nx == 0) {
-      for(i =0; i < cs.Na; i++) {
-        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
-        if(i == diag.compX || i == diag.compY) { //component in an axis:
-          if(i >= (cs.Na-cs.solidC)) { //is it a solid?
-              if(!showErrMsgBxCancel("Warning: with no complexes in the fluid phase you should not have"+nl+
-              "a solid component ("+namn.identC[i]+") in an axis.",2)) {return false;}
-          }
-      }
-      } //for i
-    } //if nx=0
-
-    // ---- Check that a total concentration is given for the main component
-    //   is it a solid?                        and log(activity) given?
-    if(diag.compMain >= (cs.Na - cs.solidC) && csC.kh[diag.compMain] == 2) {
-        String v;
-        if(dgrC.hur[diag.compMain] == 5) {v = " varied";} else {v = "";}
-        String t = "Error: For the main component \""+namn.identC[diag.compMain]+"\""+nl+
-                "   please give its total concentration"+v+nl+
-                "   instead of its log(activity)"+v;
-        showErrMsgBx(t+".",1);
-        return false;
-    }
-
-    // ---- See which components have positive or negative (or both)
-    //      values for the stoichiometric coefficients (a[ix][ia]-values)
     pos = new boolean[cs.Na];
     neg = new boolean[cs.Na];
-    for(i =0; i < cs.Na; i++) {
-        pos[i] = false; neg[i] = false;
-        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
-        if(!cs.noll[i]) { // if not "e-" and not solid component
-                    pos[i] = true;}
-        for(j = cs.Na; j < cs.Ms; j++) {
-            if(!cs.noll[j]) {
-                if(cs.a[j-cs.Na][i] >0) {pos[i] = true;}
-                if(cs.a[j-cs.Na][i] <0) {neg[i] = true;}
-            } // !noll
-        } //for j
-    } //for i
-    // check POS and NEG with the Tot.Conc. given in the input
-    for(i =0; i < cs.Na; i++) {
-        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
-        if((!pos[i] && !neg[i]) ) { // || cs.nx ==0
-            String msg = "Error: for component \""+namn.identC[i]+"\" give Log(Activity)";
-            if(dgrC.hur[i] !=1) { // not "T", that is: "TV" or "LTV"
-                msg = msg+" to vary";}
-            showErrMsgBx(msg,1);
-            return false;
-        } //if Nx =0 or (!pos[] & !neg[])
-        if((pos[i] && neg[i]) ||
-           (pos[i] && (dgrC.hur[i] ==3 ||  //LTV
-                (dgrC.cLow[i]>0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]>0)))) ||
-           (neg[i] && (
-                dgrC.hur[i] !=3 && //LTV
-                (dgrC.cLow[i]<0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]<0))))) {
-            continue;
-        }
-        if(pos[i] || neg[i]) {
-            String msg = "Error: Component \"%s\" may not have %s Tot.Conc. values.%s"+
-                    "Give either  Tot.Conc. %s=0.0  or  Log(Activity)%s";
-            if(!pos[i] && (dgrC.cLow[i]>0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]>0))) {
-                showErrMsgBx(String.format(msg, namn.identC[i], "positive", nl,"<",nl),1);
-                return false;}
-            if(!neg[i] && (dgrC.cLow[i]<0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]<0))) {
-                showErrMsgBx(String.format(msg, namn.identC[i], "negative", nl,">",nl),1);
-                return false;}
-        } //if pos or neg
-    } //for i
-
-    // OK so far. Update "nx" (=nbr of soluble complexes)
-    cs.nx = mg - cs.Na;
-    return true;
-
+    return PredomBatch.checkInput(ch, calcActCoeffs, reversedConcs, pos, neg,
+            new PredomBatch.Messages() {
+                @Override public void error(String msg) {showErrMsgBx(msg,1);}
+                @Override public boolean proceed(String msg, int type) {return showErrMsgBxCancel(msg,type);}
+            }, dbg, out);
   } // checkInput()
-
-//<editor-fold defaultstate="collapsed" desc="getNameLength(species)">
-    private static int getNameLength(String species) {
-        int nameL = Math.max(1, Util.rTrim(species).length());
-        if(nameL < 3) {return nameL;}
-        // Correct name length if there is a space between name and charge
-        // "H +",  "S 2-",  "Q 23+"
-        int sign; int ik;
-        sign =-1;
-        for(ik =nameL-1; ik >= 2; ik--) {
-            char c = species.charAt(ik);
-            if(c == '+' || c == '-' ||
-               // unicode en dash or unicode minus
-               c =='\u2013' || c =='\u2212') {sign = ik; break;}
-            } //for ik
-        if(sign <2) {return nameL;}
-        if(sign < nameL-1 &&
-                (Character.isLetterOrDigit(species.charAt(sign+1)))) {return nameL;}
-        if(species.charAt(sign-1) == ' ')
-                        {nameL = nameL-1; return nameL;}
-        if(nameL >=4) {
-                if(species.charAt(sign-1) >= '2' && species.charAt(sign-1) <= '9' &&
-                   species.charAt(sign-2) == ' ')
-                        {nameL = nameL-1; return nameL;}
-        } //if nameL >=4
-        if(nameL >=5) {
-                if((species.charAt(sign-1) >= '0' && species.charAt(sign-1) <= '9') &&
-                   (species.charAt(sign-2) >= '1' && species.charAt(sign-2) <= '9') &&
-                   species.charAt(sign-3) == ' ')
-                        {nameL = nameL-1;}
-            } //if nameL >=5
-        return nameL;
-    } // getNameLength(species)
-//</editor-fold>
-
 //</editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="dispatchArg">
@@ -2023,6 +1703,27 @@ private boolean dispatchArg(String arg) {
                 } //catch
             }// = or :
         } // if starts with "-tol"
+        if(arg0.startsWith("-par") || arg0.startsWith("/par")) {
+            if(arg.charAt(4) == '=' || arg.charAt(4) == ':') {
+                String t = arg.substring(5);
+                try {nThreads = Integer.parseInt(t);
+                    nThreads = Math.min(NTHREADS_MAX, Math.max(nThreads, 1));
+                    if(dbg) {out.println("Number of threads in the calculations = "+nThreads);}
+                    return true;
+                    } //try
+                catch (NumberFormatException nfe) {
+                msg = "Wrong numeric format for number of threads in \""+t+"\"";
+                nThreads = 1;
+                break;
+                } //catch
+            }// = or :
+        } // if starts with "-par"
+        String fam = DiagrFamily.option(arg);
+        if(fam != null) {
+            familySpec = fam;
+            if(dbg) {out.println("Diagram family = \""+fam+"\"");}
+            return true;
+        }
     }
     if(arg.length() >6) {
         String arg0 = arg.substring(0, 5).toLowerCase();
@@ -2066,6 +1767,22 @@ private boolean dispatchArg(String arg) {
             jCheckBoxMenuPredomDebug.setSelected(dbg);
             out.println("Add neutral pH dash-line to plot.");
             return true;
+    } else if(arg.equalsIgnoreCase("-adapt") || arg.equalsIgnoreCase("/adapt")) {
+            adaptive = true;
+            if(dbg) {out.println("Adaptive grid: calculations refined only near the area limits.");}
+            return true;
+    } else if(arg.equalsIgnoreCase("-trace") || arg.equalsIgnoreCase("/trace")) {
+            trace = true;
+            if(dbg) {out.println("Calculations following the lines between the areas.");}
+            return true;
+    } else if(arg.equalsIgnoreCase("-bin") || arg.equalsIgnoreCase("/bin")) {
+            binaryPlt = true;
+            if(dbg) {out.println("Plot file in binary format");}
+            return true;
+    } else if(arg.equalsIgnoreCase("-accel") || arg.equalsIgnoreCase("/accel")) {
+            actCoefAccel = true;
+            if(dbg) {out.println("Accelerated activity coefficient iterations");}
+            return true;
     } else if(arg.equalsIgnoreCase("-aqu") || arg.equalsIgnoreCase("/aqu")) {
             aqu = true;
             jCheckBoxMenuPredomDebug.setSelected(dbg);
@@ -2325,7 +2042,7 @@ private boolean dispatchArg(String arg) {
       q = n == javax.swing.JOptionPane.NO_OPTION;
     } //not "do not stop":
     if(q) {
-      if(h != null) {h.haltaCancel();}
+      haltaCancel();
       finishedCalculations = true;
       this.notify_All();
     }
@@ -2333,6 +2050,17 @@ private boolean dispatchArg(String arg) {
   } // quitConfirm(JFrame)
 //</editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="haltaCancel()">
+/** Cancels the HaltaFall calculations, including those running
+ * in other threads when <code>nThreads</code> &gt; 1 */
+private void haltaCancel() {
+    if(h != null) {h.haltaCancel();}
+    synchronized(hWorkers) {
+        for(HaltaFall hw : hWorkers) {hw.haltaCancel();}
+    }
+} // haltaCancel()
+//</editor-fold>
+
 //<editor-fold defaultstate="collapsed" desc="showTheInputFileName">
   /** Show the input data file name in the JFrame (window) */
   private void showTheInputFileName(java.io.File dataFile) {
@@ -2502,45 +2230,6 @@ private class outFilteredStreamPredom extends java.io.FilterOutputStream {
 
 //</editor-fold>
 
-//<editor-fold defaultstate="collapsed" desc="findTopSpecies()">
-/** get the value of <code>topSpecies</code> */
-private void findTopSpecies() {
-  //if(dbg) {out.println("--- findTopSpecies()");}
-  double topConc;
-  double topConcSolid;
-  if(diag.compMain < (cs.Na - cs.solidC) && !cs.noll[diag.compMain]) {
-    topConc = csC.C[diag.compMain];
-    topSpecies = diag.compMain;
-  } else {topConc = 0; topSpecies = -1;}
-  double w;
-  int nIons = cs.Na + cs.nx;
-  for (int i = cs.Na; i < nIons; i++) {
-    w = cs.a[i-cs.Na][diag.compMain];
-    if(Math.abs(w) < 0.00001) {continue;}
-    w = w * csC.C[i];
-    if(w <= topConc) {continue;}
-    topConc = w;
-    topSpecies = i;
-  } //for i
-  if(aqu) {return;}
-  //plot also predominance areas for solids
-  topConcSolid = Double.MIN_VALUE;
-  if(diag.oneArea >= (cs.Na+cs.nx)) { //if only one area is plotted
-      w = cs.a[diag.oneArea][diag.compMain]*csC.C[diag.oneArea];
-      if(w > topConcSolid) {topSpecies = diag.oneArea;}
-      return;
-  } //if only one area
-  for (int i = nIons; i < cs.Ms; i++) {
-    w = cs.a[i-cs.Na][diag.compMain]*csC.C[i];
-    if(w < topConcSolid) {continue;}
-    topSpecies = i;
-    //che if the amount of "compMain" is almost the same for two solids (<0.001% diff)
-    if(Math.abs(w/topConcSolid)-1 <= 0.00001) {topSpecies = -2;}
-    topConcSolid = w;
-  } //for i
-} //findTopSpecies()
-//</editor-fold>
-
 //<editor-fold defaultstate="collapsed" desc="getTheInputFileName">
     /** Get an input data file name from the user
      * using an Open File dialog */
@@ -2596,6 +2285,98 @@ private void findTopSpecies() {
     } // getTheInputFileName()
 //</editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="setFamilyMember">
+/** Moves to the next member of the diagram family: takes a new copy of the
+ * chemical system and sets the values (ionic strength, temperature, pressure
+ * or concentration) and the plot file name for the member. */
+  private void setFamilyMember() {
+    try {ch = family.next();}
+    catch (Chem.ChemicalParameterException ex) { // this should not occur, but you never know
+        showErrMsgBx(ex);
+        family = null;
+        return;
+    }
+    cs = ch.chemSystem;
+    csC = cs.chemConcs;
+    namn = cs.namn;
+    dgrC = ch.diagrConcs;
+    diag = ch.diag;
+    outputPltFile = family.pltFile();
+    jTextFieldPltFile.setText(outputPltFile.getName());
+    if(family.family.kind == DiagrFamily.IONIC_STRENGTH) {
+        ionicStrength = Math.max(-1,Math.min(1000,family.value()));
+        if(ionicStrength < 0) {ionicStrength = -1;}
+        calcActCoeffs = Math.abs(ionicStrength) > 1e-10;
+        if(!calcActCoeffs) {ionicStrength = 0;}
+        jTextFieldIonicStgr.setText(String.valueOf(ionicStrength));
+        jCheckActCoeff.setSelected(calcActCoeffs);
+        showActivityCoefficientControls(calcActCoeffs);
+    } else if(family.family.kind == DiagrFamily.TEMPERATURE) {
+        jLabelTemperature.setText(String.valueOf(Math.min(1000,Math.max(family.value(),-10))));
+    } else if(family.family.kind == DiagrFamily.PRESSURE) {
+        jLabelPressure.setText(String.valueOf(Math.min(10000,Math.max(family.value(),1))));
+    }
+    String msg = LINE+nl+family.description();
+    out.println(msg);
+    if(consoleOutput) {System.out.println(msg);}
+  } //setFamilyMember
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="calculateFamily">
+/** Calculates all the members of a diagram family with
+ * <code>PredomBatch.calculateFamily</code>, several members at the same
+ * time, each diagram saved in its own plot file. Used when the program is
+ * run from the command line with "-nostop" (and without "-keep"): the
+ * diagrams are not displayed, and the program ends when all the members
+ * are finished.
+ * @param fam the members of the family */
+  private void calculateFamily(final DiagrFamily fam) {
+    final PredomBatch.Options opt = new PredomBatch.Options();
+    opt.nSteps = jScrollBarNbrPoints.getValue();
+    opt.ionicStrength = calcActCoeffs ? ionicStrength : 0;
+    opt.activityCoeffsModel = jComboBoxModel.getSelectedIndex();
+    opt.temperature = readTemperature();
+    opt.pressure = readPressure();
+    opt.tolHalta = tolHalta;
+    opt.actCoefAccel = actCoefAccel;
+    opt.reversedConcs = reversedConcs;
+    opt.aqu = aqu;
+    opt.trace = trace;
+    opt.pathSIT = pathApp;
+    opt.pltFile = outputPltFile;
+    opt.binaryPlt = binaryPlt;
+    opt.neutral_pH = neutral_pH;
+    opt.conc_units = conc_units;
+    opt.conc_nottn = conc_nottn;
+    opt.tHeight = jScrollBarHeight.getValue()/10;
+    opt.dbg = dbg;
+    opt.out = out;
+    // unless "-par" is given, as many members as processors at the same time
+    final int n = nThreads > 1 ? nThreads : Runtime.getRuntime().availableProcessors();
+    String msg = LINE+nl+"Diagram family: "+fam.size()+" members, calculated "+
+            Math.max(1,Math.min(n, fam.size()))+" at a time";
+    out.println(msg);
+    if(consoleOutput) {System.out.println(msg);}
+    finishedCalculations = false;
+    Thread t = new Thread() {@Override public void run(){
+      try {
+        PredomBatch.Result[] r = PredomBatch.calculateFamily(ch, opt, fam, n);
+        for(int m = 0; m < r.length; m++) {
+            String msg2 = "Saved plot file: \""+fam.memberFile(outputPltFile, m).getAbsolutePath()+"\"";
+            if(r[m].nbrErrors >0) {msg2 = msg2+nl+String.format("   calculations failed for %d",r[m].nbrErrors).trim()+" point(s).";}
+            out.println(msg2);
+            System.out.println(msg2);
+        }
+      } catch (PredomBatch.BatchException ex) {showErrMsgBx(ex.getMessage(), 1);}
+      finally {
+        finishedCalculations = true;
+        notify_All();
+      }
+    }}; // Thread t
+    t.start();
+  } //calculateFamily
+//</editor-fold>
+
 //<editor-fold defaultstate="collapsed" desc="paintDiagrPanel">
 /** used when constructing the jPanelDiagram:
  * <pre>jPanelDiagram = new javax.swing.JPanel() {
@@ -2619,13 +2400,22 @@ private void findTopSpecies() {
     if(out == null) {out = System.out;}
     out.flush();
     out.println("Possible commands are:"+nl+
+    "  -accel   (speed up the iterations for the activity coefficients)"+nl+
+    "  -adapt   (adaptive grid: calculate a coarse grid first, and refine it"+nl+
+    "            only where the predominating species change)"+nl+
     "  -aqu     (plot only aqueous species; areas for solids not shown)"+nl+
+    "  -bin     (write the plot file in a compact binary format)"+nl+
     "  -d=data-file-name  (input file name)"+nl+
     "  -dbg     (output debug information)"+nl+
     "  -dbgH=n  (level for debug output from HaltaFall"+nl+
     "            in the first calculation point; default ="+Chem.DBGHALTA_DEF+")"+nl+
     "  -d=data-file-name  (input file name)"+nl+
     "  -eng     (display concentrations in engineering notation)"+nl+
+    "  -fam=family (make a family of diagrams, each saved in its own plot file:"+nl+
+    "            \"-fam=I:0,0.1,1\" for several ionic strengths; \"T:\" for"+nl+
+    "            temperatures; \"P:\" for pressures; \"C:Fe 2+:1E-6,1E-4\" for"+nl+
+    "            concentrations, or \"C:H+:-2/-8,-4/-10\" for concentration ranges;"+nl+
+    "            with -nostop the members are calculated at the same time)"+nl+
     "  -h=nbr   (height factor for labels in the plot)"+nl+
     "  -i=nbr   (ionic strength (the equil. constants are"+nl+
     "            assumed for I=0). Requires a temperature."+nl+
@@ -2638,6 +2428,8 @@ private void findTopSpecies() {
     "  -nostop  (do not stop for warnings)"+nl+
     "  -p=output-plot-file-name"+nl+
     "           (note: diagram not displayed after the calculation)"+nl+
+    "  -par=nbr (number of threads (1 to "+NTHREADS_MAX+") used in the calculations;"+nl+
+    "            default =1; use for example the nbr. of processors)"+nl+
     "  -pH      (show neutral pH as a dash line)"+nl+
     "  -pr=nbr  (pressure in bar; displayed in the diagram)"+nl+
     "  -rev     (do not reverse the input"+nl+
@@ -2646,6 +2438,8 @@ private void findTopSpecies() {
     "  -t=nbr   (temperature in °C, ignored if not needed)"+nl+
     "  -tol=nbr (tolerance when solving mass-balance equations in Haltafall,"+nl+
     "            0.01 >= nbr >= 1e-9; default ="+Chem.TOL_HALTA_DEF+")"+nl+
+    "  -trace   (follow the lines between the predominance areas"+nl+
+    "            instead of calculating all points; not parallel)"+nl+
     "  -units=nbr (concentration units displayed in the diagram: 0=\"molal\","+nl+
     "              1=\"mol/kg_w\", 2=\"M\", -1=\"\")"+nl+
     "Enclose file names with double quotes (\"\") it they contain blank space."+nl+
@@ -3028,8 +2822,7 @@ void showMsg(Exception ex) {
             && !(neutral_pH && (diag.pInX ==1 || diag.pInY ==1))) {
         if(dbg) {out.println(" (Note: temperature not needed in the diagram)");}
     } else {
-        double pSat;
-        try {pSat= lib.kemi.H2O.IAPWSF95.pSat(diag.temperature);}
+        try {PredomBatch.setPressure(diag, out);}
         catch (Exception ex) {
             out.println("\"IAPWSF95.pSat\": "+ex.getMessage());
             out.println("Calculations cancelled.");
@@ -3037,31 +2830,13 @@ void showMsg(Exception ex) {
             setCursorDef();
             return;
         }
-        if(Double.isNaN(diag.pressure)){diag.pressure = 1.;}
-        if(diag.temperature <= 99.61) {
-            if(diag.pressure < 1.) {
-                out.println("tC = "+diag.temperature+", pBar = "+diag.pressure+", setting pBar = 1.");
-            }
-            diag.pressure = Math.max(1.,diag.pressure);
-        }
-        // if pressure = 1 bar and temperature = 0, set temperature to 0.01 C (tripple point of water)
-        if(diag.pressure >0.99999 && diag.pressure < 1.00001 && Math.abs(diag.temperature) < 0.001) {diag.temperature = 0.01;}
-        if(diag.temperature <= 373.95) { // below critical point
-            if(diag.pressure < (pSat*0.999)) {
-                out.println("tC = "+diag.temperature+", pBar = "+diag.pressure+",  setting pBar = "+(float)pSat);
-                diag.pressure = pSat;
-            }
-        }
     }
     if(diag.Eh) {peEh = (ln10*8.3144126d*(diag.temperature+273.15d)/96484.56d);} else {peEh = Double.NaN;}
     // nbr of calculation steps
     nSteps = jScrollBarNbrPoints.getValue();
     nSteps = Math.max(NSTP_MIN,nSteps);
-    /** Max. number of points to be plotted. In a predominance area diagram
-     * these are the points delimiting the areas. Should be at least = 15 * nSteps. */
-    final int mxPNT = nSteps * 17;
     /** a class to store data about a Predom diagram */
-    final PredomData predData = new PredomData(cs.Ms, mxPNT); // create a new instance
+    final PredomData predData = new PredomData(cs.Ms); // create a new instance
     jLabelNbrPText.setText("Nbr of calc. steps:");
     jScrollBarNbrPoints.setEnabled(false);
     jLabelNbrPText.setEnabled(false);
@@ -3072,7 +2847,7 @@ void showMsg(Exception ex) {
 
     // ---------------------------------------
     // get an instance of Plot
-    plot = new Plot_Predom(this, err, out);
+    plot = new Plot_Predom(err, out);
     // ---------------------------------------
 
     String msg;
@@ -3117,22 +2892,8 @@ void showMsg(Exception ex) {
     }
 
     // check POS and NEG with the Tot.Conc. given in the input
+    PredomBatch.zeroConcs(ch, pos, neg, dbg, out);
     int j;
-    for(j =0; j < cs.Na; j++) {
-        if(csC.kh[j] == 2) {continue;} //only it Tot.conc. is given
-        if(!(pos[j] && neg[j]) && (pos[j] || neg[j])) {
-            if(dgrC.hur[j] !=3 &&  //not LTV
-               dgrC.cLow[j]==0 && (Double.isNaN(dgrC.cHigh[j]) || dgrC.cHigh[j]==0)) {
-                    //it is only POS or NEG and Tot.Conc =0
-                    csC.logA[j] = -9999.;
-                    dgrC.cLow[j] = csC.logA[j];
-                    if(j == diag.compX || j == diag.compY) {dgrC.cHigh[j] = dgrC.cLow[j]+10;}
-                    csC.kh[j] =2; //kh=2 means logA given
-                    if(dbg) {out.println("Can not calculate mass-balance for for component \""+namn.identC[j]+"\""+nl+
-                        "   its log(activity) is now set to -9999.");}
-            }
-        }
-    } //for j
 
     // ---- Make an instance of Factor
     String userHome = System.getProperty("user.home");
@@ -3154,6 +2915,7 @@ void showMsg(Exception ex) {
     csC.dbg = dbgHalta;
     csC.cont = false;
     csC.tol = tolHalta;
+    csC.actCoefAccel = actCoefAccel;
     for(j =0; j < cs.Na; j++) {
         if(csC.kh[j] == 1) {
             csC.tot[j]=dgrC.cLow[j];
@@ -3196,8 +2958,6 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
     private int nbrHaltaErrors = 0;
     private int nbrHaltaUncertain = 0;
     private final StringBuilder failuresMsg = new StringBuilder();
-    private final java.util.Locale engl = java.util.Locale.ENGLISH;
-    private boolean tooManyAreaPoints = false;
     private char[][] lineMap = null;
     private PredomData predData = null;
   /** Sets a local pointer to an instance of PredomData, where results will be stored.
@@ -3213,227 +2973,345 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
         this.cancel(true);
         return false;
     }
-    //--- do the HaltaFall calculations
+    if(trace) {return traceFrontiers();}
+    if(nThreads > 1 || adaptive) {return calcMapAndFrontiers();}
+    return calcColumns();
+  }
+
+  /** The sequential calculations, made in this thread with the instance of
+   * <code>HaltaFall</code> of the frame. The calculations are performed
+   * column-wise: all Y-values are calculated for each X-value, starting from
+   * the left/bottom corner and going to the right and upwards. The points
+   * delimiting the predominance areas are then found with
+   * <code>findFrontiers</code>, as for the parallel calculations.
+   * @return true if no error occurs, false otherwise */
+  private boolean calcColumns() {
     // create an instance of class HaltaFall
+    haltaPool.release(h);
     h = null;
-    try {h = new HaltaFall(cs,factor, out);}
+    try {h = haltaPool.get(cs,factor, out);}
     catch (Chem.ChemicalParameterException ex) { // this should not occur, but you never know
         showErrMsgBx(ex);
         getHaltaInstanceOK = false; // skip the rest of the thread
     }
     if(!getHaltaInstanceOK) {this.cancel(true); return false;}
-
-   /** <code>line[n][1]</code> is the predominating species at point "n" (along the
-    * Y-axis) for the present calculation.<br>
-    * <code>line[n][0]</code> is the predominating species at point "n" (along the
-    * Y-axis) for the <i>previous</i> calculation.<br>
-    * The plot area is divided in "nSteps" which means nSteps+1 calculated
-    * positions, plus one over the top and one under the bottom, this gives
-    * (nSteps+3) for the size of line[][2].<br>
-    * The bottom and top  values (or left and right if calculations are row-wise),
-    * that is, line[0][] and line[nSteps+2][], are always "-1",
-    * that is: no predominating species outside the plot area. */
-    int[][] line = new int[nSteps+3][2];
-
-    int iL;
-    int iL_1; // = iL -1
-    final int NOW = 1;  final int PREVIOUS = 0;
-    for(iL=0; iL<line.length; iL++) {line[iL][PREVIOUS]=-1; line[iL][NOW]=-1;}
-
-    int i,j, n;
-    if(dbg) {
-        lineMap = new char[nSteps+1][nSteps+1];
-        for(j=0; j<lineMap.length; j++) {for(i=0; i<lineMap.length; i++) {lineMap[j][i] = ' ';}}
-    }
-    double xVal, yVal; // these are the position of the calculated point
-    predData.nPoint = -1;
-    boolean frontier;
-    double tolHalta0 = csC.tol;
-    final String f = "Calculation failed in \"HaltaFall.haltaCalc\" at point (%d,%d), x=%7.5f y=%7.5f"+nl+"%s";
-    final String d;
-    if(cs.Ms<=98) {d="%2d";} else if(cs.Ms<=998) {d="%3d";} else if(cs.Ms<=9998) {d="%4d";} else {d="%5d";}
-
-    // ----- The calculations are performed column-wise:
-    //          all Y-values are calcualted for each X-value,
-    //          starting from the left/bottom corner and going
-    //          to the right and upwards
-    //       The outer loop is along the X-axis and the inner loop along the Y-axis
-    nStepOuter = -1;
-    xVal = predData.xLeft - predData.stepX;
+    final int[][] topMap = new int[nSteps+1][nSteps+1];
+    PredomBatch.PointCalc pc = newPointCalc(ch, h, factor, 1);
+    int nCols = 0;
     do_loopOuter:
-    do {  // -------------------------------------- Outer Loop for X-axis
-        nStepOuter++;
-        publish((nStepOuter+1));
-        //if needed for debugging: sleep some milliseconds (wait) at each calculation point
-        //try {Thread.sleep(1);} catch(Exception ex) {}
-
-        xVal = xVal + predData.stepX;
-        j = diag.compX;
-        // --- input data for this calculation point
-        if(csC.kh[j] == 1) {
-            if(dgrC.hur[j] ==3) { // LTV
-                csC.tot[j] = Math.exp(ln10*xVal);
-            } else { // TV
-                csC.tot[j]=xVal;
-            }
-        } else { // kh[j] = 2
-              csC.logA[j]=xVal;
+    for(int iX = 0; iX <= nSteps; iX++) {  // ---------- Outer Loop for X-axis
+        publish(iX+1);
+        for(int iY = 0; iY <= nSteps; iY++) {  // ------ Inner Loop for Y-axis
+            if(pc.stop()) {break do_loopOuter;} //user requests exit?
+            topMap[iX][iY] = pc.gridPoint(iX, iY);
         }
-        // For the 1st point at the bottom of the diagram, starting the calcs. using
-        // the last equilibrium composition (at the top of the diagram) might be a bad idea
-        csC.cont = false;
-
-        // csC.cont = false;
-        nStepInner = -1;
-        yVal = predData.yBottom - predData.stepY;
-        do {  // -------------------------------------- Inner Loop for Y-axis
-            nStepInner++;
-            iL = nStepInner+1;
-            iL_1 = nStepInner; // iL_1 = iL-1
-            yVal = yVal + predData.stepY;
-            j = diag.compY;
-            // --- input data for this calculation point
-            if(csC.kh[j] == 1) {
-                if(dgrC.hur[j] ==3) { // LTV
-                    csC.tot[j] = Math.exp(ln10*yVal);
-                } else { // TV
-                    csC.tot[j]=yVal;
-                }
-            } else { // kh[j] = 2
-                csC.logA[j]=yVal;
-            }
+        if(pc.stop()) {break;}
+        nCols++;
+    }
+    addCounts(pc.points);
+    if(haltaError) {return true;}
+    // if the user stopped the calculations: use only the columns that were finished
+    if(nCols > 0) {findFrontiers(topMap, nCols);} else {nStepOuter = -1; predData.nPoint = -1;}
+    return true;
+  }
 
-            if(finishedCalculations) {break do_loopOuter;} //user requests exit?
+  /** @param ch0 the chemical system
+   * @param h0 the instance of HaltaFall for <code>ch0</code>
+   * @param factor0 the instance of Factor used by <code>h0</code>
+   * @param warmDist see <code>PredomBatch.PointCalc</code>
+   * @return an object to calculate the predominating species at single
+   * points, which stops when the user stops the calculations, and which
+   * reports the exceptions thrown by HaltaFall */
+  private PredomBatch.PointCalc newPointCalc(Chem ch0, HaltaFall h0, Factor factor0, int warmDist) {
+    return new PredomBatch.PointCalc(ch0, h0, factor0, predData, nSteps, warmDist, aqu, dbg, out) {
+      @Override public boolean stop() {return finishedCalculations || haltaError || super.stop();}
+      @Override void exception(String msg, Chem.ChemicalParameterException ex) {
+        super.exception(msg, ex);
+        showMsg(ex);
+        showErrMsgBx(msg+nl+ex.getMessage(),1);
+        haltaError = true;
+      }
+    };
+  }
 
-            // ------ print debug output from HaltaFall only for the first point (first point = zero) ------
-            if(nStepOuter == 0 && nStepInner == 0) {
-                if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                    out.println("Starting calculation 1 (of "+(nSteps+1)+"x"+(nSteps+1)+")");
-                }
-            } else {
-                csC.dbg = Chem.DBGHALTA_DEF;
-                /**  // ########## ---------- ##########  ---------- ########## ##?##
-                if(Math.abs(xVal+7.8)<0.005 && (Math.abs(yVal+38.7)<0.001)) {
-                    csC.dbg = 6;
-                    out.println("---- Note: x="+(float)xVal+", y="+(float)yVal+"  (debug) ---- nStepInner="+nStepInner+", nStepOuter="+nStepOuter);
-                }    // ########## ---------- ##########  ---------- ########## ##?##  */                
-            }
-            // --- HaltaFall: do the calculations
-            //     calculate the equilibrium composition of the system
-            try {
-                csC.tol = tolHalta0;
-                h.haltaCalc();
-                if(csC.isErrFlagsSet(2)) { // too many iterations when solving the mass balance equations
-                    do {
-                        csC.tol = csC.tol * 0.1; // decrease tolerance and try again
-                        if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                            out.println("Too many iterations when solving the mass balance equations"+nl+
-                                    "  decreasing tolerance to: "+(float)csC.tol+" and trying again.");
-                        }
-                        h.haltaCalc();
-                    } while (csC.isErrFlagsSet(2) && csC.tol >= 1e-9);
-                    csC.tol = tolHalta0;
-                    if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                        out.println("Restoring tolerance to: "+(float)tolHalta0+" for next calculations.");
-                    }
-                }
-                if(csC.isErrFlagsSet(3)) { // failed to find a satisfactory combination of solids
-                    if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                        out.println("Failed to find a satisfactory combination of solids. Trying again...");
-                    }
-                    csC.cont = false;      // try again
-                    h.haltaCalc();
-                }
-            } catch (Chem.ChemicalParameterException ex) {
-                String ms = "Error in \"HaltaFall.haltaCalc\", errFlags="+nl+csC.errFlagsGetMessages()+nl+
-                        "   at point: ("+(nStepInner+1)+","+(nStepOuter+1)+")  at x="+(float)xVal+" y="+(float)yVal;
-                showMsg(ex);
-                showErrMsgBx(ms+nl+ex.getMessage(),1);
-                haltaError = true;
-                break do_loopOuter;
-            }
-            // ---
-            if(finishedCalculations) {break do_loopOuter;} //user request exit?
-
-            if(csC.isErrFlagsSet(1)) {nbrHaltaUncertain++;}
-            if(csC.isErrFlagsSet(5)) {nbrTooLargeConcs++;}
-            if(csC.isErrFlagsSet(2) || csC.isErrFlagsSet(3) || csC.isErrFlagsSet(4)
-                            || csC.isErrFlagsSet(6)) {
-                nbrHaltaErrors++;
-                frontier = false;
-                if(failuresMsg.length() >0) {failuresMsg.append(nl);}
-                failuresMsg.append(String.format(engl,f,(nStepInner+1),(nStepOuter+1),(float)xVal,(float)yVal,csC.errFlagsGetMessages()));
-            } else {
-                //--------------------------------------------------
-                findTopSpecies();
-
-                line[iL][NOW] = topSpecies;
-                //--------------------------------------------------
-                //  Is this point a frontier between two areas ?
-                if(line[iL][NOW] != line[iL][PREVIOUS]) {
-                    frontier = line[iL][NOW] != line[iL_1][NOW] ||
-                        line[iL][NOW] != line[iL_1][PREVIOUS];
-                } else {
-                    frontier = line[iL][NOW] != line[iL_1][NOW];
-                }
-            }
-            if(frontier) {
-                predData.nPoint++;
-                // store what species are involved
-                predData.pair[predData.nPoint][0] = line[iL][PREVIOUS];
-                if(nStepOuter ==0 && line[iL][NOW] != line[iL_1][NOW]) {
-                                            predData.pair[predData.nPoint][0] = line[iL_1][NOW];
-                }
-                predData.pair[predData.nPoint][1] = line[iL][NOW];
-                predData.pair[predData.nPoint][2] = line[iL_1][NOW];
-                // the position of the line separating the predominance areas
-                predData.xPl[predData.nPoint] = xVal;
-                    predData.yPl[predData.nPoint] = yVal;
-                if(dbg) {lineMap[nStepInner][nStepOuter] = '+';}
-            } else { // not frontier
-                if(iL == (nSteps+1) || nStepOuter == nSteps) {
-                    //Point at the margin of the diagram
-                    //  these are used only to determine the centre of each predominance area
-                    predData.nPoint++;
-                    predData.pair[predData.nPoint][0]=line[iL][PREVIOUS];
-                    predData.pair[predData.nPoint][1]=-1; //the predominating species at this point
-                    predData.pair[predData.nPoint][2]=line[iL][NOW];
-                    predData.xPl[predData.nPoint] = xVal;
-                    predData.yPl[predData.nPoint] = yVal;
-                    if(dbg) {lineMap[nStepInner][nStepOuter] = '+';}
-                }
-            }//frontier?
-            // --------------------------------------------------
+  /** Adds the problems found by a <code>PointSolver</code> to those reported
+   * when the calculations are finished
+   * @param solver used for some of the calculation points */
+  private synchronized void addCounts(PointSolver solver) {
+    nbrHaltaUncertain = nbrHaltaUncertain + solver.nbrUncertain;
+    nbrTooLargeConcs = nbrTooLargeConcs + solver.nbrTooLargeConcs;
+    nbrHaltaErrors = nbrHaltaErrors + solver.nbrErrors;
+    if(solver.failures.length() >0) {
+        if(failuresMsg.length() >0) {failuresMsg.append(nl);}
+        failuresMsg.append(solver.failures);
+    }
+  }
 
-            if(dbg && nStepOuter == 0 && nStepInner == 0 && diag.activityCoeffsModel >=0) {
-                    err.flush(); out.flush();
-                    out.println("First calculation step finished.");
-                    factor.printActivityCoeffs(out);
-            }
+  //<editor-fold defaultstate="collapsed" desc="parallel and adaptive calculations">
+  /** Value stored in the map of predominating species at the
+   * points where the HaltaFall calculation failed */
+  private static final int FAILED = PredomBatch.Result.FAILED;
+  /** <code>colDone[i]</code> is true when all points in column "i" (X-value)
+   * have been calculated */
+  private boolean[] colDone;
+  /** number of columns calculated so far (for the progress report) */
+  private final java.util.concurrent.atomic.AtomicInteger nbrColsDone =
+          new java.util.concurrent.atomic.AtomicInteger(0);
+  /** number of calls to <code>haltaCalc</code> (for the adaptive grid) */
+  private final java.util.concurrent.atomic.AtomicInteger nbrCalcPoints =
+          new java.util.concurrent.atomic.AtomicInteger(0);
+
+  /** The calculations are divided into strips of columns (X-values) and
+   * performed in a ForkJoinPool with <code>nThreads</code> threads. Each
+   * strip uses its own copy of the chemical system and its own instances of
+   * <code>Factor</code> and <code>HaltaFall</code>. The predominating species
+   * at each calculated point is stored in a map, and when all strips are
+   * finished the points delimiting the predominance areas are found with
+   * the same procedure used for the sequential calculations (see
+   * <code>findFrontiers</code>). This way the area limits are the same
+   * irrespective of where the strips begin and end.<br>
+   * If <code>adaptive</code> is true, the points are not all calculated:
+   * see <code>StripCalc.refine</code>.
+   * @return true if no error occurs, false otherwise */
+  private boolean calcMapAndFrontiers() {
+    final int nCols = nSteps+1;
+    final int[][] topMap = new int[nCols][nSteps+1];
+    colDone = new boolean[nCols];
+    // with the adaptive grid the strips must contain whole coarse cells
+    int unit = 1;
+    if(adaptive) {while(unit*2 <= nSteps/ADAPT_CELLS) {unit = unit*2;}}
+    // make about two strips per thread so that the threads are kept busy
+    // even if some of the strips are slower than others
+    int width = Math.max(1, (int)Math.ceil((double)nCols/(double)(2*nThreads)));
+    width = Math.max(unit, ((width+unit-1)/unit)*unit);
+    if(dbg) {
+        out.println("Calculations using "+nThreads+" thread(s), in strips of "+width+" columns.");
+        if(adaptive) {out.println("Adaptive grid: coarse cells of "+unit+"x"+unit+" steps.");}
+    }
+    h = null;
+    hWorkers.clear();
+    java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(nThreads);
+    try {pool.invoke(new StripTask(topMap, 0, nCols, width, unit));}
+    finally {pool.shutdown(); hWorkers.clear();}
+    if(!getHaltaInstanceOK) {this.cancel(true); return false;}
+    if(haltaError) {return true;}
+    if(adaptive && dbg) {
+        out.println("Adaptive grid: calculated "+nbrCalcPoints.get()+" of "+(nCols*nCols)+" points.");
+    }
+    // if the user stopped the calculations: use only the
+    // columns that were finished, starting from the left
+    int n = 0;
+    while(n < nCols && colDone[n]) {n++;}
+    if(n > 0) {findFrontiers(topMap, n);} else {nStepOuter = -1; predData.nPoint = -1;}
+    return true;
+  }
 
-          } while(nStepInner < nSteps); // ------------ Inner Loop for 2nd-axis
-
-          if(dbg) { //-- print the predominance species map
-              if(nStepOuter==0) {out.println("---- Map of predominating species (from 1 \""+
-                      namn.ident[0]+"\" to "+(cs.Ms-1)+" \""+namn.ident[cs.Ms-1]+"\") and X-variable."+nl+
-                      "     The leftmost column corresponds to Y="+(float)predData.yBottom+" and the rightmost column to Y="+(float)predData.yTop);}
-              for(i=0; i<(line.length-1); i++) {
-                  if(line[i][NOW]>=0) {n=line[i][NOW]+1;} else {n=-1;}
-                  out.print(String.format(d,n));
-              }
-              out.print(" "+(float)xVal);
-              out.println();
-          }
+  /** Calculates a strip of columns, or divides it in two strips if it is too wide */
+  private class StripTask extends java.util.concurrent.RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final int[][] topMap;
+    private final int from, to, width, unit;
+    /** @param topMap where the predominating species at each point is stored
+     * @param from the first column (X-value) in this strip
+     * @param to the last column +1
+     * @param width the maximum number of columns calculated in a single strip
+     * @param unit the strips are divided in multiples of this number of columns */
+    StripTask(int[][] topMap, int from, int to, int width, int unit) {
+        this.topMap = topMap; this.from = from; this.to = to; this.width = width; this.unit = unit;
+    }
+    @Override protected void compute() {
+        if((to - from) <= width) {new StripCalc(topMap, from, to, unit).calc(); return;}
+        int mid = from + Math.max(1, ((to - from)/unit)/2)*unit;
+        invokeAll(new StripTask(topMap, from, mid, width, unit), new StripTask(topMap, mid, to, width, unit));
+    }
+  } // class StripTask
+
+  /** The HaltaFall calculations for the columns (X-values) from
+   * <code>from</code> to <code>to-1</code>, with its own instances of
+   * <code>Chem</code>, <code>Factor</code> and <code>HaltaFall</code>.
+   * The predominating species at each point is stored in <code>topMap</code>,
+   * or <code>FAILED</code> if the calculation fails. */
+  private class StripCalc {
+    private final int[][] topMap;
+    private final int from, to, unit;
+    private HaltaFall hW;
+    private PredomBatch.PointCalc pc;
+    /** for the adaptive grid: <code>state[iX-from][iY]</code> =0 if the point
+     * has not been calculated, =1 if the value in <code>topMap</code> is taken
+     * from the corners of a cell, =2 if the point has been calculated */
+    private byte[][] state = null;
+    /** for the adaptive grid: the values and state for column "to", which belongs to
+     * the next strip, but which is needed for the cells at the right of this strip */
+    private int[] edgeTop = null;
+    private byte[] edgeState = null;
+    /** @param topMap where the predominating species at each point is stored
+     * @param from the first column
+     * @param to the last column +1
+     * @param unit the size of the coarse cells (adaptive grid) */
+    StripCalc(int[][] topMap, int from, int to, int unit) {
+        this.topMap = topMap; this.from = from; this.to = to; this.unit = unit;
+    }
 
-          if(predData.nPoint >= predData.mxPNT) {
-            tooManyAreaPoints = true;
-            break; // do_loopOuter;
+    void calc() {
+      if(finishedCalculations || haltaError || !getHaltaInstanceOK) {return;}
+      Chem chW;
+      Factor factorW;
+      try {
+          chW = ch.copyChem();
+          factorW = new Factor(chW, pathApp, System.getProperty("user.home"), pathDef.toString(), out);
+          hW = haltaPool.get(chW.chemSystem, factorW, out);
+      } catch (Exception ex) { // this should not occur, but you never know
+          showErrMsgBx(ex);
+          getHaltaInstanceOK = false;
+          return;
+      }
+      hWorkers.add(hW);
+      // with the adaptive grid the nearest point calculated may be a cell away
+      pc = newPointCalc(chW, hW, factorW, adaptive ? unit : 1);
+      try {
+        if(!adaptive) {
+          for(int iX = from; iX < to; iX++) {
+            for(int iY = 0; iY <= nSteps; iY++) {
+                if(finishedCalculations || haltaError) {return;} //user requests exit?
+                topMap[iX][iY] = calcPoint(iX, iY);
+            } // for iY
+            colDone[iX] = true;
+            publish(nbrColsDone.incrementAndGet());
+          } // for iX
+        } else {
+          state = new byte[to-from][nSteps+1];
+          if(to <= nSteps) {edgeTop = new int[nSteps+1]; edgeState = new byte[nSteps+1];}
+          int x1, y1;
+          for(int x0 = from; x0 < to; x0 = x0 + unit) {
+            x1 = Math.min(x0 + unit, nSteps); // x1 = x0 for the last column
+            for(int y0 = 0; y0 < nSteps; y0 = y0 + unit) {
+                y1 = Math.min(y0 + unit, nSteps);
+                refine(x0, x1, y0, y1);
+                if(finishedCalculations || haltaError) {return;}
+            }
+            publish(nbrColsDone.addAndGet(Math.min(x0+unit, to)-x0));
+          } // for x0
+          for(int iX = from; iX < to; iX++) {colDone[iX] = true;}
+        }
+      } finally {
+        hWorkers.remove(hW);
+        haltaPool.release(hW);
+        addCounts(pc.points);
+      }
+    } // calc()
+
+    /** Adaptive grid: if the four corners of the cell have the same predominating
+     * species, all the points within the cell are given that value without
+     * calculating them. Otherwise the cell is divided into four cells, and so on,
+     * until the cells are one step wide. Only the cells crossed by a line between
+     * predominance areas are calculated in detail, so the area limits are as sharp
+     * as with the full grid. Note that a predominance area which is smaller than
+     * a coarse cell, and lies entirely within it, may be missed.
+     * @param x0 left column of the cell
+     * @param x1 right column of the cell
+     * @param y0 bottom row of the cell
+     * @param y1 top row of the cell */
+    private void refine(int x0, int x1, int y0, int y1) {
+      if(finishedCalculations || haltaError) {return;}
+      int c00 = point(x0, y0), c01 = point(x0, y1);
+      int c11 = point(x1, y1), c10 = point(x1, y0);
+      if((x1 - x0) <= 1 && (y1 - y0) <= 1) {return;}
+      if(c00 != FAILED && c00 == c01 && c00 == c11 && c00 == c10) {
+          for(int iX = x0; iX <= x1; iX++) {
+              for(int iY = y0; iY <= y1; iY++) {assume(iX, iY, c00);}
           }
-          for(i =0; i<line.length; i++) {line[i][PREVIOUS] = line[i][NOW]; line[i][NOW] = -1;}
+          return;
+      }
+      int xm = (x0 + x1)/2, ym = (y0 + y1)/2;
+      if((x1 - x0) <= 1) {
+          refine(x0, x1, y0, ym); refine(x0, x1, ym, y1);
+      } else if((y1 - y0) <= 1) {
+          refine(x0, xm, y0, y1); refine(xm, x1, y0, y1);
+      } else {
+          refine(x0, xm, y0, ym); refine(x0, xm, ym, y1);
+          refine(xm, x1, ym, y1); refine(xm, x1, y0, ym);
+      }
+    } // refine
+
+    /** Adaptive grid: returns the predominating species at a point,
+     * calculating it if needed
+     * @param iX the column
+     * @param iY the row
+     * @return the predominating species, or FAILED */
+    private int point(int iX, int iY) {
+      if(iX >= to) {
+          if(edgeState[iY] < 2) {edgeTop[iY] = calcPoint(iX, iY); edgeState[iY] = 2;}
+          return edgeTop[iY];
+      }
+      if(state[iX-from][iY] < 2) {
+          topMap[iX][iY] = calcPoint(iX, iY);
+          state[iX-from][iY] = 2;
+      }
+      return topMap[iX][iY];
+    }
+    /** Adaptive grid: sets the predominating species at a point which
+     * has not been calculated
+     * @param iX the column
+     * @param iY the row
+     * @param top the predominating species */
+    private void assume(int iX, int iY, int top) {
+      if(iX >= to) {return;}
+      if(state[iX-from][iY] == 0) {topMap[iX][iY] = top; state[iX-from][iY] = 1;}
+    }
 
-        } while(nStepOuter < nSteps); // ------------ External Loop for 1st-axis
+    /** Calculates the equilibrium composition at a point of the grid
+     * @param iX the column (X-value)
+     * @param iY the row (Y-value)
+     * @return the predominating species, or FAILED */
+    private int calcPoint(int iX, int iY) {
+      nbrCalcPoints.incrementAndGet();
+      return pc.gridPoint(iX, iY);
+    } // calcPoint
+  } // class StripCalc
+
+  /** Finds the points delimiting the predominance areas from a map with the
+   * predominating species at each calculated point
+   * (see <code>PredomBatch.findFrontiers</code>).
+   * @param topMap the predominating species at each point:
+   * <code>topMap[column][row]</code>
+   * @param nCols the number of columns in <code>topMap</code> to use */
+  private void findFrontiers(final int[][] topMap, final int nCols) {
+    if(dbg) {
+        lineMap = new char[nSteps+1][nSteps+1];
+        for(int j=0; j<lineMap.length; j++) {for(int i=0; i<lineMap.length; i++) {lineMap[j][i] = ' ';}}
+    }
+    PredomBatch.findFrontiers(ch, topMap, nCols, predData, lineMap, dbg, out);
+    nStepOuter = nCols-1;
+  } // findFrontiers
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="traceFrontiers">
+  /** The lines between the predominance areas are followed (see
+   * <code>PredomTrace</code>) instead of calculating all the points of the
+   * grid. The calculations are made in this thread, with the instance of
+   * <code>HaltaFall</code> used in the sequential calculations.
+   * @return true if no error occurs, false otherwise */
+  private boolean traceFrontiers() {
+    haltaPool.release(h);
+    h = null;
+    try {h = haltaPool.get(cs,factor, out);}
+    catch (Chem.ChemicalParameterException ex) { // this should not occur, but you never know
+        showErrMsgBx(ex);
+        getHaltaInstanceOK = false; // skip the rest of the thread
+    }
+    if(!getHaltaInstanceOK) {this.cancel(true); return false;}
+    nStepOuter = nSteps;
+    PredomBatch.PointCalc pc = newPointCalc(ch, h, factor, 1);
+    PredomTrace t = new PredomTrace(predData, nSteps, PredomTrace.BISECTIONS, pc);
+    t.trace();
+    addCounts(pc.points);
+    if(!haltaError && dbg) {
+        out.println("Lines followed: calculated "+t.nbrCalcPoints()+" points (the full grid has "+((nSteps+1)*(nSteps+1))+").");
+    }
     return true;
   }
+
+  //</editor-fold>
   /** Performs some tasks after the calculations have been finished */
   @Override protected void done() {
     if(isCancelled()) {
@@ -3442,10 +3320,6 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
         int i,j;
         String msg;
         if(!haltaError) {
-            if(tooManyAreaPoints) {
-              showErrMsgBx("Problem: Too many area-delimiting points were found."+nl+
-                  "The diagram will be incomplete.", 1);
-            } // tooManyAreaPoints?
             calculationTime = (System.nanoTime() - calculationStart)
                 /1000000; //convert nano seconds to milli seconds
             msg = "--- Calculated "+(nSteps+1)+" x "+(nStepOuter+1)+" points, time="+millisToShortDHMS(calculationTime);
@@ -3487,69 +3361,14 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
             // --------------------------------------------------
             //  Determine the center of each area
             //    (where labels will be plotted)
-            plot.minMax(ch, predData);
+            plot.dbg = dbg; plot.aqu = aqu; plot.binaryPlt = binaryPlt; plot.neutral_pH = neutral_pH;
+            plot.conc_units = conc_units; plot.conc_nottn = conc_nottn;
+            plot.peEh = peEh; plot.tHeight = tHeight;
+            plot.minMax(ch, predData, trace);
             // --------------------------------------------------
-            if(dbg) {
-              out.println("---- List of points to plot (including margins):"+nl+"point_nbr, pair[0,1,2], x-value, y-value");
-              for(i=0; i<predData.nPoint; i++) {
-                out.println(
-                        String.format("%3d,  %3d,%3d,%3d",i,predData.pair[i][0],predData.pair[i][1],predData.pair[i][2])+
-                        ",   "+(float)predData.xPl[i]+", "+(float)predData.yPl[i]
-                        );
-              }
-              out.println("----");
-            }
-
             // --------------------------------------------------
-            // Take away plot margins (about: 4*nStep  points)
-            // (the margins are needed to determine the center of each area)
-            int nPoints2 = -1;
-            for(i=0; i < predData.nPoint; i++) {
-                if(predData.pair[i][0] == -1 &&
-                    (predData.pair[i][1] == predData.pair[i][2] || predData.pair[i][2] == -1
-                    )) {continue;}
-                if(predData.pair[i][1] == -1) {continue;}
-                if(predData.pair[i][2] == -1 && predData.pair[i][0] == predData.pair[i][1]) {continue;}
-                nPoints2++;
-                predData.xPl[nPoints2] = predData.xPl[i];
-                predData.yPl[nPoints2] = predData.yPl[i];
-                //
-                // pair[][2] is not used when plotting, if pair[][0] = pair[][1] use pair[][2]
-                if(predData.pair[i][0] == predData.pair[i][1] &&
-                    predData.pair[i][2] != -1) {predData.pair[i][0] = predData.pair[i][2];}
-                predData.pair[nPoints2][0] = predData.pair[i][0];
-                predData.pair[nPoints2][1] = predData.pair[i][1];
-                predData.pair[nPoints2][2] = predData.pair[i][2]; //not really neaded becaise pair[][2] is not used when plotting
-            } // for i
-            predData.nPoint = nPoints2;
-            // --------------------------------------------------
-            //  Move the points halv step to the left and down
-            //  to try to compensate for the column-wise
-            //  calculation procedure
-            for(i=0; i<predData.nPoint; i++) {
-              if(Math.abs(predData.xPl[i]-predData.xLeft) > 1e-5 &&
-                 Math.abs(predData.xPl[i]-predData.xRight) > 1e-5) {
-                                predData.xPl[i] = predData.xPl[i]-0.5*predData.stepX;
-              }
-              if(Math.abs(predData.yPl[i]-predData.yBottom) > 1e-5 &&
-                 Math.abs(predData.yPl[i]-predData.yTop) > 1e-5) {
-                                predData.yPl[i] = predData.yPl[i]-0.5*predData.stepY;
-              }
-            }
-
-            // --------------------------------------------------
-            if(dbg) {
-                out.println("---- List of points to plot:"+nl+"point_nbr, pair[0,1,2], x-value, y-value");
-                for(i=0; i<=predData.nPoint; i++) {
-                    out.println(
-                        String.format("%3d,  %3d,%3d,%3d",i,predData.pair[i][0],predData.pair[i][1],predData.pair[i][2])+
-                        ",   "+(float)predData.xPl[i]+", "+(float)predData.yPl[i]
-                        );
-                }
-                out.println("----");
-            }
-
-            out.println("Number of points to draw = "+(predData.nPoint+1));
+            //  Take away the plot margins
+            PredomBatch.pointsToPlot(predData, trace, dbg, out);
 
             // -------------------------------------------
             out.println("Saving plot file \""+outputPltFile.getAbsolutePath()+"\"...");
@@ -3558,6 +3377,8 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
               showErrMsgBx("Error: "+ex.getMessage()+nl+
                   "while saving plot file \""+outputPltFile.getAbsolutePath()+"\"", 1);
             }
+            dd = plot.dd;
+            conc_units = plot.conc_units; conc_nottn = plot.conc_nottn;
             if(outputPltFile != null && outputPltFile.getName().length()>0) {
                 String msg3 = "Saved plot file: \""+outputPltFile.getAbsolutePath()+"\"";
                 out.println(msg3);
@@ -3588,6 +3409,21 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
     }
     out.println(LINE);
     System.out.println(LINE);
+    if(family != null) {
+        if(!isCancelled() && getHaltaInstanceOK && !haltaError
+                && family.hasNext()) {
+            // the next member of the diagram family
+            javax.swing.SwingUtilities.invokeLater(new Runnable() {@Override public void run() {
+                setFamilyMember();
+                finishedCalculations = true; // set to false when the calculations start
+                doCalculations();
+                if(finishedCalculations) {predomFrame.notify_All();}
+            }}); // invokeLater
+            setCursorDef();
+            return;
+        }
+        family = null;
+    }
     finishedCalculations = true;
     predomFrame.notify_All();
     setCursorDef();
@@ -0,0 +1,1275 @@
+package predominanceAreaDiagrams;
+
+import lib.common.Util;
+import lib.kemi.chem.Chem;
+import lib.kemi.chem.DiagrFamily;
+import lib.kemi.graph_lib.GraphLib;
+import lib.kemi.haltaFall.Factor;
+import lib.kemi.haltaFall.HaltaFall;
+import lib.kemi.haltaFall.PointSolver;
+import lib.kemi.haltaFall.WarmStart;
+import lib.kemi.readDataLib.ReadDataLib;
+import lib.kemi.readWriteDataFiles.ReadChemSyst;
+
+/** Calculations for a Predominance Area Diagram without a graphical user
+ * interface. Nothing in this class uses Swing or AWT, and it may be used
+ * by other programs, also when <code>java.awt.headless=true</code>:
+ * <pre>
+ *  PredomBatch.Options opt = new PredomBatch.Options();
+ *  opt.nSteps = 100;
+ *  Chem ch = PredomBatch.readDataFile(new java.io.File("Fe.dat"), opt);
+ *  PredomBatch.Result r = PredomBatch.calculate(ch, opt);
+ *  ... r.top[iX][iY] ...
+ * </pre>
+ * The checks of the input data, the calculations at each point of the
+ * diagram (<code>PointCalc</code>), and the search for the lines between the
+ * predominance areas, are also used by class <code>Predom</code>.
+ * The predominating species at each point of the grid are returned (unless
+ * <code>Options.trace</code> is true), together with the points on the lines
+ * between the predominance areas. If <code>Options.pltFile</code> is given,
+ * the diagram is also saved in a plot file, as in <code>Predom</code>.
+ * The members of a diagram family (see <code>DiagrFamily</code>) are
+ * calculated in parallel by <code>calculateFamily</code>.
+ * <br>
+ * Copyright (C) 2014-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+public class PredomBatch {
+  private static final String nl = System.getProperty("line.separator");
+  private static final java.util.Locale engl = java.util.Locale.ENGLISH;
+  private static final double ln10 = Math.log(10);
+  /** the minimum number of calculation steps */
+  private static final int NSTP_MIN = 4;
+
+  private PredomBatch() {}
+
+//<editor-fold defaultstate="collapsed" desc="Options, Result, Messages, BatchException">
+/** The options for the calculations */
+public static class Options implements Cloneable {
+  /** the number of calculation steps along each axis (the number of
+   * calculated points is (nSteps+1)x(nSteps+1)) */
+  public int nSteps = 50;
+  /** the ionic strength: zero for ideal solutions (activity coefficients
+   * equal to one), or negative to calculate the ionic strength at each point */
+  public double ionicStrength = 0;
+  /** the model for the activity coefficients, used if the ionic strength is
+   * not zero: =0 Davies eqn; =1 SIT; =2 simplified HKF
+   * @see lib.kemi.chem.Chem.Diagr#activityCoeffsModel Chem.Diagr.activityCoeffsModel */
+  public int activityCoeffsModel = 0;
+  /** the temperature in degrees Celsius. If NaN: the temperature given in the
+   * data file is used, or 25 C if the data file has none */
+  public double temperature = Double.NaN;
+  /** the pressure in bar. If NaN: the pressure given in the
+   * data file is used, or 1 bar if the data file has none */
+  public double pressure = Double.NaN;
+  /** relative tolerance when solving the mass balance equations in HaltaFall */
+  public double tolHalta = Chem.TOL_HALTA_DEF;
+  /** if true the activity coefficient iterations in HaltaFall are accelerated
+   * (see <code>Chem.ChemSystem.ChemConcs.actCoefAccel</code>) */
+  public boolean actCoefAccel = false;
+  /** relative change of the ionic strength below which the Davies and HKF
+   * activity coefficients are not recalculated
+   * (see <code>Chem.Diagr.ionicStrTol</code>) */
+  public double ionicStrTol = 0;
+  /** if false, concentration ranges in the data file given as "high to low"
+   * are reversed to "low to high" (as in the command-line of PREDOM) */
+  public boolean reversedConcs = false;
+  /** if true only aqueous species are considered (no areas for solids) */
+  public boolean aqu = false;
+  /** if true the lines between the predominance areas are followed, instead of
+   * calculating all the points of the grid (see <code>PredomTrace</code>):
+   * the results are then only in <code>Result.frontiers</code>, and
+   * <code>Result.top</code> is null */
+  public boolean trace = false;
+  /** when <code>trace</code> = true: the number of bisections used to locate
+   * a line between two points of the grid */
+  public int bisections = PredomTrace.BISECTIONS;
+  /** a directory where the SIT-file is searched (besides the
+   * user's home directory and the current directory), or null */
+  public String pathSIT = null;
+  /** if not null, the diagram is saved in this plot file (name ending with ".plt") */
+  public java.io.File pltFile = null;
+  /** if true the plot file is written in the compact binary format
+   * (see <code>lib.kemi.graph_lib.PltFile</code>) */
+  public boolean binaryPlt = false;
+  /** if true a dashed line is drawn in the diagram at the pH of neutral water */
+  public boolean neutral_pH = false;
+  /** the concentration units in the diagram: 0 = "molal" (or "M" at
+   * temperatures around 25 C), 1 = "mol/kg_w", 2 = "M", -1 = none */
+  public int conc_units = 0;
+  /** the notation for concentrations in the diagram: 0 = no choice (engineering),
+   * 1 = scientific, 2 = engineering */
+  public int conc_nottn = 0;
+  /** height scale for the texts in the diagram, between 0.3 and 10 */
+  public double tHeight = 1;
+  /** debug output */
+  public boolean dbg = false;
+  /** where messages are printed; if null <code>System.out</code> is used */
+  public java.io.PrintStream out = null;
+  public Options() {}
+  /** @return a copy of these options, with the same values of all fields
+   * (the copy shares the objects <code>out</code> and <code>pltFile</code>:
+   * only the references are copied) */
+  @Override public Options clone() {
+    try {return (Options)super.clone();}
+    catch (CloneNotSupportedException ex) {throw new AssertionError(ex.getMessage());} // Options is Cloneable
+  }
+}
+
+/** The results of the calculations. The names of the species are found in
+ * <code>chem.chemSystem.namn</code>. */
+public static class Result {
+  /** the chemical system and plot information, after the checks of the input */
+  public Chem chem;
+  /** the number of calculation steps along each axis */
+  public int nSteps;
+  /** the range of the X-axis, as given in the input: log(activity),
+   * total concentration, or log(total concentration) */
+  public double xLeft, xRight;
+  /** the range of the Y-axis, as given in the input */
+  public double yBottom, yTop;
+  /** the value in <code>top</code> at the points where the calculations
+   * failed (errFlags 2, 3, 4 or 6) */
+  public static final int FAILED = PredomTrace.FAILED;
+  /** <code>top[iX][iY]</code> is the predominating species at point (iX,iY),
+   * with iX and iY from 0 to nSteps; -1 if there is no predominating species,
+   * -2 if two solids have practically the same amount of the main component,
+   * or <code>FAILED</code> if the calculations failed at the point.
+   * Null if <code>Options.trace</code> is true */
+  public int[][] top;
+  /** the points on the lines between the predominance areas, and along the
+   * margins of the diagram: found by following the lines if
+   * <code>Options.trace</code> is true, or otherwise from <code>top</code>.
+   * If a plot file has been written (<code>Options.pltFile</code>) these are
+   * the points drawn in the diagram, without the margins */
+  public PredomData frontiers;
+  /** the number of points calculated */
+  public int nbrCalcPoints = 0;
+  /** the number of points where the calculations failed */
+  public int nbrErrors = 0;
+  /** the number of points where the results are uncertain (errFlags 1) */
+  public int nbrUncertain = 0;
+  /** the number of points with too large concentrations (errFlags 5) */
+  public int nbrTooLargeConcs = 0;
+  /** a description of the points where the calculations failed, or an empty string */
+  public String failures = "";
+  Result() {}
+  /** @param iX a point along the X-axis, from 0 to nSteps
+   * @return the X-value at that point */
+  public double x(int iX) {return xLeft + iX*(xRight - xLeft)/nSteps;}
+  /** @param iY a point along the Y-axis, from 0 to nSteps
+   * @return the Y-value at that point */
+  public double y(int iY) {return yBottom + iY*(yTop - yBottom)/nSteps;}
+}
+
+/** Receives the messages from the checks of the input data */
+interface Messages {
+  /** An error: the calculations can not be made
+   * @param msg the message */
+  void error(String msg);
+  /** A warning (or a question)
+   * @param msg the message
+   * @param type =1 error; =2 warning; =3 information
+   * @return true if the calculations are to go on, false to stop */
+  boolean proceed(String msg, int type);
+}
+
+/** The input data or the options can not be used for the calculations */
+public static class BatchException extends Exception {
+  private static final long serialVersionUID = 1L;
+  public BatchException() {super();}
+  public BatchException(String txt) {super(txt);}
+}
+
+/** Messages for the calculations without user interface: errors are
+ * kept (to be thrown as a BatchException) and warnings are printed */
+private static class BatchMessages implements Messages {
+  private final java.io.PrintStream out;
+  private final StringBuilder errors = new StringBuilder();
+  BatchMessages(java.io.PrintStream out) {this.out = out;}
+  @Override public void error(String msg) {
+    if(errors.length() >0) {errors.append(nl);}
+    errors.append(msg);
+  }
+  @Override public boolean proceed(String msg, int type) {
+    out.println(msg);
+    return true;
+  }
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="readDataFile">
+/** Reads a data file (the chemical system and the plot information).
+ * The temperature and pressure found in the data file are stored in
+ * <code>diag.temperature</code> and <code>diag.pressure</code>,
+ * unless they are given in <code>opt</code>.
+ * @param dataFile the input data file, name ending with ".dat"
+ * @param opt the options
+ * @return the chemical system read from the file
+ * @throws predominanceAreaDiagrams.PredomBatch.BatchException */
+public static Chem readDataFile(java.io.File dataFile, Options opt) throws BatchException {
+    java.io.PrintStream out = opt.out != null ? opt.out : System.out;
+    if(!dataFile.getName().toLowerCase().endsWith(".dat") || dataFile.getName().length() <= 4) {
+        throw new BatchException("File: \""+dataFile.getName()+"\""+nl+
+                "Error: data file name must end with \".dat\"");
+    }
+    ReadDataLib rd;
+    try {rd = new ReadDataLib(dataFile);}
+    catch (ReadDataLib.DataFileException ex) {throw new BatchException(ex.getMessage());}
+    Chem ch;
+    double t, p;
+    try {
+        try {ch = ReadChemSyst.readChemSystAndPlotInfo(rd, opt.dbg, false, out);}
+        catch (ReadChemSyst.ConcDataException ex) {throw new BatchException(ex.getMessage());}
+        catch (ReadChemSyst.DataLimitsException ex) {throw new BatchException(ex.getMessage());}
+        catch (ReadChemSyst.PlotDataException ex) {throw new BatchException(ex.getMessage());}
+        catch (ReadChemSyst.ReadDataFileException ex) {throw new BatchException(ex.getMessage());}
+        if(ch == null) {throw new BatchException("Error while reading data file \""+dataFile.getName()+"\"");}
+        try {t = rd.getTemperature(); p = rd.getPressure();}
+        catch (ReadDataLib.DataReadException ex) {throw new BatchException(ex.getMessage());}
+    } finally {
+        try {rd.close();} catch (ReadDataLib.ReadDataLibException ex) {out.println(ex.getMessage());}
+    }
+    if(ch.diag.plotType != 0) {
+        String msg = "Error: data file \""+dataFile.getName()+"\""+nl;
+        if(ch.diag.plotType >= 1 && ch.diag.plotType <=8) {msg = msg +
+                "contains information for a Simple Equilibrium Diagram.";}
+        else {msg = msg + "contains erroneous plot information.";}
+        throw new BatchException(msg);
+    }
+    if(!Double.isNaN(opt.temperature)) {t = opt.temperature;} else if(Double.isNaN(t)) {t = 25.;}
+    if(!Double.isNaN(opt.pressure)) {p = opt.pressure;} else if(Double.isNaN(p)) {p = 1.;}
+    ch.diag.temperature = t;
+    ch.diag.pressure = Math.min(10000.,Math.max(p, 1.));
+    return ch;
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="calculate">
+/** Calculates the predominating species at each point of the diagram.
+ * The data in <code>ch</code> are checked and changed (for example, species
+ * with names starting with "*" are removed), so that the same Chem object
+ * should not be given twice to this method (use a copy instead).
+ * @param ch the chemical system and plot information, for example from
+ * <code>readDataFile</code>
+ * @param opt the options
+ * @return the results of the calculations
+ * @throws predominanceAreaDiagrams.PredomBatch.BatchException */
+public static Result calculate(Chem ch, Options opt) throws BatchException {
+    final java.io.PrintStream out = opt.out != null ? opt.out : System.out;
+    final boolean dbg = opt.dbg;
+    Chem.ChemSystem cs = ch.chemSystem;
+    Chem.ChemSystem.ChemConcs csC = cs.chemConcs;
+    Chem.DiagrConcs dgrC = ch.diagrConcs;
+    Chem.Diagr diag = ch.diag;
+    boolean calcActCoeffs = (!Double.isNaN(opt.ionicStrength) && Math.abs(opt.ionicStrength) > 1e-10);
+    // kh=2 log(activity) is given; kh=1 Tot.Conc. is given
+    for(int j =0; j < cs.Na; j++) {if(dgrC.hur[j] >3) {csC.kh[j]=2;} else {csC.kh[j]=1;}}
+    BatchMessages msgs = new BatchMessages(out);
+    boolean[] pos = new boolean[cs.Na];
+    boolean[] neg = new boolean[cs.Na];
+    if(!checkInput(ch, calcActCoeffs, opt.reversedConcs, pos, neg, msgs, dbg, out)) {
+        throw new BatchException(msgs.errors.toString());
+    }
+    //---- Check if "EH" is needed
+    if(diag.Eh && diag.pInX != 3 && diag.pInY != 3) {
+        boolean peGiven = false;
+        for(int i =0; i < cs.Na; i++) {
+            if(Util.isElectron(cs.namn.identC[i]) && csC.kh[i] ==2) {peGiven = true; break;}
+        }
+        if(!peGiven) {diag.Eh = false;}
+    }
+    //--- temperature & pressure
+    if(!Double.isNaN(opt.temperature)) {diag.temperature = opt.temperature;}
+    if(!Double.isNaN(opt.pressure)) {diag.pressure = opt.pressure;}
+    if(Double.isNaN(diag.temperature)) {diag.temperature = 25.;}
+    if(diag.Eh || calcActCoeffs || (opt.neutral_pH && (diag.pInX ==1 || diag.pInY ==1))) {
+        try {setPressure(diag, out);}
+        catch (Exception ex) {throw new BatchException("\"IAPWSF95.pSat\": "+ex.getMessage());}
+    }
+    diag.ionicStrength = calcActCoeffs ? opt.ionicStrength : 0;
+    if(calcActCoeffs) {
+        diag.activityCoeffsModel = Math.min(2, Math.max(0, opt.activityCoeffsModel));
+        csC.actCoefCalc = true;
+        csC.actCoefAccel = opt.actCoefAccel;
+        diag.ionicStrTol = Math.max(0, opt.ionicStrTol);
+    } else {
+        diag.activityCoeffsModel = -1;
+        csC.actCoefCalc = false;
+    }
+    final int nSteps = Math.max(NSTP_MIN, opt.nSteps);
+    zeroConcs(ch, pos, neg, dbg, out);
+
+    // ---- Make an instance of Factor
+    Factor factor;
+    try {
+        factor = new Factor(ch, opt.pathSIT, System.getProperty("user.home"), System.getProperty("user.dir"), out);
+        factor.factorPrint(dbg);
+    } catch (Exception ex) {throw new BatchException(ex.getMessage());}
+
+    // ---- Initialize variables
+    csC.dbg = Chem.DBGHALTA_DEF;
+    csC.cont = false;
+    csC.tol = opt.tolHalta;
+    for(int j =0; j < cs.Na; j++) {
+        if(csC.kh[j] == 1) {
+            csC.tot[j]=dgrC.cLow[j];
+            csC.logA[j]=-10;
+            if(csC.tot[j]>0) {csC.logA[j] = Math.log10(csC.tot[j]) -3;}
+        }
+        else {csC.logA[j]=dgrC.cLow[j];}
+    }
+    HaltaFall h;
+    try {h = new HaltaFall(cs, factor, out);}
+    catch (Chem.ChemicalParameterException ex) {throw new BatchException(ex.getMessage());}
+
+    Result r = new Result();
+    r.chem = ch;
+    r.nSteps = nSteps;
+    r.xLeft = dgrC.cLow[diag.compX];  r.xRight = dgrC.cHigh[diag.compX];
+    r.yBottom = dgrC.cLow[diag.compY]; r.yTop = dgrC.cHigh[diag.compY];
+    PredomData pd = new PredomData(cs.Ms);
+    pd.xLeft = r.xLeft; pd.xRight = r.xRight; pd.stepX = (r.xRight - r.xLeft) / nSteps;
+    pd.yBottom = r.yBottom; pd.yTop = r.yTop; pd.stepY = (r.yTop - r.yBottom) / nSteps;
+    PointCalc pc = new PointCalc(ch, h, factor, pd, nSteps, 1, opt.aqu, dbg, out);
+    if(opt.trace) {
+        PredomTrace t = new PredomTrace(pd, nSteps, opt.bisections, pc);
+        t.trace();
+        r.nbrCalcPoints = t.nbrCalcPoints();
+    } else {
+        // the outer loop is along the X-axis and the inner loop along the Y-axis
+        r.top = new int[nSteps+1][nSteps+1];
+        for(int iX = 0; iX <= nSteps && !pc.stop(); iX++) {
+            for(int iY = 0; iY <= nSteps && !pc.stop(); iY++) {
+                r.top[iX][iY] = pc.gridPoint(iX, iY);
+            }
+        }
+        r.nbrCalcPoints = pc.n;
+    }
+    if(pc.haltaEx != null) {throw new BatchException(pc.haltaMsg+nl+pc.haltaEx.getMessage());}
+    if(!opt.trace) {findFrontiers(ch, r.top, nSteps+1, pd, null, dbg, out);}
+    r.frontiers = pd;
+    r.nbrUncertain = pc.points.nbrUncertain;
+    r.nbrTooLargeConcs = pc.points.nbrTooLargeConcs;
+    r.nbrErrors = pc.points.nbrErrors;
+    r.failures = pc.points.failures.toString();
+    if(opt.pltFile != null) {drawPlot(r, opt, out);}
+    return r;
+}
+
+/** Saves the diagram in the plot file <code>opt.pltFile</code>. The points
+ * in <code>r.frontiers</code> are changed into the points to draw.
+ * @param r the results of the calculations
+ * @param opt the options
+ * @param out where messages are printed
+ * @throws predominanceAreaDiagrams.PredomBatch.BatchException */
+private static void drawPlot(Result r, Options opt, java.io.PrintStream out) throws BatchException {
+    Chem.Diagr diag = r.chem.diag;
+    Plot_Predom plot = new Plot_Predom(null, out);
+    plot.dbg = opt.dbg; plot.aqu = opt.aqu; plot.binaryPlt = opt.binaryPlt; plot.neutral_pH = opt.neutral_pH;
+    plot.conc_units = opt.conc_units; plot.conc_nottn = opt.conc_nottn;
+    if(diag.Eh) {plot.peEh = (ln10*8.3144126d*(diag.temperature+273.15d)/96484.56d);} else {plot.peEh = Double.NaN;}
+    plot.tHeight = Math.min(10.d,Math.max(opt.tHeight, 0.3));
+    //  Determine the center of each area (where labels will be plotted)
+    plot.minMax(r.chem, r.frontiers, opt.trace);
+    //  Take away the plot margins
+    pointsToPlot(r.frontiers, opt.trace, opt.dbg, out);
+    out.println("Saving plot file \""+opt.pltFile.getAbsolutePath()+"\"...");
+    try {plot.drawPlot(opt.pltFile, r.chem, r.frontiers);}
+    catch (GraphLib.WritePlotFileException ex) {
+        throw new BatchException("Error: "+ex.getMessage()+nl+
+                "while saving plot file \""+opt.pltFile.getAbsolutePath()+"\"");
+    }
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="PointCalc">
+/** Calculates the predominating species at single points of the diagram:
+ * at the points of the grid (<code>gridPoint</code>), or at any point when
+ * the lines between the predominance areas are followed (<code>top</code>,
+ * called by <code>PredomTrace</code>). It is used by <code>calculate</code>
+ * and by all the calculations in class <code>Predom</code> (column by
+ * column, in strips of columns, or following the lines).
+ * Each instance uses its own chemical system and HaltaFall, and it should
+ * be used by a single thread at a time. If HaltaFall throws an exception
+ * the calculations are stopped (see <code>stop</code>). */
+static class PointCalc implements PredomTrace.Solver {
+  private final Chem ch;
+  private final HaltaFall h;
+  private final Factor factor;
+  private final PredomData pd;
+  private final int nSteps;
+  private final boolean aqu, dbg;
+  private final java.io.PrintStream out;
+  /** counts the points with problems, and keeps the messages for the points
+   * where the calculations failed */
+  final PointSolver points;
+  /** the equilibrium compositions at the points of the grid calculated last,
+   * used as starting points for the calculations at neighbouring points */
+  private final WarmStart.Grid warm;
+  /** the largest distance (in steps) to a neighbouring point for a warm start */
+  private final int warmDist;
+  /** the point of the grid calculated last */
+  private int lastIX = -1, lastIY = -1;
+  /** the point calculated last by <code>top</code> */
+  private double lastX = Double.NaN, lastY = Double.NaN;
+  /** the number of points calculated */
+  int n = 0;
+  /** the exception thrown by HaltaFall, or null */
+  Chem.ChemicalParameterException haltaEx = null;
+  /** where the exception <code>haltaEx</code> was thrown */
+  String haltaMsg = null;
+
+  /** @param ch the chemical system and plot information
+   * @param h the instance of HaltaFall for the chemical system in <code>ch</code>
+   * @param factor the instance of Factor used by <code>h</code>
+   * @param pd where the ranges and steps of the axes are found
+   * @param nSteps the number of calculation steps along each axis
+   * @param warmDist the largest distance (in steps) between a point of the
+   * grid and the point used as starting point for its calculation: 1 if all
+   * points are calculated, larger for an adaptive grid
+   * @param aqu if true only aqueous species are considered
+   * @param dbg debug output
+   * @param out where messages are printed */
+  PointCalc(Chem ch, HaltaFall h, Factor factor, PredomData pd, int nSteps,
+          int warmDist, boolean aqu, boolean dbg, java.io.PrintStream out) {
+    this.ch = ch; this.h = h; this.factor = factor; this.pd = pd; this.nSteps = nSteps;
+    this.warmDist = warmDist; this.aqu = aqu; this.dbg = dbg; this.out = out;
+    points = new PointSolver(h, dbg, out);
+    warm = new WarmStart.Grid(warmDist+1, nSteps+1);
+  }
+
+  /** @return true if HaltaFall has thrown an exception */
+  @Override public boolean stop() {return haltaEx != null;}
+
+  /** Called when HaltaFall throws an exception: the exception is kept
+   * and the calculations are stopped
+   * @param msg where the exception was thrown
+   * @param ex the exception */
+  void exception(String msg, Chem.ChemicalParameterException ex) {
+    haltaMsg = msg;
+    haltaEx = ex;
+  }
+
+  /** Calculates the equilibrium composition at a point of the grid, starting
+   * from the equilibrium composition at the nearest point already calculated,
+   * below or to the left
+   * @param iX the column (X-value), from 0 to nSteps
+   * @param iY the row (Y-value), from 0 to nSteps
+   * @return the predominating species, or <code>PredomTrace.FAILED</code> */
+  int gridPoint(int iX, int iY) {
+    final Chem.ChemSystem.ChemConcs csC = ch.chemSystem.chemConcs;
+    int[] nb = warm.nearest(iX, iY, warmDist);
+    if(nb == null) {
+        csC.cont = false;
+    } else if(!csC.cont || nb[0] != lastIX || nb[1] != lastIY) {
+        h.warmStartRestore(warm.get(nb[0], nb[1]));
+    }
+    lastIX = iX; lastIY = iY;
+    return calc(pd.xLeft + iX*pd.stepX, pd.yBottom + iY*pd.stepY, iX, iY);
+  }
+
+  /** Calculates the equilibrium composition at a point, starting from the
+   * equilibrium composition at the point calculated before, unless the
+   * two points are more than two steps apart.
+   * @param xVal the value in the X-axis
+   * @param yVal the value in the Y-axis
+   * @return the predominating species, or <code>PredomTrace.FAILED</code> */
+  @Override public int top(double xVal, double yVal) {
+    if(stop()) {return PredomTrace.FAILED;}
+    if(!(Math.abs(xVal-lastX) <= 2*Math.abs(pd.stepX) && Math.abs(yVal-lastY) <= 2*Math.abs(pd.stepY))) {
+        ch.chemSystem.chemConcs.cont = false;
+    }
+    lastX = xVal; lastY = yVal;
+    return calc(xVal, yVal, -1, -1);
+  }
+
+  /** @param iX the column, or -1 if the point is not on the grid
+   * @param iY the row */
+  private int calc(double xVal, double yVal, int iX, int iY) {
+    final Chem.ChemSystem.ChemConcs csC = ch.chemSystem.chemConcs;
+    final boolean first = (iX < 0) ? (n == 0) : (iX == 0 && iY == 0);
+    setPoint(ch, xVal, yVal);
+    // ------ debug output from HaltaFall only for the first point ------
+    if(first) {
+        if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
+            if(iX < 0) {out.println("Starting calculation 1");}
+            else {out.println("Starting calculation 1 (of "+(nSteps+1)+"x"+(nSteps+1)+")");}
+        }
+    } else {csC.dbg = Chem.DBGHALTA_DEF;}
+    n++;
+    // --- HaltaFall: do the calculations
+    boolean ok;
+    try {
+        ok = points.solve();
+    } catch (Chem.ChemicalParameterException ex) {
+        exception("Error in \"HaltaFall.haltaCalc\", errFlags="+nl+csC.errFlagsGetMessages()+nl+
+                "   at "+where(iX,iY)+"x="+(float)xVal+" y="+(float)yVal, ex);
+        return PredomTrace.FAILED;
+    }
+    if(iX >= 0) {h.warmStartSave(warm.slot(iX, iY));}
+    if(!ok) {
+        points.failure(String.format(engl,"Calculation failed in \"HaltaFall.haltaCalc\" at %sx=%7.5f y=%7.5f"+nl+"%s",
+            where(iX,iY),(float)xVal,(float)yVal,csC.errFlagsGetMessages()));
+        return PredomTrace.FAILED;
+    }
+    if(dbg && first && ch.diag.activityCoeffsModel >=0) {
+        out.println("First calculation step finished.");
+        factor.printActivityCoeffs(out);
+    }
+    return topSpecies(ch.chemSystem, ch.diag, aqu);
+  }
+
+  private static String where(int iX, int iY) {
+    if(iX < 0) {return "";}
+    return "point ("+(iY+1)+","+(iX+1)+"), ";
+  }
+} // class PointCalc
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="findFrontiers">
+/** Finds the points delimiting the predominance areas from a map with the
+ * predominating species at each point of the grid. The columns (X-values)
+ * are examined from left to right, and the points in each column from
+ * bottom to top, so the results do not depend on the order in which the
+ * points were calculated.
+ * @param ch the chemical system and plot information
+ * @param topMap the predominating species at each point:
+ * <code>topMap[column][row]</code>, or <code>Result.FAILED</code>
+ * @param nCols the number of columns in <code>topMap</code> to use
+ * @param pd where the points are stored
+ * @param lineMap if not null, the points stored in <code>pd</code> are
+ * marked with '+' in <code>lineMap[row][column]</code>
+ * @param dbg if true, the map of predominating species is printed
+ * @param out where messages are printed */
+static void findFrontiers(Chem ch, final int[][] topMap, final int nCols, PredomData pd,
+        char[][] lineMap, boolean dbg, java.io.PrintStream out) {
+    final Chem.ChemSystem cs = ch.chemSystem;
+    final int nSteps = topMap[0].length - 1;
+    int[][] line = new int[nSteps+3][2];
+    int iL;
+    int iL_1; // = iL -1
+    final int NOW = 1;  final int PREVIOUS = 0;
+    for(iL=0; iL<line.length; iL++) {line[iL][PREVIOUS]=-1; line[iL][NOW]=-1;}
+    int i, n, pair0;
+    final String d;
+    if(cs.Ms<=98) {d="%2d";} else if(cs.Ms<=998) {d="%3d";} else if(cs.Ms<=9998) {d="%4d";} else {d="%5d";}
+    double xVal, yVal;
+    boolean frontier;
+    pd.nPoint = -1;
+    for(int iX = 0; iX < nCols; iX++) {  // -------------- Outer Loop for X-axis
+        xVal = pd.xLeft + iX*pd.stepX;
+        for(int iY = 0; iY <= nSteps; iY++) {  // ---------- Inner Loop for Y-axis
+            iL = iY+1;
+            iL_1 = iY; // iL_1 = iL-1
+            yVal = pd.yBottom + iY*pd.stepY;
+            if(topMap[iX][iY] == Result.FAILED) {
+                frontier = false;
+            } else {
+                line[iL][NOW] = topMap[iX][iY];
+                //  Is this point a frontier between two areas ?
+                if(line[iL][NOW] != line[iL][PREVIOUS]) {
+                    frontier = line[iL][NOW] != line[iL_1][NOW] ||
+                        line[iL][NOW] != line[iL_1][PREVIOUS];
+                } else {
+                    frontier = line[iL][NOW] != line[iL_1][NOW];
+                }
+            }
+            if(frontier) {
+                // store what species are involved
+                pair0 = line[iL][PREVIOUS];
+                if(iX ==0 && line[iL][NOW] != line[iL_1][NOW]) {
+                                            pair0 = line[iL_1][NOW];
+                }
+                // and the position of the line separating the predominance areas
+                pd.add(xVal, yVal, pair0, line[iL][NOW], line[iL_1][NOW]);
+                if(lineMap != null) {lineMap[iY][iX] = '+';}
+            } else { // not frontier
+                if(iL == (nSteps+1) || iX == nSteps) {
+                    //Point at the margin of the diagram
+                    //  these are used only to determine the centre of each predominance area
+                    //  pair[2] = the predominating species at this point
+                    pd.add(xVal, yVal, line[iL][PREVIOUS], -1, line[iL][NOW]);
+                    if(lineMap != null) {lineMap[iY][iX] = '+';}
+                }
+            }//frontier?
+        } // for iY
+
+        if(dbg) { //-- print the predominance species map
+            if(iX==0) {out.println("---- Map of predominating species (from 1 \""+
+                    cs.namn.ident[0]+"\" to "+(cs.Ms-1)+" \""+cs.namn.ident[cs.Ms-1]+"\") and X-variable."+nl+
+                    "     The leftmost column corresponds to Y="+(float)pd.yBottom+" and the rightmost column to Y="+(float)pd.yTop);}
+            for(i=0; i<(line.length-1); i++) {
+                if(line[i][NOW]>=0) {n=line[i][NOW]+1;} else {n=-1;}
+                out.print(String.format(d,n));
+            }
+            out.print(" "+(float)xVal);
+            out.println();
+        }
+        for(i =0; i<line.length; i++) {line[i][PREVIOUS] = line[i][NOW]; line[i][NOW] = -1;}
+    } // for iX
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="pointsToPlot">
+/** Prepares the points to be drawn, after the position of the centre of
+ * each area has been found (<code>Plot_Predom.minMax</code>): the points
+ * along the margins of the diagram are taken away and, if the points were
+ * found column by column, they are moved half a step to the left and down.
+ * @param pd the points delimiting the predominance areas
+ * @param traced true if the points were found by following the lines
+ * between the areas (<code>PredomTrace</code>)
+ * @param dbg if true, the points are printed
+ * @param out where messages are printed */
+static void pointsToPlot(PredomData pd, boolean traced, boolean dbg, java.io.PrintStream out) {
+    int i;
+    if(dbg) {
+      out.println("---- List of points to plot (including margins):"+nl+"point_nbr, pair[0,1,2], x-value, y-value");
+      for(i=0; i<pd.nPoint; i++) {
+        out.println(
+                String.format("%3d,  %3d,%3d,%3d",i,pd.pair(i,0),pd.pair(i,1),pd.pair(i,2))+
+                ",   "+(float)pd.xPl(i)+", "+(float)pd.yPl(i)
+                );
+      }
+      out.println("----");
+    }
+
+    // --------------------------------------------------
+    // Take away plot margins (about: 4*nStep  points)
+    // (the margins are needed to determine the center of each area)
+    int nPoints2 = -1;
+    int pair0, pair1, pair2;
+    for(i=0; i < pd.nPoint; i++) {
+        pair0 = pd.pair(i,0); pair1 = pd.pair(i,1); pair2 = pd.pair(i,2);
+        if(pair0 == -1 &&
+            (pair1 == pair2 || pair2 == -1
+            )) {continue;}
+        if(pair1 == -1) {continue;}
+        if(pair2 == -1 && pair0 == pair1) {continue;}
+        nPoints2++;
+        pd.setXY(nPoints2, pd.xPl(i), pd.yPl(i));
+        //
+        // pair[][2] is not used when plotting, if pair[][0] = pair[][1] use pair[][2]
+        if(pair0 == pair1 && pair2 != -1) {pair0 = pair2;}
+        pd.setPair(nPoints2, pair0, pair1, pair2); //pair[][2] not really neaded becaise it is not used when plotting
+    } // for i
+    pd.nPoint = nPoints2;
+    // --------------------------------------------------
+    //  Move the points halv step to the left and down
+    //  to try to compensate for the column-wise
+    //  calculation procedure
+    //  (not needed if the lines have been followed)
+    double xPl, yPl;
+    for(i=0; i<pd.nPoint; i++) {
+      if(traced) {break;}
+      xPl = pd.xPl(i); yPl = pd.yPl(i);
+      if(Math.abs(xPl-pd.xLeft) > 1e-5 &&
+         Math.abs(xPl-pd.xRight) > 1e-5) {
+                        xPl = xPl-0.5*pd.stepX;
+      }
+      if(Math.abs(yPl-pd.yBottom) > 1e-5 &&
+         Math.abs(yPl-pd.yTop) > 1e-5) {
+                        yPl = yPl-0.5*pd.stepY;
+      }
+      pd.setXY(i, xPl, yPl);
+    }
+
+    // --------------------------------------------------
+    if(dbg) {
+        out.println("---- List of points to plot:"+nl+"point_nbr, pair[0,1,2], x-value, y-value");
+        for(i=0; i<=pd.nPoint; i++) {
+            out.println(
+                String.format("%3d,  %3d,%3d,%3d",i,pd.pair(i,0),pd.pair(i,1),pd.pair(i,2))+
+                ",   "+(float)pd.xPl(i)+", "+(float)pd.yPl(i)
+                );
+        }
+        out.println("----");
+    }
+
+    out.println("Number of points to draw = "+(pd.nPoint+1));
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="calculateFamily">
+/** Calculates all the members of a diagram family. Each member is
+ * calculated with a copy of <code>ch</code> (which is not changed) and with
+ * the ionic strength, temperature, pressure or concentration of the member
+ * replacing those in <code>opt</code> (or in <code>ch</code>). The members
+ * are calculated in parallel, in a ForkJoinPool with <code>nThreads</code>
+ * threads. If <code>opt.pltFile</code> is not null each member is saved in
+ * its own plot file, named as given by <code>DiagrFamily.memberFile</code>.
+ * @param ch the chemical system and plot information, for example from
+ * <code>readDataFile</code>
+ * @param opt the options
+ * @param family the members of the family
+ * @param nThreads the number of members calculated at the same time
+ * @return the results for each member of the family
+ * @throws predominanceAreaDiagrams.PredomBatch.BatchException if the calculations
+ * fail for any of the members */
+public static Result[] calculateFamily(final Chem ch, final Options opt,
+        final DiagrFamily family, int nThreads) throws BatchException {
+    java.util.List<Result> r;
+    try {
+        r = family.calculateAll(ch, nThreads, new DiagrFamily.MemberCalculation<Result>() {
+            @Override public Result calculate(Chem chM, int m) throws Exception {
+                return PredomBatch.calculate(chM, memberOptions(opt, family, m));
+            }
+        });
+    } catch (DiagrFamily.FamilyException ex) {throw new BatchException(ex.getMessage());}
+    return r.toArray(new Result[r.size()]);
+}
+
+/** @return a copy of <code>opt</code> with the ionic strength, temperature
+ * or pressure of member <code>m</code> of the family, and with the plot file
+ * of the member (see <code>DiagrFamily.memberFile</code>) */
+private static Options memberOptions(Options opt, DiagrFamily family, int m) {
+    Options o = opt.clone();
+    if(opt.pltFile != null) {o.pltFile = family.memberFile(opt.pltFile, m);}
+    if(family.kind == DiagrFamily.IONIC_STRENGTH) {o.ionicStrength = family.value(m);}
+    else if(family.kind == DiagrFamily.TEMPERATURE) {o.temperature = family.value(m);}
+    else if(family.kind == DiagrFamily.PRESSURE) {o.pressure = family.value(m);}
+    return o;
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="setPressure">
+/** Checks the pressure in <code>diag.pressure</code> for the temperature
+ * <code>diag.temperature</code>: at least 1 bar, and not below the
+ * saturated vapour pressure of water
+ * @param diag the plot information
+ * @param out where messages are printed
+ * @throws Exception if the saturated vapour pressure can not be calculated */
+static void setPressure(Chem.Diagr diag, java.io.PrintStream out) throws Exception {
+    double pSat = lib.kemi.H2O.IAPWSF95.pSat(diag.temperature);
+    if(Double.isNaN(diag.pressure)){diag.pressure = 1.;}
+    if(diag.temperature <= 99.61) {
+        if(diag.pressure < 1.) {
+            out.println("tC = "+diag.temperature+", pBar = "+diag.pressure+", setting pBar = 1.");
+        }
+        diag.pressure = Math.max(1.,diag.pressure);
+    }
+    // if pressure = 1 bar and temperature = 0, set temperature to 0.01 C (tripple point of water)
+    if(diag.pressure >0.99999 && diag.pressure < 1.00001 && Math.abs(diag.temperature) < 0.001) {diag.temperature = 0.01;}
+    if(diag.temperature <= 373.95) { // below critical point
+        if(diag.pressure < (pSat*0.999)) {
+            out.println("tC = "+diag.temperature+", pBar = "+diag.pressure+",  setting pBar = "+(float)pSat);
+            diag.pressure = pSat;
+        }
+    }
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="zeroConcs">
+/** For components that appear only with positive (or only with negative)
+ * stoichiometric coefficients and have a total concentration of zero,
+ * the log(activity) is set to -9999 and <code>kh</code> is changed to 2.
+ * @param ch the chemical system and plot information
+ * @param pos from <code>checkInput</code>
+ * @param neg from <code>checkInput</code>
+ * @param dbg debug output
+ * @param out where messages are printed */
+static void zeroConcs(Chem ch, boolean[] pos, boolean[] neg, boolean dbg, java.io.PrintStream out) {
+    Chem.ChemSystem cs = ch.chemSystem;
+    Chem.ChemSystem.ChemConcs csC = cs.chemConcs;
+    Chem.DiagrConcs dgrC = ch.diagrConcs;
+    Chem.Diagr diag = ch.diag;
+    for(int j =0; j < cs.Na; j++) {
+        if(csC.kh[j] == 2) {continue;} //only it Tot.conc. is given
+        if(!(pos[j] && neg[j]) && (pos[j] || neg[j])) {
+            if(dgrC.hur[j] !=3 &&  //not LTV
+               dgrC.cLow[j]==0 && (Double.isNaN(dgrC.cHigh[j]) || dgrC.cHigh[j]==0)) {
+                    //it is only POS or NEG and Tot.Conc =0
+                    csC.logA[j] = -9999.;
+                    dgrC.cLow[j] = csC.logA[j];
+                    if(j == diag.compX || j == diag.compY) {dgrC.cHigh[j] = dgrC.cLow[j]+10;}
+                    csC.kh[j] =2; //kh=2 means logA given
+                    if(dbg) {out.println("Can not calculate mass-balance for for component \""+cs.namn.identC[j]+"\""+nl+
+                        "   its log(activity) is now set to -9999.");}
+            }
+        }
+    } //for j
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="setPoint">
+/** Sets the input for HaltaFall at a point of the diagram: the total
+ * concentrations or log(activities) of the components in the X- and Y-axes.
+ * @param ch the chemical system and plot information
+ * @param xVal the value in the X-axis: log(activity), total concentration,
+ * or log(total concentration)
+ * @param yVal the value in the Y-axis */
+static void setPoint(Chem ch, double xVal, double yVal) {
+    Chem.ChemSystem.ChemConcs csC = ch.chemSystem.chemConcs;
+    Chem.DiagrConcs dgrC = ch.diagrConcs;
+    int j = ch.diag.compX;
+    if(csC.kh[j] == 1) {
+        if(dgrC.hur[j] ==3) {csC.tot[j] = Math.exp(ln10*xVal);} else {csC.tot[j]=xVal;} // LTV or TV
+    } else {csC.logA[j]=xVal;}
+    j = ch.diag.compY;
+    if(csC.kh[j] == 1) {
+        if(dgrC.hur[j] ==3) {csC.tot[j] = Math.exp(ln10*yVal);} else {csC.tot[j]=yVal;} // LTV or TV
+    } else {csC.logA[j]=yVal;}
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="topSpecies">
+/** Finds the species predominating at the point just calculated.
+ * Only the arrays of the chemical system are read, so this may be called
+ * from several threads at the same time, each with its own chemical system.
+ * @param cs0 the chemical system (with its concentrations) where the equilibrium
+ * composition has been calculated by HaltaFall
+ * @param diag the plot information (the main component)
+ * @param aqu if true only aqueous species are considered
+ * @return the predominating species, -1 if none, or -2 if two solid species
+ * have practically the same amount of "main component" */
+static int topSpecies(Chem.ChemSystem cs0, Chem.Diagr diag, boolean aqu) {
+  final double[] C = cs0.chemConcs.C;
+  int top;
+  double topConc;
+  double topConcSolid;
+  if(diag.compMain < (cs0.Na - cs0.solidC) && !cs0.noll[diag.compMain]) {
+    topConc = C[diag.compMain];
+    top = diag.compMain;
+  } else {topConc = 0; top = -1;}
+  double w;
+  int nIons = cs0.Na + cs0.nx;
+  for (int i = cs0.Na; i < nIons; i++) {
+    w = cs0.a[i-cs0.Na][diag.compMain];
+    if(Math.abs(w) < 0.00001) {continue;}
+    w = w * C[i];
+    if(w <= topConc) {continue;}
+    topConc = w;
+    top = i;
+  } //for i
+  if(aqu) {return top;}
+  //plot also predominance areas for solids
+  topConcSolid = Double.MIN_VALUE;
+  if(diag.oneArea >= (cs0.Na+cs0.nx)) { //if only one area is plotted
+      w = cs0.a[diag.oneArea][diag.compMain]*C[diag.oneArea];
+      if(w > topConcSolid) {top = diag.oneArea;}
+      return top;
+  } //if only one area
+  for (int i = nIons; i < cs0.Ms; i++) {
+    w = cs0.a[i-cs0.Na][diag.compMain]*C[i];
+    if(w < topConcSolid) {continue;}
+    top = i;
+    //che if the amount of "compMain" is almost the same for two solids (<0.001% diff)
+    if(Math.abs(w/topConcSolid)-1 <= 0.00001) {top = -2;}
+    topConcSolid = w;
+  } //for i
+  return top;
+} //topSpecies
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="checkInput">
+/** Make checks and make changes to the data stored in the Chem classes.
+ * @param ch the chemical system and plot information
+ * @param calcActCoeffs true if activity coefficients are to be calculated
+ * @param reversedConcs if false, concentration ranges given as "high to low"
+ * are changed to "low to high"
+ * @param pos on return: true for the components having positive
+ * stoichiometric coefficients. Size Na
+ * @param neg on return: true for the components having negative
+ * stoichiometric coefficients. Size Na
+ * @param msg receives the error and warning messages
+ * @param dbg debug output
+ * @param out where messages are printed
+ * @return true if checks are OK  */
+  static boolean checkInput(Chem ch, boolean calcActCoeffs, boolean reversedConcs,
+          boolean[] pos, boolean[] neg, Messages msg, boolean dbg, java.io.PrintStream out) {
+    Chem.ChemSystem cs = ch.chemSystem;
+    Chem.ChemSystem.ChemConcs csC = cs.chemConcs;
+    Chem.ChemSystem.NamesEtc namn = cs.namn;
+    Chem.DiagrConcs dgrC = ch.diagrConcs;
+    Chem.Diagr diag = ch.diag;
+    // -------------------
+    //   CHEMICAL SYSTEM
+    // -------------------
+    // mg = total number of soluble species in the aqueous solution:
+    //      all components + soluble complexes
+    // Note that in HaltaFall the solid components are fictitious soluble
+    // components with "zero" concentration (with noll = true)
+    int mg = cs.Ms - cs.mSol; // = na + nx;
+    int i;
+
+    // ---- Remove asterisk "*" from the name of components
+    for(i=0; i<cs.Na; i++) {
+        if(namn.identC[i].startsWith("*")) {
+            namn.identC[i] = namn.identC[i].substring(1);
+            namn.ident[i]  = namn.identC[i];
+            cs.noll[i] = true;
+        }
+    } // for i=0...Na-1
+
+    // ---- Remove reaction products (soluble or solid) with
+    //      name starting with "*".
+    // Note that the solids corresponding to the components will
+    // not have a name starting with "*". This is already removed when
+    // reading the input file.
+    double w; int j; int js;
+    i = cs.Na;
+    while (i < cs.Ms) {
+        if(namn.ident[i].startsWith("*")) {
+            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
+            cs.Ms = cs.Ms -1;
+            if(i >= cs.Ms) {break;}
+            for(j=i; j<cs.Ms; j++) {
+                js = j - cs.Na;
+                cs.lBeta[js] = cs.lBeta[js+1];
+                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
+                namn.ident[j] = namn.ident[j+1];
+                cs.noll[j] = cs.noll[j+1];
+            }
+        }
+        else {i++;}
+    } //while (true)
+
+    // ---- get electric charge, length of name, etc
+    diag.aquSystem = false;
+    for(i=0; i<cs.Ms; i++) {
+        namn.nameLength[i] = getNameLength(namn.ident[i]);
+        // Species for which the concentration is not to be
+        // included in the Mass-Balance (for ex. the concentration
+        // of "free" electrons is excluded)
+        if(Util.isElectron(namn.ident[i]) ||
+           Util.isWater(namn.ident[i])) {
+                cs.noll[i] = true;
+                diag.aquSystem = true;} // e- or H2O
+        if(i < mg) { //aqueous species
+            namn.z[i]=0;
+            csC.logf[i] = 0;
+            if(namn.ident[i].length() >4 &&
+                namn.ident[i].toUpperCase().endsWith("(AQ)")) {
+                    diag.aquSystem = true;}
+                else { //does not end with "(aq)"
+                    namn.z[i] = Util.chargeOf(namn.ident[i]);
+                    if(namn.z[i] != 0) {diag.aquSystem = true;}
+                } // ends with "(aq)"?
+        }// if i < mg
+    } // for i=0...Ms-1
+    // The electric charge of two fictive species (Na+ and Cl-)
+    // that are used to ensure electrically neutral aqueous solutions
+    // when calculating the ionic strength and activity coefficients
+    namn.z[mg] = 1;     //electroneutrality "Na+"
+    namn.z[mg+1] =-1;   //electroneutrality "Na+"
+
+    // ---- set Gaseous species to have zero conc
+    //      if it is an aqueous system
+    if(diag.aquSystem) {
+        for(i =0; i < mg; i++) {
+            if(Util.isGas(namn.ident[i]) ||
+               Util.isLiquid(namn.ident[i]) ||
+               Util.isWater(namn.ident[i])) {
+                        cs.noll[i] = true;}
+        } //for i
+        } //if aquSystem
+
+    // ---- Remove H2O among the complexes, if found
+    if(diag.aquSystem) {
+      for(i=cs.Na; i<cs.Ms; i++) {
+        if(Util.isWater(namn.ident[i])) {
+            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
+            cs.Ms = cs.Ms -1;
+            if(i >= cs.Ms) {break;}
+            for(j=i; j<cs.Ms; j++) {
+                js = j - cs.Na;
+                cs.lBeta[js] = cs.lBeta[js+1];
+                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
+                namn.ident[j] = namn.ident[j+1];
+                cs.noll[j] = cs.noll[j+1];
+            }
+        } //ident[i]="H2O"
+      } //for i
+    } //if aquSystem
+
+    if(dbg) {cs.printChemSystem(out);}
+
+    // ---- Check that all reactions are charge balanced
+    if(calcActCoeffs) {
+        double zSum;
+        boolean ok = true;
+        for(i=cs.Na; i < mg; i++) {
+            int ix = i - cs.Na;
+            zSum = (double)(-namn.z[i]);
+            for(j=0; j < cs.Na; j++) {
+                zSum = zSum + cs.a[ix][j]*(double)namn.z[j];
+            } //for j
+            if(Math.abs(zSum) > 0.0005) {
+                ok = false;
+                out.format(engl,"--- Warning: %s, z=%3d, charge imbalance:%9.4f%n",
+                            namn.ident[i],namn.z[i],zSum);
+            }
+        } //for i
+        if(!ok) {
+            if(!msg.proceed("There are charge imbalanced reactions in the input file.",1)) {
+                return false;
+            }
+        }
+    } // if calcActCoeffs
+
+    // ---- Check that at least there is one fuid species active
+    boolean foundOne = false;
+    for(i =0; i < mg; i++) {
+        if(!cs.noll[i]) {foundOne = true; break;}
+    } //for i
+    if(!foundOne) {
+        String t = "Error: There are no fluid species active ";
+        if(cs.mSol > 0) {t = t.concat("(Only solids)");}
+        t = t+nl+"This program can not handle such chemical systems.";
+        msg.error(t);
+        return false;
+    }
+
+    // --------------------
+    //   PLOT INFORMATION
+    // --------------------
+    diag.pInX =0; diag.pInY = 0;
+    //  pInX=0 "normal" X-axis
+    //  pInX=1 pH in X-axis
+    //  pInX=2 pe in X-axis
+    //  pInX=3 Eh in X-axis
+    if(Util.isElectron(namn.identC[diag.compX])) {
+        if(diag.Eh) {diag.pInX = 3;} else {diag.pInX = 2;}
+    } else if(Util.isProton(namn.identC[diag.compX])) {diag.pInX = 1;}
+    if(Util.isElectron(namn.identC[diag.compY])) {
+        if(diag.Eh) {diag.pInY = 3;} else {diag.pInY = 2;}
+    } else if(Util.isProton(namn.identC[diag.compY])) {diag.pInY = 1;}
+
+
+    // ----------------------------------------------
+    //   CHECK THE CONCENTRATION FOR EACH COMPONENT
+    // ----------------------------------------------
+
+    for(int ia =0; ia < cs.Na; ia++) {
+        if(dgrC.hur[ia]==1 && // T
+            ia==diag.compX) {
+                msg.error("Error: the concentration for component \""+namn.identC[ia]+"\" "+
+                    "must vary, as it belongs to the X-axis!");
+                return false;
+                }
+        if(ia==diag.compMain && dgrC.hur[ia]==1 && // T
+            Math.abs(dgrC.cLow[ia]) <= 0) {
+                if(!msg.proceed("The concentration for "+nl
+                        +"the main component \""+namn.identC[ia]+"\" is zero!",1)) {return false;}
+                }
+        if(dgrC.hur[ia] >0 && dgrC.hur[ia]<=3) { //T, TV or LTV
+            if(Util.isWater(namn.identC[ia])) {
+                msg.error("Error: The calculations are made for 1kg H2O"+nl+
+                           "Give log(H2O-activity) instead of a total conc. for water.");
+                return false;
+           } // if water
+        } //if T, TV or LTV
+        if(dgrC.hur[ia] ==2 || dgrC.hur[ia] ==3 || dgrC.hur[ia] ==5) { //TV, LTV or LAV
+            if(ia != diag.compX && ia != diag.compY) {
+                String t;
+                if(dgrC.hur[ia] ==5) {t="log(activity)";} else {t="total conc.";}
+                String m = "Error: The "+t+" is varied for \""+namn.identC[ia]+"\""+nl+
+                           "   but this component is neither the component in the Y-axis ("+namn.identC[diag.compY]+"),"+nl+
+                           "   nor the component in the X-axis ("+namn.identC[diag.compX]+")!";
+                msg.error(m);
+                return false;
+            }
+        } //if TV, LTV or LAV
+        if((dgrC.hur[ia] ==1 || dgrC.hur[ia] ==4) && //T or LA
+           (ia == diag.compX || ia == diag.compY)) {
+                String t, ax;
+                if(dgrC.hur[ia] ==4) {t="log(activity)";} else {t="total conc.";}
+                if(ia == diag.compX) {ax="X";} else {ax="Y";}
+                msg.error("Error: The "+t+" of \""+namn.identC[ia]+"\""+nl+
+                        "can NOT be a fixed value because this component belongs to the "+ax+"-axis !");
+                return false;
+            }
+        if(dgrC.hur[ia] ==1 && // T
+           Math.abs(dgrC.cLow[ia]) >100) {
+                String t = String.format(engl,"Error:  For component: "+namn.identC[ia]+nl+
+                        "   Tot.Conc.=%12.4g mol/kg.  This is not a reasonable value!",dgrC.cLow[ia]);
+                msg.error(t);
+                return false;
+            }
+        if(dgrC.hur[ia] ==4 &&  // LA
+           Util.isProton(namn.identC[ia]) &&
+           (dgrC.cLow[ia] <-14 || dgrC.cLow[ia] >2)) {
+                String m = String.format(engl,"Warning: In the input, you give  pH =%8.2f%n"+
+                        "This value could be due to an input error.",(-dgrC.cLow[ia]));
+                if(!msg.proceed(m,2)) {return false;}
+        }
+        if(dgrC.hur[ia] !=1 && dgrC.hur[ia] !=4) {//if TV, LTV or LAV
+            if(dgrC.cLow[ia] == dgrC.cHigh[ia] ||
+                    Math.max(Math.abs(dgrC.cLow[ia]), Math.abs(dgrC.cHigh[ia])) < 1e-15) {
+                msg.error("Error:  Min-value = Max-value for component \""+namn.identC[ia]+"\"");
+                return false;
+            }
+            if(dgrC.cLow[ia] > dgrC.cHigh[ia] && !reversedConcs) {
+                w = dgrC.cLow[ia];
+                dgrC.cLow[ia] = dgrC.cHigh[ia];
+                dgrC.cHigh[ia] = w;
+            }
+            if(!reversedConcs && dgrC.hur[ia] ==5 && // pH/pe/EH varied - LAV
+                   (Util.isProton(namn.identC[ia]) ||
+                    Util.isElectron(namn.identC[ia]))) {
+                w = dgrC.cLow[ia];
+                dgrC.cLow[ia] = dgrC.cHigh[ia];
+                dgrC.cHigh[ia] = w;
+            }
+            if(dgrC.hur[ia] ==5 && // LAV
+                    (Util.isProton(namn.identC[ia])) &&
+                     (dgrC.cLow[ia] <-14.00001 || dgrC.cLow[ia] >2.00001 ||
+                      dgrC.cHigh[ia] <-14.00001 || dgrC.cHigh[ia] >2.00001)) {
+                String m = String.format(engl,"Warning: In the input, you give  pH =%8.2f to %7.2f%n"+
+                        "These values could be due to an input error.",(-dgrC.cLow[ia]),(-dgrC.cHigh[ia]));
+                if(!msg.proceed(m,2)) {return false;}
+            }
+            if(dgrC.hur[ia] ==2 && // TV
+                  (Math.max(Math.abs(dgrC.cHigh[ia]),Math.abs(dgrC.cLow[ia]))>100)) {
+                msg.error("Error:  You give  ABS(TOT.CONC.) > 100  for component: "+namn.identC[ia]+nl+
+                    "This value is too high and perhaps an input error."+nl+
+                    "Set the maximum ABS(TOT.CONC.) value to 100.");
+                return false;
+            }
+            if(dgrC.hur[ia] ==3) { // LTV
+                if((Math.min(dgrC.cLow[ia], dgrC.cHigh[ia]) < -7.0001) &&
+                      (Util.isProton(namn.identC[ia]))) {
+                    String m = "Warning: You give a  LOG (TOT.CONC.) < -7  for component: "+namn.identC[ia]+nl+
+                        "This value is rather low and could be due to an input error."+nl+
+                        "Maybe you meant to set  LOG (ACTIVITY) < -7 ??";
+                    if(!msg.proceed(m,2)) {return false;}
+                    }
+                if(Math.max(dgrC.cLow[ia], dgrC.cHigh[ia]) > 2.0001) {
+                    msg.error("Error: You give a  LOG (TOT.CONC.) > 2  for component: "+namn.identC[ia]+nl+
+                        "This value is too high and it could be due to an input error."+nl+
+                        "Please set the LOG (TOT.CONC.) value to <=2.");
+                    return false;
+                }
+            } //if LTV
+        } //if TV, LTV or LAV
+
+    } // for ia = 0... Na-1
+
+    // ----------------
+    //   OTHER CHECKS
+    // ----------------
+
+    if(cs.nx == 0) {
+      for(i =0; i < cs.Na; i++) {
+        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
+        if(i == diag.compX || i == diag.compY) { //component in an axis:
+          if(i >= (cs.Na-cs.solidC)) { //is it a solid?
+              if(!msg.proceed("Warning: with no complexes in the fluid phase you should not have"+nl+
+              "a solid component ("+namn.identC[i]+") in an axis.",2)) {return false;}
+          }
+      }
+      } //for i
+    } //if nx=0
+
+    // ---- Check that a total concentration is given for the main component
+    //   is it a solid?                        and log(activity) given?
+    if(diag.compMain >= (cs.Na - cs.solidC) && csC.kh[diag.compMain] == 2) {
+        String v;
+        if(dgrC.hur[diag.compMain] == 5) {v = " varied";} else {v = "";}
+        String t = "Error: For the main component \""+namn.identC[diag.compMain]+"\""+nl+
+                "   please give its total concentration"+v+nl+
+                "   instead of its log(activity)"+v;
+        msg.error(t+".");
+        return false;
+    }
+
+    // ---- See which components have positive or negative (or both)
+    //      values for the stoichiometric coefficients (a[ix][ia]-values)
+    for(i =0; i < cs.Na; i++) {
+        pos[i] = false; neg[i] = false;
+        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
+        if(!cs.noll[i]) { // if not "e-" and not solid component
+                    pos[i] = true;}
+        for(j = cs.Na; j < cs.Ms; j++) {
+            if(!cs.noll[j]) {
+                if(cs.a[j-cs.Na][i] >0) {pos[i] = true;}
+                if(cs.a[j-cs.Na][i] <0) {neg[i] = true;}
+            } // !noll
+        } //for j
+    } //for i
+    // check POS and NEG with the Tot.Conc. given in the input
+    for(i =0; i < cs.Na; i++) {
+        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
+        if((!pos[i] && !neg[i]) ) { // || cs.nx ==0
+            String m = "Error: for component \""+namn.identC[i]+"\" give Log(Activity)";
+            if(dgrC.hur[i] !=1) { // not "T", that is: "TV" or "LTV"
+                m = m+" to vary";}
+            msg.error(m);
+            return false;
+        } //if Nx =0 or (!pos[] & !neg[])
+        if((pos[i] && neg[i]) ||
+           (pos[i] && (dgrC.hur[i] ==3 ||  //LTV
+                (dgrC.cLow[i]>0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]>0)))) ||
+           (neg[i] && (
+                dgrC.hur[i] !=3 && //LTV
+                (dgrC.cLow[i]<0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]<0))))) {
+            continue;
+        }
+        if(pos[i] || neg[i]) {
+            String m = "Error: Component \"%s\" may not have %s Tot.Conc. values.%s"+
+                    "Give either  Tot.Conc. %s=0.0  or  Log(Activity)%s";
+            if(!pos[i] && (dgrC.cLow[i]>0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]>0))) {
+                msg.error(String.format(m, namn.identC[i], "positive", nl,"<",nl));
+                return false;}
+            if(!neg[i] && (dgrC.cLow[i]<0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]<0))) {
+                msg.error(String.format(m, namn.identC[i], "negative", nl,">",nl));
+                return false;}
+        } //if pos or neg
+    } //for i
+
+    // OK so far. Update "nx" (=nbr of soluble complexes)
+    cs.nx = mg - cs.Na;
+    return true;
+
+  } // checkInput()
+
+//<editor-fold defaultstate="collapsed" desc="getNameLength(species)">
+    private static int getNameLength(String species) {
+        int nameL = Math.max(1, Util.rTrim(species).length());
+        if(nameL < 3) {return nameL;}
+        // Correct name length if there is a space between name and charge
+        // "H +",  "S 2-",  "Q 23+"
+        int sign; int ik;
+        sign =-1;
+        for(ik =nameL-1; ik >= 2; ik--) {
+            char c = species.charAt(ik);
+            if(c == '+' || c == '-' ||
+               // unicode en dash or unicode minus
+               c =='\u2013' || c =='\u2212') {sign = ik; break;}
+            } //for ik
+        if(sign <2) {return nameL;}
+        if(sign < nameL-1 &&
+                (Character.isLetterOrDigit(species.charAt(sign+1)))) {return nameL;}
+        if(species.charAt(sign-1) == ' ')
+                        {nameL = nameL-1; return nameL;}
+        if(nameL >=4) {
+                if(species.charAt(sign-1) >= '2' && species.charAt(sign-1) <= '9' &&
+                   species.charAt(sign-2) == ' ')
+                        {nameL = nameL-1; return nameL;}
+        } //if nameL >=4
+        if(nameL >=5) {
+                if((species.charAt(sign-1) >= '0' && species.charAt(sign-1) <= '9') &&
+                   (species.charAt(sign-2) >= '1' && species.charAt(sign-2) <= '9') &&
+                   species.charAt(sign-3) == ' ')
+                        {nameL = nameL-1;}
+            } //if nameL >=5
+        return nameL;
+    } // getNameLength(species)
+//</editor-fold>
+
+//</editor-fold>
+
+}
@@ -19,19 +19,28 @@ package predominanceAreaDiagrams;
  * 
  * @author Ignasi Puigdomenech */
 public class PredomData {
-/** <code>pair[i][0]</code> and <code>pair[i][1]</code> = number of the
+/** The points are stored in chunks of <code>CHUNK</code> points: when more
+ * points are added a new chunk is allocated, and the points already stored
+ * are neither copied nor moved. There is no maximum number of points. */
+static final int CHUNK_BITS = 12;
+static final int CHUNK = 1 << CHUNK_BITS;
+private static final int MASK = CHUNK - 1;
+/** X- and Y-coordinates of the points to plot; points that are frontiers
+ * between two predominating species */
+private final java.util.ArrayList<double[]> xPl = new java.util.ArrayList<double[]>();
+private final java.util.ArrayList<double[]> yPl = new java.util.ArrayList<double[]>();
+/** <code>pair(i,0)</code> and <code>pair(i,1)</code> = number of the
  * two chemical species that in the predominance area diagram are separated
- * by the line going through the point "i". <code>pair[i][2]</code> = number
- * of a third species involved in the point "i". */
-public int[][] pair;
-/** X-coordinate of a point to plot; a point that is a frontier between
- * two predominating species */
-public double[] xPl;
-/** Y-coordinate of a point to plot; a point that is a frontier between
- * two predominating species */
-public double[] yPl;
-/** number of points to plot, that is, the number of points that are
- * the borderlines between predominance areas */
+ * by the line going through the point "i". <code>pair(i,2)</code> = number
+ * of a third species involved in the point "i". Three values for each point. */
+private final java.util.ArrayList<int[]> pair = new java.util.ArrayList<int[]>();
+/** index of the last point stored, that is, of the last point that is a
+ * borderline between predominance areas.  <code>add</code> increases it
+ * before storing a point.  The constructor sets it to 0: in a new instance
+ * index 0 is an unused slot, and <code>add</code> would start at index 1.
+ * The calculations therefore set it to -1 before the first point is added,
+ * so that afterwards the points are 0 to <code>nPoint</code>
+ * (<code>nPoint</code> = -1 if there are none). */
 public int nPoint;
 /** The size of the step in the X-axis */
 public double stepX;
@@ -49,24 +58,71 @@ public double yTop;
 public double[] xCentre;
 /** Y-value for the center of the predominance area for each species */
 public double[] yCentre;
-/** Max number of points to be plotted. In a predominance area diagram
- * these are the points delimiting the areas. */
-public final int mxPNT;
 
 /** Constructs an instance
- * @param ms number of species
- * @param maxPNT Max. number of points to be plotted. In a predominance area diagram
- * these are the points delimiting the areas. */
-public PredomData(int ms, int maxPNT){
-  mxPNT = maxPNT;
+ * @param ms number of species */
+public PredomData(int ms){
   nPoint = 0;
-  pair = new int[mxPNT][3];
-  for(int[] pair1 : pair) {pair1[0] = -1;  pair1[1] = -1;  pair1[2] = -1;}
-  xPl = new double[mxPNT];
-  yPl = new double[mxPNT];
+  ensure(0);
   xCentre = new double[2*ms];
   yCentre = new double[2*ms];
   for(int i=0; i < xCentre.length; i++) {xCentre[i]=-100000; yCentre[i]=-100000;}
 } // constructor
 
+/** @param i a point
+ * @return the X-coordinate of point "i" */
+public double xPl(int i) {return xPl.get(i >>> CHUNK_BITS)[i & MASK];}
+/** @param i a point
+ * @return the Y-coordinate of point "i" */
+public double yPl(int i) {return yPl.get(i >>> CHUNK_BITS)[i & MASK];}
+/** @param i a point
+ * @param k 0, 1 or 2
+ * @return the species number <code>pair(i,k)</code>, or -1 */
+public int pair(int i, int k) {return pair.get(i >>> CHUNK_BITS)[3*(i & MASK)+k];}
+
+/** Sets the coordinates of a point, allocating a new chunk if needed
+ * @param i a point
+ * @param x the X-coordinate
+ * @param y the Y-coordinate */
+public void setXY(int i, double x, double y) {
+  ensure(i);
+  xPl.get(i >>> CHUNK_BITS)[i & MASK] = x;
+  yPl.get(i >>> CHUNK_BITS)[i & MASK] = y;
+}
+/** Sets the species involved in a point, allocating a new chunk if needed
+ * @param i a point
+ * @param pair0 the species at one side of the line
+ * @param pair1 the species at the other side of the line
+ * @param pair2 a third species */
+public void setPair(int i, int pair0, int pair1, int pair2) {
+  ensure(i);
+  int[] p = pair.get(i >>> CHUNK_BITS);
+  int j = 3*(i & MASK);
+  p[j] = pair0; p[j+1] = pair1; p[j+2] = pair2;
+}
+/** Adds a point after the last one, increasing <code>nPoint</code>
+ * @param x the X-coordinate
+ * @param y the Y-coordinate
+ * @param pair0 the species at one side of the line
+ * @param pair1 the species at the other side of the line
+ * @param pair2 a third species */
+public void add(double x, double y, int pair0, int pair1, int pair2) {
+  nPoint++;
+  setXY(nPoint, x, y);
+  setPair(nPoint, pair0, pair1, pair2);
+}
+
+/** Allocates the chunks needed to store point "i"
+ * @param i a point */
+private void ensure(int i) {
+  int c = i >>> CHUNK_BITS;
+  while(xPl.size() <= c) {
+    xPl.add(new double[CHUNK]);
+    yPl.add(new double[CHUNK]);
+    int[] p = new int[3*CHUNK];
+    java.util.Arrays.fill(p, -1);
+    pair.add(p);
+  }
+}
+
 } // class PredomData
@@ -0,0 +1,257 @@
+package predominanceAreaDiagrams;
+
+/** Finds the lines between predominance areas by following them, instead of
+ * calculating all the points of the grid. The predominating species are
+ * calculated along the margins of the diagram and on a coarse grid, and
+ * where two neighbouring points have different predominating species the
+ * line between the two areas is located by bisection down to one step of
+ * the grid. From there the line is followed cell by cell: only the corners
+ * of the cells crossed by a line are calculated, so the number of
+ * calculations is proportional to the length of the lines, not to the area
+ * of the diagram. Where a line crosses the side of a cell its position is
+ * refined by bisection on the X-value (or the Y-value).
+ * <p>The results are stored in a <code>PredomData</code>: one point for each
+ * side of a cell crossed by a line, with the two species in
+ * <code>pair(i,0)</code> and <code>pair(i,1)</code> (the smaller number
+ * first) and <code>pair(i,2)</code> = -1, and the points along the margins
+ * of the diagram (used to find the centre of each area) with
+ * <code>pair(i,1)</code> = -1. The points are sorted as in the column-wise
+ * calculations, that is, along the Y-axis for each X-value.
+ * <p>Note that a predominance area which is smaller than a coarse cell, and
+ * lies entirely within it, may be missed.
+ * <br>
+ * Copyright (C) 2014-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+final class PredomTrace {
+  /** Value returned by the solver at the points where the calculation failed */
+  static final int FAILED = Integer.MIN_VALUE;
+  /** The default number of bisections used to locate a line within a step */
+  static final int BISECTIONS = 4;
+  /** The minimum number of coarse cells along each axis */
+  static final int SEED_CELLS = 16;
+
+  /** Calculates the predominating species at a point of the diagram */
+  interface Solver {
+    /** @param xVal the value for the X-axis
+     * @param yVal the value for the Y-axis
+     * @return the predominating species at (xVal,yVal), or FAILED */
+    int top(double xVal, double yVal);
+    /** @return true if the calculations are to be stopped */
+    boolean stop();
+  }
+
+  private final PredomData pd;
+  private final Solver solver;
+  private final int nSteps, bisections;
+  /** the number of points along each axis (nSteps+1) */
+  private final long n1;
+  /** the predominating species at the points of the grid calculated so far,
+   * the key is <code>iX*(nSteps+1)+iY</code> */
+  private final java.util.HashMap<Long,Integer> nodes = new java.util.HashMap<Long,Integer>();
+  /** the sides of the cells already examined,
+   * the key is <code>(iX*(nSteps+1)+iY)*2+dir</code>, with dir =0 for the
+   * side from (iX,iY) to (iX+1,iY) and dir =1 for the side from (iX,iY) to (iX,iY+1) */
+  private final java.util.HashSet<Long> done = new java.util.HashSet<Long>();
+  /** the sides of the cells to be examined */
+  private final java.util.ArrayDeque<Long> queue = new java.util.ArrayDeque<Long>();
+  /** the points found so far */
+  private double[] xP = new double[64], yP = new double[64];
+  private int[] p0 = new int[64], p1 = new int[64], p2 = new int[64];
+  private int nP = 0;
+  /** the number of calls to the solver */
+  private int nbrCalcPoints = 0;
+
+  /** @param pd where the results are stored: <code>xLeft, stepX, yBottom</code>
+   * and <code>stepY</code> must be set
+   * @param nSteps the number of steps along each axis
+   * @param bisections the number of bisections used to locate a line
+   * within a step (zero to place the points in the middle of the step)
+   * @param solver calculates the predominating species at each point */
+  PredomTrace(PredomData pd, int nSteps, int bisections, Solver solver) {
+    this.pd = pd; this.nSteps = nSteps; this.solver = solver;
+    this.bisections = Math.max(0, bisections);
+    n1 = nSteps+1;
+  }
+
+  /** @return the number of points calculated */
+  int nbrCalcPoints() {return nbrCalcPoints;}
+
+  //<editor-fold defaultstate="collapsed" desc="trace()">
+  /** Finds the lines between the predominance areas and stores the points
+   * in <code>pd</code>. If the solver requests to stop, the points found
+   * so far are stored. */
+  void trace() {
+    // --- the margins of the diagram: all points
+    for(int i = 0; i < nSteps; i++) {
+        if(solver.stop()) {break;}
+        push(i, 0, 0); push(i, nSteps, 0);
+        push(0, i, 1); push(nSteps, i, 1);
+    }
+    // --- the coarse grid: locate a line between two points by bisection
+    int unit = Math.max(1, nSteps/SEED_CELLS);
+    for(int c = unit; c < nSteps; c = c + unit) {
+        for(int from = 0; from < nSteps; from = from + unit) {
+            if(solver.stop()) {break;}
+            seed(c, from, Math.min(from+unit, nSteps), true);  // along the Y-axis at iX = c
+            seed(c, from, Math.min(from+unit, nSteps), false); // along the X-axis at iY = c
+        }
+    }
+    // --- follow the lines
+    long key; int iX, iY, dir, a, b;
+    while(!queue.isEmpty()) {
+        if(solver.stop()) {break;}
+        key = queue.poll();
+        if(!done.add(key)) {continue;}
+        dir = (int)(key & 1);
+        iX = (int)((key >> 1) / n1); iY = (int)((key >> 1) % n1);
+        a = node(iX, iY);
+        if(dir == 0) {b = node(iX+1, iY);} else {b = node(iX, iY+1);}
+        if(a == b || a == FAILED || b == FAILED) {continue;}
+        addPoint(iX, iY, dir, a, b);
+        // the sides of the two cells next to this side
+        if(dir == 0) {
+            if(iY > 0) {cell(iX, iY-1);}
+            if(iY < nSteps) {cell(iX, iY);}
+        } else {
+            if(iX > 0) {cell(iX-1, iY);}
+            if(iX < nSteps) {cell(iX, iY);}
+        }
+    }
+    // --- the margins of the diagram, used to find the centre of each area
+    int t;
+    for(int i = 0; i <= nSteps; i++) {
+        t = node(i, 0);       if(t != FAILED) {add(i, 0, t, -1, t);}
+        t = node(i, nSteps);  if(t != FAILED) {add(i, nSteps, t, -1, t);}
+        if(i == 0 || i == nSteps) {continue;}
+        t = node(0, i);       if(t != FAILED) {add(0, i, t, -1, t);}
+        t = node(nSteps, i);  if(t != FAILED) {add(nSteps, i, t, -1, t);}
+    }
+    store();
+  } // trace()
+  //</editor-fold>
+
+  /** Adds the side of a cell to the queue, if it is within the diagram */
+  private void push(int iX, int iY, int dir) {
+    if(iX < 0 || iY < 0 || iX > nSteps || iY > nSteps) {return;}
+    if((dir == 0 && iX >= nSteps) || (dir == 1 && iY >= nSteps)) {return;}
+    queue.add(((iX*n1+iY) << 1) + dir);
+  }
+
+  /** Adds the four sides of the cell with the lower-left corner at (iX,iY) to the queue */
+  private void cell(int iX, int iY) {
+    push(iX, iY, 0); push(iX, iY+1, 0);
+    push(iX, iY, 1); push(iX+1, iY, 1);
+  }
+
+  /** Looks for a line between two points of the coarse grid. If the two
+   * points have different predominating species, the side of a cell where
+   * the species change is located by bisection and added to the queue.
+   * @param c the column (if alongY is true) or the row
+   * @param from the first point along the line
+   * @param to the last point along the line
+   * @param alongY if true the points are (c,from) and (c,to),
+   * otherwise (from,c) and (to,c) */
+  private void seed(int c, int from, int to, boolean alongY) {
+    int lo = from, hi = to, mid, tMid;
+    int tLo = alongY ? node(c, lo) : node(lo, c);
+    int tHi = alongY ? node(c, hi) : node(hi, c);
+    if(tLo == tHi || tLo == FAILED || tHi == FAILED) {return;}
+    while((hi - lo) > 1) {
+        mid = (lo + hi)/2;
+        tMid = alongY ? node(c, mid) : node(mid, c);
+        if(tMid == FAILED) {return;}
+        if(tMid != tLo) {hi = mid;} else {lo = mid;}
+    }
+    if(alongY) {push(c, lo, 1);} else {push(lo, c, 0);}
+  }
+
+  /** Returns the predominating species at a point of the grid,
+   * calculating it if needed
+   * @param iX the column
+   * @param iY the row
+   * @return the predominating species, or FAILED */
+  private int node(int iX, int iY) {
+    Long key = iX*n1+iY;
+    Integer t = nodes.get(key);
+    if(t == null) {
+        nbrCalcPoints++;
+        t = solver.top(pd.xLeft + iX*pd.stepX, pd.yBottom + iY*pd.stepY);
+        nodes.put(key, t);
+    }
+    return t;
+  }
+
+  /** Stores a point on the side of a cell between two areas. The position
+   * is refined by bisection between the two ends of the side.
+   * @param iX the column of the first end
+   * @param iY the row of the first end
+   * @param dir =0 if the second end is at (iX+1,iY); =1 if it is at (iX,iY+1)
+   * @param a the predominating species at the first end
+   * @param b the predominating species at the second end */
+  private void addPoint(int iX, int iY, int dir, int a, int b) {
+    double x0 = pd.xLeft + iX*pd.stepX, y0 = pd.yBottom + iY*pd.stepY;
+    double lo = 0, hi = 1, mid;
+    int t;
+    for(int k = 0; k < bisections; k++) {
+        if(solver.stop()) {break;}
+        mid = (lo + hi)/2;
+        nbrCalcPoints++;
+        if(dir == 0) {t = solver.top(x0 + mid*pd.stepX, y0);}
+        else {t = solver.top(x0, y0 + mid*pd.stepY);}
+        if(t == a) {lo = mid;} else if(t == b) {hi = mid;} else {break;}
+    }
+    mid = (lo + hi)/2;
+    if(dir == 0) {add(iX + mid, iY, Math.min(a,b), Math.max(a,b), -1);}
+    else {add(iX, iY + mid, Math.min(a,b), Math.max(a,b), -1);}
+  }
+
+  /** Adds a point to the list
+   * @param x the position along the X-axis, in steps
+   * @param y the position along the Y-axis, in steps */
+  private void add(double x, double y, int pair0, int pair1, int pair2) {
+    if(nP >= xP.length) {
+        int m = 2*xP.length;
+        xP = java.util.Arrays.copyOf(xP, m); yP = java.util.Arrays.copyOf(yP, m);
+        p0 = java.util.Arrays.copyOf(p0, m); p1 = java.util.Arrays.copyOf(p1, m);
+        p2 = java.util.Arrays.copyOf(p2, m);
+    }
+    xP[nP] = x; yP[nP] = y;
+    p0[nP] = pair0; p1[nP] = pair1; p2[nP] = pair2;
+    nP++;
+  }
+
+  /** Stores the points in <code>pd</code>, column by column (X-values)
+   * and along the Y-axis within each column. */
+  private void store() {
+    Integer[] order = new Integer[nP];
+    for(int i = 0; i < nP; i++) {order[i] = i;}
+    java.util.Arrays.sort(order, new java.util.Comparator<Integer>() {
+        @Override public int compare(Integer i, Integer j) {
+            int c = Double.compare(Math.floor(xP[i]), Math.floor(xP[j]));
+            if(c != 0) {return c;}
+            return Double.compare(yP[i], yP[j]);
+        }
+    });
+    pd.nPoint = -1;
+    int i;
+    for(int k = 0; k < nP; k++) {
+        i = order[k];
+        pd.add(pd.xLeft + xP[i]*pd.stepX, pd.yBottom + yP[i]*pd.stepY, p0[i], p1[i], p2[i]);
+    }
+  }
+
+}
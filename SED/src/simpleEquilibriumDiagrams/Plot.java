@@ -6,6 +6,12 @@ import lib.kemi.graph_lib.GraphLib;
 
 
 /** Methods to create a chemical equilibrium diagram.
+ * The settings of the diagram (the units of the concentrations, the size
+ * of the texts, etc) are given in the fields of this class, by the
+ * <code>SED</code> frame or by <code>SEDBatch</code>: nothing in this
+ * class uses the frame, so that plot files may also be written when
+ * <code>java.awt.headless=true</code>. Each instance keeps its own data,
+ * so several diagrams may be made at the same time.
  * <br>
  * Copyright (C) 2014-2020 I.Puigdomenech.
  * 
@@ -23,22 +29,49 @@ import lib.kemi.graph_lib.GraphLib;
  * along with this program.  If not, see http://www.gnu.org/licenses/
  * 
  * @author Ignasi Puigdomenech */
-public class Plot {
-    private SED sed = null;
-    // this and other fields are also used in the Table class
-    static int nbrSpeciesInPlot;
-    static int[] speciesInPlot;
+public class Plot implements ResultSink {
+    /** debug output */
+    boolean dbg = false;
+    /** if true the plot file is written in the compact binary format
+     * (see <code>lib.kemi.graph_lib.PltFile</code>) instead of as a text file */
+    boolean binaryPlt = false;
+    /** the concentration units:<ul><li>0="molal"</li><li>1="mol/kg_w"</li>
+     * <li>2="M"</li><li>-1=""</li></ul>
+     * 0 is changed to 2 ("M") by <code>drawPlot</code> at temperatures around 25 C
+     * and low pressures */
+    int conc_units = 0;
+    private static final String[] cUnits = new String[]{"","molal","mol/kg`w'","M"};
+    /** the notation for concentrations: 0 = no choice; 1 = scientific;
+     * 2 = engineering. 0 is changed to 2 by <code>drawPlot</code> */
+    int conc_nottn = 0;
+    /** the factor to convert pe into Eh (V), or NaN if Eh is not used */
+    double peEh = Double.NaN;
+    /** height scale for the texts in the diagram */
+    double tHeight = 1;
+    /** the number of calculation steps along the X-axis */
+    int nSteps;
+    /** the concentrations of the components at each calculation step,
+     * <code>bt[Na][nSteps+1]</code> (see <code>SEDBatch.concSteps</code>) */
+    double[][] bt;
+    /** the diagram, from the last call to <code>drawPlot</code> */
+    GraphLib.PltData dd = null;
+    /** the number of species in the diagram (also used by <code>Table</code>) */
+    int nbrSpeciesInPlot;
+    /** the species in the diagram (also used by <code>Table</code>) */
+    int[] speciesInPlot;
     /** max. number of species that need two labels in the diagram */
     private static final int L2 = 20;
     /** the max y-value for each curve in the diagram */
-    private static double[] yMax;
+    private double[] yMax;
     /** values of conc. or log(activity) for each point c0[Ms][nP] */
-    static double c0[][];
+    private double c0[][];
     /** values of solubility or tot. conc. for each point tot0[Na][nP] */
-    static double tot0[][];
+    private double tot0[][];
+    /** the values for one point, before they are stored in c0 and tot0 */
+    private double[] cPoint, totPoint;
     /** If true, the concentration is displayed as is. If false, the
      * concentration is displayed as milli molal, micro molal, or nano molal. */
-    private static boolean xMolal = true;
+    private boolean xMolal = true;
     private static final java.util.Locale engl = java.util.Locale.ENGLISH;
 /** Where errors will be printed. It may be <code>System.err</code>.
  * If null, <code>System.err</code> is used. */
@@ -49,14 +82,12 @@ public class Plot {
     private static final String nl = System.getProperty("line.separator");
 
 /** Constructor.
- * @param sed0
  * @param err0 Where errors will be printed. It may be <code>System.err</code>.
  * If null, <code>System.err</code> is used.
  * @param out0 Where messages will be printed. It may be <code>System.out</code>.
  * If null, <code>System.out</code> is used.
  */
-public Plot(SED sed0, java.io.PrintStream err0, java.io.PrintStream out0) {
-    this.sed = sed0;
+public Plot(java.io.PrintStream err0, java.io.PrintStream out0) {
     if(err0 != null) {this.err = err0;} else {this.err = System.err;}
     if(out0 != null) {this.out = out0;} else {this.out = System.out;}
 } //constructor
@@ -65,7 +96,7 @@ public Plot(SED sed0, java.io.PrintStream err0, java.io.PrintStream out0) {
 /** Create arrays to store the diagram data
  * @param ch where the data for the chemical system are stored */
 void preparePlot(Chem ch) {
-    if(sed.dbg) {out.println("--- preparePlot(ch)");}
+    if(dbg) {out.println("--- preparePlot(ch)");}
     Chem.ChemSystem cs = ch.chemSystem;
     Chem.ChemSystem.ChemConcs csC = cs.chemConcs;
     Chem.ChemSystem.NamesEtc namn = cs.namn;
@@ -74,8 +105,10 @@ void preparePlot(Chem ch) {
 
     yMax = new double[cs.Ms+L2];
     for(int i=0; i < yMax.length; i++) {yMax[i] =0;}
-    c0 = new double[cs.Ms][sed.nSteps+1];
-    tot0 = new double[cs.Na][sed.nSteps+1];
+    c0 = new double[cs.Ms][nSteps+1];
+    tot0 = new double[cs.Na][nSteps+1];
+    cPoint = new double[cs.Ms];
+    totPoint = new double[cs.Na];
 
 // Values for the Y-axis
 //  plotType=1 fraction diagram      compY= main component
@@ -149,11 +182,44 @@ void preparePlot(Chem ch) {
 
 //<editor-fold defaultstate="collapsed" desc="storePlotData(nP, ch)">
 /** Store diagram data for this point (an equilibrium composition)
- * in the arrays provided in this class.
+ * in the arrays provided in this class. For H-affinity diagrams the limits
+ * of the Y-axis (diag.yLow and diag.yHigh) are also updated.
  * @param nP the point number (along the x-axis)
  * @param ch where the data for the chemical system are stored */
 void storePlotData(int nP, Chem ch) {
-    if(sed.dbg) {out.println("--- storePlotData("+nP+", ch)");}
+    if(dbg) {out.println("--- storePlotData("+nP+", ch)");}
+    pointValues(ch, cPoint, totPoint);
+    for(int i =0; i < cPoint.length; i++) {c0[i][nP] = cPoint[i];}
+    for(int j =0; j < totPoint.length; j++) {tot0[j][nP] = totPoint[j];}
+    Chem.Diagr diag = ch.diag;
+    if(diag.plotType ==8 && (diag.Hplus >=0 && diag.Hplus < ch.chemSystem.Ms)) {
+        //get Max and Min values for Y-axis
+        if(nP > 0) {
+            double w, y, z;
+            w = c0[1][nP] - c0[1][nP-1];
+            y = (tot0[diag.Hplus][nP]-c0[0][nP]+c0[2][nP])
+                    - (tot0[diag.Hplus][nP-1]-c0[0][nP-1]+c0[2][nP-1]);
+            z = 0;
+            if(Math.abs(w) >= 1e-30) {z = y/w;}
+            if(z < diag.yLow) {diag.yLow = z;}
+            if(z > diag.yHigh) {diag.yHigh = z;}
+        } // if nP >0
+    } // H-affinity
+} //storePlotData()
+
+@Override public void point(int nP, Chem ch) {storePlotData(nP, ch);}
+
+@Override public void close() {}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="pointValues(ch, c, tot)">
+/** The diagram data for a point (an equilibrium composition): the values
+ * stored in <code>c0[i][nP]</code> and <code>tot0[j][nP]</code>.
+ * For H-affinity diagrams: c[0]=C(H+), c[1]=log(a(H+)) and c[2]=C(OH-).
+ * @param ch where the data for the chemical system are stored
+ * @param c output: conc. or log(activity) for each species, c[Ms]
+ * @param tot output: tot. conc. or solubility for each component, tot[Na] */
+static void pointValues(Chem ch, double[] c, double[] tot) {
     Chem.ChemSystem cs = ch.chemSystem;
     Chem.ChemSystem.ChemConcs csC = cs.chemConcs;
     Chem.Diagr diag = ch.diag;
@@ -167,65 +233,55 @@ void storePlotData(int nP, Chem ch) {
 //  plotType=6 pH in Y-axis
 //  plotType=7 log (activity) diagram
 //  plotType=8 H-affinity diagram
-    double w, y, z;
+    double w;
     // save conc. or log(activity)
     for(int i =0; i < cs.Ms; i++) {
-        c0[i][nP] = 0;
-        if(diag.plotType ==4 || diag.plotType ==7) {c0[i][nP] = -9999;} // log(a) or log(ai/ar)
-        if(diag.plotType ==5 || diag.plotType ==6) {c0[i][nP] = +9999;} // pe/Eh or pH
+        c[i] = 0;
+        if(diag.plotType ==4 || diag.plotType ==7) {c[i] = -9999;} // log(a) or log(ai/ar)
+        if(diag.plotType ==5 || diag.plotType ==6) {c[i] = +9999;} // pe/Eh or pH
         if(csC.isErrFlagsSet(2) || csC.isErrFlagsSet(3) || csC.isErrFlagsSet(4)
                             || csC.isErrFlagsSet(6)) {continue;}
         if(diag.plotType < 4) { // fraction, log(c), or log(solub)
-            if(csC.C[i] > 1.e+35) {c0[i][nP] = 1.e+35;}
+            if(csC.C[i] > 1.e+35) {c[i] = 1.e+35;}
             else if(Math.abs(csC.C[i]) <= 1.e+35)
-                                    {c0[i][nP] = csC.C[i];}
+                                    {c[i] = csC.C[i];}
         } else {
             if(diag.plotType ==8) {continue;} // H-affinity
             //for log(ai/ar), log(activity) or pe or pH diagrams: set highest limit
-            if(csC.logA[i] > 1.e+35) {c0[i][nP] = 1.e+35;}
+            if(csC.logA[i] > 1.e+35) {c[i] = 1.e+35;}
             w = Math.abs(csC.logA[i]);
             //set lowest limit, and if loga =0 check if concentration =0
             if(w <= 1e+35 && (w > 0 || Math.abs(csC.C[i]) > 0))
-                                    {c0[i][nP] = csC.logA[i];}
+                                    {c[i] = csC.logA[i];}
             if(cs.noll[i] && (w > 0 && w <= 1e+35))
-                                    {c0[i][nP] = csC.logA[i];}
+                                    {c[i] = csC.logA[i];}
         }
     } //for i
     // save tot.conc. or solubility
     for(int j =0; j < cs.Na; j++) {
-        tot0[j][nP] = 0.d;
+        tot[j] = 0.d;
         if(csC.errFlags < -1) {continue;}
         if(diag.plotType ==2) { //log(solub)
             if(Math.abs(csC.solub[j]) < 1.e+35d)
-                                    {tot0[j][nP] = csC.solub[j];}
+                                    {tot[j] = csC.solub[j];}
         } else {
             if(Math.abs(csC.tot[j]) < 1.e+35d)
-                                    {tot0[j][nP] = csC.tot[j];}
+                                    {tot[j] = csC.tot[j];}
         }
     } //for j
     // for H-affinity diagrams:
     if(diag.plotType ==8 && (diag.Hplus >=0 && diag.Hplus < cs.Ms)) {
-         //c0[0][nP]=C(H+)    c0[1][nP]=LOGA(H+)    c0[2][nP]=C(OH-)
+         //c[0]=C(H+)    c[1]=LOGA(H+)    c[2]=C(OH-)
         if(Math.abs(csC.C[diag.Hplus]) <= 1e+35)
-                                    {c0[0][nP] = csC.C[diag.Hplus];}
+                                    {c[0] = csC.C[diag.Hplus];}
         w = Math.abs(csC.logA[diag.Hplus]);
         if(w <= 1e+35 &&
                 (w >= 1e-35 || Math.abs(csC.C[diag.Hplus]) >= 1e-35))
-                                    {c0[1][nP] = csC.logA[diag.Hplus];}
+                                    {c[1] = csC.logA[diag.Hplus];}
         if(diag.OHmin > -1) {if(Math.abs(csC.C[diag.OHmin]) <= 1e+35)
-                                    {c0[2][nP] = csC.C[diag.OHmin];}}
-        //get Max and Min values for Y-axis
-        if(nP > 0) {
-            w = c0[1][nP] - c0[1][nP-1];
-            y = (tot0[diag.Hplus][nP]-c0[0][nP]+c0[2][nP])
-                    - (tot0[diag.Hplus][nP-1]-c0[0][nP-1]+c0[2][nP-1]);
-            z = 0;
-            if(Math.abs(w) >= 1e-30) {z = y/w;}
-            if(z < diag.yLow) {diag.yLow = z;}
-            if(z > diag.yHigh) {diag.yHigh = z;}
-        } // if nP >0
+                                    {c[2] = csC.C[diag.OHmin];}}
     } // H-affinity
-} //storePlotData()
+} //pointValues()
 //</editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="drawPlot(plotFile, ch)">
@@ -233,6 +289,8 @@ void storePlotData(int nP, Chem ch) {
  * and simultaneously store the data in a plot file.
  * @param plotFile where the diagram will be saved
  * @param ch where the data for the chemical system are stored
+ * @throws lib.kemi.graph_lib.GraphLib.WritePlotFileException if the plot file
+ * can not be written
  */
 void drawPlot(java.io.File plotFile, Chem ch) throws GraphLib.WritePlotFileException {
 Chem.ChemSystem cs = ch.chemSystem;
@@ -241,7 +299,7 @@ Chem.ChemSystem.NamesEtc namn = cs.namn;
 Chem.Diagr diag = ch.diag;
 Chem.DiagrConcs dgrC = ch.diagrConcs;
 
-if(sed.dbg) {
+if(dbg) {
     out.println("--- drawPlot("+plotFile.toString()+", ch)"+System.getProperty("line.separator")+
             "Drawing the plot...");
 }
@@ -253,23 +311,23 @@ if(sed.dbg) {
 //      engineering (millimolar, micromolar, etc)
 //   2- otherwise units = "molal" and the notation is engineering
 //      (10'-3` molal, 10'-6` molal, etc)
-sed.conc_units = Math.min(2, Math.max(sed.conc_units, -1));
-sed.conc_nottn = Math.min(2, Math.max(sed.conc_nottn, 0));
-if(sed.conc_nottn == 0) {sed.conc_nottn = 2;} // engineering    
+conc_units = Math.min(2, Math.max(conc_units, -1));
+conc_nottn = Math.min(2, Math.max(conc_nottn, 0));
+if(conc_nottn == 0) {conc_nottn = 2;} // engineering    
 if( (Double.isNaN(diag.temperature) || (diag.temperature >= 0 && diag.temperature <= 45))
         && (Double.isNaN(diag.pressure) || diag.pressure <=50)) {
     // temperatures around 25 and low pressures
-    if(sed.conc_units == 0) {sed.conc_units = 2;} // units = "M"
+    if(conc_units == 0) {conc_units = 2;} // units = "M"
 }
-String cUnit = sed.cUnits[(sed.conc_units+1)];
+String cUnit = cUnits[(conc_units+1)];
 String mUnit = ("×10'-3` "+cUnit).trim();
 String uUnit = ("×10'-6` "+cUnit).trim();
 String nUnit = ("×10'-9` "+cUnit).trim();
-if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
+if(conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
 
 //---- Max and Min values in the axes: xLow,xHigh, yLow,yHigh
-    double xLow = sed.bt[diag.compX][0];
-    double xHigh = sed.bt[diag.compX][(sed.bt[0].length-1)];
+    double xLow = bt[diag.compX][0];
+    double xHigh = bt[diag.compX][(bt[0].length-1)];
     // Concentration types:
     // hur =1 for "T" (fixed Total conc.)
     // hur =2 for "TV" (Tot. conc. Varied)
@@ -286,15 +344,15 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
         else { // LAV
             xLow = -xLow;  xHigh = -xHigh;
             if(diag.pInX == 3) {
-                xLow  = sed.peEh * xLow;
-                xHigh = sed.peEh * xHigh;
+                xLow  = peEh * xLow;
+                xHigh = peEh * xHigh;
             }
         } // if LAV
     } // is H+ or engl-
     // standard scale in X-axis
     xMolal = true;
     if(dgrC.hur[diag.compX] <=2) { // T or TV
-        if((sed.conc_nottn == 2 || (sed.conc_nottn == 0 && sed.conc_units == 2)) &&
+        if((conc_nottn == 2 || (conc_nottn == 0 && conc_units == 2)) &&
                Math.abs(xLow) <0.9 && Math.abs(xHigh) <0.9) {
             //milli units in X-axis
             xMolal = false;
@@ -342,7 +400,7 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
 //---- Dimensions of the diagramData,  Size of text: height.  Origo: xOr,yOr
     float xAxl =15; float yAxl = 10;
     float heightAx = 0.035f * yAxl;
-    if(sed.tHeight > 0.0001) {heightAx = (float)sed.tHeight*heightAx;}
+    if(tHeight > 0.0001) {heightAx = (float)tHeight*heightAx;}
     float xOr; float yOr;
     xOr = 7.5f * heightAx;
     yOr = 4.0f * heightAx;
@@ -357,17 +415,17 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
     //  pInX=2 pe in X-axis
     //  pInX=3 Eh in X-axis
     if(diag.pInX ==1 || diag.pInX == 2) {xL = -xL;}
-    else if(diag.pInX ==3) {xL = -xL * (float)sed.peEh;}
+    else if(diag.pInX ==3) {xL = -xL * (float)peEh;}
 
     // -------------------------------------------------------------------
     //          Create a PltData instance
-    sed.dd = new GraphLib.PltData();
+    dd = new GraphLib.PltData();
     //          Create a GraphLib instance
     GraphLib g = new GraphLib();
     boolean textWithFonts = true;
-    try {g.start(sed.dd, plotFile, textWithFonts);}
-    catch (GraphLib.WritePlotFileException ex) {sed.showErrMsgBx(ex.getMessage(),1); g.end(); return;}
-    sed.dd.axisInfo = false;
+    try {g.start(dd, plotFile, textWithFonts, binaryPlt);}
+    catch (GraphLib.WritePlotFileException ex) {g.end(); throw ex;}
+    dd.axisInfo = false;
     g.setLabel("-- SED DIAGRAM --");
     // -------------------------------------------------------------------
     //                  Draw Axes
@@ -379,7 +437,10 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
     try {g.axes((float)xLow, (float)xHigh, (float)yLow, (float)yHigh,
             xOr,yOr, xAxl,yAxl, heightAx,
             false, false, false);}
-    catch (GraphLib.AxesDataException ex) {sed.showMsg(ex); g.end(); return;}
+    catch (GraphLib.AxesDataException ex) {
+        err.println("- - - - Error:"+nl+ex.toString()+nl+nl+Util.stack2string(ex)+nl+"- - - -");
+        g.end(); return;
+    }
     //---- Write text under axes
     // Y-axis
     float xP; float yP;
@@ -442,13 +503,13 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
     //                  Draw the Curves
     g.setLabel("-- CURVES --"); g.setPen(1);
     //--- values for X-axis
-    float[] xax = new float[sed.nSteps+1];
-    for(int i =0; i < sed.nSteps+1; i++) {
+    float[] xax = new float[nSteps+1];
+    for(int i =0; i < nSteps+1; i++) {
         if(dgrC.hur[diag.compX] ==3) { //"LTV"
-            xax[i] = (float)(xL*Math.log10(sed.bt[diag.compX][i])-xI);}
-        else{xax[i] = (float)(xL*sed.bt[diag.compX][i]-xI);}
+            xax[i] = (float)(xL*Math.log10(bt[diag.compX][i])-xI);}
+        else{xax[i] = (float)(xL*bt[diag.compX][i]-xI);}
     } //for i
-    float[] yax = new float[sed.nSteps+1];
+    float[] yax = new float[nSteps+1];
     for(int i =0; i < yax.length; i++) {yax[i] =0f;}
     //--- curve counter: k
     int i, j, curvePoint;
@@ -464,7 +525,7 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
             i = speciesInPlot[k];
             if(diag.plotType ==1) {//fraction
                 if(i>cs.Ms) {break;} //kLoop
-                for(j=0; j < (sed.nSteps+1); j++) {
+                for(j=0; j < (nSteps+1); j++) {
                     if(Math.abs(tot0[diag.compY][j]) > 1.e-30) {
                         double o;
                         if(i < cs.Na) {if(i==diag.compY) {o=1;} else {o=0;}}
@@ -474,26 +535,26 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
                     } else {yax[j] = 0f;}
                 } //for j
             } else if(diag.plotType ==2) {//log solubility
-                for(j=0; j < (sed.nSteps+1); j++) {
+                for(j=0; j < (nSteps+1); j++) {
                     yax[j] = -50f;
                     if(tot0[i][j] > 1.E-35f) {yax[j]=(float)Math.log10(tot0[i][j]);}
                 } //for j
             } else if(diag.plotType ==3) {//log conc.
-                for(j=0; j < (sed.nSteps+1); j++) {
+                for(j=0; j < (nSteps+1); j++) {
                     yax[j] = -99.f;
                     if(c0[i][j] > 1.E-35f) {yax[j]=(float)Math.log10(c0[i][j]);}
                 } //for j
             } else if(diag.plotType ==4) {//log(ai/ar) diagram
-                for(j=0; j < (sed.nSteps+1); j++) {yax[j] = (float)(c0[i][j] - c0[diag.compY][j]);}
+                for(j=0; j < (nSteps+1); j++) {yax[j] = (float)(c0[i][j] - c0[diag.compY][j]);}
             } else if(diag.plotType ==5) {//calc. pe
-                for(j=0; j < (sed.nSteps+1); j++) {
+                for(j=0; j < (nSteps+1); j++) {
                     if(!diag.Eh) {yax[j] = (float)(-c0[i][j]);}
-                    else {yax[j] = (float)(-c0[i][j]*sed.peEh);}
+                    else {yax[j] = (float)(-c0[i][j]*peEh);}
                 } //for j
             } else if(diag.plotType ==6) {//calc. pH
-                for(j=0; j < (sed.nSteps+1); j++) {yax[j] = (float)(-c0[i][j]);}
+                for(j=0; j < (nSteps+1); j++) {yax[j] = (float)(-c0[i][j]);}
             } else if(diag.plotType ==7) {//log act.
-                for(j=0; j < (sed.nSteps+1); j++) {yax[j] = (float)(c0[i][j]);}
+                for(j=0; j < (nSteps+1); j++) {yax[j] = (float)(c0[i][j]);}
             } else if(diag.plotType ==8) {//H-affinity "d(H-bound)/d(-pH)"
                 if(diag.Hplus >= 0 || diag.Hplus <= cs.Ms) {
                     //C0[0][n]=C(H+)    C0[1][n]=LOGA(H+)    C0[2][n]=C(OH-)
@@ -503,7 +564,7 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
                          - (tot0[diag.Hplus][0]-c0[0][0]+c0[2][0]);
                     yax[0] =0f;
                     if(Math.abs(w1) >= 1e-35) yax[0]= (float)(w2 / w1);
-                    for(j=1; j < sed.nSteps; j++) {
+                    for(j=1; j < nSteps; j++) {
                         w1 = c0[1][j]-c0[1][j-1];
                         w2 = (tot0[diag.Hplus][j]-c0[0][j]+c0[2][j])
                                 - (tot0[diag.Hplus][j-1]-c0[0][j-1]+c0[2][j-1]);
@@ -516,7 +577,7 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
                         if(Math.abs(w1) >= 1e-35) y2= (float)(w2 / w1);
                         yax[j] = (float)((y1+y2)/2);
                     } //for j
-                    yax[sed.nSteps] = (float)y2;
+                    yax[nSteps] = (float)y2;
                 }
             } else {
               err.println("Programming error in \"drawPlot\";  plotType = "+diag.plotType);
@@ -533,7 +594,7 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
             aPointIsShown =false;
             aPointIsShownNextNot =false;
             secondLabel =false;
-            for(j=0; j < (sed.nSteps+1); j++) {
+            for(j=0; j < (nSteps+1); j++) {
                 if(aPointIsShown && (yax[j] < yMin)) {aPointIsShownNextNot =true;}
                 if(aPointIsShownNextNot && (yax[j] > yMin)) {
                     if(xtraLabel < L2) {
@@ -570,7 +631,7 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
                 g.moveToDrawTo(xax[curvePoint],yL*yax[curvePoint]-yI,0);
                 curveStarted = true;
             }
-            for(curvePoint = 1; curvePoint < (sed.nSteps+1); curvePoint++) {
+            for(curvePoint = 1; curvePoint < (nSteps+1); curvePoint++) {
                 if(yax[curvePoint] >yLow1 && yax[curvePoint] < yHigh) {
                     if(!curveStarted) {
                         j= curvePoint-1;
@@ -673,10 +734,10 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
     // -------------------------------------------------------------------
     //                  Text with concentrations as a Heading
     g.setLabel("-- HEADING --"); g.setPen(1); g.setPen(-1);
-    if(sed.dbg) {
-        out.print("Heading; concentration units: \""+sed.cUnits[sed.conc_units+1]+"\"");
-        if(sed.conc_nottn == 2 || (sed.conc_nottn == 0 && sed.conc_units == 2)) {out.print(",  notation: engineering");}
-        if(sed.conc_nottn == 1 || (sed.conc_nottn == 0 && sed.conc_units != 2)) {out.print(",  notation: scientific");}
+    if(dbg) {
+        out.print("Heading; concentration units: \""+cUnits[conc_units+1]+"\"");
+        if(conc_nottn == 2 || (conc_nottn == 0 && conc_units == 2)) {out.print(",  notation: engineering");}
+        if(conc_nottn == 1 || (conc_nottn == 0 && conc_units != 2)) {out.print(",  notation: scientific");}
         out.println();
     }
     float headColumnX = 0.5f*heightAx;
@@ -706,7 +767,7 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
         if(dgrC.hur[j] == 1) { //"T"
             w = csC.tot[j]; wa = Math.abs(w);
             // use engineering notation?
-            if(sed.conc_nottn == 2 || (sed.conc_nottn == 0 && sed.conc_units == 2)) {
+            if(conc_nottn == 2 || (conc_nottn == 0 && conc_units == 2)) {
                 if(wa < 1.E-99) {value = String.format(engl,"=%8.2f",(float)w);}
                 else if(wa < 1. && wa >= 0.9999E-4) {
                     w = w*1.E+3;
@@ -732,12 +793,12 @@ if(sed.conc_units == 2) {mUnit = " mM"; uUnit = " $M"; nUnit = " nM";}
             }
             t = "["+namn.ident[i]+"]`TOT' "+value;
         } // hur=1: "T"
-        else //if(sed.hur[j] == 4) { //"LA"
+        else //if(hur[j] == 4) { //"LA"
         {   String c;
             boolean volt = false;
             if(Util.isElectron(namn.ident[j])) {
                 w = -dgrC.cLow[j];
-                if(diag.Eh){c = "E`H' = "; w = w*sed.peEh; volt = true;}
+                if(diag.Eh){c = "E`H' = "; w = w*peEh; volt = true;}
                 else {c = "pe =";}
             } //isElectron
             else if(Util.isProton(namn.ident[i])) {
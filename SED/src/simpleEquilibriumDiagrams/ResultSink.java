@@ -0,0 +1,40 @@
+package simpleEquilibriumDiagrams;
+
+import lib.kemi.chem.Chem;
+
+/** Receives the results of the calculations one point at a time, in the
+ * order of the X-axis, as soon as each point is available. The equilibrium
+ * composition is found in <code>ch.chemSystem.chemConcs</code> (and the
+ * ionic strength, etc, in <code>ch.diag</code>) only during the call:
+ * an implementation must copy the values it needs.
+ * <p>Implementations in this package are <code>Plot</code>, which stores
+ * the data needed to draw the diagram (and for H-affinity diagrams finds
+ * the limits of the Y-axis), and <code>Table</code>, which writes each
+ * point to the table file. Only <code>Plot</code> keeps all the points in
+ * memory. The sinks do not depend on each other: they may be used in any
+ * order, or alone.
+ * <br>
+ * Copyright (C) 2014-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+public interface ResultSink {
+  /** The results at a calculated point.
+   * @param nP the point number (along the X-axis), from zero to nSteps
+   * @param ch where the data for the chemical system are stored */
+  void point(int nP, Chem ch);
+  /** Called once, after the last point */
+  void close();
+}
@@ -2,10 +2,14 @@ package simpleEquilibriumDiagrams;
 
 import lib.common.Util;
 import lib.kemi.chem.Chem;
+import lib.kemi.chem.DiagrFamily;
 import lib.kemi.graph_lib.DiagrPaintUtility;
 import lib.kemi.graph_lib.GraphLib;
 import lib.kemi.haltaFall.Factor;
 import lib.kemi.haltaFall.HaltaFall;
+import lib.kemi.haltaFall.HaltaFallPool;
+import lib.kemi.haltaFall.PointSolver;
+import lib.kemi.haltaFall.WarmStart;
 import lib.kemi.readDataLib.ReadDataLib;
 import lib.kemi.readWriteDataFiles.ReadChemSyst;
 
@@ -104,7 +108,7 @@ public class SED extends javax.swing.JFrame {
     private ReadDataLib rd;
     private Plot plot = null;
 /** data from a plot-file needed by the paint methods */
-    GraphLib.PltData dd; // instantiated in "Plot.drawPlot"
+    GraphLib.PltData dd; // from "Plot.drawPlot"
                                    // it containts the info in the plot file
 
     private HelpAboutF helpAboutFrame = null;
@@ -161,7 +165,22 @@ public class SED extends javax.swing.JFrame {
 
     float threshold = 0.03f;
     private boolean tableOutput = false;
+    /** if true the plot file is written in the compact binary format
+     * (see <code>lib.kemi.graph_lib.PltFile</code>) instead of as a text file */
+    boolean binaryPlt = false;
+    /** if true, HaltaFall speeds up the iterations for the activity coefficients
+     * (see <code>Chem.ChemSystem.ChemConcs.actCoefAccel</code>) */
+    boolean actCoefAccel = false;
     private Table table = null;
+    /** receive the results at each calculated point: the plot data
+     * and the table output (if any) */
+    private final java.util.List<ResultSink> sinks = new java.util.ArrayList<ResultSink>();
+    /** the description of a diagram family given in the command line, or null */
+    private String familySpec = null;
+    /** a diagram family: several diagrams made one after the other, each
+     * one with its own copy of the chemical system, or null if only one
+     * diagram is made */
+    private DiagrFamily.Sequence family = null;
     String tblExtension = "csv";
     String tblFieldSeparator = ";";
     String tblCommentStart = "\"";
@@ -170,6 +189,19 @@ public class SED extends javax.swing.JFrame {
     /** output debug reporting in HaltaFall. Default = Chem.DBGHALTA_DEF = 1 (report errors only)
      * @see Chem.ChemSystem.ChemConcs#dbg Chem.ChemSystem.ChemConcs.dbg */
     int dbgHalta = Chem.DBGHALTA_DEF;
+    /** The maximum number of threads used in the calculations */
+    private final static int NTHREADS_MAX = 64;
+    /** The number of threads used in the calculations. If larger than one,
+     * the X-axis is divided into chunks of points which are calculated
+     * simultaneously, each chunk with its own instances of
+     * <code>Chem</code>, <code>Factor</code> and <code>HaltaFall</code>. */
+    private int nThreads = 1;
+    /** the HaltaFall instances used by the threads when <code>nThreads</code> &gt; 1 */
+    private final java.util.List<HaltaFall> hWorkers =
+            java.util.Collections.synchronizedList(new java.util.ArrayList<HaltaFall>());
+    /** the HaltaFall instances are recycled: the planning and the working
+     * arrays are reused by the next chunk, or by the next calculation */
+    private final HaltaFallPool haltaPool = new HaltaFallPool();
     /** true if the component has either <code>noll</code> = false or it has positive
      * values for the stoichiometric coefficients (a[ix][ia]-values)
      * @see chem.Chem.ChemSystem#a a
@@ -249,7 +281,7 @@ public class SED extends javax.swing.JFrame {
         javax.swing.Action ctrlCAction = new javax.swing.AbstractAction() {
             @Override public void actionPerformed(java.awt.event.ActionEvent e) {
                 if(jTabbedPane.getSelectedIndex() == 1) {
-                      if(h != null) {h.haltaCancel();}
+                      haltaCancel();
                       if(tsk != null) {tsk.cancel(true);}
                       finishedCalculations = true;
                       SED.this.notify_All();
@@ -360,7 +392,7 @@ public class SED extends javax.swing.JFrame {
                         jTextFieldIonicStgr.isEnabled()) {
                     jTextFieldIonicStgr.requestFocusInWindow();
                 } else if(jTabbedPane.getSelectedIndex() == 1) {
-                      if(h != null) {h.haltaCancel();}
+                      haltaCancel();
                       if(tsk != null) {tsk.cancel(true);}
                       finishedCalculations = true;
                       SED.this.notify_All();
@@ -510,6 +542,29 @@ public class SED extends javax.swing.JFrame {
             String plotFileN = txt.substring(0,txt.length()-3).concat("plt");
             outputPltFile = new java.io.File(plotFileN);
         }
+        if(familySpec != null) {
+            DiagrFamily fam = null;
+            try {fam = new DiagrFamily(familySpec, ch);}
+            catch (IllegalArgumentException ex) {
+                showErrMsgBx(ex.getMessage(), 1);
+                if(!doNotExit) {end_program(); return;}
+            }
+            if(fam != null && doNotStop && !doNotExit && !tableOutput) {
+                // nothing is displayed: the members are calculated in parallel
+                calculateFamily(fam);
+                programEnded = false;
+                return;
+            }
+            if(fam != null) {
+                try {family = new DiagrFamily.Sequence(fam, ch, outputPltFile);}
+                catch (Chem.ChemicalParameterException ex) {
+                    showErrMsgBx(ex);
+                    if(!doNotExit) {end_program(); return;}
+                    family = null;
+                }
+            }
+            if(family != null) {setFamilyMember();}
+        }
         // note: as the calculations are done on a worker thread, this returns pretty quickly
         try {doCalculations();}
         catch (Exception ex) {showErrMsgBx(ex);}
@@ -1454,350 +1509,14 @@ private void jLabelHDMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:ev
   private boolean checkInput() {
     if(cs == null) {err.println("? Programming error in \"SED.checkInput\": cs=null."); return false;}
     if(dbg) {out.println("--- checkInput()");}
-    // -------------------
-    //   CHEMICAL SYSTEM
-    // -------------------
-    // mg = total number of soluble species in the aqueous solution:
-    //      all components + soluble complexes
-    // Note that in HaltaFall the solid components are fictitious soluble
-    // components with "zero" concentration (with noll = true)
-    int mg = cs.Ms - cs.mSol; // = na + nx;
-    int i;
-
-    // ---- Remove asterisk "*" from the name of components
-    for(i=0; i<cs.Na; i++) {
-        if(namn.identC[i].startsWith("*")) {
-            namn.identC[i] = namn.identC[i].substring(1);
-            namn.ident[i]  = namn.identC[i];
-            cs.noll[i] = true;
-        }
-        //if(chem_syst.Chem.isWater(csNamn.identC[i]))
-        //            {water = i;}
-    } // for i=0...Na-1
-
-    // ---- Remove reaction products (soluble or solid) with
-    //      name starting with "*".
-    // Note that the solids corresponding to the components will
-    // not have a name starting with "*". This is already removed when
-    // reading the input file.
-    double w; int j; int js;
-    i = cs.Na;
-    while (i < cs.Ms) {
-        if(namn.ident[i].startsWith("*")) {
-            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
-            cs.Ms = cs.Ms -1;
-            if(i >= cs.Ms) {break;}
-            for(j=i; j<cs.Ms; j++) {
-                js = j - cs.Na;
-                cs.lBeta[js] = cs.lBeta[js+1];
-                //for(int ia=0; ia<cs.Na; ia++) {cs.a[js][ia] = cs.a[js+1][ia];}
-                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
-                namn.ident[j] = namn.ident[j+1];
-                cs.noll[j] = cs.noll[j+1];
-            }
-        } else {i++;}
-    } //while (true)
-
-    // ---- get electric charge, length of name, etc
-    diag.aquSystem = false;
-    for(i=0; i<cs.Ms; i++) {
-        namn.nameLength[i] = getNameLength(namn.ident[i]);
-        // Species for which the concentration is not to be
-        // included in the Mass-Balance (for ex. the concentration
-        // of "free" electrons is excluded)
-        if(Util.isElectron(namn.ident[i]) || Util.isWater(namn.ident[i])) {
-                cs.noll[i] = true;
-                diag.aquSystem = true;
-        }
-        if(i < mg) { //aqueous species
-            namn.z[i]=0;
-            csC.logf[i] = 0;
-            if(namn.ident[i].length() >4 &&
-                namn.ident[i].toUpperCase().endsWith("(AQ)")) {
-                    diag.aquSystem = true;}
-                else { //does not end with "(aq)"
-                    namn.z[i] = Util.chargeOf(namn.ident[i]);
-                    if(namn.z[i] != 0) {diag.aquSystem = true;}
-                } // ends with "(aq)"?
-        }
-    } // for i=0...Ms-1
-    // The electric charge of two fictive species (Na+ and Cl-)
-    // that are used to ensure electrically neutral aqueous solutions
-    // when calculating the ionic strength and activity coefficients
-    namn.z[mg] = 1;     //electroneutrality "Na+"
-    namn.z[mg+1] =-1;   //electroneutrality "Na+"
-
-    // ---- set Gaseous species to have zero conc
-    //      if it is an aqueous system
-    if(diag.aquSystem) {
-        for(i =0; i < mg; i++) {
-            if(Util.isGas(namn.ident[i])
-                    || Util.isLiquid(namn.ident[i])
-                    || Util.isWater(namn.ident[i])) {cs.noll[i] = true;}
-        } //for i
-    }
-
-    // ---- Remove any reaction product (complex) named "H2O", if found
-    if(diag.aquSystem) {
-      for(i=cs.Na; i<cs.Ms; i++) {
-        if(Util.isWater(namn.ident[i])) {
-            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
-            cs.Ms = cs.Ms -1;
-            if(i >= cs.Ms) {break;}
-            for(j=i; j<cs.Ms; j++) {
-                js = j - cs.Na;
-                cs.lBeta[js] = cs.lBeta[js+1];
-                //for(int ia=0; ia<cs.Na; ia++) {cs.a[js][ia] = cs.a[js+1][ia];}
-                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
-                namn.ident[j] = namn.ident[j+1];
-                cs.noll[j] = cs.noll[j+1];
-            }
-        } //ident[i]="H2O"
-      } //for i
-    } //if aquSystem
-
-    if(dbg) {cs.printChemSystem(out);}
-
-    // ---- Check that all reactions are charge balanced
-    if(calcActCoeffs) {
-        double zSum;
-        boolean ok = true;
-        for(i=cs.Na; i < mg; i++) {
-            int ix = i - cs.Na;
-            zSum = (double)(-namn.z[i]);
-            for(j=0; j < cs.Na; j++) {
-                zSum = zSum + cs.a[ix][j]*(double)namn.z[j];
-            } //for j
-            if(Math.abs(zSum) > 0.0005) {
-                ok = false;
-                err.format(engl,"--- Warning: %s, z=%3d, charge imbalance:%9.4f",
-                            namn.ident[i],namn.z[i],zSum);
-            }
-        } //for i
-        if(!ok) {
-            if(!showErrMsgBxCancel("There are charge imbalanced reactions in the input file.",1)) {
-                return false;
-            }
-        }
-    } // if calcActCoeffs
-
-    // ---- Check that at least there is one fuid species active
-    boolean foundOne = false;
-    for(i =0; i < mg; i++) {
-        if(!cs.noll[i]) {foundOne = true; break;}
-    } //for i
-    if(!foundOne) {
-        String t = "Error: There are no fluid species active ";
-        if(cs.mSol > 0) {t = t.concat("(Only solids)");}
-        t = t+nl+"This program can not handle such chemical systems.";
-        showErrMsgBx(t, 1);
-        return false;
-    }
-
-    // --------------------
-    //   PLOT INFORMATION
-    // --------------------
-    diag.pInX =0; diag.pInY = 0;
-    //  pInX=0 "normal" X-axis
-    //  pInX=1 pH in X-axis
-    //  pInX=2 pe in X-axis
-    //  pInX=3 Eh in X-axis
-    if(Util.isElectron(namn.identC[diag.compX])) {
-        if(diag.Eh) {diag.pInX = 3;} else {diag.pInX = 2;}
-    } else if(Util.isProton(namn.identC[diag.compX])) {diag.pInX = 1;}
-
-    // ----------------------------------------------
-    //   CHECK THE CONCENTRATION FOR EACH COMPONENT
-    // ----------------------------------------------
-
-    for(int ia =0; ia < cs.Na; ia++) {
-        if(dgrC.hur[ia]==1 && // T
-            ia==diag.compX) {
-                showErrMsgBx("Error: the concentration for component \""+namn.identC[ia]+"\" "+
-                    "must vary, as it belongs to the X-axis!",1);
-                return false;
-                }
-        if(dgrC.hur[ia] >0 && dgrC.hur[ia]<=3) { //T, TV or LTV
-            if(Util.isWater(namn.identC[ia])) {
-                showErrMsgBx("Error: The calculations are made for 1kg H2O"+nl+
-                           "Give log(H2O-activity) instead of a total conc. for water.",1);
-                return false;
-           } // if water
-        } //if T, TV or LTV
-        if(dgrC.hur[ia] ==2 || dgrC.hur[ia] ==3 || dgrC.hur[ia] ==5) { //TV, LTV or LAV
-            if(ia != diag.compX) {
-                String t;
-                if(dgrC.hur[ia] ==5) {t="log(activity)";} else {t="total conc.";}
-                String msg = "Warning: The "+t+" is varied for \""+namn.identC[ia]+"\""+nl+
-                           "   but the component in the X-axis is \""+namn.identC[diag.compX]+"\"";
-                if(!showErrMsgBxCancel(msg,2)) {return false;}
-            }
-        } //if TV, LTV or LAV
-        if((dgrC.hur[ia] ==1 || dgrC.hur[ia] ==4) && //T or LA
-           ia == diag.compX) {
-                String t;
-                if(dgrC.hur[ia] ==4) {t="log(activity)";} else {t="total conc.";}
-                showErrMsgBx("Error: The "+t+" of \""+namn.identC[ia]+"\""+nl+
-                        "can NOT be a fixed value because this component belongs to the X-axis !",1);
-                return false;
-            }
-        if(dgrC.hur[ia] ==1 && // T
-           Math.abs(dgrC.cLow[ia]) >100) {
-                String t = String.format(engl,"Error:  For component: "+namn.identC[ia]+nl+
-                        "   Tot.Conc.=%12.4g mol/kg.  This is not a reasonable value!",dgrC.cLow[ia]);
-                showErrMsgBx(t,1);
-                return false;
-            }
-        if(dgrC.hur[ia] ==4 &&  // LA
-           Util.isProton(namn.identC[ia]) &&
-           (dgrC.cLow[ia] <-14 || dgrC.cLow[ia] >2)) {
-                String msg = String.format(engl,"Warning: In the input, you give  pH =%8.2f%n"+
-                        "This value could be due to an input error.",(-dgrC.cLow[ia]));
-                if(!showErrMsgBxCancel(msg,2)) {return false;}
-        }
-        if(dgrC.hur[ia] !=1 && dgrC.hur[ia] !=4) {//if TV, LTV or LAV
-            if(dgrC.cLow[ia] == dgrC.cHigh[ia] ||
-                    Math.max(Math.abs(dgrC.cLow[ia]), Math.abs(dgrC.cHigh[ia])) < 1e-15) {
-                showErrMsgBx("Error:  Min-value = Max-value for component \""+namn.identC[ia]+"\"",1);
-                return false;
-            }
-            if(dgrC.cLow[ia] > dgrC.cHigh[ia] && !reversedConcs) {
-                w = dgrC.cLow[ia];
-                dgrC.cLow[ia] = dgrC.cHigh[ia];
-                dgrC.cHigh[ia] = w;
-            }
-            if(!reversedConcs && dgrC.hur[ia] ==5 && // pH/pe/EH varied - LAV
-                   (Util.isProton(namn.identC[ia]) ||
-                    Util.isElectron(namn.identC[ia]))) {
-                w = dgrC.cLow[ia];
-                dgrC.cLow[ia] = dgrC.cHigh[ia];
-                dgrC.cHigh[ia] = w;
-            }
-            if(dgrC.hur[ia] ==5 && // LAV
-                    (Util.isProton(namn.identC[ia])) &&
-                     (dgrC.cLow[ia] <-14.00001 || dgrC.cLow[ia] >2.00001 ||
-                      dgrC.cHigh[ia] <-14.00001 || dgrC.cHigh[ia] >2.00001)) {
-                String msg = String.format(engl,"Warning: In the input, you give  pH =%8.2f to %7.2f%n"+
-                        "These values could be due to an input error.",(-dgrC.cLow[ia]),(-dgrC.cHigh[ia]));
-                if(!showErrMsgBxCancel(msg,2)) {return false;}
-            }
-            if(dgrC.hur[ia] ==2 && // TV
-                  (Math.max(Math.abs(dgrC.cHigh[ia]),Math.abs(dgrC.cLow[ia]))>100)) {
-                showErrMsgBx("Error:  You give  ABS(TOT.CONC.) > 100  for component: "+namn.identC[ia]+nl+
-                    "This value is too high and perhaps an input error."+nl+
-                    "Set the maximum ABS(TOT.CONC.) value to 100.",1);
-                return false;
-            }
-            if(dgrC.hur[ia] ==3) { // LTV
-                if((Math.min(dgrC.cLow[ia], dgrC.cHigh[ia]) < -7.0001) &&
-                      (Util.isProton(namn.identC[ia]))) {
-                    String msg = "Warning: You give a  LOG (TOT.CONC.) < -7  for component: "+namn.identC[ia]+nl+
-                        "This value is rather low and could be due to an input error."+nl+
-                        "Maybe you meant to set  LOG (ACTIVITY) < -7 ??";
-                    if(!showErrMsgBxCancel(msg,2)) {return false;}
-                }
-                if(Math.max(dgrC.cLow[ia], dgrC.cHigh[ia]) > 2.0001) {
-                    showErrMsgBx("Error: You give a  LOG (TOT.CONC.) > 2  for component: "+namn.identC[ia]+nl+
-                        "This value is too high and it could be due to an input error."+nl+
-                        "Please set the LOG (TOT.CONC.) value to <=2.",1);
-                    return false;
-                }
-            } //if LTV
-        } //if TV, LTV or LAV
-
-    } // for ia = 0... Na-1
-
-    // ----------------
-    //   OTHER CHECKS
-    // ----------------
-
-    // ---- See which components have positive or negative (or both)
-    //      values for the stoichiometric coefficients (a[ix][ia]-values)
     pos = new boolean[cs.Na];
     neg = new boolean[cs.Na];
-    for(i =0; i < cs.Na; i++) {
-        pos[i] = false; neg[i] = false;
-        if(!cs.noll[i]) { // if not "e-" and not solid component
-                    pos[i] = true;}
-        for(j = cs.Na; j < cs.Ms; j++) {
-            if(!cs.noll[j]) {
-                if(cs.a[j-cs.Na][i] >0) {pos[i] = true;}
-                if(cs.a[j-cs.Na][i] <0) {neg[i] = true;}
-            } // !noll
-        } //for j
-    } //for i
-    // check POS and NEG with the Tot.Conc. given in the input
-    for(i =0; i < cs.Na; i++) {
-        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
-        if((!pos[i] && !neg[i]) ) { // || cs.nx ==0
-            String msg = "Error: for component \""+namn.identC[i]+"\" give Log(Activity)";
-            if(dgrC.hur[i] !=1) { // not "T", that is: "TV" or "LTV"
-                msg = msg+" to vary";}
-            showErrMsgBx(msg,1);
-            return false;
-        } //if Nx =0 or (!pos[] & !neg[])
-        if((pos[i] && neg[i]) ||
-           (pos[i] && (dgrC.hur[i] ==3 ||  //LTV
-                (dgrC.cLow[i]>0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]>0)))) ||
-           (neg[i] && (dgrC.hur[i] !=3 && //not LTV
-                (dgrC.cLow[i]<0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]<0))))) {
-            continue;
-        }
-        if(pos[i] || neg[i]) {
-            String msg = "Error: Component \"%s\" may not have %s Tot.Conc. values.%s"+
-                    "Give either  Tot.Conc. %s=0.0  or  Log(Activity)%s";
-            if(neg[i] && (dgrC.hur[i] ==3 || // LTV
-                    dgrC.cLow[i]>0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]>0))) {
-                showErrMsgBx(String.format(msg, namn.identC[i], "positive", nl,"<",nl),1);
-                return false;}
-            if(pos[i] && (dgrC.hur[i] !=3 &&  //not LTV
-                    (dgrC.cLow[i]<0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]<0)))) {
-                showErrMsgBx(String.format(msg, namn.identC[i], "negative", nl,">",nl),1);
-                return false;
-            }
-        } //if pos or neg
-    } //for i
-
-    // OK so far. Update "nx" (=nbr of soluble complexes)
-    cs.nx = mg - cs.Na;
-    return true;
-
+    return SEDBatch.checkInput(ch, calcActCoeffs, reversedConcs, pos, neg,
+            new SEDBatch.Messages() {
+                @Override public void error(String msg) {showErrMsgBx(msg,1);}
+                @Override public boolean proceed(String msg, int type) {return showErrMsgBxCancel(msg,type);}
+            }, dbg, out);
   } // checkInput()
-
-//<editor-fold defaultstate="collapsed" desc="getNameLength(species)">
-    private static int getNameLength(String species) {
-        int nameL = Math.max(1, Util.rTrim(species).length());
-        if(nameL < 3) {return nameL;}
-        // Correct name length if there is a space between name and charge
-        // "H +",  "S 2-",  "Q 23+"
-        int sign; int ik;
-        sign =-1;
-        for(ik =nameL-1; ik >= 2; ik--) {
-            char c = species.charAt(ik);
-            if(c == '+' || c == '-' ||
-               // unicode en dash or unicode minus
-               c =='\u2013' || c =='\u2212') {sign = ik; break;}
-            } //for ik
-        if(sign <2) {return nameL;}
-        if(sign < nameL-1 &&
-                (Character.isLetterOrDigit(species.charAt(sign+1)))) {return nameL;}
-        if(species.charAt(sign-1) == ' ')
-                        {nameL = nameL-1; return nameL;}
-        if(nameL >=4) {
-                if(species.charAt(sign-1) >= '2' && species.charAt(sign-1) <= '9' &&
-                   species.charAt(sign-2) == ' ')
-                        {nameL = nameL-1; return nameL;}
-        } //if nameL >=4
-        if(nameL >=5) {
-                if((species.charAt(sign-1) >= '0' && species.charAt(sign-1) <= '9') &&
-                   (species.charAt(sign-2) >= '1' && species.charAt(sign-2) <= '9') &&
-                   species.charAt(sign-3) == ' ')
-                        {nameL = nameL-1;}
-            } //if nameL >=5
-        return nameL;
-    } // getNameLength(species)
-//</editor-fold>
-
 //</editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="dispatchArg">
@@ -1985,6 +1704,21 @@ private boolean dispatchArg(String arg) {
                 } //catch
             }// = or :
         } // if starts with "-tol"
+        if(arg0.startsWith("-par") || arg0.startsWith("/par")) {
+            if(arg.charAt(4) == '=' || arg.charAt(4) == ':') {
+                String t = arg.substring(5);
+                try {nThreads = Integer.parseInt(t);
+                    nThreads = Math.min(NTHREADS_MAX, Math.max(nThreads, 1));
+                    if(dbg) {out.println("Number of threads in the calculations = "+nThreads);}
+                    return true;
+                    } //try
+                catch (NumberFormatException nfe) {
+                msg = "Wrong numeric format for number of threads in \""+t+"\"";
+                nThreads = 1;
+                break;
+                } //catch
+            }// = or :
+        } // if starts with "-par"
         if(arg0.startsWith("-thr") || arg0.startsWith("/thr")) {
             if(arg.charAt(4) == '=' || arg.charAt(4) == ':') {
                 String t = arg.substring(5);
@@ -2000,6 +1734,12 @@ private boolean dispatchArg(String arg) {
                 } //catch
             }// = or :
         } // if starts with "-thr"
+        String fam = DiagrFamily.option(arg);
+        if(fam != null) {
+            familySpec = fam;
+            if(dbg) {out.println("Diagram family = \""+fam+"\"");}
+            return true;
+        }
     }
 
     if(arg.length() >=6) {
@@ -2091,6 +1831,14 @@ private boolean dispatchArg(String arg) {
         tableOutput = true;
         if(dbg) {out.println("Table output = true");}
         return true;
+    } else if(arg.equalsIgnoreCase("-bin") || arg.equalsIgnoreCase("/bin")) {
+        binaryPlt = true;
+        if(dbg) {out.println("Plot file in binary format");}
+        return true;
+    } else if(arg.equalsIgnoreCase("-accel") || arg.equalsIgnoreCase("/accel")) {
+        actCoefAccel = true;
+        if(dbg) {out.println("Accelerated activity coefficient iterations");}
+        return true;
     } else if(arg.equalsIgnoreCase("-dbg") || arg.equalsIgnoreCase("/dbg")) {
         dbg = true;
         jCheckBoxMenuSEDdebug.setSelected(dbg);
@@ -2353,7 +2101,7 @@ private boolean dispatchArg(String arg) {
       q = n == javax.swing.JOptionPane.NO_OPTION;
     } //not "do not stop":
     if(q) {
-      if(h != null) {h.haltaCancel();}
+      haltaCancel();
       if(tsk != null) {tsk.cancel(true);}
       finishedCalculations = true;
       this.notify_All();
@@ -2362,6 +2110,17 @@ private boolean dispatchArg(String arg) {
   } // quitConfirm(JFrame)
 //</editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="haltaCancel()">
+/** Cancels the HaltaFall calculations, including those running
+ * in other threads when <code>nThreads</code> &gt; 1 */
+private void haltaCancel() {
+    if(h != null) {h.haltaCancel();}
+    synchronized(hWorkers) {
+        for(HaltaFall hw : hWorkers) {hw.haltaCancel();}
+    }
+} // haltaCancel()
+//</editor-fold>
+
 //<editor-fold defaultstate="collapsed" desc="showTheInputFileName">
   /** Show the input data file name in the JFrame (window) */
   private void showTheInputFileName(java.io.File dataFile) {
@@ -2579,6 +2338,97 @@ private class outFilteredStreamSED extends java.io.FilterOutputStream {
     } // getTheInputFileName()
 //</editor-fold>
 
+//<editor-fold defaultstate="collapsed" desc="setFamilyMember">
+/** Moves to the next member of the diagram family: takes a new copy of the
+ * chemical system and sets the values (ionic strength, temperature, pressure
+ * or concentration) and the plot file name for the member. */
+  private void setFamilyMember() {
+    try {ch = family.next();}
+    catch (Chem.ChemicalParameterException ex) { // this should not occur, but you never know
+        showErrMsgBx(ex);
+        family = null;
+        return;
+    }
+    cs = ch.chemSystem;
+    csC = cs.chemConcs;
+    namn = cs.namn;
+    dgrC = ch.diagrConcs;
+    diag = ch.diag;
+    outputPltFile = family.pltFile();
+    jTextFieldPltFile.setText(outputPltFile.getName());
+    if(family.family.kind == DiagrFamily.IONIC_STRENGTH) {
+        ionicStrength = Math.max(-1,Math.min(1000,family.value()));
+        if(ionicStrength < 0) {ionicStrength = -1;}
+        calcActCoeffs = Math.abs(ionicStrength) > 1e-10;
+        if(!calcActCoeffs) {ionicStrength = 0;}
+        jTextFieldIonicStgr.setText(String.valueOf(ionicStrength));
+        jCheckActCoeff.setSelected(calcActCoeffs);
+        showActivityCoefficientControls(calcActCoeffs);
+    } else if(family.family.kind == DiagrFamily.TEMPERATURE) {
+        jLabelTemperature.setText(String.valueOf(Math.min(1000,Math.max(family.value(),-10))));
+    } else if(family.family.kind == DiagrFamily.PRESSURE) {
+        jLabelPressure.setText(String.valueOf(Math.min(10000,Math.max(family.value(),1))));
+    }
+    String msg = LINE+nl+family.description();
+    out.println(msg);
+    if(consoleOutput) {System.out.println(msg);}
+  } //setFamilyMember
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="calculateFamily">
+/** Calculates all the members of a diagram family with
+ * <code>SEDBatch.calculateFamily</code>, several members at the same time,
+ * each diagram saved in its own plot file. Used when the program is run
+ * from the command line with "-nostop" (and without "-keep" or "-tbl"):
+ * the diagrams are not displayed, and the program ends when all the
+ * members are finished.
+ * @param fam the members of the family */
+  private void calculateFamily(final DiagrFamily fam) {
+    final SEDBatch.Options opt = new SEDBatch.Options();
+    opt.nSteps = dbg ? nSteps : jScrollBarNbrPoints.getValue();
+    opt.ionicStrength = calcActCoeffs ? ionicStrength : 0;
+    opt.activityCoeffsModel = jComboBoxModel.getSelectedIndex();
+    opt.temperature = readTemperature();
+    opt.pressure = readPressure();
+    opt.tolHalta = tolHalta;
+    opt.actCoefAccel = actCoefAccel;
+    opt.reversedConcs = reversedConcs;
+    opt.storeResults = false;
+    opt.pathSIT = pathApp;
+    opt.pltFile = outputPltFile;
+    opt.binaryPlt = binaryPlt;
+    opt.conc_units = conc_units;
+    opt.conc_nottn = conc_nottn;
+    opt.threshold = threshold;
+    opt.tHeight = jScrollBarHeight.getValue()/10;
+    opt.dbg = dbg;
+    opt.out = out;
+    // unless "-par" is given, as many members as processors at the same time
+    final int n = nThreads > 1 ? nThreads : Runtime.getRuntime().availableProcessors();
+    String msg = LINE+nl+"Diagram family: "+fam.size()+" members, calculated "+
+            Math.max(1,Math.min(n, fam.size()))+" at a time";
+    out.println(msg);
+    if(consoleOutput) {System.out.println(msg);}
+    finishedCalculations = false;
+    Thread t = new Thread() {@Override public void run(){
+      try {
+        SEDBatch.Result[] r = SEDBatch.calculateFamily(ch, opt, fam, n);
+        for(int m = 0; m < r.length; m++) {
+            String msg2 = "Saved plot file: \""+fam.memberFile(outputPltFile, m).getAbsolutePath()+"\"";
+            if(r[m].nbrErrors >0) {msg2 = msg2+nl+String.format("   calculations failed for %d",r[m].nbrErrors).trim()+" point(s).";}
+            out.println(msg2);
+            System.out.println(msg2);
+        }
+      } catch (SEDBatch.BatchException ex) {showErrMsgBx(ex.getMessage(), 1);}
+      finally {
+        finishedCalculations = true;
+        notify_All();
+      }
+    }}; // Thread t
+    t.start();
+  } //calculateFamily
+//</editor-fold>
+
 //<editor-fold defaultstate="collapsed" desc="paintDiagrPanel">
 /** used when constructing the jPanelDiagram:
  * <pre>jPanelDiagram = new javax.swing.JPanel() {@Override
@@ -2602,11 +2452,18 @@ private class outFilteredStreamSED extends java.io.FilterOutputStream {
     if(out == null) {out = System.out;}
     out.flush();
     out.println("Possible commands are:"+nl+
+    "  -accel   (speed up the iterations for the activity coefficients)"+nl+
+    "  -bin     (write the plot file in a compact binary format)"+nl+
     "  -d=data-file-name  (input file name)"+nl+
     "  -dbg     (output debug information)"+nl+
     "  -dbgH=n  (level for debug output from HaltaFall"+nl+
     "            in the first calculation point; default ="+Chem.DBGHALTA_DEF+")"+nl+
     "  -eng     (display concentrations in engineering notation)"+nl+
+    "  -fam=family (make a family of diagrams, each saved in its own plot file:"+nl+
+    "            \"-fam=I:0,0.1,1\" for several ionic strengths; \"T:\" for"+nl+
+    "            temperatures; \"P:\" for pressures; \"C:Fe 2+:1E-6,1E-4\" for"+nl+
+    "            concentrations, or \"C:H+:-2/-8,-4/-10\" for concentration ranges;"+nl+
+    "            with -nostop the members are calculated at the same time)"+nl+
     "  -h=nbr   (height factor for labels in the plot)"+nl+
     "  -i=nbr   (ionic strength (the equil. constants are"+nl+
     "            assumed for I=0). Requires a temperature."+nl+
@@ -2617,6 +2474,8 @@ private class outFilteredStreamSED extends java.io.FilterOutputStream {
     "  -n=nbr   (calculation steps along the X-axis; "+(NSTP_MIN)+" to "+(NSTP_MAX)+")"+nl+
     "  -nostop  (do not stop for warnings)"+nl+
     "  -p=output-plot-file-name"+nl+
+    "  -par=nbr (number of threads (1 to "+NTHREADS_MAX+") used in the calculations;"+nl+
+    "            default =1; use for example the nbr. of processors)"+nl+
     "  -pr=nbr  (pressure in bar; displayed in the diagram)"+nl+
     "  -rev     (do not reverse the input min. and max. limits in x-axis)"+nl+
     "  -sci     (display concentrations in scientific notation)"+nl+
@@ -3013,8 +2872,7 @@ void showMsg(Exception ex) {
     if(!diag.Eh && !calcActCoeffs) {
         if(dbg) {out.println(" (Note: temperature not needed in the diagram)");}
     } else {
-        double pSat;
-        try {pSat= lib.kemi.H2O.IAPWSF95.pSat(diag.temperature);}
+        try {SEDBatch.setPressure(diag, out);}
         catch (Exception ex) {
             out.println("\"IAPWSF95.pSat\": "+ex.getMessage());
             out.println("Calculations cancelled.");
@@ -3022,21 +2880,6 @@ void showMsg(Exception ex) {
             setCursorDef();
             return;
         }
-        if(Double.isNaN(diag.pressure)){diag.pressure = 1.;}
-        if(diag.temperature <= 99.61) {
-            if(diag.pressure < 1.) {
-                out.println("tC = "+diag.temperature+", pBar = "+diag.pressure+", setting pBar = 1.");
-            }
-            diag.pressure = Math.max(1.,diag.pressure);
-        }
-        // if pressure = 1 bar and temperature = 0, set temperature to 0.01 C (tripple point of water)
-        if(diag.pressure >0.99999 && diag.pressure < 1.00001 && Math.abs(diag.temperature) < 0.001) {diag.temperature = 0.01;}
-        if(diag.temperature <= 373.95) { // below critical point
-            if(diag.pressure < (pSat*0.999)) {
-                out.println("tC = "+diag.temperature+", pBar = "+diag.pressure+",  setting pBar = "+(float)pSat);
-                diag.pressure = pSat;
-            }
-        }
     }
     if(diag.Eh) {peEh = (ln10*8.3144126d*(diag.temperature+273.15d)/96484.56d);} else {peEh = Double.NaN;}
     // nbr of calculation steps
@@ -3055,7 +2898,9 @@ void showMsg(Exception ex) {
 
     // ---------------------------------------
     // get an instance of Plot
-    plot = new Plot(this, err, out);
+    plot = new Plot(err, out);
+    plot.dbg = dbg;
+    plot.nSteps = nSteps;
     //---- set up some arrays
     plot.preparePlot(ch);
     // ---------------------------------------
@@ -3085,37 +2930,8 @@ void showMsg(Exception ex) {
 
     int j;
     // ---- Store given conc. ranges in array bt[Na][nSteps+1]
-    bt = new double[cs.Na][nSteps1];
-    for(j =0; j < cs.Na; j++) {
-        if(dgrC.hur[j] ==1 || dgrC.hur[j] ==4) { //T or LA
-            for(int n =0; n < bt[0].length; n++) {bt[j][n] = dgrC.cLow[j];}
-        } //if T or LA
-        else {  //if TV, LTV or LAV
-            double stepX =(dgrC.cHigh[j] - dgrC.cLow[j]) / nSteps;
-            bt[j][0] = dgrC.cLow[j];
-            for(int n =1; n < (bt[0].length-1); n++) {bt[j][n] = bt[j][n-1] + stepX;}
-            bt[j][nSteps] = dgrC.cHigh[j]; // to avoid rounding errors
-            if(dgrC.hur[j] ==3) { // LTV
-                for(int n =0; n < bt[0].length; n++)
-                    {bt[j][n] = Math.exp(ln10*bt[j][n]);}
-            } //if LTV
-        }  //if TV, LTV or LAV
-    } //for j
-
-    // check POS and NEG with the Tot.Conc. given in the input
-    for(j =0; j < cs.Na; j++) {
-        if(csC.kh[j] == 2) {continue;} //only it Tot.conc. is given
-        if(!(pos[j] && neg[j]) && (pos[j] || neg[j])) {
-            if(dgrC.hur[j] !=3 &&  //not LTV
-               dgrC.cLow[j]==0 && (Double.isNaN(dgrC.cHigh[j]) || dgrC.cHigh[j]==0)) {
-                    //it is only POS or NEG and Tot.Conc =0
-                    for(int n =0; n < bt[0].length; n++) {bt[j][n] = -9999.;}
-                    csC.kh[j] =2; //kh=2 means logA given
-                    if(dbg) {out.println("Can not calculate mass-balance for for component \""+namn.identC[j]+"\""+nl+
-                        "   its log(activity) will be set to -9999.");}
-            }
-        }
-    } //for j
+    bt = SEDBatch.concSteps(ch, nSteps, pos, neg, dbg, out);
+    plot.bt = bt;
 
     calculationStart = System.nanoTime();
 
@@ -3143,22 +2959,27 @@ void showMsg(Exception ex) {
     // ---- table output?
     if(inputDataFile == null) {tableOutput = false;}
     if(tableOutput) {
-        table = new Table(this, err, out);
+        table = new Table(this, plot, err, out);
         String txt = inputDataFile.getAbsolutePath();
         if(tblExtension == null) {tblExtension = "";}
         if(tblExtension.startsWith(".")) {tblExtension = tblExtension.substring(1);}
         String tableFileN = txt.substring(0,txt.length()-4).concat(".").concat(tblExtension);
         java.io.File outputTableFile = new java.io.File(tableFileN);
+        if(family != null) {outputTableFile = family.memberFile(outputTableFile);}
         if(!table.tableHeader(ch, outputTableFile)) {
             table = null;
             tableOutput = false;
         }
     }
+    sinks.clear();
+    sinks.add(plot);
+    if(table != null) {sinks.add(table);}
 
     // ---- Initialize variables
     csC.dbg = dbgHalta;
     csC.cont = false;
     csC.tol = tolHalta;
+    csC.actCoefAccel = actCoefAccel;
     for(j =0; j < cs.Na; j++) {
         if(csC.kh[j] == 1) {
             csC.tot[j]=bt[j][0];
@@ -3192,18 +3013,22 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
    * @return true if no error occurs, false otherwise
    * @throws Exception */
   @Override protected Boolean doInBackground() throws Exception {
+    if(nThreads > 1) {return doInBackgroundParallel();}
     //--- do the HaltaFall calculations
     // create an instance of class HaltaFall
+    haltaPool.release(h);
     h = null;
-    try {h = new HaltaFall(cs,factor, out);}
+    try {h = haltaPool.get(cs,factor, out);}
     catch (Chem.ChemicalParameterException ex) { // this should not occur, but you never know
         showErrMsgBx(ex);
         getHaltaInstanceOK = false; // skip the rest of the thread
     }
     if(!getHaltaInstanceOK) {this.cancel(true); return false;}
 
-    int nStepX1, j;
-    double tolHalta0 = csC.tol;
+    int nStepX1;
+    PointSolver solver = new PointSolver(h, dbg, out);
+    // the equilibrium composition at the last point calculated successfully
+    WarmStart warm = new WarmStart();
     final String f = "--- Calculation problem in \"HaltaFall.haltaCalc\" at point=%d, x=%7.5f"+nl+"%s";
     nStepX = -1;
     do_loopX:
@@ -3215,12 +3040,7 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
         //try {Thread.sleep(500);} catch(Exception ex) {}
 
         // --- input data for this calculation point
-        for(j =0; j < cs.Na; j++) {
-            if(dgrC.hur[j] >1 && dgrC.hur[j] !=4) { //TV, LTV or LAV
-                if(csC.kh[j] == 1) {csC.tot[j]=bt[j][nStepX];}
-                else {csC.logA[j]=bt[j][nStepX];}
-            } //if TV, LTV or LAV
-        } // for j
+        SEDBatch.setPoint(csC, dgrC, bt, nStepX);
 
         // ------ print debug output from HaltaFall only for the first point (first point = zero) ------
         if(nStepX == 0) {
@@ -3241,32 +3061,16 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
             }   // ########## ---------- ##########  ---------- ########## ##?## */
         }
 
+        // --- if the calculation failed at the previous point, start from
+        //     the last point that was calculated successfully
+        if(!csC.cont) {h.warmStartRestore(warm);}
         // --- HaltaFall: do the calculations
         //     calculate the equilibrium composition of the system
         try {
-            csC.tol = tolHalta0;
-            h.haltaCalc();
-            if(csC.isErrFlagsSet(2)) { // too many iterations when solving the mass balance equations
-                do {
-                    csC.tol = csC.tol * 0.1; // decrease tolerance and try again
-                    if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                        out.println("Too many iterations when solving the mass balance equations"+nl+
-                                "  decreasing tolerance to: "+(float)csC.tol+" and trying again.");
-                    }
-                    h.haltaCalc();
-                } while (csC.isErrFlagsSet(2) && csC.tol >= 1e-9);
-                csC.tol = tolHalta0;
-                if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                    out.println("Restoring tolerance to: "+(float)tolHalta0+" for next calculations.");
-                }
-            }
-            if(csC.isErrFlagsSet(3)) { // failed to find a satisfactory combination of solids
-                if(dbg || csC.dbg > Chem.DBGHALTA_DEF) {
-                    out.println("Failed to find a satisfactory combination of solids. Trying again...");
-                }
-                csC.cont = false;      // try again
-                h.haltaCalc();
+            if(!solver.solve()) {
+                solver.failure(String.format(engl,f,nStepX1,(float)bt[diag.compX][nStepX],csC.errFlagsGetMessages()));
             }
+            if(csC.cont) {h.warmStartSave(warm);}
         }
         catch (Chem.ChemicalParameterException ex) {
             String ms = "Error in \"HaltaFall.haltaCalc\", "+ex.getMessage()+nl+
@@ -3281,15 +3085,6 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
 
         out.flush();
 
-        if(csC.isErrFlagsSet(1)) {nbrHaltaUncertain++;}
-        if(csC.isErrFlagsSet(5)) {nbrTooLargeConcs++;}
-        if(csC.isErrFlagsSet(2) || csC.isErrFlagsSet(3) || csC.isErrFlagsSet(4)
-                            || csC.isErrFlagsSet(6)) {
-            nbrHaltaErrors++;
-            if(failuresMsg.length() >0) {failuresMsg.append(nl);}
-            failuresMsg.append(String.format(engl,f,nStepX1,(float)bt[diag.compX][nStepX],csC.errFlagsGetMessages()));
-        }
-
         if(dbg) {
             h.printConcs();
             factor.printActivityCoeffs(out);
@@ -3298,11 +3093,190 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
         if(finishedCalculations) {break;} // do_loopX  // user request exit?
 
         // store the results for later plotting (and table output)
-        plot.storePlotData(nStepX, ch);
-        if(table != null) {table.tableBody(nStepX, ch);}
+        for(ResultSink s : sinks) {s.point(nStepX, ch);}
     } while (nStepX < nSteps); // -------------------------- Loop for X-axis
+    addCounts(solver);
+    return true;
+  }
+
+  /** Adds the problems found by a <code>PointSolver</code> to those reported
+   * when the calculations are finished
+   * @param solver used for some of the calculation points */
+  private synchronized void addCounts(PointSolver solver) {
+    nbrHaltaUncertain = nbrHaltaUncertain + solver.nbrUncertain;
+    nbrTooLargeConcs = nbrTooLargeConcs + solver.nbrTooLargeConcs;
+    nbrHaltaErrors = nbrHaltaErrors + solver.nbrErrors;
+    if(solver.failures.length() >0) {
+        if(failuresMsg.length() >0) {failuresMsg.append(nl);}
+        failuresMsg.append(solver.failures);
+    }
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="parallel calculations">
+  /** the results for each calculated point, stored by the threads until
+   * they are all finished: concentrations, log(activities), etc */
+  private double[][] rC, rLogA, rLogf, rTot, rSolub;
+  /** the error flags, ionic strength, sum of molalities and osmotic
+   * coefficient for each calculated point */
+  private int[] rErrFlags;
+  private double[] rIonicStr, rSumM, rPhi;
+  /** <code>pointDone[n]</code> is true when point "n" has been calculated */
+  private boolean[] pointDone;
+  /** number of points calculated so far (for the progress report) */
+  private final java.util.concurrent.atomic.AtomicInteger nbrDone =
+          new java.util.concurrent.atomic.AtomicInteger(0);
+
+  /** The X-axis is divided into contiguous chunks which are calculated in a
+   * ForkJoinPool with <code>nThreads</code> threads. Each chunk uses its own
+   * copy of the chemical system and its own instances of <code>Factor</code>
+   * and <code>HaltaFall</code>. The first point of the X-axis is calculated
+   * before the other points are divided into chunks, and its equilibrium
+   * composition is the starting point for the first point in every chunk;
+   * the following points start from the composition of the point before.
+   * The results are stored
+   * and, when all chunks are finished, given to the <code>ResultSink</code>s
+   * (<code>Plot</code>, <code>Table</code>, etc) in the order of the X-axis,
+   * as in the sequential calculations.
+   * @return true if no error occurs, false otherwise */
+  private boolean doInBackgroundParallel() {
+    final int nP = nSteps+1;
+    rC = new double[nP][csC.C.length]; rLogA = new double[nP][csC.logA.length];
+    rLogf = new double[nP][csC.logf.length];
+    rTot = new double[nP][csC.tot.length]; rSolub = new double[nP][csC.solub.length];
+    rErrFlags = new int[nP];
+    rIonicStr = new double[nP]; rSumM = new double[nP]; rPhi = new double[nP];
+    pointDone = new boolean[nP];
+    final int width = Math.max(1, (int)Math.ceil((double)(nP-1)/(double)nThreads));
+    if(dbg) {out.println("Calculations using "+nThreads+" threads, in chunks of "+width+" points.");}
+    h = null;
+    hWorkers.clear();
+    // the first point: its equilibrium composition is the starting point for all chunks
+    final WarmStart seed = calcChunk(0, 1, null);
+    if(!finishedCalculations && !haltaError && getHaltaInstanceOK) {
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(nThreads);
+        try {pool.invoke(new ChunkTask(1, nP, width, seed));}
+        finally {pool.shutdown();}
+    }
+    hWorkers.clear();
+    if(!getHaltaInstanceOK) {this.cancel(true); return false;}
+    if(haltaError) {return true;}
+    // --- store the results for plotting (and table output) in the order of the X-axis
+    nStepX = -1;
+    while((nStepX+1) < nP && pointDone[nStepX+1]) {
+        nStepX++;
+        System.arraycopy(rC[nStepX], 0, csC.C, 0, csC.C.length);
+        System.arraycopy(rLogA[nStepX], 0, csC.logA, 0, csC.logA.length);
+        System.arraycopy(rLogf[nStepX], 0, csC.logf, 0, csC.logf.length);
+        System.arraycopy(rTot[nStepX], 0, csC.tot, 0, csC.tot.length);
+        System.arraycopy(rSolub[nStepX], 0, csC.solub, 0, csC.solub.length);
+        csC.errFlags = rErrFlags[nStepX];
+        diag.ionicStrCalc = rIonicStr[nStepX];
+        diag.sumM = rSumM[nStepX];
+        diag.phi = rPhi[nStepX];
+        for(ResultSink s : sinks) {s.point(nStepX, ch);}
+    }
     return true;
   }
+
+  /** Calculates a chunk of points, or divides it in two chunks if it is too large */
+  private class ChunkTask extends java.util.concurrent.RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final int from, to, width;
+    private final WarmStart seed;
+    /** @param from the first point in this chunk
+     * @param to the last point +1
+     * @param width the maximum number of points calculated in a single chunk
+     * @param seed the starting point for the first point in each chunk, or null */
+    ChunkTask(int from, int to, int width, WarmStart seed) {
+        this.from = from; this.to = to; this.width = width; this.seed = seed;
+    }
+    @Override protected void compute() {
+        if((to - from) <= width) {calcChunk(from, to, seed); return;}
+        int mid = (from + to) >>> 1;
+        invokeAll(new ChunkTask(from, mid, width, seed), new ChunkTask(mid, to, width, seed));
+    }
+  } // class ChunkTask
+
+  /** Performs the HaltaFall calculations for the points from
+   * <code>from</code> to <code>to-1</code> along the X-axis, using copies of
+   * the chemical system and of the instances of <code>Factor</code> and <code>HaltaFall</code>.
+   * @param from the first point
+   * @param to the last point +1
+   * @param seed the starting point for the first point (it is not changed),
+   * and for any point after a failed calculation; if null the first point
+   * is calculated from scratch
+   * @return the equilibrium composition at the last point calculated
+   * successfully (it may be empty) */
+  private WarmStart calcChunk(final int from, final int to, final WarmStart seed) {
+    WarmStart warm = new WarmStart();
+    if(finishedCalculations || haltaError || !getHaltaInstanceOK) {return warm;}
+    final Chem chW;
+    final HaltaFall hW;
+    try {
+        chW = ch.copyChem();
+        Factor factorW = new Factor(chW, pathApp, System.getProperty("user.home"), pathDef.toString(), out);
+        hW = haltaPool.get(chW.chemSystem, factorW, out);
+    } catch (Exception ex) { // this should not occur, but you never know
+        showErrMsgBx(ex);
+        getHaltaInstanceOK = false;
+        return warm;
+    }
+    hWorkers.add(hW);
+    final Chem.ChemSystem.ChemConcs csCW = chW.chemSystem.chemConcs;
+    final String f = "--- Calculation problem in \"HaltaFall.haltaCalc\" at point=%d, x=%7.5f"+nl+"%s";
+    final PointSolver solver = new PointSolver(hW, dbg, out);
+    csCW.cont = false;
+    try {
+      for(int n = from; n < to; n++) {
+        // --- input data for this calculation point
+        SEDBatch.setPoint(csCW, dgrC, bt, n);
+        // ------ print debug output from HaltaFall only for the first point ------
+        if(n == 0) {
+            if(dbg || csCW.dbg > Chem.DBGHALTA_DEF) {
+                out.println("Starting calculation point: 1 (of "+(nSteps+1)+"), x="+(float)bt[diag.compX][n]);
+            }
+        } else {csCW.dbg = Chem.DBGHALTA_DEF;}
+        // --- start from the point before, or from the seed for the first
+        //     point and when the calculations have failed at all points so far
+        if(!csCW.cont && !hW.warmStartRestore(warm)) {hW.warmStartRestore(seed);}
+        // --- HaltaFall: do the calculations
+        try {
+            if(!solver.solve()) {
+                solver.failure(String.format(engl,f,(n+1),(float)bt[diag.compX][n],csCW.errFlagsGetMessages()));
+            }
+            if(csCW.cont) {hW.warmStartSave(warm);}
+        }
+        catch (Chem.ChemicalParameterException ex) {
+            String ms = "Error in \"HaltaFall.haltaCalc\", "+ex.getMessage()+nl+
+                    "   at point: "+(n+1)+"  x="+bt[diag.compX][n]+nl+
+                    Util.stack2string(ex);
+            showErrMsgBx(ms, 1);
+            haltaError = true;
+            return warm;
+        }
+        if(finishedCalculations || haltaError) {return warm;} // user request exit?
+
+        // --- keep the results until all points are calculated
+        System.arraycopy(csCW.C, 0, rC[n], 0, rC[n].length);
+        System.arraycopy(csCW.logA, 0, rLogA[n], 0, rLogA[n].length);
+        System.arraycopy(csCW.logf, 0, rLogf[n], 0, rLogf[n].length);
+        System.arraycopy(csCW.tot, 0, rTot[n], 0, rTot[n].length);
+        System.arraycopy(csCW.solub, 0, rSolub[n], 0, rSolub[n].length);
+        rErrFlags[n] = csCW.errFlags;
+        rIonicStr[n] = chW.diag.ionicStrCalc;
+        rSumM[n] = chW.diag.sumM;
+        rPhi[n] = chW.diag.phi;
+        pointDone[n] = true;
+        publish(nbrDone.incrementAndGet());
+      } // for n
+    } finally {
+        hWorkers.remove(hW);
+        haltaPool.release(hW);
+        addCounts(solver);
+    }
+    return warm;
+  } // calcChunk
+  //</editor-fold>
   /** Performs some tasks after the calculations have been finished */
   @Override protected void done() {
     if(isCancelled()) {
@@ -3341,18 +3315,26 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
                 out.println(LINE);
             }
 
+            plot.binaryPlt = binaryPlt;
+            plot.conc_units = conc_units;
+            plot.conc_nottn = conc_nottn;
+            plot.peEh = peEh;
+            plot.tHeight = tHeight;
             out.println("Saving plot file \""+outputPltFile.getAbsolutePath()+"\"...");
             try{plot.drawPlot(outputPltFile, ch);}
             catch (Exception ex) {
               showErrMsgBx("Error: "+ex.getMessage()+nl+
                   "while saving plot file \""+outputPltFile.getAbsolutePath()+"\"", 1);
             }
+            dd = plot.dd;
+            conc_units = plot.conc_units;
+            conc_nottn = plot.conc_nottn;
             if(outputPltFile != null && outputPltFile.getName().length()>0) {
                 String msg3 = "Saved plot file: \""+outputPltFile.getAbsolutePath()+"\"";
                 out.println(msg3);
                 System.out.println(msg3);
             }
-            if(table != null) {table.tableClose();}
+            for(ResultSink s : sinks) {s.close();}
         } // if !haltaError
 
         // execute the following actions on the event-dispatching Thread
@@ -3377,6 +3359,21 @@ public class HaltaTask extends javax.swing.SwingWorker<Boolean, Integer> {
     }
     out.println(LINE);
     System.out.println(LINE);
+    if(family != null) {
+        if(!isCancelled() && getHaltaInstanceOK && !haltaError
+                && family.hasNext()) {
+            // the next member of the diagram family
+            javax.swing.SwingUtilities.invokeLater(new Runnable() {@Override public void run() {
+                setFamilyMember();
+                finishedCalculations = true; // set to false when the calculations start
+                doCalculations();
+                if(finishedCalculations) {sedFrame.notify_All();}
+            }}); // invokeLater
+            setCursorDef();
+            return;
+        }
+        family = null;
+    }
     finishedCalculations = true;
     sedFrame.notify_All();
     setCursorDef();
@@ -0,0 +1,911 @@
+package simpleEquilibriumDiagrams;
+
+import lib.common.Util;
+import lib.kemi.chem.Chem;
+import lib.kemi.chem.DiagrFamily;
+import lib.kemi.graph_lib.GraphLib;
+import lib.kemi.haltaFall.Factor;
+import lib.kemi.haltaFall.HaltaFall;
+import lib.kemi.haltaFall.PointSolver;
+import lib.kemi.haltaFall.WarmStart;
+import lib.kemi.readDataLib.ReadDataLib;
+import lib.kemi.readWriteDataFiles.ReadChemSyst;
+
+/** Calculations for a Simple Equilibrium Diagram without a graphical user
+ * interface. Nothing in this class uses Swing or AWT, and it may be used
+ * by other programs, also when <code>java.awt.headless=true</code>:
+ * <pre>
+ *  SEDBatch.Options opt = new SEDBatch.Options();
+ *  opt.nSteps = 100;
+ *  Chem ch = SEDBatch.readDataFile(new java.io.File("Fe.dat"), opt);
+ *  SEDBatch.Result r = SEDBatch.calculate(ch, opt);
+ *  ... r.x[n], r.logA[n][i], r.C[n][i] ...
+ * </pre>
+ * The checks of the input data, and the concentrations at each calculation
+ * step, are made by static methods that are also used by class <code>SED</code>.
+ * The results are returned as arrays, and (or) given one point at a time
+ * to a <code>ResultSink</code> (<code>opt.sink</code>). If
+ * <code>opt.pltFile</code> is not null the diagram is also saved in a plot
+ * file, with the same methods (class <code>Plot</code>) used by <code>SED</code>.
+ * The members of a diagram family (see <code>DiagrFamily</code>) are
+ * calculated in parallel by <code>calculateFamily</code>.
+ * <br>
+ * Copyright (C) 2014-2020 I.Puigdomenech.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/
+ *
+ * @author Ignasi Puigdomenech */
+public class SEDBatch {
+  private static final String nl = System.getProperty("line.separator");
+  private static final java.util.Locale engl = java.util.Locale.ENGLISH;
+  private static final double ln10 = Math.log(10);
+  /** the minimum number of calculation steps */
+  private static final int NSTP_MIN = 4;
+
+  private SEDBatch() {}
+
+//<editor-fold defaultstate="collapsed" desc="Options, Result, Messages, BatchException">
+/** The options for the calculations */
+public static class Options implements Cloneable {
+  /** the number of calculation steps along the X-axis (the number of
+   * calculated points is nSteps+1) */
+  public int nSteps = 50;
+  /** the ionic strength: zero for ideal solutions (activity coefficients
+   * equal to one), or negative to calculate the ionic strength at each point */
+  public double ionicStrength = 0;
+  /** the model for the activity coefficients, used if the ionic strength is
+   * not zero: =0 Davies eqn; =1 SIT; =2 simplified HKF
+   * @see lib.kemi.chem.Chem.Diagr#activityCoeffsModel Chem.Diagr.activityCoeffsModel */
+  public int activityCoeffsModel = 0;
+  /** the temperature in degrees Celsius. If NaN: the temperature given in the
+   * data file is used, or 25 C if the data file has none */
+  public double temperature = Double.NaN;
+  /** the pressure in bar. If NaN: the pressure given in the
+   * data file is used, or 1 bar if the data file has none */
+  public double pressure = Double.NaN;
+  /** relative tolerance when solving the mass balance equations in HaltaFall */
+  public double tolHalta = Chem.TOL_HALTA_DEF;
+  /** if true the activity coefficient iterations in HaltaFall are accelerated
+   * (see <code>Chem.ChemSystem.ChemConcs.actCoefAccel</code>) */
+  public boolean actCoefAccel = false;
+  /** relative change of the ionic strength below which the Davies and HKF
+   * activity coefficients are not recalculated
+   * (see <code>Chem.Diagr.ionicStrTol</code>) */
+  public double ionicStrTol = 0;
+  /** if false, concentration ranges in the data file given as "high to low"
+   * are reversed to "low to high" (as in the command-line of SED) */
+  public boolean reversedConcs = false;
+  /** if not null, receives the results at each point as soon as it is
+   * calculated (and <code>close()</code> is called after the last point) */
+  public ResultSink sink = null;
+  /** if false, the arrays <code>logA, C, logf, tot</code> and <code>solub</code>
+   * of the <code>Result</code> are not filled (they are null), so that the
+   * memory needed does not grow with the number of species times the number
+   * of points; the results are then only available through <code>sink</code> */
+  public boolean storeResults = true;
+  /** a directory where the SIT-file is searched (besides the
+   * user's home directory and the current directory), or null */
+  public String pathSIT = null;
+  /** if not null, the diagram is saved in this plot file
+   * (the name should end with ".plt") */
+  public java.io.File pltFile = null;
+  /** if true the plot file is written in the compact binary format
+   * (see <code>lib.kemi.graph_lib.PltFile</code>) instead of as a text file */
+  public boolean binaryPlt = false;
+  /** the concentration units in the diagram:<ul><li>0="molal"</li>
+   * <li>1="mol/kg_w"</li><li>2="M"</li><li>-1=""</li></ul>
+   * 0 is changed to "M" at temperatures around 25 C and low pressures */
+  public int conc_units = 0;
+  /** the notation for concentrations in the diagram: 0 = no choice
+   * (engineering); 1 = scientific; 2 = engineering */
+  public int conc_nottn = 0;
+  /** height scale for the texts in the diagram (between 0.3 and 10) */
+  public double tHeight = 1;
+  /** in fraction diagrams, the curves of the species whose fraction is
+   * always below this value are not drawn
+   * (see <code>Chem.Diagr.fractionThreshold</code>) */
+  public float threshold = 0.03f;
+  /** debug output */
+  public boolean dbg = false;
+  /** where messages are printed; if null <code>System.out</code> is used */
+  public java.io.PrintStream out = null;
+  public Options() {}
+  /** @return a copy of these options, with the same values of all fields
+   * (the copy shares the objects <code>out</code>, <code>sink</code> and
+   * <code>pltFile</code>: only the references are copied) */
+  @Override public Options clone() {
+    try {return (Options)super.clone();}
+    catch (CloneNotSupportedException ex) {throw new AssertionError(ex.getMessage());} // Options is Cloneable
+  }
+}
+
+/** The results of the calculations. Arrays are indexed first by the
+ * calculation point <code>n</code> (n = 0 to nSteps) and then by the species
+ * (or component) number. The names of the species are found in
+ * <code>chem.chemSystem.namn</code>. The arrays <code>logA, C, logf, tot</code>
+ * and <code>solub</code> are null if <code>Options.storeResults</code> is false. */
+public static class Result {
+  /** the chemical system and plot information, after the checks of the input */
+  public Chem chem;
+  /** the number of calculation steps */
+  public int nSteps;
+  /** the values along the X-axis, as given in the input: log(activity),
+   * total concentration, or log(total concentration) */
+  public double[] x;
+  /** log10 of the activities of all species, [nSteps+1][Ms] */
+  public double[][] logA;
+  /** the concentrations of all species, [nSteps+1][Ms] */
+  public double[][] C;
+  /** log10 of the activity coefficients of all species, [nSteps+1][Ms] */
+  public double[][] logf;
+  /** the total concentrations of the components, [nSteps+1][Na] */
+  public double[][] tot;
+  /** the solubilities of the components, [nSteps+1][Na] */
+  public double[][] solub;
+  /** the ionic strength at each point (NaN for ideal solutions) */
+  public double[] ionicStr;
+  /** the error flags from HaltaFall at each point
+   * @see lib.kemi.chem.Chem.ChemSystem.ChemConcs#errFlags Chem.ChemSystem.ChemConcs.errFlags */
+  public int[] errFlags;
+  /** the number of points where the calculations failed */
+  public int nbrErrors = 0;
+  /** the number of points where the results are uncertain (errFlags 1) */
+  public int nbrUncertain = 0;
+  /** the number of points with too large concentrations (errFlags 5) */
+  public int nbrTooLargeConcs = 0;
+  /** a description of the points where the calculations failed, or an empty string */
+  public String failures = "";
+  Result() {}
+}
+
+/** Receives the messages from the checks of the input data */
+interface Messages {
+  /** An error: the calculations can not be made
+   * @param msg the message */
+  void error(String msg);
+  /** A warning (or a question)
+   * @param msg the message
+   * @param type =1 error; =2 warning; =3 information
+   * @return true if the calculations are to go on, false to stop */
+  boolean proceed(String msg, int type);
+}
+
+/** The input data or the options can not be used for the calculations */
+public static class BatchException extends Exception {
+  private static final long serialVersionUID = 1L;
+  public BatchException() {super();}
+  public BatchException(String txt) {super(txt);}
+}
+
+/** Messages for the calculations without user interface: errors are
+ * kept (to be thrown as a BatchException) and warnings are printed */
+private static class BatchMessages implements Messages {
+  private final java.io.PrintStream out;
+  private final StringBuilder errors = new StringBuilder();
+  BatchMessages(java.io.PrintStream out) {this.out = out;}
+  @Override public void error(String msg) {
+    if(errors.length() >0) {errors.append(nl);}
+    errors.append(msg);
+  }
+  @Override public boolean proceed(String msg, int type) {
+    out.println(msg);
+    return true;
+  }
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="readDataFile">
+/** Reads a data file (the chemical system and the plot information).
+ * The temperature and pressure found in the data file are stored in
+ * <code>diag.temperature</code> and <code>diag.pressure</code>,
+ * unless they are given in <code>opt</code>.
+ * @param dataFile the input data file, name ending with ".dat"
+ * @param opt the options
+ * @return the chemical system read from the file
+ * @throws simpleEquilibriumDiagrams.SEDBatch.BatchException */
+public static Chem readDataFile(java.io.File dataFile, Options opt) throws BatchException {
+    java.io.PrintStream out = opt.out != null ? opt.out : System.out;
+    if(!dataFile.getName().toLowerCase().endsWith(".dat") || dataFile.getName().length() <= 4) {
+        throw new BatchException("File: \""+dataFile.getName()+"\""+nl+
+                "Error: data file name must end with \".dat\"");
+    }
+    ReadDataLib rd;
+    try {rd = new ReadDataLib(dataFile);}
+    catch (ReadDataLib.DataFileException ex) {throw new BatchException(ex.getMessage());}
+    Chem ch;
+    double t, p;
+    try {
+        try {ch = ReadChemSyst.readChemSystAndPlotInfo(rd, opt.dbg, false, out);}
+        catch (ReadChemSyst.ConcDataException ex) {throw new BatchException(ex.getMessage());}
+        catch (ReadChemSyst.DataLimitsException ex) {throw new BatchException(ex.getMessage());}
+        catch (ReadChemSyst.PlotDataException ex) {throw new BatchException(ex.getMessage());}
+        catch (ReadChemSyst.ReadDataFileException ex) {throw new BatchException(ex.getMessage());}
+        if(ch == null) {throw new BatchException("Error while reading data file \""+dataFile.getName()+"\"");}
+        try {t = rd.getTemperature(); p = rd.getPressure();}
+        catch (ReadDataLib.DataReadException ex) {throw new BatchException(ex.getMessage());}
+    } finally {
+        try {rd.close();} catch (ReadDataLib.ReadDataLibException ex) {out.println(ex.getMessage());}
+    }
+    if(ch.diag.plotType <= 0 || ch.diag.plotType > 8) {
+        String msg = "Error: data file \""+dataFile.getName()+"\""+nl;
+        if(ch.diag.plotType == 0) {msg = msg + "contains information for a Predominance Area Diagram.";}
+        else {msg = msg + "contains erroneous plot information.";}
+        throw new BatchException(msg);
+    }
+    if(!Double.isNaN(opt.temperature)) {t = opt.temperature;} else if(Double.isNaN(t)) {t = 25.;}
+    if(!Double.isNaN(opt.pressure)) {p = opt.pressure;} else if(Double.isNaN(p)) {p = 1.;}
+    ch.diag.temperature = t;
+    ch.diag.pressure = Math.min(10000.,Math.max(p, 1.));
+    return ch;
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="calculate">
+/** Calculates the equilibrium composition at each point of the diagram.
+ * The data in <code>ch</code> are checked and changed (for example, species
+ * with names starting with "*" are removed), so that the same Chem object
+ * should not be given twice to this method (use a copy instead).
+ * If <code>opt.pltFile</code> is not null the diagram is saved in the plot file.
+ * @param ch the chemical system and plot information, for example from
+ * <code>readDataFile</code>
+ * @param opt the options
+ * @return the results of the calculations
+ * @throws simpleEquilibriumDiagrams.SEDBatch.BatchException */
+public static Result calculate(Chem ch, Options opt) throws BatchException {
+    final java.io.PrintStream out = opt.out != null ? opt.out : System.out;
+    final boolean dbg = opt.dbg;
+    Chem.ChemSystem cs = ch.chemSystem;
+    Chem.ChemSystem.ChemConcs csC = cs.chemConcs;
+    Chem.DiagrConcs dgrC = ch.diagrConcs;
+    Chem.Diagr diag = ch.diag;
+    boolean calcActCoeffs = (!Double.isNaN(opt.ionicStrength) && Math.abs(opt.ionicStrength) > 1e-10);
+    // kh=2 log(activity) is given; kh=1 Tot.Conc. is given
+    for(int j =0; j < cs.Na; j++) {if(dgrC.hur[j] >3) {csC.kh[j]=2;} else {csC.kh[j]=1;}}
+    BatchMessages msgs = new BatchMessages(out);
+    boolean[] pos = new boolean[cs.Na];
+    boolean[] neg = new boolean[cs.Na];
+    if(!checkInput(ch, calcActCoeffs, opt.reversedConcs, pos, neg, msgs, dbg, out)) {
+        throw new BatchException(msgs.errors.toString());
+    }
+    diag.fractionThreshold = opt.threshold;
+    //---- Check if "EH" is needed
+    if(diag.Eh && diag.pInX != 3 && diag.plotType != 5) { //plotType=5: pe in Y-axis
+        boolean peGiven = false;
+        for(int i =0; i < cs.Na; i++) {
+            if(Util.isElectron(cs.namn.identC[i]) && csC.kh[i] ==2) {peGiven = true; break;}
+        }
+        if(!peGiven) {diag.Eh = false;}
+    }
+    //--- temperature & pressure
+    if(!Double.isNaN(opt.temperature)) {diag.temperature = opt.temperature;}
+    if(!Double.isNaN(opt.pressure)) {diag.pressure = opt.pressure;}
+    if(Double.isNaN(diag.temperature)) {diag.temperature = 25.;}
+    if(diag.Eh || calcActCoeffs) {
+        try {setPressure(diag, out);}
+        catch (Exception ex) {throw new BatchException("\"IAPWSF95.pSat\": "+ex.getMessage());}
+    }
+    diag.ionicStrength = calcActCoeffs ? opt.ionicStrength : 0;
+    if(calcActCoeffs) {
+        diag.activityCoeffsModel = Math.min(2, Math.max(0, opt.activityCoeffsModel));
+        csC.actCoefCalc = true;
+        csC.actCoefAccel = opt.actCoefAccel;
+        diag.ionicStrTol = Math.max(0, opt.ionicStrTol);
+    } else {
+        diag.activityCoeffsModel = -1;
+        csC.actCoefCalc = false;
+    }
+    final int nSteps = Math.max(NSTP_MIN, opt.nSteps);
+    final double[][] bt = concSteps(ch, nSteps, pos, neg, dbg, out);
+    Plot plot = null;
+    if(opt.pltFile != null) {
+        plot = new Plot(null, out);
+        plot.dbg = dbg;
+        plot.nSteps = nSteps;
+        plot.bt = bt;
+        plot.preparePlot(ch);
+    }
+
+    // ---- Make an instance of Factor
+    Factor factor;
+    try {
+        factor = new Factor(ch, opt.pathSIT, System.getProperty("user.home"), System.getProperty("user.dir"), out);
+        factor.factorPrint(dbg);
+    } catch (Exception ex) {throw new BatchException(ex.getMessage());}
+
+    // ---- Initialize variables
+    csC.dbg = Chem.DBGHALTA_DEF;
+    csC.cont = false;
+    csC.tol = opt.tolHalta;
+    for(int j =0; j < cs.Na; j++) {
+        if(csC.kh[j] == 1) {
+            csC.tot[j]=bt[j][0];
+            csC.logA[j]=-10;
+            if(csC.tot[j]>0) {csC.logA[j] = Math.log10(csC.tot[j]) -3;}
+        }
+        else {csC.logA[j]=bt[j][0];}
+    }
+    HaltaFall h;
+    try {h = new HaltaFall(cs, factor, out);}
+    catch (Chem.ChemicalParameterException ex) {throw new BatchException(ex.getMessage());}
+
+    final int nP = nSteps+1;
+    Result r = new Result();
+    r.chem = ch;
+    r.nSteps = nSteps;
+    r.x = new double[nP];
+    if(opt.storeResults) {
+        r.logA = new double[nP][]; r.C = new double[nP][]; r.logf = new double[nP][];
+        r.tot = new double[nP][]; r.solub = new double[nP][];
+    }
+    r.ionicStr = new double[nP];
+    r.errFlags = new int[nP];
+    final String f = "--- Calculation problem in \"HaltaFall.haltaCalc\" at point=%d, x=%7.5f"+nl+"%s";
+    PointSolver solver = new PointSolver(h, dbg, out);
+    // the equilibrium composition at the last point calculated successfully
+    WarmStart warm = new WarmStart();
+    for(int n = 0; n < nP; n++) {
+        // --- input data for this calculation point
+        setPoint(csC, dgrC, bt, n);
+        if(dgrC.hur[diag.compX] ==3) {r.x[n] = Math.log10(bt[diag.compX][n]);} else {r.x[n] = bt[diag.compX][n];}
+        if(!csC.cont) {h.warmStartRestore(warm);}
+        try {
+            if(!solver.solve()) {
+                solver.failure(String.format(engl,f,n+1,(float)r.x[n],csC.errFlagsGetMessages()));
+            }
+            if(csC.cont) {h.warmStartSave(warm);}
+        } catch (Chem.ChemicalParameterException ex) {
+            throw new BatchException("Error in \"HaltaFall.haltaCalc\", "+ex.getMessage()+nl+
+                    "   at point: "+(n+1)+"  x="+(float)r.x[n]);
+        }
+        if(dbg) {h.printConcs(); factor.printActivityCoeffs(out);}
+        // --- store the results
+        if(opt.storeResults) {
+            r.logA[n] = java.util.Arrays.copyOf(csC.logA, cs.Ms);
+            r.C[n] = java.util.Arrays.copyOf(csC.C, cs.Ms);
+            r.logf[n] = java.util.Arrays.copyOf(csC.logf, cs.Ms);
+            r.tot[n] = java.util.Arrays.copyOf(csC.tot, cs.Na);
+            r.solub[n] = java.util.Arrays.copyOf(csC.solub, cs.Na);
+        }
+        r.ionicStr[n] = calcActCoeffs ? factor.ionicStr : Double.NaN;
+        r.errFlags[n] = csC.errFlags;
+        if(opt.sink != null) {opt.sink.point(n, ch);}
+        if(plot != null) {plot.point(n, ch);}
+    }
+    if(opt.sink != null) {opt.sink.close();}
+    r.nbrUncertain = solver.nbrUncertain;
+    r.nbrTooLargeConcs = solver.nbrTooLargeConcs;
+    r.nbrErrors = solver.nbrErrors;
+    r.failures = solver.failures.toString();
+    if(plot != null) {
+        plot.binaryPlt = opt.binaryPlt;
+        plot.conc_units = opt.conc_units;
+        plot.conc_nottn = opt.conc_nottn;
+        if(diag.Eh) {plot.peEh = (ln10*8.3144126d*(diag.temperature+273.15d)/96484.56d);}
+        plot.tHeight = Math.min(10.d,Math.max(opt.tHeight, 0.3));
+        out.println("Saving plot file \""+opt.pltFile.getAbsolutePath()+"\"...");
+        try {plot.drawPlot(opt.pltFile, ch);}
+        catch (GraphLib.WritePlotFileException ex) {
+            throw new BatchException("Error: "+ex.getMessage()+nl+
+                  "while saving plot file \""+opt.pltFile.getAbsolutePath()+"\"");
+        }
+    }
+    return r;
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="calculateFamily">
+/** Calculates all the members of a diagram family. Each member is
+ * calculated with a copy of <code>ch</code> (which is not changed) and with
+ * the ionic strength, temperature, pressure or concentration of the member
+ * replacing those in <code>opt</code> (or in <code>ch</code>). The members
+ * are calculated in parallel, in a ForkJoinPool with <code>nThreads</code>
+ * threads. <code>opt.sink</code> is not used: it is not possible to tell
+ * the points of the different members apart. If <code>opt.pltFile</code>
+ * is not null each member is saved in its own plot file, named as given
+ * by <code>DiagrFamily.memberFile</code>.
+ * @param ch the chemical system and plot information, for example from
+ * <code>readDataFile</code>
+ * @param opt the options
+ * @param family the members of the family
+ * @param nThreads the number of members calculated at the same time
+ * @return the results for each member of the family
+ * @throws simpleEquilibriumDiagrams.SEDBatch.BatchException if the calculations
+ * fail for any of the members */
+public static Result[] calculateFamily(final Chem ch, final Options opt,
+        final DiagrFamily family, int nThreads) throws BatchException {
+    java.util.List<Result> r;
+    try {
+        r = family.calculateAll(ch, nThreads, new DiagrFamily.MemberCalculation<Result>() {
+            @Override public Result calculate(Chem chM, int m) throws Exception {
+                return SEDBatch.calculate(chM, memberOptions(opt, family, m));
+            }
+        });
+    } catch (DiagrFamily.FamilyException ex) {throw new BatchException(ex.getMessage());}
+    return r.toArray(new Result[r.size()]);
+}
+
+/** @return a copy of <code>opt</code> with the ionic strength, temperature
+ * or pressure of member <code>m</code> of the family, with the plot file
+ * of the member (see <code>DiagrFamily.memberFile</code>), and without a sink */
+private static Options memberOptions(Options opt, DiagrFamily family, int m) {
+    Options o = opt.clone();
+    o.sink = null;
+    if(opt.pltFile != null) {o.pltFile = family.memberFile(opt.pltFile, m);}
+    if(family.kind == DiagrFamily.IONIC_STRENGTH) {o.ionicStrength = family.value(m);}
+    else if(family.kind == DiagrFamily.TEMPERATURE) {o.temperature = family.value(m);}
+    else if(family.kind == DiagrFamily.PRESSURE) {o.pressure = family.value(m);}
+    return o;
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="setPressure">
+/** Checks the pressure in <code>diag.pressure</code> for the temperature
+ * <code>diag.temperature</code>: at least 1 bar, and not below the
+ * saturated vapour pressure of water
+ * @param diag the plot information
+ * @param out where messages are printed
+ * @throws Exception if the saturated vapour pressure can not be calculated */
+static void setPressure(Chem.Diagr diag, java.io.PrintStream out) throws Exception {
+    double pSat = lib.kemi.H2O.IAPWSF95.pSat(diag.temperature);
+    if(Double.isNaN(diag.pressure)){diag.pressure = 1.;}
+    if(diag.temperature <= 99.61) {
+        if(diag.pressure < 1.) {
+            out.println("tC = "+diag.temperature+", pBar = "+diag.pressure+", setting pBar = 1.");
+        }
+        diag.pressure = Math.max(1.,diag.pressure);
+    }
+    // if pressure = 1 bar and temperature = 0, set temperature to 0.01 C (tripple point of water)
+    if(diag.pressure >0.99999 && diag.pressure < 1.00001 && Math.abs(diag.temperature) < 0.001) {diag.temperature = 0.01;}
+    if(diag.temperature <= 373.95) { // below critical point
+        if(diag.pressure < (pSat*0.999)) {
+            out.println("tC = "+diag.temperature+", pBar = "+diag.pressure+",  setting pBar = "+(float)pSat);
+            diag.pressure = pSat;
+        }
+    }
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="concSteps">
+/** The concentrations (or log(activities)) of each component at each
+ * calculation point. For components that appear only with positive (or only
+ * with negative) stoichiometric coefficients and have a total concentration
+ * of zero, the log(activity) is set to -9999 and <code>kh</code> is changed to 2.
+ * @param ch the chemical system and plot information
+ * @param nSteps the number of calculation steps
+ * @param pos from <code>checkInput</code>
+ * @param neg from <code>checkInput</code>
+ * @param dbg debug output
+ * @param out where messages are printed
+ * @return array bt[Na][nSteps+1] */
+static double[][] concSteps(Chem ch, int nSteps, boolean[] pos, boolean[] neg,
+        boolean dbg, java.io.PrintStream out) {
+    Chem.ChemSystem cs = ch.chemSystem;
+    Chem.ChemSystem.ChemConcs csC = cs.chemConcs;
+    Chem.DiagrConcs dgrC = ch.diagrConcs;
+    int j;
+    // ---- Store given conc. ranges in array bt[Na][nSteps+1]
+    double[][] bt = new double[cs.Na][nSteps+1];
+    for(j =0; j < cs.Na; j++) {
+        if(dgrC.hur[j] ==1 || dgrC.hur[j] ==4) { //T or LA
+            for(int n =0; n < bt[0].length; n++) {bt[j][n] = dgrC.cLow[j];}
+        } //if T or LA
+        else {  //if TV, LTV or LAV
+            double stepX =(dgrC.cHigh[j] - dgrC.cLow[j]) / nSteps;
+            bt[j][0] = dgrC.cLow[j];
+            for(int n =1; n < (bt[0].length-1); n++) {bt[j][n] = bt[j][n-1] + stepX;}
+            bt[j][nSteps] = dgrC.cHigh[j]; // to avoid rounding errors
+            if(dgrC.hur[j] ==3) { // LTV
+                for(int n =0; n < bt[0].length; n++)
+                    {bt[j][n] = Math.exp(ln10*bt[j][n]);}
+            } //if LTV
+        }  //if TV, LTV or LAV
+    } //for j
+
+    // check POS and NEG with the Tot.Conc. given in the input
+    for(j =0; j < cs.Na; j++) {
+        if(csC.kh[j] == 2) {continue;} //only it Tot.conc. is given
+        if(!(pos[j] && neg[j]) && (pos[j] || neg[j])) {
+            if(dgrC.hur[j] !=3 &&  //not LTV
+               dgrC.cLow[j]==0 && (Double.isNaN(dgrC.cHigh[j]) || dgrC.cHigh[j]==0)) {
+                    //it is only POS or NEG and Tot.Conc =0
+                    for(int n =0; n < bt[0].length; n++) {bt[j][n] = -9999.;}
+                    csC.kh[j] =2; //kh=2 means logA given
+                    if(dbg) {out.println("Can not calculate mass-balance for for component \""+cs.namn.identC[j]+"\""+nl+
+                        "   its log(activity) will be set to -9999.");}
+            }
+        }
+    } //for j
+    return bt;
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="setPoint">
+/** Sets the input for HaltaFall at a calculation point: the total
+ * concentrations or log(activities) of the components that are varied
+ * along the X-axis.
+ * @param csC the concentrations of the chemical system
+ * @param dgrC the concentration ranges for the diagram
+ * @param bt from <code>concSteps</code>
+ * @param n the calculation point, from zero to nSteps */
+static void setPoint(Chem.ChemSystem.ChemConcs csC, Chem.DiagrConcs dgrC, double[][] bt, int n) {
+    for(int j =0; j < bt.length; j++) {
+        if(dgrC.hur[j] >1 && dgrC.hur[j] !=4) { //TV, LTV or LAV
+            if(csC.kh[j] == 1) {csC.tot[j]=bt[j][n];} else {csC.logA[j]=bt[j][n];}
+        }
+    }
+}
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="checkInput">
+/** Make checks and make changes to the data stored in the Chem classes.
+ * @param ch the chemical system and plot information
+ * @param calcActCoeffs true if activity coefficients are to be calculated
+ * @param reversedConcs if false, concentration ranges given as "high to low"
+ * are changed to "low to high"
+ * @param pos on return: true for the components having positive
+ * stoichiometric coefficients. Size Na
+ * @param neg on return: true for the components having negative
+ * stoichiometric coefficients. Size Na
+ * @param msg receives the error and warning messages
+ * @param dbg debug output
+ * @param out where messages are printed
+ * @return true if checks are OK  */
+  static boolean checkInput(Chem ch, boolean calcActCoeffs, boolean reversedConcs,
+          boolean[] pos, boolean[] neg, Messages msg, boolean dbg, java.io.PrintStream out) {
+    Chem.ChemSystem cs = ch.chemSystem;
+    Chem.ChemSystem.ChemConcs csC = cs.chemConcs;
+    Chem.ChemSystem.NamesEtc namn = cs.namn;
+    Chem.DiagrConcs dgrC = ch.diagrConcs;
+    Chem.Diagr diag = ch.diag;
+    // -------------------
+    //   CHEMICAL SYSTEM
+    // -------------------
+    // mg = total number of soluble species in the aqueous solution:
+    //      all components + soluble complexes
+    // Note that in HaltaFall the solid components are fictitious soluble
+    // components with "zero" concentration (with noll = true)
+    int mg = cs.Ms - cs.mSol; // = na + nx;
+    int i;
+
+    // ---- Remove asterisk "*" from the name of components
+    for(i=0; i<cs.Na; i++) {
+        if(namn.identC[i].startsWith("*")) {
+            namn.identC[i] = namn.identC[i].substring(1);
+            namn.ident[i]  = namn.identC[i];
+            cs.noll[i] = true;
+        }
+    } // for i=0...Na-1
+
+    // ---- Remove reaction products (soluble or solid) with
+    //      name starting with "*".
+    // Note that the solids corresponding to the components will
+    // not have a name starting with "*". This is already removed when
+    // reading the input file.
+    double w; int j; int js;
+    i = cs.Na;
+    while (i < cs.Ms) {
+        if(namn.ident[i].startsWith("*")) {
+            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
+            cs.Ms = cs.Ms -1;
+            if(i >= cs.Ms) {break;}
+            for(j=i; j<cs.Ms; j++) {
+                js = j - cs.Na;
+                cs.lBeta[js] = cs.lBeta[js+1];
+                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
+                namn.ident[j] = namn.ident[j+1];
+                cs.noll[j] = cs.noll[j+1];
+            }
+        } else {i++;}
+    } //while (true)
+
+    // ---- get electric charge, length of name, etc
+    diag.aquSystem = false;
+    for(i=0; i<cs.Ms; i++) {
+        namn.nameLength[i] = getNameLength(namn.ident[i]);
+        // Species for which the concentration is not to be
+        // included in the Mass-Balance (for ex. the concentration
+        // of "free" electrons is excluded)
+        if(Util.isElectron(namn.ident[i]) || Util.isWater(namn.ident[i])) {
+                cs.noll[i] = true;
+                diag.aquSystem = true;
+        }
+        if(i < mg) { //aqueous species
+            namn.z[i]=0;
+            csC.logf[i] = 0;
+            if(namn.ident[i].length() >4 &&
+                namn.ident[i].toUpperCase().endsWith("(AQ)")) {
+                    diag.aquSystem = true;}
+                else { //does not end with "(aq)"
+                    namn.z[i] = Util.chargeOf(namn.ident[i]);
+                    if(namn.z[i] != 0) {diag.aquSystem = true;}
+                } // ends with "(aq)"?
+        }
+    } // for i=0...Ms-1
+    // The electric charge of two fictive species (Na+ and Cl-)
+    // that are used to ensure electrically neutral aqueous solutions
+    // when calculating the ionic strength and activity coefficients
+    namn.z[mg] = 1;     //electroneutrality "Na+"
+    namn.z[mg+1] =-1;   //electroneutrality "Na+"
+
+    // ---- set Gaseous species to have zero conc
+    //      if it is an aqueous system
+    if(diag.aquSystem) {
+        for(i =0; i < mg; i++) {
+            if(Util.isGas(namn.ident[i])
+                    || Util.isLiquid(namn.ident[i])
+                    || Util.isWater(namn.ident[i])) {cs.noll[i] = true;}
+        } //for i
+    }
+
+    // ---- Remove any reaction product (complex) named "H2O", if found
+    if(diag.aquSystem) {
+      for(i=cs.Na; i<cs.Ms; i++) {
+        if(Util.isWater(namn.ident[i])) {
+            if(i < mg) {mg--; cs.nx = cs.nx-1;} else {cs.mSol = cs.mSol -1;}
+            cs.Ms = cs.Ms -1;
+            if(i >= cs.Ms) {break;}
+            for(j=i; j<cs.Ms; j++) {
+                js = j - cs.Na;
+                cs.lBeta[js] = cs.lBeta[js+1];
+                System.arraycopy(cs.a[js+1], 0, cs.a[js], 0, cs.Na);
+                namn.ident[j] = namn.ident[j+1];
+                cs.noll[j] = cs.noll[j+1];
+            }
+        } //ident[i]="H2O"
+      } //for i
+    } //if aquSystem
+
+    if(dbg) {cs.printChemSystem(out);}
+
+    // ---- Check that all reactions are charge balanced
+    if(calcActCoeffs) {
+        double zSum;
+        boolean ok = true;
+        for(i=cs.Na; i < mg; i++) {
+            int ix = i - cs.Na;
+            zSum = (double)(-namn.z[i]);
+            for(j=0; j < cs.Na; j++) {
+                zSum = zSum + cs.a[ix][j]*(double)namn.z[j];
+            } //for j
+            if(Math.abs(zSum) > 0.0005) {
+                ok = false;
+                out.format(engl,"--- Warning: %s, z=%3d, charge imbalance:%9.4f%n",
+                            namn.ident[i],namn.z[i],zSum);
+            }
+        } //for i
+        if(!ok) {
+            if(!msg.proceed("There are charge imbalanced reactions in the input file.",1)) {
+                return false;
+            }
+        }
+    } // if calcActCoeffs
+
+    // ---- Check that at least there is one fuid species active
+    boolean foundOne = false;
+    for(i =0; i < mg; i++) {
+        if(!cs.noll[i]) {foundOne = true; break;}
+    } //for i
+    if(!foundOne) {
+        String t = "Error: There are no fluid species active ";
+        if(cs.mSol > 0) {t = t.concat("(Only solids)");}
+        t = t+nl+"This program can not handle such chemical systems.";
+        msg.error(t);
+        return false;
+    }
+
+    // --------------------
+    //   PLOT INFORMATION
+    // --------------------
+    diag.pInX =0; diag.pInY = 0;
+    //  pInX=0 "normal" X-axis
+    //  pInX=1 pH in X-axis
+    //  pInX=2 pe in X-axis
+    //  pInX=3 Eh in X-axis
+    if(Util.isElectron(namn.identC[diag.compX])) {
+        if(diag.Eh) {diag.pInX = 3;} else {diag.pInX = 2;}
+    } else if(Util.isProton(namn.identC[diag.compX])) {diag.pInX = 1;}
+
+    // ----------------------------------------------
+    //   CHECK THE CONCENTRATION FOR EACH COMPONENT
+    // ----------------------------------------------
+
+    for(int ia =0; ia < cs.Na; ia++) {
+        if(dgrC.hur[ia]==1 && // T
+            ia==diag.compX) {
+                msg.error("Error: the concentration for component \""+namn.identC[ia]+"\" "+
+                    "must vary, as it belongs to the X-axis!");
+                return false;
+                }
+        if(dgrC.hur[ia] >0 && dgrC.hur[ia]<=3) { //T, TV or LTV
+            if(Util.isWater(namn.identC[ia])) {
+                msg.error("Error: The calculations are made for 1kg H2O"+nl+
+                           "Give log(H2O-activity) instead of a total conc. for water.");
+                return false;
+           } // if water
+        } //if T, TV or LTV
+        if(dgrC.hur[ia] ==2 || dgrC.hur[ia] ==3 || dgrC.hur[ia] ==5) { //TV, LTV or LAV
+            if(ia != diag.compX) {
+                String t;
+                if(dgrC.hur[ia] ==5) {t="log(activity)";} else {t="total conc.";}
+                String m = "Warning: The "+t+" is varied for \""+namn.identC[ia]+"\""+nl+
+                           "   but the component in the X-axis is \""+namn.identC[diag.compX]+"\"";
+                if(!msg.proceed(m,2)) {return false;}
+            }
+        } //if TV, LTV or LAV
+        if((dgrC.hur[ia] ==1 || dgrC.hur[ia] ==4) && //T or LA
+           ia == diag.compX) {
+                String t;
+                if(dgrC.hur[ia] ==4) {t="log(activity)";} else {t="total conc.";}
+                msg.error("Error: The "+t+" of \""+namn.identC[ia]+"\""+nl+
+                        "can NOT be a fixed value because this component belongs to the X-axis !");
+                return false;
+            }
+        if(dgrC.hur[ia] ==1 && // T
+           Math.abs(dgrC.cLow[ia]) >100) {
+                String t = String.format(engl,"Error:  For component: "+namn.identC[ia]+nl+
+                        "   Tot.Conc.=%12.4g mol/kg.  This is not a reasonable value!",dgrC.cLow[ia]);
+                msg.error(t);
+                return false;
+            }
+        if(dgrC.hur[ia] ==4 &&  // LA
+           Util.isProton(namn.identC[ia]) &&
+           (dgrC.cLow[ia] <-14 || dgrC.cLow[ia] >2)) {
+                String m = String.format(engl,"Warning: In the input, you give  pH =%8.2f%n"+
+                        "This value could be due to an input error.",(-dgrC.cLow[ia]));
+                if(!msg.proceed(m,2)) {return false;}
+        }
+        if(dgrC.hur[ia] !=1 && dgrC.hur[ia] !=4) {//if TV, LTV or LAV
+            if(dgrC.cLow[ia] == dgrC.cHigh[ia] ||
+                    Math.max(Math.abs(dgrC.cLow[ia]), Math.abs(dgrC.cHigh[ia])) < 1e-15) {
+                msg.error("Error:  Min-value = Max-value for component \""+namn.identC[ia]+"\"");
+                return false;
+            }
+            if(dgrC.cLow[ia] > dgrC.cHigh[ia] && !reversedConcs) {
+                w = dgrC.cLow[ia];
+                dgrC.cLow[ia] = dgrC.cHigh[ia];
+                dgrC.cHigh[ia] = w;
+            }
+            if(!reversedConcs && dgrC.hur[ia] ==5 && // pH/pe/EH varied - LAV
+                   (Util.isProton(namn.identC[ia]) ||
+                    Util.isElectron(namn.identC[ia]))) {
+                w = dgrC.cLow[ia];
+                dgrC.cLow[ia] = dgrC.cHigh[ia];
+                dgrC.cHigh[ia] = w;
+            }
+            if(dgrC.hur[ia] ==5 && // LAV
+                    (Util.isProton(namn.identC[ia])) &&
+                     (dgrC.cLow[ia] <-14.00001 || dgrC.cLow[ia] >2.00001 ||
+                      dgrC.cHigh[ia] <-14.00001 || dgrC.cHigh[ia] >2.00001)) {
+                String m = String.format(engl,"Warning: In the input, you give  pH =%8.2f to %7.2f%n"+
+                        "These values could be due to an input error.",(-dgrC.cLow[ia]),(-dgrC.cHigh[ia]));
+                if(!msg.proceed(m,2)) {return false;}
+            }
+            if(dgrC.hur[ia] ==2 && // TV
+                  (Math.max(Math.abs(dgrC.cHigh[ia]),Math.abs(dgrC.cLow[ia]))>100)) {
+                msg.error("Error:  You give  ABS(TOT.CONC.) > 100  for component: "+namn.identC[ia]+nl+
+                    "This value is too high and perhaps an input error."+nl+
+                    "Set the maximum ABS(TOT.CONC.) value to 100.");
+                return false;
+            }
+            if(dgrC.hur[ia] ==3) { // LTV
+                if((Math.min(dgrC.cLow[ia], dgrC.cHigh[ia]) < -7.0001) &&
+                      (Util.isProton(namn.identC[ia]))) {
+                    String m = "Warning: You give a  LOG (TOT.CONC.) < -7  for component: "+namn.identC[ia]+nl+
+                        "This value is rather low and could be due to an input error."+nl+
+                        "Maybe you meant to set  LOG (ACTIVITY) < -7 ??";
+                    if(!msg.proceed(m,2)) {return false;}
+                }
+                if(Math.max(dgrC.cLow[ia], dgrC.cHigh[ia]) > 2.0001) {
+                    msg.error("Error: You give a  LOG (TOT.CONC.) > 2  for component: "+namn.identC[ia]+nl+
+                        "This value is too high and it could be due to an input error."+nl+
+                        "Please set the LOG (TOT.CONC.) value to <=2.");
+                    return false;
+                }
+            } //if LTV
+        } //if TV, LTV or LAV
+
+    } // for ia = 0... Na-1
+
+    // ----------------
+    //   OTHER CHECKS
+    // ----------------
+
+    // ---- See which components have positive or negative (or both)
+    //      values for the stoichiometric coefficients (a[ix][ia]-values)
+    for(i =0; i < cs.Na; i++) {
+        pos[i] = false; neg[i] = false;
+        if(!cs.noll[i]) { // if not "e-" and not solid component
+                    pos[i] = true;}
+        for(j = cs.Na; j < cs.Ms; j++) {
+            if(!cs.noll[j]) {
+                if(cs.a[j-cs.Na][i] >0) {pos[i] = true;}
+                if(cs.a[j-cs.Na][i] <0) {neg[i] = true;}
+            } // !noll
+        } //for j
+    } //for i
+    // check POS and NEG with the Tot.Conc. given in the input
+    for(i =0; i < cs.Na; i++) {
+        if(csC.kh[i] == 2) {continue;} //only it Tot.conc. is given
+        if((!pos[i] && !neg[i]) ) { // || cs.nx ==0
+            String m = "Error: for component \""+namn.identC[i]+"\" give Log(Activity)";
+            if(dgrC.hur[i] !=1) { // not "T", that is: "TV" or "LTV"
+                m = m+" to vary";}
+            msg.error(m);
+            return false;
+        } //if Nx =0 or (!pos[] & !neg[])
+        if((pos[i] && neg[i]) ||
+           (pos[i] && (dgrC.hur[i] ==3 ||  //LTV
+                (dgrC.cLow[i]>0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]>0)))) ||
+           (neg[i] && (dgrC.hur[i] !=3 && //not LTV
+                (dgrC.cLow[i]<0 && (Double.isNaN(dgrC.cHigh[i]) || dgrC.cHigh[i]<0))))) {
+            continue;
+        }
+        if(pos[i] || neg[i]) {
+            String m = "Error: Component \"%s\" may not have %s Tot.Conc. values.%s"+
+                    "Give either  Tot.Conc. %s=0.0  or  Log(Activity)%s";
+            if(neg[i] && (dgrC.hur[i] ==3 || // LTV
+                    dgrC.cLow[i]>0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]>0))) {
+                msg.error(String.format(m, namn.identC[i], "positive", nl,"<",nl));
+                return false;}
+            if(pos[i] && (dgrC.hur[i] !=3 &&  //not LTV
+                    (dgrC.cLow[i]<0 || (!Double.isNaN(dgrC.cHigh[i]) && dgrC.cHigh[i]<0)))) {
+                msg.error(String.format(m, namn.identC[i], "negative", nl,">",nl));
+                return false;
+            }
+        } //if pos or neg
+    } //for i
+
+    // OK so far. Update "nx" (=nbr of soluble complexes)
+    cs.nx = mg - cs.Na;
+    return true;
+
+  } // checkInput()
+
+//<editor-fold defaultstate="collapsed" desc="getNameLength(species)">
+    private static int getNameLength(String species) {
+        int nameL = Math.max(1, Util.rTrim(species).length());
+        if(nameL < 3) {return nameL;}
+        // Correct name length if there is a space between name and charge
+        // "H +",  "S 2-",  "Q 23+"
+        int sign; int ik;
+        sign =-1;
+        for(ik =nameL-1; ik >= 2; ik--) {
+            char c = species.charAt(ik);
+            if(c == '+' || c == '-' ||
+               // unicode en dash or unicode minus
+               c =='\u2013' || c =='\u2212') {sign = ik; break;}
+            } //for ik
+        if(sign <2) {return nameL;}
+        if(sign < nameL-1 &&
+                (Character.isLetterOrDigit(species.charAt(sign+1)))) {return nameL;}
+        if(species.charAt(sign-1) == ' ')
+                        {nameL = nameL-1; return nameL;}
+        if(nameL >=4) {
+                if(species.charAt(sign-1) >= '2' && species.charAt(sign-1) <= '9' &&
+                   species.charAt(sign-2) == ' ')
+                        {nameL = nameL-1; return nameL;}
+        } //if nameL >=4
+        if(nameL >=5) {
+                if((species.charAt(sign-1) >= '0' && species.charAt(sign-1) <= '9') &&
+                   (species.charAt(sign-2) >= '1' && species.charAt(sign-2) <= '9') &&
+                   species.charAt(sign-3) == ' ')
+                        {nameL = nameL-1;}
+            } //if nameL >=5
+        return nameL;
+    } // getNameLength(species)
+//</editor-fold>
+
+//</editor-fold>
+
+}
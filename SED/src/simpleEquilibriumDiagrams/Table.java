@@ -20,11 +20,13 @@ import lib.kemi.chem.Chem;
  * along with this program.  If not, see http://www.gnu.org/licenses/
  * 
  * @author Ignasi Puigdomenech */
-public class Table {
+public class Table implements ResultSink {
 private java.io.File tf = null;
 private java.io.Writer tW = null;
 private final static java.util.Locale engl = java.util.Locale.ENGLISH;
 private SED sed = null;
+/** the diagram whose species are written in the table */
+private Plot plot = null;
 /** Where messages will be printed. It may be <code>System.out</code>.
  * If null, <code>System.out</code> is used. */
 private final java.io.PrintStream out;
@@ -37,15 +39,23 @@ private String commentLineEnd = "\"";
 private static final String SLASH = java.io.File.separator;
 /** field separator (for example a semicolon, ";", a comma ",", etc). */
 private String fs;
+/** the values from <code>Plot.pointValues</code> for this point and for the
+ * previous one (needed in H-affinity diagrams) */
+private double[] c = null, tot = null, cPrev = null, totPrev = null;
+/** the values for the Y-axis at this point */
+private double[] y = null;
 
 /** Constructs an object of this class
  * @param sed0 the program SED frame
+ * @param plot0 the diagram, after <code>preparePlot</code>: the table
+ * has a column for each species in the diagram
  * @param err0 Where errors will be printed. It may be <code>System.err</code>.
  * If null, <code>System.err</code> is used.
  * @param out0 Where messages will be printed. It may be <code>System.out</code>.
  * If null, <code>System.out</code> is used. */
-public Table(SED sed0, java.io.PrintStream err0, java.io.PrintStream out0) {
+public Table(SED sed0, Plot plot0, java.io.PrintStream err0, java.io.PrintStream out0) {
     this.sed = sed0;
+    this.plot = plot0;
     if(out0 != null) {this.out = out0;} else {this.out = System.out;}
     commentLineStart = sed.tblCommentStart;
     commentLineEnd = sed.tblCommentEnd;
@@ -156,7 +166,7 @@ boolean tableHeader(Chem ch, java.io.File tableFile) {
     else if(diag.plotType ==8) {t="d(H-bound)/d(pH)";}
     tW.write(String.format("%sComponent in X-axis is: %s;  the Y-axis data are %s.%s%n", commentLineStart, namn.identC[diag.compX],t,commentLineEnd));
     tW.flush();
-    tW.write(String.format("%sOutput data (there are %d lines and (1+%d) columns)%s%n", commentLineStart, (sed.nSteps+1),Plot.nbrSpeciesInPlot,commentLineEnd));
+    tW.write(String.format("%sOutput data (there are %d lines and (1+%d) columns)%s%n", commentLineStart, (sed.nSteps+1),plot.nbrSpeciesInPlot,commentLineEnd));
     tW.write(commentLineStart+"(the first column contains the X-axis values)"+commentLineEnd+nl);
     //--- column captions:
     if(sed.tblFieldSeparator != null && sed.tblFieldSeparator.length() >0) {
@@ -177,14 +187,14 @@ boolean tableHeader(Chem ch, java.io.File tableFile) {
             tW.write("\""+namn.identC[diag.compX]+"\""+fs+"\"d(H-h)/d(pH)\""+fs);
         } else {
             tW.write("\""+namn.identC[diag.compX]+"\""+fs);
-            for(int i =0; i < Plot.nbrSpeciesInPlot; i++) {
-                tW.write("\""+namn.ident[Plot.speciesInPlot[i]]+"\""+fs);
+            for(int i =0; i < plot.nbrSpeciesInPlot; i++) {
+                tW.write("\""+namn.ident[plot.speciesInPlot[i]]+"\""+fs);
             }
         }
     } else { // solubilities
         tW.write("\""+namn.identC[diag.compX]+"\""+fs);
-        for(int i =0; i < Plot.nbrSpeciesInPlot; i++) {
-            tW.write("\""+namn.identC[Plot.speciesInPlot[i]]+"\""+fs);
+        for(int i =0; i < plot.nbrSpeciesInPlot; i++) {
+            tW.write("\""+namn.identC[plot.speciesInPlot[i]]+"\""+fs);
         }
     }
 
@@ -224,11 +234,81 @@ boolean tableHeader(Chem ch, java.io.File tableFile) {
 void tableBody(int nP, Chem ch) {
     if(sed.dbg) {out.println("--- tableBody("+nP+", ch)");}
     Chem.ChemSystem cs = ch.chemSystem;
-    Chem.ChemSystem.ChemConcs csC = cs.chemConcs;
-    Chem.ChemSystem.NamesEtc namn = cs.namn;
     Chem.Diagr diag = ch.diag;
     Chem.DiagrConcs dgrC = ch.diagrConcs;
 
+    if(c == null) {
+        c = new double[cs.Ms]; cPrev = new double[cs.Ms];
+        tot = new double[cs.Na]; totPrev = new double[cs.Na];
+        y = new double[cs.Ms];
+    }
+    double[] t = cPrev; cPrev = c; c = t;
+    t = totPrev; totPrev = tot; tot = t;
+    Plot.pointValues(ch, c, tot);
+
+    double xValue;
+    int i;
+    xValue = sed.bt[diag.compX][nP];
+    if(dgrC.hur[diag.compX] ==3) {  //"LTV"
+        xValue = Math.log10(xValue);
+    } else if(diag.pInX !=0) {
+        xValue = -xValue;
+    }
+    yValues(ch, nP, c, tot, cPrev, totPrev, plot.speciesInPlot, plot.nbrSpeciesInPlot, y);
+
+    try{
+    tW.write(String.format(engl,"%13.5g",xValue));
+        for(int k=0; k < plot.nbrSpeciesInPlot; k++) {
+            i = plot.speciesInPlot[k];
+            if(i >= cs.Ms) {continue;}
+            tW.write(String.format(engl,fs+"%13.5g",y[i]));
+        }
+
+    tW.write(fs);
+
+    // print ionic strength, concentrations and activity coefficients
+    if(!Double.isNaN(diag.ionicStrength) &&
+       Math.abs(diag.ionicStrength) > 1.e-10 && (diag.plotType !=4 && diag.plotType !=8)) {
+        tW.write(String.format(engl,"%s% 9.4f%s %9.4f", fs,diag.ionicStrCalc,fs,diag.sumM));
+        int nIon = cs.Na + cs.nx;
+        for(int j = 0; j < nIon; j++) {
+            if(j != cs.jWater) {
+                tW.write(String.format(engl,"%s% 12.4g%s %9.4f", fs,cs.chemConcs.C[j],fs,cs.chemConcs.logf[j]));
+            } else {
+                tW.write(String.format(engl,"%s% 9.4f%s %9.4f", fs,Math.pow(10,cs.chemConcs.logA[j]),fs,diag.phi));
+            }
+        }
+    }
+
+    tW.write(nl);
+
+    } catch (Exception ex) {
+        sed.showErrMsgBx("Error: \""+ex.getMessage()+"\""+nl+
+                            "while writing file \""+tf.getAbsolutePath()+"\"", 1);
+        tableClose();
+    }
+
+} //tableBody()
+//</editor-fold>
+
+//<editor-fold defaultstate="collapsed" desc="yValues()">
+/** The values for the Y-axis at a point, as written in the table file.
+ * @param ch where the data for the chemical system are stored
+ * @param nP the point number (along the x-axis)
+ * @param c the values from <code>Plot.pointValues</code> for this point
+ * @param tot the values from <code>Plot.pointValues</code> for this point
+ * @param cPrev the values from <code>Plot.pointValues</code> for the
+ * previous point (not used if nP = 0)
+ * @param totPrev the values from <code>Plot.pointValues</code> for the
+ * previous point (not used if nP = 0)
+ * @param species the species (or components) in the diagram
+ * @param nbr the number of species in the diagram
+ * @param y output: the value for each species in the diagram, y[Ms].
+ * For H-affinity diagrams the value is in y[0]. */
+static void yValues(Chem ch, int nP, double[] c, double[] tot,
+        double[] cPrev, double[] totPrev, int[] species, int nbr, double[] y) {
+    Chem.ChemSystem cs = ch.chemSystem;
+    Chem.Diagr diag = ch.diag;
     //---
     // Values for the Y-axis
     //  plotType=1 fraction diagram      compY= main component
@@ -239,112 +319,70 @@ void tableBody(int nP, Chem ch) {
     //  plotType=6 pH in Y-axis
     //  plotType=7 log (activity) diagram
     //  plotType=8 H-affinity diagram
-    double xValue;
-    double w1; double w2; double y1; double y2;
-    double y[] = new double[cs.Ms];
+    double w1; double w2;
     int i;
-    xValue = sed.bt[diag.compX][nP];
-    if(dgrC.hur[diag.compX] ==3) {  //"LTV"
-        xValue = Math.log10(xValue);
-    } else if(diag.pInX !=0) {
-        xValue = -xValue;
-    }
     if(diag.plotType ==1) { //fractions
-        for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-            i = Plot.speciesInPlot[k];
+        for(int k=0; k < nbr; k++) {
+            i = species[k];
             if(i >= cs.Ms) {continue;}
-            if(Math.abs(Plot.tot0[diag.compY][nP])>1.e-30) {
+            if(Math.abs(tot[diag.compY])>1.e-30) {
                 double o;
                 if(i < cs.Na) {
                     if(i==diag.compY) {o=1;} else {o=0;}
                 } else {o =cs.a[i-cs.Na][diag.compY];}
-                y[i]=o*Plot.c0[i][nP]/Plot.tot0[diag.compY][nP];
+                y[i]=o*c[i]/tot[diag.compY];
             } else {
                 y[i] = 0;
             }
             if(y[i] >1d && y[i] < 1.01d) {y[i] = 1;}
         } //for i
     } else if(diag.plotType ==2) { //solubilities
-        for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-            i = Plot.speciesInPlot[k];
+        for(int k=0; k < nbr; k++) {
+            i = species[k];
             if(i >= cs.Ms) {continue;}
-            if(Plot.tot0[i][nP]>1.e-50) {y[i] = Math.log10(Plot.tot0[i][nP]);}
+            if(tot[i]>1.e-50) {y[i] = Math.log10(tot[i]);}
             else {y[i] = -50;}
         }
     } else if(diag.plotType ==3) { //log(concs.)
-        for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-            i = Plot.speciesInPlot[k];
+        for(int k=0; k < nbr; k++) {
+            i = species[k];
             if(i >= cs.Ms) {continue;}
-            if(Plot.c0[i][nP]>1.e-35) {y[i] = Math.log10(Plot.c0[i][nP]);}
+            if(c[i]>1.e-35) {y[i] = Math.log10(c[i]);}
             else {y[i] = -99;}
         }
     } else if(diag.plotType ==4) { //log(ai/ar)
-        for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-            i = Plot.speciesInPlot[k];
+        for(int k=0; k < nbr; k++) {
+            i = species[k];
             if(i >= cs.Ms) {continue;}
-            y[i] = Plot.c0[i][nP] - Plot.c0[diag.compY][nP];
+            y[i] = c[i] - c[diag.compY];
         }
     } else if(diag.plotType ==5 || diag.plotType ==6) { //pe or pH
-        for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-            i = Plot.speciesInPlot[k];
+        for(int k=0; k < nbr; k++) {
+            i = species[k];
             if(i >= cs.Ms) {continue;}
-            y[i] = -Plot.c0[i][nP];
+            y[i] = -c[i];
         }
     } else if(diag.plotType ==7) { //log(act.)
-        for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-            i = Plot.speciesInPlot[k];
+        for(int k=0; k < nbr; k++) {
+            i = species[k];
             if(i >= cs.Ms) {continue;}
-            y[i] = Plot.c0[i][nP];
+            y[i] = c[i];
         }
     } else if(diag.plotType ==8) { //Proton affinity
-        //Note:  c0[0][nSp] =c[Hplus]   c0[1][nSp] =logA[Hplus]   c0[2][nSp] =c[OHmin]
-        if(nP ==0) { //first point
-            y[0] =0;
-        } else if(nP <= sed.nSteps) {
+        //Note:  c[0] =c[Hplus]   c[1] =logA[Hplus]   c[2] =c[OHmin]
+        y[0] = 0;
+        if(nP > 0) {
             // w1 = delta (-pH)
             // w2 = delta (H_bound) = delta ([H]_tot - [H+] + [OH-]
-            w1 = Plot.c0[1][nP]-Plot.c0[1][nP-1];
-            w2 = (Plot.tot0[diag.Hplus][nP]-Plot.c0[0][nP]+Plot.c0[2][nP])
-                        - (Plot.tot0[diag.Hplus][nP-1]-Plot.c0[0][nP-1]+Plot.c0[2][nP-1]);
+            w1 = c[1]-cPrev[1];
+            w2 = (tot[diag.Hplus]-c[0]+c[2])
+                        - (totPrev[diag.Hplus]-cPrev[0]+cPrev[2]);
             if(Math.abs(w1) >= 1.E-35) y[0] = ( w2 / w1);
         }
     } else { //error
         for(int k=0; k < y.length; k++) {y[k] = -9999.9999;}
     }
-
-    try{
-    tW.write(String.format(engl,"%13.5g",xValue));
-        for(int k=0; k < Plot.nbrSpeciesInPlot; k++) {
-            i = Plot.speciesInPlot[k];
-            if(i >= cs.Ms) {continue;}
-            tW.write(String.format(engl,fs+"%13.5g",y[i]));
-        }
-
-    tW.write(fs);
-
-    // print ionic strength, concentrations and activity coefficients
-    if(!Double.isNaN(diag.ionicStrength) &&
-       Math.abs(diag.ionicStrength) > 1.e-10 && (diag.plotType !=4 && diag.plotType !=8)) {
-        tW.write(String.format(engl,"%s% 9.4f%s %9.4f", fs,diag.ionicStrCalc,fs,diag.sumM));
-        int nIon = cs.Na + cs.nx;
-        for(int j = 0; j < nIon; j++) {
-            if(j != cs.jWater) {
-                tW.write(String.format(engl,"%s% 12.4g%s %9.4f", fs,cs.chemConcs.C[j],fs,cs.chemConcs.logf[j]));
-            } else {
-                tW.write(String.format(engl,"%s% 9.4f%s %9.4f", fs,Math.pow(10,cs.chemConcs.logA[j]),fs,diag.phi));
-            }
-        }
-    }
-
-    tW.write(nl);
-
-    } catch (Exception ex) {
-        sed.showErrMsgBx("Error: \""+ex.getMessage()+"\""+nl+
-                            "while writing file \""+tf.getAbsolutePath()+"\"", 1);
-        tableClose();
-    }
-
-} //tableBody()
+} //yValues()
 //</editor-fold>
 
 //<editor-fold defaultstate="collapsed" desc="tableClose()">
@@ -359,4 +397,8 @@ void tableClose() {
 }
 //</editor-fold>
 
+@Override public void point(int nP, Chem ch) {tableBody(nP, ch);}
+
+@Override public void close() {tableClose();}
+
 } // class Table
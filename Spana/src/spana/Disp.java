@@ -6,6 +6,7 @@ import lib.huvud.Div;
 import lib.huvud.ProgramConf;
 import lib.kemi.graph_lib.DiagrPaintUtility;
 import lib.kemi.graph_lib.GraphLib;
+import lib.kemi.graph_lib.PltFile;
 
 /** Displays a "plt"-file. The user coordinate units are in 0.01 cm.
  * The diagram is displayed in a JPanel using the method
@@ -694,10 +695,8 @@ public class Disp extends javax.swing.JFrame {
         this.dd = new GraphLib.PltData();
         dd.pltFile_Name = f.getPath();
         dd.fileLastModified = new java.util.Date(f.lastModified());
-        java.io.BufferedReader bufReader;
-        try{bufReader = new java.io.BufferedReader(
-                new java.io.InputStreamReader(
-                        new java.io.FileInputStream(f),"UTF8"));
+        PltFile.Reader rd;
+        try{rd = new PltFile.Reader(f);
         } catch (Exception e) {
             String msg = "Error: \""+e.toString()+"\""+nl+nl+
                 "For plot file:"+f.getPath();
@@ -714,38 +713,29 @@ public class Disp extends javax.swing.JFrame {
         icon_type = 1;
         boolean axisInfo1 = false; boolean axisInfo2 = false;
         int i0, i1, i2;
-        StringBuilder line = new StringBuilder();
         String comment;
         int penColour = 5; int currentColour = 1;
-        // ----- read all lines
-        String l;
+        // ----- read all lines (records)
+        boolean more;
         do {
-            try {l = bufReader.readLine();}
+            try {more = rd.next();}
             catch (java.io.IOException e) {
                 String msg = "Error: \""+e.toString()+"\""+nl+nl+
                     "For plot file:"+f.getPath();
                 javax.swing.JOptionPane.showMessageDialog(this,msg,
                         pc.progName, javax.swing.JOptionPane.ERROR_MESSAGE);
+                try {rd.close();} catch (java.io.IOException ex) {}
                 return false;} //catch
-            if (line.length()>0) {line.delete(0, line.length());}
-            if (l != null) {
-                line.append(l);
-                String s0, s1, s2;
-                if (line.length() > 0) {s0= line.substring(0,1).trim();} else {s0 = "";}
-                if (line.length() > 4) {s1= line.substring(1,5).trim();} else {s1 = "";}
-                if (line.length() > 8) {s2= line.substring(5,9).trim();} else {s2 = "";}
+            if (more) {
+                i0 = rd.i0; i1 = rd.i1; i2 = rd.i2;
                 // get comments
-                if (line.length() > 9) {
-                    comment= line.substring(9).trim();
+                if (rd.comment != null) {
+                    comment= rd.comment.trim();
                     if (comment.length()>12 && (comment.substring(0, 12).equals("-- PREDOM DI") ||
                             comment.substring(0, 12).equals("-- PREDOM2 D")))
                         {icon_type = 2;}
                 } else {comment = "";}
 
-                if (s0.length() > 0) {i0 = readInt(s0);} else {i0 = -1;}
-                if (s1.length() > 0) {i1 = readInt(s1);} else {i1 = 0;}
-                if (s2.length() > 0) {i2 = readInt(s2);} else {i2 = 0;}
-
                 if (i0==0 || i0==1) {
                     if(i1<dd.userSpaceMin.x) {dd.userSpaceMin.x = i1;}
                     if(i1>dd.userSpaceMax.x) {dd.userSpaceMax.x = i1;}
@@ -828,20 +818,18 @@ public class Disp extends javax.swing.JFrame {
                         else if(t.equalsIgnoreCase("C")) {align = 0;}                     
                     }
                     // the text is in next line
-                    if(line.length()>0) {line.delete(0, line.length());}
-                    try {l = bufReader.readLine();}
+                    try {more = rd.next();}
                     catch (java.io.IOException e) {
                         String msg = "Error: \""+e.toString()+"\""+nl+nl+
                                     "For plot file:"+f.getPath();
                                     javax.swing.JOptionPane.showMessageDialog(this, msg,
                                     pc.progName, javax.swing.JOptionPane.ERROR_MESSAGE);
+                                    try {rd.close();} catch (java.io.IOException ex) {}
                                     return false;
                     } //catch
-                    if(l != null) {line.append(l);} else {line.append("null");}
-                    if(!line.toString().equals("null")) {
-                        if (line.length()>9) {
-                            comment= Util.rTrim(line.substring(9));
-                            if(comment.startsWith(" ")) {comment = comment.substring(1);}
+                    if(more) {
+                        if (rd.comment != null) {
+                            comment= Util.rTrim(rd.comment);
                         } else {comment = "";}
                         // addjust userSpaceMax and userSpaceMin
                         textBoxMinMax(i1, i2, (txtSize * 100f),
@@ -852,15 +840,15 @@ public class Disp extends javax.swing.JFrame {
                         dd.pltTextAList.add(new GraphLib.PltData.PlotText(i1, i2,
                             isFormula, align, txtSize,txtAngle, comment,
                             penColour, currentColour));
-                    } // if line != null
+                    } // if more
                     // ------ read all lines until "TextEnd"
                     readingText = true;
                 } // end reading a TextBegin - TextEnd
                 if (comment.equals("TextEnd")) {readingText = false;}
                 } // if textWithFonts
-            } // if line != null
-        } while (l != null); // do-while
-    try {bufReader.close();}
+            } // if more
+        } while (more); // do-while
+    try {rd.close();}
     catch (java.io.IOException ex) {
         String msg = "Error: \""+ex.toString()+"\""+nl+nl+"For plot file: "+f.getPath();
         javax.swing.JOptionPane.showMessageDialog(this, msg,
@@ -938,17 +926,6 @@ public class Disp extends javax.swing.JFrame {
   }
   //</editor-fold>
 
-  //<editor-fold defaultstate="collapsed" desc="readInt(String)">
-    private static int readInt(String t) {
-      int i;
-      try{i = Integer.parseInt(t);}
-      catch (NumberFormatException ex) {
-          MsgExceptn.exception("Error: "+ex.toString()+nl+
-                  "   while reading an integer from String: \""+t+"\"");
-          i = 0;}
-      return i;
-    } //readFloat(T)
-  //</editor-fold>
   //<editor-fold defaultstate="collapsed" desc="readFloat(String)">
     private static float readFloat(String t) {
       float f;